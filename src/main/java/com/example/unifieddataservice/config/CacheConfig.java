@@ -5,15 +5,25 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.RemovalListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Caches metric tables and query results. A cached {@link UnifiedDataTable} belongs to the cache, which closes
+ * it once it is removed for any cause; every read hands out a {@link UnifiedDataTable#share() share} of it that
+ * belongs to the caller. A table can so sit in the metric cache and be the result of a query over that metric
+ * at the same time, and evicting it does not free buffers a caller is still reading.
+ */
 @Configuration
 @EnableCaching
 public class CacheConfig {
@@ -23,17 +33,27 @@ public class CacheConfig {
     @Bean
     @Primary
     public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager("metrics", "queryResults");
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("metrics", "queryResults") {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new TableSharingCache(name, cache, isAllowNullValues());
+            }
+        };
         
         // Create a type-safe Caffeine cache configuration
         Caffeine<Object, Object> caffeine = Caffeine.newBuilder()
                 .maximumSize(100)  // Maximum number of entries in the cache
                 .expireAfterWrite(1, TimeUnit.HOURS)  // Cache entries expire after 1 hour
                 .recordStats()  // Enable cache statistics
+                // Release tables on the removing thread, so an eviction has freed their buffers when it returns
+                .executor(Runnable::run)
+                // Explicit removals, such as evicting the tables of a changed local source, release tables too.
+                // Caffeine reports a replacement only when the old value is a different instance, so a table
+                // removed for any cause is no longer reachable through the cache; callers hold shares of it.
                 .removalListener((RemovalListener<Object, Object>) (key, value, cause) -> {
-                    if (value != null && cause.wasEvicted() && value instanceof UnifiedDataTable) {
+                    if (value instanceof UnifiedDataTable) {
                         try {
-                            logger.debug("Evicting and closing UnifiedDataTable for key: {}", key);
+                            logger.debug("Closing UnifiedDataTable for key: {} ({})", key, cause);
                             ((UnifiedDataTable) value).close();
                         } catch (Exception e) {
                             logger.error("Error closing UnifiedDataTable for key: " + key, e);
@@ -46,4 +66,36 @@ public class CacheConfig {
         
         return cacheManager;
     }
+
+    /**
+     * Hands out shares of cached tables. A table closed between being read from the cache and being shared
+     * has been removed from it, so it is loaded again.
+     */
+    static class TableSharingCache extends CaffeineCache {
+
+        TableSharingCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache, boolean allowNullValues) {
+            super(name, cache, allowNullValues);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            while (true) {
+                T value = super.get(key, valueLoader);
+                if (!(value instanceof UnifiedDataTable table)) {
+                    return value;
+                }
+                Optional<UnifiedDataTable> shared = table.shareIfOpen();
+                if (shared.isPresent()) {
+                    return (T) shared.get();
+                }
+            }
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            Object value = super.lookup(key);
+            return value instanceof UnifiedDataTable table ? table.shareIfOpen().orElse(null) : value;
+        }
+    }
 }
@@ -57,7 +57,7 @@ this.metricInfoRepository = metricInfoRepository;
             stockData.setSourceUrl("/Users/mac/VscodeProjects/UnifiedData/sample-data/stock_data.csv");
             stockData.setDataPath(""); // CSV does not need dataPath
             stockData.setFieldMappings(Map.of(
-                "stkcode", DataType.STRING,
+                "stkcode", DataType.DICTIONARY_STRING,
                 "timestamp", DataType.LONG,
                 "macd", DataType.DOUBLE,
                 "pe", DataType.DOUBLE,
@@ -72,6 +72,8 @@ this.metricInfoRepository = metricInfoRepository;
             posts.setDataSourceType(DataSourceType.HTTP_JSON);
             posts.setSourceUrl("https://jsonplaceholder.typicode.com/posts");
             posts.setDataPath(""); // Root is an array
+            // The source filters any field for equality with a field=value parameter
+            posts.setSourceOptions(Map.of("pushdown.*.eq", "{column}"));
             posts.setFieldMappings(Map.of(
                 "id", DataType.LONG,
                 "userId", DataType.LONG,
@@ -86,6 +88,8 @@ this.metricInfoRepository = metricInfoRepository;
             users.setDataSourceType(DataSourceType.HTTP_JSON);
             users.setSourceUrl("https://jsonplaceholder.typicode.com/users");
             users.setDataPath(""); // Root is an array
+            // The source filters any field for equality with a field=value parameter
+            users.setSourceOptions(Map.of("pushdown.*.eq", "{column}"));
             users.setFieldMappings(Map.of(
                 "id", DataType.LONG,
                 "name", DataType.STRING,
@@ -180,7 +184,7 @@ this.metricInfoRepository = metricInfoRepository;
             stockPrice.setSourceUrl("/Users/mac/VscodeProjects/UnifiedData/sample-data/stock_price.csv");
             stockPrice.setDataPath("");
             stockPrice.setFieldMappings(Map.of(
-                "stkcode", DataType.STRING,
+                "stkcode", DataType.DICTIONARY_STRING,
                 "timestamp", DataType.LONG,
                 "close", DataType.DOUBLE
             ));
@@ -193,7 +197,7 @@ this.metricInfoRepository = metricInfoRepository;
             stockVolume.setSourceUrl("/Users/mac/VscodeProjects/UnifiedData/sample-data/stock_volume.csv");
             stockVolume.setDataPath("");
             stockVolume.setFieldMappings(Map.of(
-                "stkcode", DataType.STRING,
+                "stkcode", DataType.DICTIONARY_STRING,
                 "timestamp", DataType.LONG,
                 "volume", DataType.LONG
             ));
@@ -1,20 +1,38 @@
 package com.example.unifieddataservice.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 public class HttpClientConfig {
 
+    /**
+     * The client handles responses on its own daemon threads rather than on the common ForkJoinPool,
+     * which is shared with parsing and everything else.
+     */
     @Bean
-    public HttpClient httpClient() {
+    public HttpClient httpClient(@Value("${fetch.http-client.threads:4}") int threads) {
         return HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10)) // 10 seconds connection timeout
                 .followRedirects(HttpClient.Redirect.NORMAL) // Follow redirects
                 .version(HttpClient.Version.HTTP_2) // Use HTTP/2 if possible, fallback to HTTP/1.1
+                .executor(Executors.newFixedThreadPool(threads, daemonThreads("http-client-")))
                 .build();
     }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -9,6 +9,8 @@ import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
 import com.example.unifieddataservice.model.MetricInfo;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.service.filter.PredicateExtractor;
 import java.util.List;
 
 @RestController
@@ -59,10 +61,22 @@ public class MetricController {
             @PathVariable String metricName,
             @RequestParam(required = false) String filter) {
         logger.info("Received request for metric: {}, filter: {}", metricName, filter);
-        
+
+        List<Predicate> predicates;
+        try {
+            predicates = PredicateExtractor.parse(filter);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid filter for metric: {}. Error: {}", metricName, e.getMessage());
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        // The table is a share of the cached one, released once it is exported
+        UnifiedDataTable table = null;
         try {
-            logger.debug("Calling metricService.getFilteredMetricData for: {}", metricName);
-            UnifiedDataTable table = metricService.getFilteredMetricData(metricName, filter);
+            logger.debug("Calling metricService.getMetricData for: {} with predicates: {}", metricName, predicates);
+            table = predicates.isEmpty()
+                    ? metricService.getMetricData(metricName)
+                    : metricService.getMetricData(metricName, predicates);
             
             if (table == null) {
                 logger.error("Received null table from metricService for metric: {}", metricName);
@@ -98,6 +112,10 @@ public class MetricController {
             return new ResponseEntity<>(
                 "An internal error occurred while processing your request. Please try again later.", 
                 HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            if (table != null) {
+                table.close();
+            }
         }
     }
 }
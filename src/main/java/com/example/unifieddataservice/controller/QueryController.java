@@ -2,6 +2,7 @@ package com.example.unifieddataservice.controller;
 
 import com.example.unifieddataservice.model.UnifiedDataTable;
 import com.example.unifieddataservice.service.SqlQueryService;
+import com.example.unifieddataservice.util.ArrowDictionaries;
 
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.ipc.ArrowStreamWriter;
@@ -53,8 +54,8 @@ public class QueryController {
     @PostMapping("/query")
     public CompletableFuture<ResponseEntity<?>> query(@RequestBody String sql) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                UnifiedDataTable dataTable = sqlQueryService.query(sql);
+            // The result is a share of the cached one, released once it is written
+            try (UnifiedDataTable dataTable = sqlQueryService.query(sql)) {
                 return inMemoryArrowResponse(dataTable);
             } catch (Exception e) {
                 logger.error("Query failed: {}", sql, e);
@@ -68,8 +69,7 @@ public class QueryController {
             @RequestParam("sql") String sql,
             @RequestParam(value = "format", defaultValue = "arrow") String format) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                UnifiedDataTable dataTable = sqlQueryService.query(sql);
+            try (UnifiedDataTable dataTable = sqlQueryService.query(sql)) {
                 if ("json".equalsIgnoreCase(format)) {
                     return jsonResponse(dataTable);
                 } else {
@@ -84,8 +84,7 @@ public class QueryController {
 
     private ResponseEntity<byte[]> inMemoryArrowResponse(UnifiedDataTable table) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try (VectorSchemaRoot vectorSchemaRoot = table.getData();
-             ArrowStreamWriter writer = new ArrowStreamWriter(vectorSchemaRoot, null, out)) {
+        try (ArrowStreamWriter writer = new ArrowStreamWriter(table.getData(), table.getDictionaries(), out)) {
             writer.start();
             writer.writeBatch();
             writer.end();
@@ -99,18 +98,17 @@ public class QueryController {
         Map<String, Object> response = new HashMap<>();
         List<Map<String, Object>> rows = new ArrayList<>();
 
-        try (VectorSchemaRoot vectorSchemaRoot = table.getData()) {
-            List<Field> fields = vectorSchemaRoot.getSchema().getFields();
+        VectorSchemaRoot vectorSchemaRoot = table.getData();
+        List<Field> fields = vectorSchemaRoot.getSchema().getFields();
 
-            for (int i = 0; i < table.getRowCount(); i++) {
-                Map<String, Object> row = new HashMap<>();
-                for (Field field : fields) {
-                    FieldVector vector = vectorSchemaRoot.getVector(field.getName());
-                    Object value = vector.getObject(i);
-                    row.put(field.getName(), value);
-                }
-                rows.add(row);
+        for (int i = 0; i < table.getRowCount(); i++) {
+            Map<String, Object> row = new HashMap<>();
+            for (Field field : fields) {
+                FieldVector vector = vectorSchemaRoot.getVector(field.getName());
+                Object value = ArrowDictionaries.valueAt(vector, i, table.getDictionaries());
+                row.put(field.getName(), value);
             }
+            rows.add(row);
         }
 
         response.put("data", rows);
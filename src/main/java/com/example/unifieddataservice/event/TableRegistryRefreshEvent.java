@@ -3,6 +3,8 @@ package com.example.unifieddataservice.event;
 import org.springframework.context.ApplicationEvent;
 
 public class TableRegistryRefreshEvent extends ApplicationEvent {
+    private static final long serialVersionUID = 1L;
+
     public TableRegistryRefreshEvent(Object source) {
         super(source);
     }
@@ -2,7 +2,12 @@ package com.example.unifieddataservice.model;
 
 public enum DataSourceType {
     HTTP_JSON,
+    HTTP_NDJSON,
     HTTP_CSV,
+    HTTP_ARROW,
     FILE_JSON,
-    FILE_CSV
+    FILE_NDJSON,
+    FILE_CSV,
+    FILE_ARROW,
+    FILE_PARQUET
 }
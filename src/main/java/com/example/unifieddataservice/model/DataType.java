@@ -5,5 +5,10 @@ public enum DataType {
     LONG,
     DOUBLE,
     BOOLEAN,
-    TIMESTAMP
+    TIMESTAMP,
+    /**
+     * A low-cardinality string, such as a ticker code, stored as integer codes into a dictionary
+     * of its distinct values.
+     */
+    DICTIONARY_STRING
 }
@@ -0,0 +1,50 @@
+package com.example.unifieddataservice.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Request hedging for an HTTP source with a heavy latency tail. When the response to a request has not started
+ * within the given percentile of the source's recent latencies, a second request is sent to a mirror, or to the
+ * same URL if there is none. The first response wins and the other request is cancelled.
+ *
+ * @param percentile The latency percentile, between 0 and 100 exclusive, after which a request is hedged.
+ * @param mirrors    Alternative source URLs serving the same data; predicates are pushed into them like into the source URL.
+ */
+public record HedgePolicy(double percentile, List<String> mirrors) {
+
+    /** Source option enabling hedging at a latency percentile, e.g. {@code 95}. */
+    public static final String PERCENTILE_OPTION = "hedge.percentile";
+    /** Source option listing comma-separated mirror URLs to send hedged requests to. */
+    public static final String MIRRORS_OPTION = "hedge.mirrors";
+
+    public HedgePolicy {
+        if (!(percentile > 0 && percentile < 100)) {
+            throw new IllegalArgumentException("Hedge percentile must be between 0 and 100: " + percentile);
+        }
+        mirrors = mirrors == null ? List.of() : List.copyOf(mirrors);
+    }
+
+    /**
+     * Parses the hedging source options.
+     *
+     * @return the policy, or null if the percentile option is not set and hedging is off
+     * @throws IllegalArgumentException if the percentile is not a number between 0 and 100
+     */
+    public static HedgePolicy fromOptions(String percentile, String mirrors) {
+        if (percentile == null || percentile.isBlank()) {
+            return null;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(percentile.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid hedge percentile: " + percentile, e);
+        }
+        List<String> mirrorUrls = mirrors == null ? List.of() : Arrays.stream(mirrors.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        return new HedgePolicy(value, mirrorUrls);
+    }
+}
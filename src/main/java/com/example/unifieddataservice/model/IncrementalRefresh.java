@@ -0,0 +1,96 @@
+package com.example.unifieddataservice.model;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental refresh of an HTTP time series. Once the source has been fetched in full, a refresh asks only for
+ * the rows after the largest timestamp already held, the watermark, by pushing {@code column > watermark} to the
+ * source, and appends them to the held rows. The source must be able to filter the column with {@code gt}, see
+ * {@link PushdownCapabilities}.
+ *
+ * @param column    The LONG or TIMESTAMP column holding the row timestamps.
+ * @param retention How far behind the watermark rows are kept, in the units of the column; 0 keeps all rows.
+ */
+public record IncrementalRefresh(String column, long retention) {
+
+    /** Source option naming the timestamp column, which turns incremental refresh on. */
+    public static final String COLUMN_OPTION = "incremental.column";
+    /**
+     * Source option limiting how far behind the watermark rows are kept: a number in the units of the column,
+     * or an ISO-8601 duration such as {@code P30D} for TIMESTAMP and epoch-millisecond columns.
+     */
+    public static final String RETENTION_OPTION = "incremental.retention";
+
+    public IncrementalRefresh {
+        if (column == null || column.isBlank()) {
+            throw new IllegalArgumentException("Incremental refresh needs a timestamp column");
+        }
+        if (retention < 0) {
+            throw new IllegalArgumentException("Incremental refresh retention cannot be negative: " + retention);
+        }
+    }
+
+    /**
+     * Parses the incremental refresh source options.
+     *
+     * @return the refresh mode, or null if the column option is not set and sources are fetched in full
+     * @throws IllegalArgumentException if the retention is neither a number nor a duration
+     */
+    public static IncrementalRefresh fromOptions(String column, String retention) {
+        if (column == null || column.isBlank()) {
+            return null;
+        }
+        if (retention == null || retention.isBlank()) {
+            return new IncrementalRefresh(column.trim(), 0);
+        }
+        String value = retention.trim();
+        try {
+            return new IncrementalRefresh(column.trim(), value.startsWith("P") || value.startsWith("p")
+                    ? Duration.parse(value).toMillis()
+                    : Long.parseLong(value));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid incremental refresh retention: " + retention, e);
+        }
+    }
+
+    /**
+     * @return the predicate selecting the rows after the watermark
+     */
+    public Predicate after(long watermark) {
+        return new Predicate(column, Operator.GREATER_THAN, watermark);
+    }
+
+    /**
+     * Adds {@code column > watermark} to the predicates of a query. A numeric {@code column > value} the query
+     * already has is merged with it into the single bound {@code column > max(value, watermark)}, as a source
+     * takes one value per column and operator.
+     *
+     * @return the predicates selecting the rows of the query after the watermark
+     */
+    public List<Predicate> after(long watermark, List<Predicate> predicates) {
+        List<Predicate> merged = new ArrayList<>(predicates.size() + 1);
+        boolean bounded = false;
+        for (Predicate predicate : predicates) {
+            if (!isLowerBound(predicate) || !(predicate.value() instanceof Number value)) {
+                merged.add(predicate);
+            } else if (value.doubleValue() > watermark) {
+                merged.add(predicate);
+                bounded = true;
+            }
+        }
+        if (!bounded) {
+            merged.add(after(watermark));
+        }
+        return merged;
+    }
+
+    /**
+     * @return whether the predicate is a {@code column > value} bound on the timestamp column
+     */
+    public boolean isLowerBound(Predicate predicate) {
+        return column.equals(predicate.columnName()) && predicate.operator() == Operator.GREATER_THAN;
+    }
+}
@@ -37,4 +37,20 @@ public class MetricInfo {
     @MapKeyColumn(name = "source_column")
     @Column(name = "alias_column")
     private Map<String, String> columnAlias; // e.g. {"stk_id": "stkcode"}
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "metric_source_options", joinColumns = @JoinColumn(name = "metric_id"))
+    @MapKeyColumn(name = "option_name")
+    @Column(name = "option_value")
+    private Map<String, String> sourceOptions; // per-source tuning, e.g. {"csv.reader": "bytes"}
+
+    /**
+     * @return the value of a source option, or the default if the option is not set
+     */
+    public String getSourceOption(String name, String defaultValue) {
+        if (sourceOptions == null) {
+            return defaultValue;
+        }
+        return sourceOptions.getOrDefault(name, defaultValue);
+    }
 }
@@ -2,9 +2,11 @@ package com.example.unifieddataservice.model;
 
 import lombok.Builder;
 import lombok.Data;
+import net.sf.jsqlparser.expression.Expression;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents the plan derived from parsing SQL, ready for execution.
@@ -18,8 +20,19 @@ public class MetricQueryPlan {
     private List<String> selectFields;
     /** mapping field -> metricName (with parameters as part of metric string) */
     private Map<String, String> fieldMetricMapping;
+    /**
+     * metricName -> physical columns the query needs from that metric
+     * (selected fields, join keys and predicate columns). Other columns are not parsed.
+     */
+    private Map<String, Set<String>> metricColumns;
     /** A structured list of filter conditions from the WHERE clause. */
     private List<Predicate> predicates;
+    /** WHERE conditions that cannot be pushed down as predicates; they are evaluated on the joined table. */
+    private List<Expression> residualConditions;
+    /** output column name -> arithmetic expression of the SELECT clause, computed on the joined table */
+    private Map<String, Expression> computedFields;
+    /** fields loaded only to evaluate expressions, dropped from the result once they are evaluated */
+    private Set<String> expressionOnlyFields;
     /** simple equality conditions extracted from WHERE (key -> value). More complex conditions kept as rawWhere. */
     private Map<String, String> whereEqConditions;
     private String rawWhere; // original WHERE clause string
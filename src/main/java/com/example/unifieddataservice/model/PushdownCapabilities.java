@@ -0,0 +1,153 @@
+package com.example.unifieddataservice.model;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Describes which predicates an HTTP source can filter itself, and the query parameters to send them as.
+ * Only predicates the source applies exactly are sent. The parser applies every predicate to the fetched rows
+ * either way, so the parameters only cut down what is downloaded.
+ *
+ * <p>The capabilities of a metric are declared with source options named
+ * {@code pushdown.<column>.<operator>}, where the operator is one of {@code eq}, {@code ne}, {@code gt},
+ * {@code ge}, {@code lt}, {@code le} and {@code in}. The value is the URL parameter the predicate value is sent as,
+ * or a template {@code name=text} in which {@code {value}} stands for the value. For example a vendor filtering
+ * a time window and a list of tickers:</p>
+ * <pre>
+ * pushdown.date.ge   = from
+ * pushdown.date.le   = to
+ * pushdown.ticker.eq = symbol
+ * pushdown.ticker.in = symbols
+ * </pre>
+ * <p>The column {@code *} stands for any column, and {@code {column}} in a parameter name for the column name.
+ * The values of an {@code IN} list are sent comma-separated.</p>
+ *
+ * @param parameters column -> operator -> parameter template
+ */
+public record PushdownCapabilities(Map<String, Map<Operator, String>> parameters) {
+
+    /** Prefix of the source options declaring the capabilities. */
+    public static final String OPTION_PREFIX = "pushdown.";
+    /** Column name matching any column. */
+    public static final String ANY_COLUMN = "*";
+
+    /** A source that cannot filter anything. */
+    public static final PushdownCapabilities NONE = new PushdownCapabilities(Map.of());
+    /** A source filtering any column for equality with a {@code column=value} parameter. */
+    public static final PushdownCapabilities EQUALITY = new PushdownCapabilities(
+            Map.of(ANY_COLUMN, Map.of(Operator.EQUALS, "{column}")));
+
+    private static final Map<String, Operator> OPERATOR_NAMES = Map.of(
+            "eq", Operator.EQUALS,
+            "ne", Operator.NOT_EQUALS,
+            "gt", Operator.GREATER_THAN,
+            "ge", Operator.GREATER_THAN_OR_EQUAL_TO,
+            "lt", Operator.LESS_THAN,
+            "le", Operator.LESS_THAN_OR_EQUAL_TO,
+            "in", Operator.IN);
+
+    public PushdownCapabilities {
+        Map<String, Map<Operator, String>> copy = new LinkedHashMap<>();
+        parameters.forEach((column, templates) -> copy.put(column, Map.copyOf(templates)));
+        parameters = Map.copyOf(copy);
+    }
+
+    /**
+     * Reads the capabilities from the {@code pushdown.*} source options of a metric.
+     *
+     * @throws IllegalArgumentException for an option with an unknown operator
+     */
+    public static PushdownCapabilities fromOptions(Map<String, String> sourceOptions) {
+        if (sourceOptions == null) {
+            return NONE;
+        }
+        Map<String, Map<Operator, String>> parameters = new LinkedHashMap<>();
+        for (Map.Entry<String, String> option : sourceOptions.entrySet()) {
+            if (!option.getKey().startsWith(OPTION_PREFIX)) {
+                continue;
+            }
+            String spec = option.getKey().substring(OPTION_PREFIX.length());
+            int dot = spec.lastIndexOf('.');
+            Operator operator = dot > 0 ? OPERATOR_NAMES.get(spec.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+            if (operator == null || option.getValue() == null || option.getValue().isBlank()) {
+                throw new IllegalArgumentException("Invalid pushdown option: " + option.getKey() + "=" + option.getValue());
+            }
+            parameters.computeIfAbsent(spec.substring(0, dot), column -> new EnumMap<>(Operator.class))
+                    .put(operator, option.getValue().trim());
+        }
+        return parameters.isEmpty() ? NONE : new PushdownCapabilities(parameters);
+    }
+
+    /**
+     * @return whether the source can filter the predicate
+     */
+    public boolean canPush(Predicate predicate) {
+        return template(predicate) != null;
+    }
+
+    /**
+     * Splits predicates into those the source filters and the rest. A source filters one predicate per
+     * column and operator, since a second would repeat the same query parameter.
+     *
+     * @return the predicates to send to the source and the ones it does not filter
+     */
+    public PushdownResult split(List<Predicate> predicates) {
+        List<Predicate> pushed = new ArrayList<>();
+        List<Predicate> remaining = new ArrayList<>();
+        Set<String> used = new HashSet<>();
+        for (Predicate predicate : predicates) {
+            if (canPush(predicate) && used.add(predicate.columnName() + '\0' + predicate.operator())) {
+                pushed.add(predicate);
+            } else {
+                remaining.add(predicate);
+            }
+        }
+        return new PushdownResult(pushed, remaining);
+    }
+
+    /**
+     * Renders pushable predicates as query parameters. The names and values are not URL-encoded.
+     *
+     * @throws IllegalArgumentException if a predicate cannot be pushed to the source
+     */
+    public List<Map.Entry<String, String>> toQueryParameters(List<Predicate> predicates) {
+        List<Map.Entry<String, String>> query = new ArrayList<>(predicates.size());
+        for (Predicate predicate : predicates) {
+            String template = template(predicate);
+            if (template == null) {
+                throw new IllegalArgumentException("Source cannot filter predicate: " + predicate);
+            }
+            String value = formatValue(predicate.value());
+            int equals = template.indexOf('=');
+            String name = (equals < 0 ? template : template.substring(0, equals)).replace("{column}", predicate.columnName());
+            String rendered = equals < 0 ? value : template.substring(equals + 1).replace("{value}", value);
+            query.add(new AbstractMap.SimpleImmutableEntry<>(name, rendered));
+        }
+        return query;
+    }
+
+    private String template(Predicate predicate) {
+        Map<Operator, String> templates = parameters.get(predicate.columnName());
+        String template = templates != null ? templates.get(predicate.operator()) : null;
+        if (template == null && parameters.containsKey(ANY_COLUMN)) {
+            template = parameters.get(ANY_COLUMN).get(predicate.operator());
+        }
+        return template;
+    }
+
+    private static String formatValue(Object value) {
+        if (value instanceof Collection<?> values) {
+            return values.stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+        return String.valueOf(value);
+    }
+}
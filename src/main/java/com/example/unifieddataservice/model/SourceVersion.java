@@ -0,0 +1,20 @@
+package com.example.unifieddataservice.model;
+
+/**
+ * The HTTP validators of a fetched source, sent back on the next fetch to revalidate it.
+ * Either validator may be null if the server did not send it.
+ *
+ * @param etag         The {@code ETag} of the response, sent back as {@code If-None-Match}.
+ * @param lastModified The {@code Last-Modified} date of the response, sent back as {@code If-Modified-Since}.
+ */
+public record SourceVersion(
+    String etag,
+    String lastModified
+) {
+    /**
+     * @return true if the server sent neither validator, so the source cannot be revalidated
+     */
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+}
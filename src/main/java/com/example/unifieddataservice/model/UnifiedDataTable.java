@@ -1,35 +1,73 @@
 package com.example.unifieddataservice.model;
 
+import com.example.unifieddataservice.service.filter.BitmapIndex;
+import com.example.unifieddataservice.service.filter.KeyBloomFilter;
+import com.example.unifieddataservice.service.filter.ZoneMap;
+import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorLoader;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.Text;
+import org.apache.arrow.vector.util.VectorSchemaRootAppender;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-// Remove unused import
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a table of data with Arrow-based storage.
  * Can track both physical and logical field names for schema mapping.
- */
-/**
- * Represents a table of data with Arrow-based storage.
- * Can track both physical and logical field names for schema mapping.
+ * The data may be held as a sequence of record batches sharing one schema; {@link #getBatches()}
+ * exposes them as-is while {@link #getData()} presents a single contiguous root.
+ * Dictionary-encoded columns hold integer codes; their dictionaries are owned by the table
+ * and exposed through {@link #getDictionaries()}.
+ * Each batch has a {@link ZoneMap} of its column ranges, which follows the batch into shared tables, and key
+ * columns get a {@link KeyBloomFilter} over their values that is shared the same way. Low-cardinality columns
+ * may get a {@link BitmapIndex}, which is shared only as long as the batches keep their rows.
  */
 @Component
 public class UnifiedDataTable implements AutoCloseable {
+    /** The most rows of a last batch that {@link #append(UnifiedDataTable)} merges appended rows into. */
+    public static final int TAIL_BATCH_ROWS = 4096;
+
     // RootAllocator will be injected by Spring
     private final RootAllocator rootAllocator;
-    private final VectorSchemaRoot data;
+    private VectorSchemaRoot data;
+    private List<VectorSchemaRoot> batches;
+    // The zone map of each batch, in the order of the batches
+    private List<ZoneMap> zoneMaps;
+    // Bloom filters by column, shared with the tables holding the same values
+    private Map<String, KeyBloomFilter> keyFilters = new ConcurrentHashMap<>();
+    // Bitmap indexes by column, shared with the tables holding the same batches
+    private Map<String, BitmapIndex> bitmapIndexes = new ConcurrentHashMap<>();
+    private final DictionaryProvider.MapDictionaryProvider dictionaries;
     private String logicalFieldName;
     private final String tableName;
+    private boolean closed;
     
     @Autowired
     public UnifiedDataTable(RootAllocator rootAllocator) {
         this.rootAllocator = rootAllocator;
         this.data = null; // Will be set by other constructors
+        this.batches = Collections.emptyList();
+        this.zoneMaps = Collections.emptyList();
+        this.dictionaries = new DictionaryProvider.MapDictionaryProvider();
         this.tableName = "";
     }
 
@@ -46,6 +84,9 @@ public class UnifiedDataTable implements AutoCloseable {
         // For now, just use the provided data as-is
         // In a production system, we'd need to handle schema conversion properly
         this.data = data;
+        this.batches = data != null ? List.of(data) : Collections.emptyList();
+        this.zoneMaps = data != null ? List.of(new ZoneMap()) : Collections.emptyList();
+        this.dictionaries = new DictionaryProvider.MapDictionaryProvider();
         this.logicalFieldName = "";
     }
     
@@ -56,6 +97,9 @@ public class UnifiedDataTable implements AutoCloseable {
         this.rootAllocator = new RootAllocator();
         this.tableName = tableName;
         this.data = data;
+        this.batches = data != null ? List.of(data) : Collections.emptyList();
+        this.zoneMaps = data != null ? List.of(new ZoneMap()) : Collections.emptyList();
+        this.dictionaries = new DictionaryProvider.MapDictionaryProvider();
         this.logicalFieldName = "";
     }
     
@@ -66,15 +110,381 @@ public class UnifiedDataTable implements AutoCloseable {
         this.rootAllocator = new RootAllocator();
         this.tableName = "unnamed_table";
         this.data = data;
+        this.batches = data != null ? List.of(data) : Collections.emptyList();
+        this.zoneMaps = data != null ? List.of(new ZoneMap()) : Collections.emptyList();
+        this.dictionaries = new DictionaryProvider.MapDictionaryProvider();
         this.logicalFieldName = "";
     }
 
-    public VectorSchemaRoot getData() {
+    /**
+     * Creates a new UnifiedDataTable from record batches that all share the same schema.
+     * The batches are kept as separate chunks until a single contiguous root is requested.
+     * @param tableName The logical name of the table
+     * @param batches The record batches, in row order; must not be empty
+     */
+    public UnifiedDataTable(String tableName, List<VectorSchemaRoot> batches) {
+        this(tableName, batches, null);
+    }
+
+    /**
+     * Creates a new UnifiedDataTable from record batches whose dictionary-encoded columns refer to
+     * the given dictionaries. The table takes ownership of the dictionaries and releases them on close.
+     * @param tableName The logical name of the table
+     * @param batches The record batches, in row order; must not be empty
+     * @param dictionaries The dictionaries of the encoded columns (can be null if there are none)
+     */
+    public UnifiedDataTable(String tableName, List<VectorSchemaRoot> batches, DictionaryProvider.MapDictionaryProvider dictionaries) {
+        if (batches == null || batches.isEmpty()) {
+            throw new IllegalArgumentException("At least one record batch is required");
+        }
+        this.rootAllocator = new RootAllocator();
+        this.tableName = tableName;
+        this.batches = new ArrayList<>(batches);
+        this.zoneMaps = new ArrayList<>(batches.size());
+        batches.forEach(batch -> this.zoneMaps.add(new ZoneMap()));
+        this.data = this.batches.size() == 1 ? this.batches.get(0) : null;
+        this.dictionaries = dictionaries != null ? dictionaries : new DictionaryProvider.MapDictionaryProvider();
+        this.logicalFieldName = "";
+    }
+
+    /**
+     * Returns the table as a single VectorSchemaRoot.
+     * If the table is chunked, the batches are compacted into one root on first access and
+     * the original batches are released afterwards. While the batches are copied, memory use
+     * briefly peaks at twice the size of the table.
+     */
+    public synchronized VectorSchemaRoot getData() {
+        if (data == null && !batches.isEmpty()) {
+            data = compactBatches();
+        }
         return data;
     }
 
-    public int getRowCount() {
-        return data.getRowCount();
+    /**
+     * @return the record batches backing this table, in row order
+     */
+    public synchronized List<VectorSchemaRoot> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    /**
+     * @return the zone map of the batch at the given position of {@link #getBatches()}
+     */
+    public synchronized ZoneMap getZoneMap(int batch) {
+        return zoneMaps.get(batch);
+    }
+
+    /**
+     * @return the Bloom filter over the values of the column, built on first use; null if the column is missing
+     *         or of a type without one
+     */
+    public KeyBloomFilter getKeyFilter(String column) {
+        Map<String, KeyBloomFilter> filters;
+        synchronized (this) {
+            filters = keyFilters;
+        }
+        return filters.computeIfAbsent(column, name -> KeyBloomFilter.build(this, name));
+    }
+
+    /**
+     * @return the bitmap index of the column, which is built by its lookups
+     */
+    public synchronized BitmapIndex getBitmapIndex(String column) {
+        return bitmapIndexes.computeIfAbsent(column, name -> new BitmapIndex());
+    }
+
+    /**
+     * @return the dictionaries of the dictionary-encoded columns, keyed by their encoding id; empty if there are none
+     */
+    public DictionaryProvider getDictionaries() {
+        return dictionaries;
+    }
+
+    public synchronized Schema getSchema() {
+        if (data != null) {
+            return data.getSchema();
+        }
+        return batches.isEmpty() ? null : batches.get(0).getSchema();
+    }
+
+    public synchronized int getRowCount() {
+        if (data != null) {
+            return data.getRowCount();
+        }
+        int rowCount = 0;
+        for (VectorSchemaRoot batch : batches) {
+            rowCount += batch.getRowCount();
+        }
+        return rowCount;
+    }
+
+    /**
+     * Returns a second table over the same Arrow buffers and dictionaries, without copying any data.
+     * Each table holds its own references to the buffers, so either one can be closed or compacted
+     * without affecting the other.
+     */
+    public synchronized UnifiedDataTable share() {
+        if (closed) {
+            throw new IllegalStateException("Cannot share a closed table");
+        }
+        if (batches.isEmpty()) {
+            throw new IllegalStateException("Cannot share a table without data");
+        }
+        List<VectorSchemaRoot> sharedBatches = new ArrayList<>(batches.size());
+        DictionaryProvider.MapDictionaryProvider sharedDictionaries = new DictionaryProvider.MapDictionaryProvider();
+        try {
+            for (VectorSchemaRoot batch : batches) {
+                sharedBatches.add(shareRoot(batch));
+            }
+            for (long id : dictionaries.getDictionaryIds()) {
+                Dictionary dictionary = dictionaries.lookup(id);
+                FieldVector values = dictionary.getVector();
+                VectorSchemaRoot valuesRoot = new VectorSchemaRoot(List.of(values.getField()), List.of(values), values.getValueCount());
+                sharedDictionaries.put(new Dictionary(shareRoot(valuesRoot).getFieldVectors().get(0), dictionary.getEncoding()));
+            }
+        } catch (RuntimeException e) {
+            sharedBatches.forEach(VectorSchemaRoot::close);
+            sharedDictionaries.close();
+            throw e;
+        }
+        UnifiedDataTable shared = new UnifiedDataTable(tableName, sharedBatches, sharedDictionaries);
+        shared.setLogicalFieldName(logicalFieldName);
+        // Merged dictionaries only ever gain values, so the ranges of the shared batches stay valid
+        shared.zoneMaps = new ArrayList<>(zoneMaps);
+        shared.keyFilters = keyFilters;
+        shared.bitmapIndexes = bitmapIndexes;
+        return shared;
+    }
+
+    /**
+     * Shares the table like {@link #share()} unless it has been closed. A table that may be closed by another
+     * thread, such as one held by a cache, is shared this way so that checking and sharing happen at once.
+     */
+    public synchronized Optional<UnifiedDataTable> shareIfOpen() {
+        return closed ? Optional.empty() : Optional.of(share());
+    }
+
+    /**
+     * Appends rows like {@link #append(UnifiedDataTable, int)}, merging them into a last batch of up to
+     * {@link #TAIL_BATCH_ROWS} rows.
+     */
+    public UnifiedDataTable append(UnifiedDataTable rows) {
+        return append(rows, TAIL_BATCH_ROWS);
+    }
+
+    /**
+     * Returns a new table holding the rows of this table followed by the rows of another table parsed with
+     * the same schema, such as rows appended to a source file since this table was parsed. The rows of this
+     * table are shared without copying. A batch of {@code rows} that fits into the last batch within
+     * {@code maxTailRows} rows is merged with a copy of it, so that a stream of small appends does not leave a
+     * batch per append; any other batch of {@code rows} becomes a batch of the new table.
+     * Dictionary codes of the appended rows are re-encoded against this table's dictionaries, which are
+     * copied only if the appended rows bring new values.
+     *
+     * <p>The new table takes over the buffers of {@code rows}, which is closed.</p>
+     *
+     * @param maxTailRows the most rows a last batch may hold to have appended rows merged into it; 0 never merges
+     * @throws IllegalArgumentException if the schemas differ in anything but their dictionary ids
+     */
+    public synchronized UnifiedDataTable append(UnifiedDataTable rows, int maxTailRows) {
+        UnifiedDataTable shared = null;
+        try (UnifiedDataTable appended = rows) {
+            Schema schema = getSchema();
+            Schema appendedSchema = appended.getSchema();
+            if (!sameColumns(schema, appendedSchema)) {
+                throw new IllegalArgumentException("Cannot append rows of schema " + appendedSchema + " to " + schema);
+            }
+            shared = share();
+            // The filters of this table do not know the appended values
+            shared.keyFilters = new ConcurrentHashMap<>();
+            shared.bitmapIndexes = new ConcurrentHashMap<>();
+            Map<String, int[]> remaps = new HashMap<>();
+            for (int i = 0; i < schema.getFields().size(); i++) {
+                DictionaryEncoding encoding = schema.getFields().get(i).getDictionary();
+                if (encoding != null) {
+                    Dictionary appendedDictionary = appended.dictionaries.lookup(appendedSchema.getFields().get(i).getDictionary().getId());
+                    remaps.put(schema.getFields().get(i).getName(), shared.mergeDictionary(encoding, appendedDictionary));
+                }
+            }
+            for (VectorSchemaRoot batch : appended.getBatches()) {
+                List<FieldVector> vectors = new ArrayList<>(schema.getFields().size());
+                for (int i = 0; i < schema.getFields().size(); i++) {
+                    Field field = schema.getFields().get(i);
+                    FieldVector source = batch.getVector(i);
+                    int[] remap = remaps.get(field.getName());
+                    if (remap != null) {
+                        IntVector codes = (IntVector) source;
+                        for (int row = 0; row < batch.getRowCount(); row++) {
+                            if (!codes.isNull(row)) {
+                                codes.set(row, remap[codes.get(row)]);
+                            }
+                        }
+                    }
+                    FieldVector target = field.createVector(source.getAllocator());
+                    source.makeTransferPair(target).transfer();
+                    vectors.add(target);
+                }
+                VectorSchemaRoot appendedBatch = new VectorSchemaRoot(schema.getFields(), vectors, batch.getRowCount());
+                int last = shared.batches.size() - 1;
+                VectorSchemaRoot tail = shared.batches.get(last);
+                if (appendedBatch.getRowCount() > 0 && tail.getRowCount() + appendedBatch.getRowCount() <= maxTailRows) {
+                    // The tail's buffers may be shared with other tables, so it is copied rather than extended
+                    shared.batches.set(last, concat(tail, appendedBatch));
+                    shared.zoneMaps.set(last, new ZoneMap());
+                } else {
+                    shared.batches.add(appendedBatch);
+                    shared.zoneMaps.add(new ZoneMap());
+                }
+            }
+            shared.data = shared.batches.size() == 1 ? shared.batches.get(0) : null;
+            return shared;
+        } catch (RuntimeException e) {
+            if (shared != null) {
+                shared.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a new table over the batches of this table that the filter accepts, sharing their buffers and
+     * the dictionaries without copying. The Bloom filters are shared too, since values of dropped batches only
+     * add false positives.
+     *
+     * @throws IllegalArgumentException if the filter accepts no batch
+     */
+    public synchronized UnifiedDataTable retainBatches(java.util.function.Predicate<VectorSchemaRoot> filter) {
+        UnifiedDataTable shared = share();
+        List<VectorSchemaRoot> retained = new ArrayList<>(shared.batches.size());
+        List<ZoneMap> retainedZoneMaps = new ArrayList<>(shared.batches.size());
+        List<VectorSchemaRoot> dropped = new ArrayList<>();
+        try {
+            for (int i = 0; i < shared.batches.size(); i++) {
+                VectorSchemaRoot batch = shared.batches.get(i);
+                if (filter.test(batch)) {
+                    retained.add(batch);
+                    retainedZoneMaps.add(shared.zoneMaps.get(i));
+                } else {
+                    dropped.add(batch);
+                }
+            }
+            if (retained.isEmpty()) {
+                throw new IllegalArgumentException("A table needs at least one record batch");
+            }
+        } catch (RuntimeException e) {
+            shared.close();
+            throw e;
+        }
+        dropped.forEach(VectorSchemaRoot::close);
+        shared.batches = retained;
+        shared.zoneMaps = retainedZoneMaps;
+        shared.bitmapIndexes = new ConcurrentHashMap<>();
+        shared.data = retained.size() == 1 ? retained.get(0) : null;
+        return shared;
+    }
+
+    private static boolean sameColumns(Schema schema, Schema other) {
+        if (schema == null || other == null || schema.getFields().size() != other.getFields().size()) {
+            return false;
+        }
+        for (int i = 0; i < schema.getFields().size(); i++) {
+            Field field = schema.getFields().get(i);
+            Field otherField = other.getFields().get(i);
+            if (!field.getName().equals(otherField.getName()) || !field.getType().equals(otherField.getType())
+                    || (field.getDictionary() == null) != (otherField.getDictionary() == null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the values of another dictionary to the dictionary of the encoding, replacing it with a copy
+     * if there are new values, since its buffers may be shared with other tables.
+     *
+     * @return for each code of {@code other}, the code of the same value in the merged dictionary
+     */
+    private int[] mergeDictionary(DictionaryEncoding encoding, Dictionary other) {
+        Dictionary dictionary = dictionaries.lookup(encoding.getId());
+        VarCharVector values = (VarCharVector) dictionary.getVector();
+        VarCharVector otherValues = (VarCharVector) other.getVector();
+        Map<Text, Integer> codes = new HashMap<>();
+        for (int code = 0; code < values.getValueCount(); code++) {
+            codes.putIfAbsent(values.getObject(code), code);
+        }
+        int[] remap = new int[otherValues.getValueCount()];
+        List<Integer> added = new ArrayList<>();
+        for (int code = 0; code < remap.length; code++) {
+            Text value = otherValues.getObject(code);
+            Integer existing = codes.get(value);
+            if (existing == null) {
+                existing = values.getValueCount() + added.size();
+                codes.put(value, existing);
+                added.add(code);
+            }
+            remap[code] = existing;
+        }
+        if (!added.isEmpty()) {
+            VarCharVector merged = (VarCharVector) values.getField().createVector(values.getAllocator());
+            merged.allocateNew();
+            for (int code = 0; code < values.getValueCount(); code++) {
+                merged.copyFromSafe(code, code, values);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                merged.copyFromSafe(added.get(i), values.getValueCount() + i, otherValues);
+            }
+            merged.setValueCount(values.getValueCount() + added.size());
+            dictionaries.put(new Dictionary(merged, encoding));
+            values.close();
+        }
+        return remap;
+    }
+
+    /**
+     * Loads the buffers of a root into a new root, taking a reference to each buffer.
+     */
+    private VectorSchemaRoot shareRoot(VectorSchemaRoot root) {
+        BufferAllocator allocator = root.getFieldVectors().isEmpty() ? rootAllocator : root.getFieldVectors().get(0).getAllocator();
+        VectorSchemaRoot shared = VectorSchemaRoot.create(root.getSchema(), allocator);
+        try (ArrowRecordBatch recordBatch = new VectorUnloader(root).getRecordBatch()) {
+            new VectorLoader(shared).load(recordBatch);
+        }
+        return shared;
+    }
+
+    /**
+     * @return a new batch holding the rows of {@code first} followed by those of {@code second}, which are both closed
+     */
+    private VectorSchemaRoot concat(VectorSchemaRoot first, VectorSchemaRoot second) {
+        VectorSchemaRoot merged = first.getFieldVectors().isEmpty()
+                ? VectorSchemaRoot.create(first.getSchema(), rootAllocator)
+                : VectorSchemaRoot.create(first.getSchema(), first.getFieldVectors().get(0).getAllocator());
+        try (first; second) {
+            for (FieldVector vector : merged.getFieldVectors()) {
+                vector.setInitialCapacity(first.getRowCount() + second.getRowCount());
+            }
+            merged.allocateNew();
+            VectorSchemaRootAppender.append(false, merged, first, second);
+        } catch (RuntimeException e) {
+            merged.close();
+            throw e;
+        }
+        return merged;
+    }
+
+    private VectorSchemaRoot compactBatches() {
+        VectorSchemaRoot first = batches.get(0);
+        VectorSchemaRoot compacted = first.getFieldVectors().isEmpty()
+                ? VectorSchemaRoot.create(first.getSchema(), rootAllocator)
+                : VectorSchemaRoot.create(first.getSchema(), first.getFieldVectors().get(0).getAllocator());
+        compacted.allocateNew();
+        VectorSchemaRootAppender.append(false, compacted, batches.toArray(new VectorSchemaRoot[0]));
+        batches.forEach(VectorSchemaRoot::close);
+        batches = List.of(compacted);
+        zoneMaps = List.of(new ZoneMap());
+        // Row numbers of the index refer to the old batches
+        bitmapIndexes = new ConcurrentHashMap<>();
+        return compacted;
     }
     
     public String getTableName() {
@@ -90,10 +500,20 @@ public class UnifiedDataTable implements AutoCloseable {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
         if (data != null) {
             data.close();
         }
+        for (VectorSchemaRoot batch : batches) {
+            if (batch != data) {
+                batch.close();
+            }
+        }
+        dictionaries.close();
     }
     
     @Override
@@ -101,7 +521,8 @@ public class UnifiedDataTable implements AutoCloseable {
         return "UnifiedDataTable{" +
                 "tableName='" + tableName + '\'' +
                 ", logicalFieldName='" + logicalFieldName + '\'' +
-                ", rowCount=" + (data != null ? data.getRowCount() : 0) +
+                ", rowCount=" + getRowCount() +
+                ", batches=" + batches.size() +
                 '}';
     }
 }
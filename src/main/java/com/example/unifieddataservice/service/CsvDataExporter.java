@@ -1,7 +1,9 @@
 package com.example.unifieddataservice.service;
 
+import com.example.unifieddataservice.util.ArrowDictionaries;
 import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
 import org.apache.arrow.vector.util.Text;
 
 import java.io.StringWriter;
@@ -10,6 +12,13 @@ import java.util.stream.Collectors;
 public class CsvDataExporter {
 
     public static String exportToCsv(VectorSchemaRoot vectorSchemaRoot) {
+        return exportToCsv(vectorSchemaRoot, null);
+    }
+
+    /**
+     * Exports the rows, decoding dictionary-encoded columns through the given dictionaries.
+     */
+    public static String exportToCsv(VectorSchemaRoot vectorSchemaRoot, DictionaryProvider dictionaries) {
         StringWriter stringWriter = new StringWriter();
 
         // Write header
@@ -23,7 +32,7 @@ public class CsvDataExporter {
         for (int i = 0; i < rowCount; i++) {
             final int rowIndex = i;
             String row = vectorSchemaRoot.getFieldVectors().stream()
-                    .map(vector -> getVectorValueAsString(vector, rowIndex))
+                    .map(vector -> getVectorValueAsString(vector, rowIndex, dictionaries))
                     .collect(Collectors.joining(","));
             stringWriter.write(row + "\n");
         }
@@ -31,8 +40,8 @@ public class CsvDataExporter {
         return stringWriter.toString();
     }
 
-    private static String getVectorValueAsString(FieldVector vector, int index) {
-        Object value = vector.getObject(index);
+    private static String getVectorValueAsString(FieldVector vector, int index, DictionaryProvider dictionaries) {
+        Object value = ArrowDictionaries.valueAt(vector, index, dictionaries);
         if (value == null) {
             return "";
         }
@@ -1,33 +1,98 @@
 package com.example.unifieddataservice.service;
 
+import com.example.unifieddataservice.model.HedgePolicy;
 import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.PushdownCapabilities;
+import com.example.unifieddataservice.model.SourceVersion;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
+import com.example.unifieddataservice.util.Compression;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 @Service
 public class DataFetcherService {
     private static final Logger logger = LoggerFactory.getLogger(DataFetcherService.class);
     private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String ACCEPT_ENCODING = "gzip, zstd";
+    private static final int BODY_BUFFER_SIZE = 64 * 1024;
+    private static final int PREVIEW_BYTES = 500;
+    private static final int ERROR_BODY_BYTES = 4096;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 8;
+    private static final int DEFAULT_MAX_QUEUED_PER_HOST = 64;
 
     private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    private final HostConcurrencyLimiter hostLimiter;
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    // Response latencies per source URL, before predicates are pushed into it
+    private final ConcurrentHashMap<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+
+    @Value("${fetch.single-flight.replay-bytes:67108864}")
+    private long replayBytes = 64L * 1024 * 1024;
+
+    @Value("${fetch.hedge.min-samples:20}")
+    private int hedgeMinSamples = 20;
 
     public DataFetcherService(HttpClient httpClient) {
+        this(httpClient, new SimpleMeterRegistry(), DEFAULT_MAX_REQUESTS_PER_HOST, DEFAULT_MAX_QUEUED_PER_HOST);
+    }
+
+    /**
+     * @param maxRequestsPerHost the number of requests to one host that may be in progress at a time
+     * @param maxQueuedPerHost   the number of further requests to one host that may wait for their turn
+     */
+    @Autowired
+    public DataFetcherService(HttpClient httpClient, MeterRegistry meterRegistry,
+                              @Value("${fetch.per-host.max-requests:" + DEFAULT_MAX_REQUESTS_PER_HOST + "}") int maxRequestsPerHost,
+                              @Value("${fetch.per-host.max-queued:" + DEFAULT_MAX_QUEUED_PER_HOST + "}") int maxQueuedPerHost) {
         Objects.requireNonNull(httpClient, "HttpClient cannot be null");
         this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+        this.hostLimiter = new HostConcurrencyLimiter(maxRequestsPerHost, maxQueuedPerHost, meterRegistry);
         logger.info("DataFetcherService initialized with HttpClient: {}", 
                   httpClient != null ? "provided" : "null");
     }
@@ -37,6 +102,55 @@ public class DataFetcherService {
     }
 
     public InputStream fetchData(String url, List<Predicate> predicates) {
+        return fetchData(url, predicates, null);
+    }
+
+    /**
+     * Fetches the source and returns its decompressed bytes as a stream.
+     * The {@code Content-Encoding} of an HTTP response is decoded first. The bytes are then decompressed as the
+     * declared compression says or, if none is declared, as the extension of the file or URL path says. A server
+     * that labels a {@code .gz} file itself as {@code Content-Encoding: gzip} needs the compression declared as
+     * {@code none}.
+     *
+     * @param compression the declared compression of the source, or null to detect it
+     */
+    public InputStream fetchData(String url, List<Predicate> predicates, Compression compression) {
+        return fetchIfModified(url, predicates, compression, null)
+                .orElseThrow(() -> new IllegalStateException("Unconditional request to " + url + " was answered as not modified"))
+                .body();
+    }
+
+    /**
+     * The decompressed body of a fetched source, with the validators to revalidate it by.
+     *
+     * @param body    The decompressed bytes of the source.
+     * @param version The validators sent with an HTTP response, or null for local files.
+     */
+    public record FetchedData(InputStream body, SourceVersion version) {}
+
+    /**
+     * Fetches the source like {@link #fetchData(String, List, Compression)}, but revalidates an HTTP source
+     * against the validators of an earlier fetch with {@code If-None-Match} and {@code If-Modified-Since}.
+     *
+     * @param known the validators of the earlier fetch, or null to fetch unconditionally
+     * @return the fetched data, or empty if the server answered {@code 304 Not Modified}
+     */
+    public Optional<FetchedData> fetchIfModified(String url, List<Predicate> predicates, Compression compression, SourceVersion known) {
+        return fetchIfModified(url, predicates, PushdownCapabilities.EQUALITY, compression, known, null);
+    }
+
+    /**
+     * Fetches the source like {@link #fetchIfModified(String, List, Compression, SourceVersion)}, sending
+     * predicates to an HTTP source as its capabilities describe and hedging slow requests as the policy says.
+     * The hedge delay is the policy's percentile of the latencies recently seen from the source; until enough
+     * of them have been seen, requests are not hedged.
+     *
+     * @param predicates   the predicates to push into the URL of an HTTP source; those it cannot filter are left out
+     * @param capabilities the query parameters the HTTP source filters by
+     * @param hedge        the hedging policy of the source, or null not to hedge
+     */
+    public Optional<FetchedData> fetchIfModified(String url, List<Predicate> predicates, PushdownCapabilities capabilities,
+                                                 Compression compression, SourceVersion known, HedgePolicy hedge) {
         if (url == null || url.trim().isEmpty()) {
             String errorMsg = "URL cannot be null or empty";
             logger.error(errorMsg);
@@ -46,23 +160,18 @@ public class DataFetcherService {
         logger.info("Fetching data from URL: {}", url);
         
         // 判断是否为本地文件路径
-        if (url.startsWith("file://")) {
-            String filePath = url.substring("file://".length());
-            try {
-                logger.info("Reading local file: {}", filePath);
-                return new java.io.FileInputStream(filePath);
-            } catch (IOException e) {
-                String errorMsg = String.format("Failed to read local file: %s. Error: %s", filePath, e.getMessage());
-                logger.error(errorMsg, e);
-                throw new RuntimeException(errorMsg, e);
-            }
-        } else if (!url.startsWith("http://") && !url.startsWith("https://")) {
-            // 直接认为是本地路径
+        Optional<Path> localFile = resolveLocalPath(url);
+        if (localFile.isPresent()) {
+            Path path = localFile.get();
             try {
-                logger.info("Reading local file: {}", url);
-                return new java.io.FileInputStream(url);
+                Compression fileCompression = compression != null ? compression : Compression.fromFileName(path.toString());
+                logger.info("Reading local file: {} (compression: {})", path, fileCompression);
+                InputStream in = Files.size(path) <= Integer.MAX_VALUE
+                        ? new ByteBufferInputStream(mapLocalFile(path))
+                        : Files.newInputStream(path);
+                return Optional.of(new FetchedData(fileCompression.decompress(in), null));
             } catch (IOException e) {
-                String errorMsg = String.format("Failed to read local file: %s. Error: %s", url, e.getMessage());
+                String errorMsg = String.format("Failed to read local file: %s. Error: %s", path, e.getMessage());
                 logger.error(errorMsg, e);
                 throw new RuntimeException(errorMsg, e);
             }
@@ -71,53 +180,51 @@ public class DataFetcherService {
         // Build URL with predicates for HTTP sources
         String finalUrl = url;
         if ((url.startsWith("http://") || url.startsWith("https://")) && predicates != null && !predicates.isEmpty()) {
-            finalUrl = buildUrlWithPredicates(url, predicates);
+            finalUrl = buildUrlWithPredicates(url, predicates, capabilities);
         }
 
         try {
-            // Create HTTP request with timeout
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(createUri(finalUrl))
-                    .timeout(REQUEST_TIMEOUT)
-                    .header("Accept", "application/json")
-                    .GET()
-                    .build();
+            HttpRequest request = buildRequest(finalUrl, known);
+            List<HttpRequest> hedgeRequests = new ArrayList<>();
+            if (hedge != null) {
+                for (String mirror : hedge.mirrors()) {
+                    hedgeRequests.add(buildRequest(predicates == null || predicates.isEmpty()
+                            ? mirror : buildUrlWithPredicates(mirror, predicates, capabilities), known));
+                }
+            }
 
             logger.debug("Sending HTTP request to: {}", finalUrl);
             
-            // Send request and get response
-            HttpResponse<byte[]> response = httpClient.send(
-                request, 
-                HttpResponse.BodyHandlers.ofByteArray()
-            );
+            // Send request, or join an identical one in flight; the body is read by the parser as it arrives
+            Response response = send(request, finalUrl + "|" + known,
+                    () -> sendHedged(request, hedgeRequests, hedge, latencies.computeIfAbsent(url, u -> new LatencyTracker())));
             
             int statusCode = response.statusCode();
             logger.debug("Received HTTP response. Status: {}, Content-Length: {}", 
-                       statusCode, response.body() != null ? response.body().length : 0);
+                       statusCode, response.headers().firstValue("Content-Length").orElse("unknown"));
             
+            if (statusCode == 304 && known != null) {
+                logger.info("Source not modified since {}: {}", known, finalUrl);
+                response.body().close();
+                return Optional.empty();
+            }
+
             if (statusCode < 200 || statusCode >= 300) {
-                String errorBody = response.body() != null ? 
-                    new String(response.body(), StandardCharsets.UTF_8) : "<no body>";
+                String errorBody = readErrorBody(response.body());
                 String errorMsg = String.format("HTTP request failed with status %d for URL %s. Response: %s", 
                                                statusCode, finalUrl, errorBody);
                 logger.error(errorMsg);
                 throw new RuntimeException(errorMsg);
             }
             
-            if (response.body() == null || response.body().length == 0) {
-                logger.warn("Received empty response body from URL: {}", finalUrl);
-                return new ByteArrayInputStream(new byte[0]);
-            }
-            
-            // Log first 500 characters of the response for debugging
-            String responsePreview = new String(response.body(), StandardCharsets.UTF_8);
-            int previewLength = Math.min(500, responsePreview.length());
-            logger.debug("Response preview (first {} chars): {}", 
-                        previewLength, 
-                        responsePreview.substring(0, previewLength) + 
-                        (responsePreview.length() > previewLength ? "..." : ""));
-            
-            return new ByteArrayInputStream(response.body());
+            // The Content-Encoding is applied in transit on top of the compression the source is stored in
+            Compression contentEncoding = Compression.fromContentEncoding(response.headers().firstValue("Content-Encoding").orElse(null));
+            Compression bodyCompression = compression != null ? compression : Compression.fromFileName(request.uri().getPath());
+            SourceVersion version = new SourceVersion(
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+            return Optional.of(new FetchedData(openBody(response.body(), contentEncoding == null ? Compression.NONE : contentEncoding,
+                    bodyCompression, finalUrl), version));
             
         } catch (URISyntaxException e) {
             String errorMsg = String.format("Invalid URL format: %s. Error: %s", finalUrl, e.getMessage());
@@ -142,20 +249,461 @@ public class DataFetcherService {
         }
     }
 
-    private String buildUrlWithPredicates(String baseUrl, List<Predicate> predicates) {
-        if (predicates == null || predicates.isEmpty()) {
+    /**
+     * The status, headers and this caller's reader of a response body that may be shared with other callers.
+     */
+    private record Response(int statusCode, HttpHeaders headers, InputStream body) {}
+
+    /**
+     * A request in flight. Callers that join before the response headers arrive have their readers opened
+     * together with the leader's, so the leader cannot read past the point where they could still join.
+     */
+    private static final class Flight {
+        // Guarded by this
+        private final List<CompletableFuture<Response>> waiting = new ArrayList<>();
+        private SharedResponse response;
+        private Throwable failure;
+
+        /**
+         * @return the joined response, completed with null if the body can no longer be joined
+         */
+        synchronized CompletableFuture<Response> join() {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            if (response != null) {
+                return CompletableFuture.completedFuture(response.open());
+            }
+            CompletableFuture<Response> joined = new CompletableFuture<>();
+            waiting.add(joined);
+            return joined;
+        }
+
+        synchronized void complete(SharedResponse response) {
+            this.response = response;
+            for (CompletableFuture<Response> joined : waiting) {
+                Response opened = response.open();
+                if (!joined.complete(opened) && opened != null) {
+                    // The caller gave up waiting
+                    closeQuietly(opened.body());
+                }
+            }
+            waiting.clear();
+        }
+
+        synchronized void fail(Throwable failure) {
+            this.failure = failure;
+            waiting.forEach(joined -> joined.completeExceptionally(failure));
+            waiting.clear();
+        }
+    }
+
+    private record SharedResponse(int statusCode, HttpHeaders headers, SharedBody body) {
+        Response open() {
+            InputStream reader = body.open();
+            return reader == null ? null : new Response(statusCode, headers, reader);
+        }
+    }
+
+    /**
+     * Sends the request, unless an identical one is already in flight, in which case this caller waits for its
+     * response and reads the same bytes. A burst of callers for the same source, such as when the metric cache
+     * is cold, then costs one download. A caller can join until the body has been read to the end or more than
+     * {@code fetch.single-flight.replay-bytes} of it have been read; after that it sends a request of its own.
+     *
+     * @param key      identifies identical requests: the final URL, with pushed-down predicates, and the validators
+     * @param exchange sends the request if no identical one is in flight
+     */
+    private Response send(HttpRequest request, String key, Exchange exchange) throws IOException, InterruptedException {
+        while (true) {
+            Flight flight = new Flight();
+            Flight inFlight = flights.putIfAbsent(key, flight);
+            if (inFlight == null) {
+                return lead(key, flight, exchange);
+            }
+            CompletableFuture<Response> joined = inFlight.join();
+            Response response;
+            try {
+                response = joined.get();
+            } catch (InterruptedException e) {
+                if (!joined.cancel(false)) {
+                    joined.thenAccept(r -> closeQuietly(r == null ? null : r.body()));
+                }
+                throw e;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException) {
+                    // Only the thread that sent the request was interrupted, so send it again
+                    continue;
+                }
+                throw new IOException("Shared request to " + request.uri() + " failed: " + e.getCause().getMessage(), e.getCause());
+            }
+            if (response != null) {
+                logger.debug("Joined in-flight request to {}", request.uri());
+                meterRegistry.counter("fetch.requests.shared", "host", hostOf(request)).increment();
+                return response;
+            }
+            // The flight has moved past the replay window and is no longer registered; start a new one
+        }
+    }
+
+    private Response lead(String key, Flight flight, Exchange exchange) throws IOException, InterruptedException {
+        Response response;
+        try {
+            response = exchange.send();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            flights.remove(key, flight);
+            flight.fail(e);
+            throw e;
+        }
+        SharedBody body = new SharedBody(response.body(), replayBytes, () -> flights.remove(key, flight));
+        // Open the leader's reader before anyone can join, so the body cannot be abandoned in between
+        InputStream own = body.open();
+        flight.complete(new SharedResponse(response.statusCode(), response.headers(), body));
+        return new Response(response.statusCode(), response.headers(), own);
+    }
+
+    /**
+     * Sends a request and waits for its response headers.
+     */
+    @FunctionalInterface
+    private interface Exchange {
+        Response send() throws IOException, InterruptedException;
+    }
+
+    private HttpRequest buildRequest(String url, SourceVersion known) throws URISyntaxException {
+        // Create HTTP request with timeout
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(createUri(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+        if (known != null && known.etag() != null) {
+            requestBuilder.header("If-None-Match", known.etag());
+        }
+        if (known != null && known.lastModified() != null) {
+            requestBuilder.header("If-Modified-Since", known.lastModified());
+        }
+        return requestBuilder.build();
+    }
+
+    /**
+     * Sends the request and, if the policy asks for it and no response has started within the hedge delay,
+     * a second request to a mirror or to the same URL. The first response that is not a server error wins;
+     * the other request is cancelled, or its response closed.
+     */
+    private Response sendHedged(HttpRequest request, List<HttpRequest> mirrors, HedgePolicy hedge, LatencyTracker latency)
+            throws IOException, InterruptedException {
+        Attempt primary = new Attempt(request, latency);
+        long delayNanos = hedge == null ? -1 : latency.percentileNanos(hedge.percentile(), hedgeMinSamples);
+        if (delayNanos < 0) {
+            return await(primary.result, List.of(primary));
+        }
+        try {
+            return primary.result.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Slower than the hedge percentile, so hedge below
+        } catch (InterruptedException e) {
+            primary.cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+
+        HttpRequest hedgeRequest = mirrors.isEmpty() ? request : mirrors.get(ThreadLocalRandom.current().nextInt(mirrors.size()));
+        logger.info("No response from {} after {} ms (p{} of the source); hedging with {}", request.uri(),
+                TimeUnit.NANOSECONDS.toMillis(delayNanos), hedge.percentile(), hedgeRequest.uri());
+        Attempt backup = new Attempt(hedgeRequest, latency);
+        Response winner = await(firstUsable(primary.result, backup.result), List.of(primary, backup));
+        boolean primaryWon = primary.returned(winner);
+        (primaryWon ? backup : primary).cancel();
+        meterRegistry.counter("fetch.requests.hedged", "host", hostOf(request), "winner", primaryWon ? "primary" : "hedge").increment();
+        return winner;
+    }
+
+    /**
+     * Completes with the first response that is not a server error. If both fail, completes with the last
+     * server error response, or else the last failure, so that the caller reports it as usual.
+     */
+    private static CompletableFuture<Response> firstUsable(CompletableFuture<Response> first, CompletableFuture<Response> second) {
+        CompletableFuture<Response> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        AtomicReference<Response> serverError = new AtomicReference<>();
+        BiConsumer<Response, Throwable> onDone = (response, failure) -> {
+            boolean last = remaining.decrementAndGet() == 0;
+            if (failure == null && (response.statusCode() < 500 || last)) {
+                winner.complete(response);
+            } else if (failure == null) {
+                serverError.set(response);
+            } else if (last && serverError.get() != null) {
+                winner.complete(serverError.get());
+            } else if (last) {
+                winner.completeExceptionally(failure);
+            }
+        };
+        first.whenComplete(onDone);
+        second.whenComplete(onDone);
+        return winner;
+    }
+
+    /**
+     * Waits for a response, cancelling the attempts behind it if the caller is interrupted.
+     */
+    private static Response await(CompletableFuture<Response> pending, List<Attempt> attempts) throws IOException, InterruptedException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            attempts.forEach(Attempt::cancel);
+            throw e;
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static IOException rethrow(ExecutionException e) {
+        Throwable cause = unwrap(e.getCause());
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * One try at a request. Once its host has a free permit, the request is sent with {@link HttpClient#sendAsync};
+     * waiting for the permit holds no thread. The result completes when the response headers have arrived.
+     * The permit is released when the body has been read to the end or closed.
+     */
+    private final class Attempt {
+        private final CompletableFuture<Runnable> permit;
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+        private volatile CompletableFuture<HttpResponse<InputStream>> exchange;
+
+        Attempt(HttpRequest request, LatencyTracker latency) {
+            String host = hostOf(request);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            long started = System.nanoTime();
+            permit = hostLimiter.acquire(host);
+            permit.whenComplete((release, rejected) -> {
+                if (rejected != null) {
+                    if (unwrap(rejected) instanceof RejectedExecutionException) {
+                        meterRegistry.counter("fetch.requests.rejected", "host", host).increment();
+                    }
+                    result.completeExceptionally(unwrap(rejected));
+                    return;
+                }
+                exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+                exchange.whenComplete((response, failure) -> {
+                    if (failure != null) {
+                        release.run();
+                        sample.stop(meterRegistry.timer("fetch.requests", "host", host, "status", unwrap(failure).getClass().getSimpleName()));
+                        result.completeExceptionally(unwrap(failure));
+                        return;
+                    }
+                    sample.stop(meterRegistry.timer("fetch.requests", "host", host, "status", String.valueOf(response.statusCode())));
+                    latency.record(System.nanoTime() - started);
+                    InputStream body = new PermitReleasingInputStream(
+                            response.body() != null ? response.body() : InputStream.nullInputStream(), release,
+                            meterRegistry.counter("fetch.response.bytes", "host", host));
+                    Response received = new Response(response.statusCode(), response.headers(), body);
+                    if (!result.complete(received)) {
+                        // Cancelled while the headers were on their way
+                        closeQuietly(body);
+                    }
+                });
+            });
+        }
+
+        boolean returned(Response response) {
+            return result.isDone() && !result.isCompletedExceptionally() && result.join() == response;
+        }
+
+        /**
+         * Gives up the place in the host queue, aborts the exchange, or closes the response if it has arrived.
+         */
+        void cancel() {
+            if (!permit.cancel(false)) {
+                CompletableFuture<HttpResponse<InputStream>> sent = exchange;
+                if (sent != null) {
+                    sent.cancel(true);
+                }
+            }
+            if (!result.cancel(false) && !result.isCompletedExceptionally()) {
+                closeQuietly(result.join().body());
+            }
+        }
+    }
+
+    private static String hostOf(HttpRequest request) {
+        return request.uri().getHost() != null ? request.uri().getHost() : "unknown";
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close abandoned response body", e);
+        }
+    }
+
+    /**
+     * A response body that gives back its host permit once it has been read to the end or closed,
+     * and counts the bytes read from it.
+     */
+    private static final class PermitReleasingInputStream extends FilterInputStream {
+        private final Runnable release;
+        private final Counter bytes;
+
+        PermitReleasingInputStream(InputStream in, Runnable release, Counter bytes) {
+            super(in);
+            this.release = release;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                release.run();
+            } else {
+                bytes.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                release.run();
+            } else {
+                bytes.increment(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Wraps a streamed response body for the parser: decodes its Content-Encoding, then decompresses the source
+     * if needed, and logs a preview of its first bytes. Only the preview is buffered, so parsing starts while the
+     * rest of the body is still in transit. The body is closed if it cannot be opened.
+     */
+    private InputStream openBody(InputStream body, Compression contentEncoding, Compression compression, String url) throws IOException {
+        if (body == null) {
+            logger.warn("Received empty response body from URL: {}", url);
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        try {
+            if (contentEncoding != Compression.NONE || compression != Compression.NONE) {
+                logger.debug("Decoding {} content encoding and decompressing {} source from: {}", contentEncoding, compression, url);
+            }
+            BufferedInputStream in = new BufferedInputStream(compression.decompress(contentEncoding.decompress(body)), BODY_BUFFER_SIZE);
+            in.mark(PREVIEW_BYTES);
+            byte[] preview = in.readNBytes(PREVIEW_BYTES);
+            in.reset();
+            if (preview.length == 0) {
+                logger.warn("Received empty response body from URL: {}", url);
+            } else if (logger.isDebugEnabled()) {
+                // Log the first bytes of the response for debugging; a multi-byte character may be cut at the end
+                logger.debug("Response preview (first {} bytes): {}{}", preview.length,
+                        new String(preview, StandardCharsets.UTF_8), preview.length == PREVIEW_BYTES ? "..." : "");
+            }
+            return in;
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the start of an error response for the error message and discards the rest.
+     */
+    private static String readErrorBody(InputStream body) {
+        if (body == null) {
+            return "<no body>";
+        }
+        try (InputStream in = body) {
+            return new String(in.readNBytes(ERROR_BODY_BYTES), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "<unreadable body: " + e.getMessage() + ">";
+        }
+    }
+
+    /**
+     * Resolves a source URL to a local file path.
+     * Both {@code file://} URLs and bare paths are treated as local files.
+     *
+     * @return the local path, or empty for HTTP(S) sources
+     */
+    public Optional<Path> resolveLocalPath(String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        if (url.startsWith("file://")) {
+            return Optional.of(Paths.get(url.substring("file://".length())));
+        }
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            return Optional.empty();
+        }
+        // 直接认为是本地路径
+        return Optional.of(Paths.get(url));
+    }
+
+    /**
+     * Maps a local file read-only into memory. Repeated reads of the same file are served
+     * from the OS page cache without copying the bytes onto the Java heap.
+     *
+     * @throws IOException if the file cannot be opened or is too large for a single mapping (over 2 GB)
+     */
+    public ByteBuffer mapLocalFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to map in one piece: " + path + " (" + size + " bytes)");
+            }
+            logger.debug("Memory-mapping local file: {} ({} bytes)", path, size);
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Appends the predicates the source can filter to the URL as URL-encoded query parameters.
+     */
+    private String buildUrlWithPredicates(String baseUrl, List<Predicate> predicates, PushdownCapabilities capabilities) {
+        List<Predicate> pushable = predicates == null ? List.of() : capabilities.split(predicates).pushedDown();
+        if (pushable.isEmpty()) {
             return baseUrl;
         }
         StringBuilder sb = new StringBuilder(baseUrl);
         // Use contains to check for existing query params
         sb.append(baseUrl.contains("?") ? "&" : "?");
 
-        for (int i = 0; i < predicates.size(); i++) {
-            Predicate p = predicates.get(i);
-            // This is a simplified conversion. A real implementation would need URL encoding
-            // and more robust operator mapping.
-            sb.append(p.columnName()).append("=").append(p.value().toString());
-            if (i < predicates.size() - 1) {
+        List<Map.Entry<String, String>> parameters = capabilities.toQueryParameters(pushable);
+        for (int i = 0; i < parameters.size(); i++) {
+            Map.Entry<String, String> parameter = parameters.get(i);
+            sb.append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8))
+                    .append("=")
+                    .append(URLEncoder.encode(parameter.getValue(), StandardCharsets.UTF_8));
+            if (i < parameters.size() - 1) {
                 sb.append("&");
             }
         }
@@ -1,17 +1,32 @@
 package com.example.unifieddataservice.service;
 
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
 import com.example.unifieddataservice.model.Predicate;
 import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.ColumnarGather;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.KeyBloomFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.service.filter.Selection;
+import com.example.unifieddataservice.service.parser.DataTypeMapper;
+import com.example.unifieddataservice.util.ArrowDictionaries;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 
@@ -22,82 +37,174 @@ public class DataFilteringService {
     @Autowired
     private RootAllocator allocator;
 
+    // Columns with at most this many distinct values get bitmap indexes on tables filtered repeatedly; 0 disables them
+    @Value("${filter.bitmap-index.max-cardinality:4096}")
+    private int bitmapIndexMaxCardinality = 4096;
+
     public UnifiedDataTable applyPredicates(UnifiedDataTable table, List<Predicate> predicates) {
+        return applyPredicates(table, predicates, null);
+    }
+
+    /**
+     * Filters the table by the predicates, resolving predicate columns through the column aliases of the
+     * metric the table was parsed for. The input table is left open.
+     *
+     * @param columnAlias field -> physical source column mapping of the metric (may be null)
+     */
+    public UnifiedDataTable applyPredicates(UnifiedDataTable table, List<Predicate> predicates, Map<String, String> columnAlias) {
+        return applyPredicates(table, predicates, columnAlias, null);
+    }
+
+    /**
+     * Filters the table like {@link #applyPredicates(UnifiedDataTable, List, Map)}. Equality and IN predicates on
+     * the key columns are first checked against the table's Bloom filter of the column, and a literal that is
+     * absent from the column empties the result without scanning any batch. On tables filtered repeatedly,
+     * equality and IN predicates on low-cardinality columns are answered from bitmap indexes, whose selections
+     * are gathered directly.
+     *
+     * @param keyColumns the columns the table is keyed by, under their logical or physical names (may be null)
+     */
+    public UnifiedDataTable applyPredicates(UnifiedDataTable table, List<Predicate> predicates, Map<String, String> columnAlias,
+                                            Set<String> keyColumns) {
         if (predicates == null || predicates.isEmpty()) {
             return table;
         }
 
-        VectorSchemaRoot root = table.getData();
-        List<Integer> matchingRows = new ArrayList<>();
-
-        for (int i = 0; i < root.getRowCount(); i++) {
-            boolean matchesAll = true;
-            for (Predicate p : predicates) {
-                if (!rowMatchesPredicate(root, i, p)) {
-                    matchesAll = false;
-                    break;
+        Schema schema = table.getSchema();
+        Map<String, DataType> columnTypes = columnTypes(schema, table.getDictionaries());
+        CompiledFilter compiled = PredicateCompiler.compile(predicates, columnTypes, columnAlias);
+        if (compiled.rejectsAll()) {
+            logger.debug("Predicates {} refer to columns missing from {}", predicates, schema);
+            return createEmptyTable(table);
+        }
+        List<String> columns = compiled.getColumns();
+        if (keyColumns != null && excludesAllKeys(table, predicates, columns, keyColumns)) {
+            logger.debug("Bloom filters of {} rule out {}", table.getTableName(), predicates);
+            return createEmptyTable(table);
+        }
+        List<VectorSchemaRoot> batches = table.getBatches();
+        // Equality and IN predicates on indexed columns are answered by the bitmap indexes, and the other
+        // predicates only run on the rows the indexes selected
+        List<Predicate> scanned = new ArrayList<>(predicates);
+        Selection[] indexed = bitmapIndexMaxCardinality > 0 ? lookupIndexes(table, batches, compiled.getColumns(), scanned) : null;
+        if (indexed != null) {
+            compiled = PredicateCompiler.compile(scanned, columnTypes, columnAlias);
+        }
+        // Dictionary-encoded columns are matched on their codes, evaluating each distinct value once
+        CompiledFilter filter = compiled.withDictionaries(column -> table.getDictionaries()
+                .lookup(schema.findField(column).getDictionary().getId()).getVector());
+
+        List<VectorSchemaRoot> filteredBatches = new ArrayList<>();
+        int skipped = 0;
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                VectorSchemaRoot batch = batches.get(i);
+                // Batches whose column ranges rule a predicate out are skipped without being scanned
+                if (!table.getZoneMap(i).mightMatch(batch, table.getDictionaries(), predicates, columns, columnTypes)) {
+                    skipped++;
+                    continue;
+                }
+                // Each predicate runs over its whole column, then the selected rows are gathered column by column
+                Selection selection;
+                if (indexed != null) {
+                    selection = indexed[i];
+                    filter.filter(filter.bind(batch), selection);
+                } else {
+                    selection = filter.select(filter.bind(batch), batch.getRowCount());
+                }
+                if (!selection.isEmpty()) {
+                    filteredBatches.add(ColumnarGather.gather(batch, selection, allocator));
                 }
             }
-            if (matchesAll) {
-                matchingRows.add(i);
-            }
+        } catch (RuntimeException e) {
+            filteredBatches.forEach(VectorSchemaRoot::close);
+            throw e;
+        }
+        if (skipped > 0) {
+            logger.debug("Zone maps of {} skipped {} of {} batches for {}", table.getTableName(), skipped, batches.size(), predicates);
         }
 
-        if (matchingRows.isEmpty()) {
+        if (filteredBatches.isEmpty()) {
             return createEmptyTable(table);
         }
-        return createFilteredTable(table, matchingRows);
+        return new UnifiedDataTable(table.getTableName(), filteredBatches, copyDictionaries(table));
     }
 
-    private boolean rowMatchesPredicate(VectorSchemaRoot root, int row, Predicate predicate) {
-        FieldVector vector = root.getVector(predicate.columnName());
-        if (vector == null) {
-            return false; // Column not found, cannot match.
+    /**
+     * Looks the predicates up in the bitmap indexes of their columns and removes those the indexes answered.
+     *
+     * @param columns   for each predicate, the field it was resolved to
+     * @param remaining the predicates, of which those answered by an index are removed
+     * @return for each batch, the rows matching every answered predicate; null if no predicate was answered
+     */
+    private Selection[] lookupIndexes(UnifiedDataTable table, List<VectorSchemaRoot> batches, List<String> columns, List<Predicate> remaining) {
+        Selection[] selected = null;
+        List<Predicate> predicates = List.copyOf(remaining);
+        for (int i = 0; i < predicates.size(); i++) {
+            Predicate predicate = predicates.get(i);
+            Selection[] matches = table.getBitmapIndex(columns.get(i)).lookup(table, columns.get(i), predicate, bitmapIndexMaxCardinality);
+            if (matches == null || matches.length != batches.size()) {
+                continue;
+            }
+            if (selected == null) {
+                selected = matches;
+            } else {
+                for (int batch = 0; batch < selected.length; batch++) {
+                    selected[batch].and(matches[batch]);
+                }
+            }
+            remaining.remove(predicate);
         }
+        return selected;
+    }
 
-        Object value = vector.getObject(row);
-        Object predicateValue = predicate.value();
-
-        if (value == null) {
-            return predicateValue == null; // Or handle as per SQL NULL semantics
+    /**
+     * @param columns for each predicate, the field it was resolved to
+     * @return true if an equality or IN predicate on a key column has no literal the column might contain
+     */
+    private boolean excludesAllKeys(UnifiedDataTable table, List<Predicate> predicates, List<String> columns, Set<String> keyColumns) {
+        for (int i = 0; i < predicates.size(); i++) {
+            Predicate predicate = predicates.get(i);
+            boolean lookup = predicate.operator() == Operator.EQUALS || predicate.operator() == Operator.IN;
+            if (!lookup || (!keyColumns.contains(predicate.columnName()) && !keyColumns.contains(columns.get(i)))) {
+                continue;
+            }
+            KeyBloomFilter filter = table.getKeyFilter(columns.get(i));
+            if (filter != null && !filter.mightMatch(predicate)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        // Simplified comparison logic. Production code would need robust type handling.
-        switch (predicate.operator()) {
-            case EQUALS:
-                return value.toString().equals(predicateValue.toString());
-            case NOT_EQUALS:
-                return !value.toString().equals(predicateValue.toString());
-            // Implement other operators (>, <, etc.) here.
-            default:
-                logger.warn("Unsupported operator in fallback filter: {}", predicate.operator());
-                return false;
+    /**
+     * @return the data type of every column the predicate compiler can evaluate
+     */
+    private Map<String, DataType> columnTypes(Schema schema, DictionaryProvider dictionaries) {
+        Map<String, DataType> types = new LinkedHashMap<>();
+        for (Field field : schema.getFields()) {
+            DataType type = DataTypeMapper.fromField(field, dictionaries);
+            if (type != null) {
+                types.put(field.getName(), type);
+            }
         }
+        return types;
     }
 
     private UnifiedDataTable createEmptyTable(UnifiedDataTable original) {
-        VectorSchemaRoot originalRoot = original.getData();
-        Schema schema = originalRoot.getSchema();
+        Schema schema = original.getSchema();
         VectorSchemaRoot emptyRoot = VectorSchemaRoot.create(schema, allocator);
         emptyRoot.allocateNew();
         emptyRoot.setRowCount(0);
-        return new UnifiedDataTable(original.getTableName(), emptyRoot, schema);
+        return new UnifiedDataTable(original.getTableName(), List.of(emptyRoot), copyDictionaries(original));
     }
 
-    private UnifiedDataTable createFilteredTable(UnifiedDataTable original, List<Integer> matchingRows) {
-        VectorSchemaRoot originalRoot = original.getData();
-        Schema schema = originalRoot.getSchema();
-        VectorSchemaRoot filteredRoot = VectorSchemaRoot.create(schema, allocator);
-        filteredRoot.allocateNew();
-
-        for (int newRow = 0; newRow < matchingRows.size(); newRow++) {
-            int originalRow = matchingRows.get(newRow);
-            for (FieldVector originalVector : originalRoot.getFieldVectors()) {
-                filteredRoot.getVector(originalVector.getField().getName()).copyFromSafe(originalRow, newRow, originalVector);
-            }
-        }
-        filteredRoot.setRowCount(matchingRows.size());
-        return new UnifiedDataTable(original.getTableName(), filteredRoot, schema);
+    /**
+     * The filtered table carries the codes of its input, so it gets its own copy of the input's dictionaries.
+     */
+    private DictionaryProvider.MapDictionaryProvider copyDictionaries(UnifiedDataTable original) {
+        DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        ArrowDictionaries.copyInto(original.getDictionaries(), original.getSchema().getFields(), dictionaries, allocator);
+        return dictionaries;
     }
 }
-
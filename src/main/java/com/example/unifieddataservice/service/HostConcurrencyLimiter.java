@@ -0,0 +1,121 @@
+package com.example.unifieddataservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of requests in progress per host, so that a few slow vendors cannot tie up every
+ * connection and thread. A request that finds its host busy waits in a bounded per-host queue without
+ * holding a thread; when the queue is full it is rejected right away.
+ *
+ * <p>A permit is held from sending the request until its body has been read or closed.</p>
+ */
+final class HostConcurrencyLimiter {
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    HostConcurrencyLimiter(int maxConcurrent, int maxQueued, MeterRegistry meterRegistry) {
+        if (maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("Invalid per-host limits: " + maxConcurrent + " concurrent, " + maxQueued + " queued");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Takes a permit for the host.
+     *
+     * @return a future completed with the permit's release action once a permit is free, or failed with a
+     * {@link RejectedExecutionException} if too many requests to the host are already waiting
+     */
+    CompletableFuture<Runnable> acquire(String host) {
+        return hosts.computeIfAbsent(host, this::register).acquire();
+    }
+
+    private Host register(String host) {
+        Host state = new Host(host);
+        Gauge.builder("fetch.host.active", state, Host::active)
+                .description("Requests in progress to the host")
+                .tag("host", host)
+                .register(meterRegistry);
+        Gauge.builder("fetch.host.queued", state, Host::queued)
+                .description("Requests waiting for a permit to the host")
+                .tag("host", host)
+                .register(meterRegistry);
+        return state;
+    }
+
+    private final class Host {
+        private final String name;
+        // Guarded by this
+        private int active;
+        private final ArrayDeque<CompletableFuture<Runnable>> waiting = new ArrayDeque<>();
+
+        Host(String name) {
+            this.name = name;
+        }
+
+        synchronized CompletableFuture<Runnable> acquire() {
+            if (active < maxConcurrent) {
+                active++;
+                return CompletableFuture.completedFuture(newPermit());
+            }
+            waiting.removeIf(CompletableFuture::isDone);
+            if (waiting.size() >= maxQueued) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many requests waiting for host " + name + " (" + active + " active, " + waiting.size() + " queued)"));
+            }
+            CompletableFuture<Runnable> permit = new CompletableFuture<>();
+            waiting.add(permit);
+            return permit;
+        }
+
+        private Runnable newPermit() {
+            boolean[] released = new boolean[1];
+            return () -> {
+                synchronized (this) {
+                    if (released[0]) {
+                        return;
+                    }
+                    released[0] = true;
+                }
+                handOver();
+            };
+        }
+
+        // Passes a released permit on to the next waiter still interested in it. The waiter is completed
+        // outside the lock, since completing it sends its request on this thread.
+        private void handOver() {
+            while (true) {
+                CompletableFuture<Runnable> next;
+                synchronized (this) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                }
+                if (next.complete(newPermit())) {
+                    return;
+                }
+            }
+        }
+
+        synchronized double active() {
+            return active;
+        }
+
+        synchronized double queued() {
+            return waiting.size();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.unifieddataservice.service;
+
+import java.util.Arrays;
+
+/**
+ * The response latencies of the most recent requests to one source, from which hedge delays are taken.
+ * A fixed window of samples follows changes in a vendor's latency within a few hundred requests.
+ */
+final class LatencyTracker {
+    private static final int WINDOW = 256;
+
+    // Guarded by this
+    private final long[] samples = new long[WINDOW];
+    private int next;
+    private int count;
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+    }
+
+    /**
+     * @param percentile  the percentile, between 0 and 100
+     * @param minSamples  the number of samples needed for a meaningful percentile
+     * @return the latency at the percentile in nanoseconds, or -1 if there are fewer than {@code minSamples} samples
+     */
+    long percentileNanos(double percentile, int minSamples) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0 || count < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+    }
+}
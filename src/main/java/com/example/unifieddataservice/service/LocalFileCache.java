@@ -0,0 +1,229 @@
+package com.example.unifieddataservice.service;
+
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Keeps the last parsed table of each line-oriented local metric source (CSV and NDJSON files) together with the
+ * state of the file it was parsed from, so that a file that only grew is brought up to date by parsing the
+ * appended lines instead of the whole file. The appended rows are merged into the last batch of the kept table
+ * while it stays small, so a file growing a line at a time does not leave a batch per line.
+ *
+ * <p>A file counts as appended to if it is the same file, no shorter than the parsed part, and the header line
+ * and the bytes just before the end of the parsed part are unchanged. Anything else is a rewrite, after which
+ * the entry is dropped and the file parsed in full. Only complete lines are parsed; a line still being written
+ * is picked up once its newline is there.</p>
+ */
+@Component
+public class LocalFileCache {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileCache.class);
+
+    /** Number of bytes before the end of the parsed part compared to tell an append from a rewrite. */
+    private static final int FINGERPRINT_BYTES = 256;
+
+    private final Cache<String, Entry> entries;
+
+    public LocalFileCache(@Value("${metrics.local-files.retention:PT24H}") Duration retention,
+                          @Value("${metrics.local-files.max-entries:100}") long maxEntries) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(retention)
+                // Release tables on the calling thread rather than in the background
+                .executor(Runnable::run)
+                .removalListener((RemovalListener<String, Entry>) (key, entry, cause) -> {
+                    if (entry != null) {
+                        logger.debug("Releasing local file entry for {} ({})", key, cause);
+                        entry.table().close();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * The identity, length and modification time of a file.
+     */
+    public record FileState(Object fileKey, long length, long lastModified) {
+        public static FileState of(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileState(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+
+        boolean sameFile(FileState other) {
+            return fileKey == null || other.fileKey == null || fileKey.equals(other.fileKey);
+        }
+    }
+
+    /**
+     * A table parsed from the first {@code parsedLength} bytes of a file.
+     *
+     * @param state        the file as last seen, possibly with an incomplete line after the parsed part
+     * @param header       the header line of a CSV file, prepended to appended lines so they parse on their own; empty for NDJSON
+     * @param fingerprint  the bytes just before the end of the parsed part
+     */
+    record Entry(FileState state, long parsedLength, byte[] header, byte[] fingerprint, UnifiedDataTable table) {}
+
+    /**
+     * Returns a new table sharing the buffers of the table kept for the key, after appending the lines added to
+     * the file since it was parsed. The appended lines, preceded by the header line for CSV files, are handed to
+     * {@code parseLines}.
+     *
+     * @return the up-to-date table, or empty if there is no entry or the file has been rewritten and must be parsed in full
+     */
+    public Optional<UnifiedDataTable> refresh(String key, Path file, Function<ByteBuffer, UnifiedDataTable> parseLines) {
+        FileState current;
+        try {
+            current = FileState.of(file);
+        } catch (IOException e) {
+            entries.invalidate(key);
+            return Optional.empty();
+        }
+        UnifiedDataTable[] shared = new UnifiedDataTable[1];
+        // Appending inside compute keeps the entry from being removed, and its table released, halfway through
+        entries.asMap().computeIfPresent(key, (k, entry) -> {
+            if (current.equals(entry.state())) {
+                shared[0] = entry.table().share();
+                return entry;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (!isAppendedTo(channel, entry, current)) {
+                    logger.info("Local file {} was rewritten; parsing it again", file);
+                    return null;
+                }
+                long end = lineEnd(channel, entry.parsedLength(), current.length());
+                if (end == entry.parsedLength()) {
+                    shared[0] = entry.table().share();
+                    return new Entry(current, entry.parsedLength(), entry.header(), entry.fingerprint(), entry.table());
+                }
+                logger.info("Parsing {} bytes appended to local file {}", end - entry.parsedLength(), file);
+                UnifiedDataTable appended = entry.table().append(parseLines.apply(readLines(channel, entry.header(), entry.parsedLength(), end)));
+                shared[0] = appended.share();
+                return new Entry(current, end, entry.header(), read(channel, fingerprintStart(end), end), appended);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not append to the table of local file {}; parsing it again", file, e);
+                return null;
+            }
+        });
+        return Optional.ofNullable(shared[0]);
+    }
+
+    /**
+     * Keeps a table parsed from the whole file, if the file did not change while it was parsed and ends with a
+     * complete line. The cache takes ownership of the table, and releases it if it is not kept.
+     *
+     * @param before    the state of the file before it was parsed
+     * @param hasHeader whether the first line of the file is a header line
+     */
+    public void put(String key, Path file, FileState before, boolean hasHeader, UnifiedDataTable table) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = before.length();
+            if (before.equals(FileState.of(file)) && length > 0 && read(channel, length - 1, length)[0] == '\n') {
+                byte[] header = hasHeader ? read(channel, 0, firstLineEnd(channel, length)) : new byte[0];
+                entries.put(key, new Entry(before, length, header, read(channel, fingerprintStart(length), length), table));
+                return;
+            }
+        } catch (IOException e) {
+            logger.debug("Not keeping the table of local file {}", file, e);
+        }
+        table.close();
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        entries.invalidateAll();
+        entries.cleanUp();
+    }
+
+    private static boolean isAppendedTo(FileChannel channel, Entry entry, FileState current) throws IOException {
+        long parsedLength = entry.parsedLength();
+        return entry.state().sameFile(current)
+                && current.length() >= parsedLength
+                && Arrays.equals(entry.header(), read(channel, 0, entry.header().length))
+                && Arrays.equals(entry.fingerprint(), read(channel, fingerprintStart(parsedLength), parsedLength));
+    }
+
+    private static long fingerprintStart(long end) {
+        return Math.max(0, end - FINGERPRINT_BYTES);
+    }
+
+    /**
+     * @return the position after the last newline in {@code [start, end)}, or {@code start} if there is none
+     */
+    private static long lineEnd(FileChannel channel, long start, long end) throws IOException {
+        for (long chunkEnd = end; chunkEnd > start; chunkEnd -= 8192) {
+            long chunkStart = Math.max(start, chunkEnd - 8192);
+            byte[] chunk = read(channel, chunkStart, chunkEnd);
+            for (int i = chunk.length - 1; i >= 0; i--) {
+                if (chunk[i] == '\n') {
+                    return chunkStart + i + 1;
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @return the position after the first newline of the file, or the end if there is none
+     */
+    private static long firstLineEnd(FileChannel channel, long end) throws IOException {
+        for (long chunkStart = 0; chunkStart < end; chunkStart += 8192) {
+            byte[] chunk = read(channel, chunkStart, Math.min(end, chunkStart + 8192));
+            for (int i = 0; i < chunk.length; i++) {
+                if (chunk[i] == '\n') {
+                    return chunkStart + i + 1;
+                }
+            }
+        }
+        return end;
+    }
+
+    private static ByteBuffer readLines(FileChannel channel, byte[] header, long start, long end) throws IOException {
+        long length = header.length + (end - start);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Appended part of " + (end - start) + " bytes is too large to parse at once");
+        }
+        ByteBuffer lines = ByteBuffer.allocate((int) length);
+        lines.put(header);
+        readFully(channel, lines, start);
+        return lines.flip();
+    }
+
+    private static byte[] read(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        readFully(channel, buffer, start);
+        return buffer.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("File ended at " + position + " while reading");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.unifieddataservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Watches the files of local metric sources and evicts the cached tables of a metric as soon as its file is
+ * created, modified or deleted, instead of serving the old data until the cache entry expires. The next load
+ * of the metric then finds out how the file changed: CSV and NDJSON files that only grew are brought up to date
+ * through the {@link LocalFileCache}, anything else is parsed again.
+ *
+ * <p>Files are watched from the first time their metric is loaded. Query results are evicted along with the
+ * metric, since they may have been computed from it.</p>
+ */
+@Component
+public class LocalSourceMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(LocalSourceMonitor.class);
+
+    static final String METRICS_CACHE = "metrics";
+    static final String QUERY_RESULTS_CACHE = "queryResults";
+
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    // Metric names by watched file, and the watch keys of their directories
+    private final Map<Path, Set<String>> metricsByFile = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    public LocalSourceMonitor(CacheManager cacheManager,
+                              @Value("${metrics.local-files.watch:true}") boolean enabled) {
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts watching the source file of a metric, if it is not watched already.
+     */
+    public void watch(Path file, String metricName) {
+        if (!enabled) {
+            return;
+        }
+        Path absolute = file.toAbsolutePath().normalize();
+        metricsByFile.computeIfAbsent(absolute, f -> ConcurrentHashMap.newKeySet()).add(metricName);
+        Path directory = absolute.getParent();
+        if (directory == null || directories.containsKey(directory)) {
+            return;
+        }
+        synchronized (this) {
+            if (directories.containsKey(directory)) {
+                return;
+            }
+            try {
+                directories.put(directory, directory.register(watchService(),
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                logger.info("Watching {} for changes to local metric sources", directory);
+            } catch (IOException | ClosedWatchServiceException e) {
+                // The metric cache entry then expires as usual
+                logger.warn("Cannot watch {} for changes to local metric sources", directory, e);
+            }
+        }
+    }
+
+    /**
+     * Evicts the cached tables of the metrics whose source is the file, and the cached query results.
+     */
+    void sourceChanged(Path file) {
+        Set<String> metricNames = metricsByFile.get(file.toAbsolutePath().normalize());
+        if (metricNames == null || metricNames.isEmpty()) {
+            return;
+        }
+        logger.info("Local source {} changed; evicting cached data of metrics {}", file, metricNames);
+        evict(metricNames);
+    }
+
+    private void evict(Set<String> metricNames) {
+        Cache metrics = cacheManager.getCache(METRICS_CACHE);
+        if (metrics != null) {
+            ConcurrentMap<Object, Object> entries = nativeMap(metrics);
+            if (entries != null) {
+                entries.keySet().removeIf(key -> key instanceof String name && metricNames.stream().anyMatch(metric -> isKeyOf(name, metric)));
+            } else {
+                metrics.clear();
+            }
+        }
+        Cache queryResults = cacheManager.getCache(QUERY_RESULTS_CACHE);
+        if (queryResults != null) {
+            queryResults.clear();
+        }
+    }
+
+    /**
+     * @return whether the metric cache key belongs to data of the metric, loaded with or without options,
+     * predicates and projected columns
+     */
+    static boolean isKeyOf(String key, String metricName) {
+        return key.equals(metricName) || key.startsWith(metricName + ':') || key.startsWith(metricName + "_predicates:");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Object, Object> nativeMap(Cache cache) {
+        Object nativeCache = cache.getNativeCache();
+        if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine) {
+            return (ConcurrentMap<Object, Object>) caffeine.asMap();
+        }
+        return nativeCache instanceof ConcurrentMap<?, ?> map ? (ConcurrentMap<Object, Object>) map : null;
+    }
+
+    private WatchService watchService() throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread watcher = new Thread(this::run, "local-source-monitor");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        return watchService;
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                logger.debug("Local source monitor stopped");
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            try {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Changes were lost; any file in the directory may have changed
+                        metricsByFile.keySet().stream().filter(file -> directory.equals(file.getParent())).forEach(this::sourceChanged);
+                    } else {
+                        sourceChanged(directory.resolve((Path) event.context()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error handling changes in {}", directory, e);
+            }
+            if (!key.reset()) {
+                directories.remove(directory);
+                logger.warn("Stopped watching {}; it is no longer accessible", directory);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warn("Error closing the local source watch service", e);
+            }
+        }
+    }
+}
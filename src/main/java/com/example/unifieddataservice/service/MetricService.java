@@ -1,29 +1,45 @@
 package com.example.unifieddataservice.service;
 
 import com.example.unifieddataservice.model.DataSourceType;
+import com.example.unifieddataservice.model.HedgePolicy;
+import com.example.unifieddataservice.model.IncrementalRefresh;
 import com.example.unifieddataservice.model.MetricInfo;
+import com.example.unifieddataservice.model.PushdownCapabilities;
 import com.example.unifieddataservice.model.PushdownResult;
+import com.example.unifieddataservice.model.SourceVersion;
 import com.example.unifieddataservice.model.UnifiedDataTable;
 import com.example.unifieddataservice.repository.MetricInfoRepository;
 import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.service.parser.ArrowIpcDataParser;
+import com.example.unifieddataservice.service.parser.ByteCsvDataParser;
 import com.example.unifieddataservice.service.parser.CsvDataParser;
 import com.example.unifieddataservice.service.parser.DataParser;
 import com.example.unifieddataservice.service.parser.JsonDataParser;
+import com.example.unifieddataservice.service.parser.NdjsonDataParser;
+import com.example.unifieddataservice.service.parser.ParquetDataParser;
+import com.example.unifieddataservice.util.Compression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -34,8 +50,16 @@ public class MetricService {
     private final DataFetcherService dataFetcherService;
     private final DataFilteringService dataFilteringService;
     private final JsonDataParser jsonDataParser;
+    private final NdjsonDataParser ndjsonDataParser;
     private final CsvDataParser csvDataParser;
+    private final ByteCsvDataParser byteCsvDataParser;
+    private final ArrowIpcDataParser arrowIpcDataParser;
+    private final ParquetDataParser parquetDataParser;
     private final PredicatePushdownService predicatePushdownService;
+    private final RevalidationCache revalidationCache;
+    private final LocalFileCache localFileCache;
+    private final LocalSourceMonitor localSourceMonitor;
+    private final TimeSeriesCache timeSeriesCache;
     
     // Self-reference for handling self-invocation caching
     @Lazy
@@ -46,19 +70,36 @@ public class MetricService {
                         DataFetcherService dataFetcherService, 
                         DataFilteringService dataFilteringService,
                         PredicatePushdownService predicatePushdownService,
+                        RevalidationCache revalidationCache,
+                        LocalFileCache localFileCache,
+                        LocalSourceMonitor localSourceMonitor,
+                        TimeSeriesCache timeSeriesCache,
                         JsonDataParser jsonDataParser,
-                        CsvDataParser csvDataParser) {
+                        NdjsonDataParser ndjsonDataParser,
+                        CsvDataParser csvDataParser,
+                        ByteCsvDataParser byteCsvDataParser,
+                        ArrowIpcDataParser arrowIpcDataParser,
+                        ParquetDataParser parquetDataParser) {
         this.metricInfoRepository = metricInfoRepository;
         this.dataFetcherService = dataFetcherService;
         this.dataFilteringService = dataFilteringService;
         this.predicatePushdownService = predicatePushdownService;
+        this.revalidationCache = revalidationCache;
+        this.localFileCache = localFileCache;
+        this.localSourceMonitor = localSourceMonitor;
+        this.timeSeriesCache = timeSeriesCache;
         this.jsonDataParser = jsonDataParser;
+        this.ndjsonDataParser = ndjsonDataParser;
         this.csvDataParser = csvDataParser;
+        this.byteCsvDataParser = byteCsvDataParser;
+        this.arrowIpcDataParser = arrowIpcDataParser;
+        this.parquetDataParser = parquetDataParser;
     }
 
     // CRUD operations for MetricInfo
 
-    @CacheEvict(value = "metrics", allEntries = true)
+    // Query results may have been computed from the evicted metric tables
+    @Caching(evict = {@CacheEvict(value = "metrics", allEntries = true), @CacheEvict(value = "queryResults", allEntries = true)})
     public MetricInfo saveMetric(MetricInfo metricInfo) {
         logger.info("Saving new metric: {}", metricInfo.getName());
         return metricInfoRepository.save(metricInfo);
@@ -76,7 +117,7 @@ public class MetricService {
         return metricInfoRepository.findById(id);
     }
 
-    @CacheEvict(value = "metrics", allEntries = true)
+    @Caching(evict = {@CacheEvict(value = "metrics", allEntries = true), @CacheEvict(value = "queryResults", allEntries = true)})
     public MetricInfo updateMetric(Long id, MetricInfo metricDetails) {
         logger.info("Updating metric id: {}", id);
         MetricInfo metricInfo = metricInfoRepository.findById(id)
@@ -87,23 +128,31 @@ public class MetricService {
         metricInfo.setSourceUrl(metricDetails.getSourceUrl());
         metricInfo.setDataPath(metricDetails.getDataPath());
         metricInfo.setFieldMappings(metricDetails.getFieldMappings());
+        metricInfo.setSourceOptions(metricDetails.getSourceOptions());
 
+        // Tables kept for revalidation were parsed with the old definition
+        revalidationCache.invalidateAll();
+        localFileCache.invalidateAll();
+        timeSeriesCache.invalidateAll();
         return metricInfoRepository.save(metricInfo);
     }
 
-    @CacheEvict(value = "metrics", allEntries = true)
+    @Caching(evict = {@CacheEvict(value = "metrics", allEntries = true), @CacheEvict(value = "queryResults", allEntries = true)})
     public void deleteMetric(Long id) {
         logger.info("Deleting metric id: {}", id);
         if (!metricInfoRepository.existsById(id)) {
             throw new IllegalArgumentException("Metric not found with id: " + id);
         }
         metricInfoRepository.deleteById(id);
+        revalidationCache.invalidateAll();
+        localFileCache.invalidateAll();
+        timeSeriesCache.invalidateAll();
     }
 
     @Cacheable(value = "metrics", key = "#metricName", sync = true)
     public UnifiedDataTable getMetricData(String metricName) {
         logger.info("Getting metric data for: {}", metricName);
-        return loadMetricData(metricName, null, Collections.emptyList());
+        return loadMetricData(metricName, null, Collections.emptyList(), null);
     }
 
     /**
@@ -113,13 +162,38 @@ public class MetricService {
     @Cacheable(value = "metrics", key = "#metricName + ':' + (#options == null ? '' : #options.hashCode())", sync = true)
     public UnifiedDataTable getMetricData(String metricName, Map<String, String> options) {
         logger.info("Getting metric data for: {}, options: {}", metricName, options);
-        return loadMetricData(metricName, options, Collections.emptyList());
+        return loadMetricData(metricName, options, Collections.emptyList(), null);
     }
 
     @Cacheable(value = "metrics", key = "#metricName + '_predicates:' + (#predicates == null ? 'none' : #predicates.hashCode())", sync = true)
     public UnifiedDataTable getMetricData(String metricName, List<Predicate> predicates) {
         logger.info("Getting metric data for: {}, with predicates: {}", metricName, predicates);
-        return loadMetricData(metricName, null, predicates);
+        return loadMetricData(metricName, null, predicates, null);
+    }
+
+    /**
+     * Loads only the columns a query needs. Unrequired columns are neither decoded nor allocated by the parser.
+     *
+     * @param requiredColumns physical column names to materialize; null or empty loads every mapped field
+     */
+    @Cacheable(value = "metrics", key = "#metricName + '_predicates:' + (#predicates == null ? 'none' : #predicates.hashCode()) + '_columns:' + (#requiredColumns == null ? 'all' : #requiredColumns.hashCode())", sync = true)
+    public UnifiedDataTable getMetricData(String metricName, List<Predicate> predicates, Set<String> requiredColumns) {
+        logger.info("Getting metric data for: {}, with predicates: {}, columns: {}", metricName, predicates, requiredColumns);
+        return loadMetricData(metricName, null, predicates, requiredColumns);
+    }
+
+    /**
+     * Loads only the columns a query needs, like {@link #getMetricData(String, List, Set)}, for a table keyed by
+     * the given columns. Equality and IN predicates on a key column that the metric does not hold, such as a ticker
+     * the vendor does not cover, are answered from a Bloom filter of the column without scanning the data.
+     * Key columns do not change the result, so the cache entry is shared with the overload without them.
+     *
+     * @param keyColumns logical and physical names of the key columns (may be null)
+     */
+    @Cacheable(value = "metrics", key = "#metricName + '_predicates:' + (#predicates == null ? 'none' : #predicates.hashCode()) + '_columns:' + (#requiredColumns == null ? 'all' : #requiredColumns.hashCode())", sync = true)
+    public UnifiedDataTable getMetricData(String metricName, List<Predicate> predicates, Set<String> requiredColumns, Set<String> keyColumns) {
+        logger.info("Getting metric data for: {}, with predicates: {}, columns: {}, keys: {}", metricName, predicates, requiredColumns, keyColumns);
+        return loadMetricData(metricName, null, predicates, requiredColumns, keyColumns);
     }
     
     
@@ -127,7 +201,15 @@ public class MetricService {
      * Loads metric data without checking the cache.
      * This method is package-private for testing purposes.
      */
-    UnifiedDataTable loadMetricData(String metricName, Map<String, String> options, List<Predicate> predicates) {
+    UnifiedDataTable loadMetricData(String metricName, Map<String, String> options, List<Predicate> predicates, Set<String> requiredColumns) {
+        return loadMetricData(metricName, options, predicates, requiredColumns, null);
+    }
+
+    /**
+     * @param keyColumns columns whose Bloom filters may answer equality and IN predicates (may be null)
+     */
+    UnifiedDataTable loadMetricData(String metricName, Map<String, String> options, List<Predicate> predicates, Set<String> requiredColumns,
+                                    Set<String> keyColumns) {
         logger.info("Loading metric data for: {}", metricName);
         
         try {
@@ -143,63 +225,257 @@ public class MetricService {
             logger.debug("Found metric info: {}", metricInfo);
             // TODO: If metric supports parameters, validate & apply them here using 'options'.
             
-            // Analyze predicates for pushdown
+            // Every predicate is applied by the parser; the fetcher sends those the source filters in the URL
             PushdownResult pushdownResult = predicatePushdownService.analyze(predicates, metricInfo);
             List<Predicate> predicatesToPush = pushdownResult.pushedDown();
             List<Predicate> predicatesForFallback = pushdownResult.fallback();
 
-            // Fetch the data with pushdown predicates
-            logger.info("Fetching data from: {} with pushdown predicates: {}", metricInfo.getSourceUrl(), predicatesToPush);
-            try (InputStream dataStream = dataFetcherService.fetchData(metricInfo.getSourceUrl(), predicatesToPush)) {
-                if (dataStream == null) {
-                    String errorMsg = String.format("Failed to fetch data from URL: %s", metricInfo.getSourceUrl());
-                    logger.error(errorMsg);
-                    throw new IllegalStateException(errorMsg);
+            // Fetch and parse the data, filtering rows as they are parsed
+            UnifiedDataTable result = fetchAndParse(metricInfo, predicatesToPush, requiredColumns);
+
+            logger.debug("Parsed data with {} rows and column aliases: {}",
+                result.getRowCount(), metricInfo.getColumnAlias());
+
+            // Apply the predicates the parser was not handed in memory
+            if (!predicatesForFallback.isEmpty()) {
+                logger.info("Applying {} fallback predicates in memory", predicatesForFallback.size());
+                UnifiedDataTable unfiltered = result;
+                try {
+                    result = dataFilteringService.applyPredicates(unfiltered, predicatesForFallback, metricInfo.getColumnAlias(), keyColumns);
+                } catch (RuntimeException e) {
+                    unfiltered.close();
+                    throw e;
+                }
+                if (result != unfiltered) {
+                    unfiltered.close();
                 }
+            }
+
+            logger.info("Successfully processed data. Final rows: {}", result.getRowCount());
+            return result;
+            
+        } catch (Exception e) {
+            logger.error("Error in loadMetricData for metric: " + metricName, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the metric source and parses it into a table.
+     * Local FILE_CSV sources read by the commons-csv parser are handed over as files so large ones can be
+     * parsed in parallel; other local files are memory-mapped and parsed through the byte-level entry point.
+     * Large local NDJSON files are split at line boundaries and parsed in parallel from the mapping.
+     * Arrow files in the file format are read in place, so their tables keep pointing into the mapping.
+     * Parquet files are read from the mapping too, touching only the projected column chunks of row groups
+     * whose statistics do not rule out the pushed predicates.
+     * Compressed sources, declared with the {@code compression} source option or detected by the fetcher,
+     * are always streamed through the decompressor into the parser.
+     * Local files are watched for changes from their first load. The tables of local CSV and NDJSON files are
+     * kept, and when such a file only grew, just the appended lines are parsed and added to the kept table.
+     */
+    private UnifiedDataTable fetchAndParse(MetricInfo metricInfo, List<Predicate> predicatesToPush, Set<String> requiredColumns) {
+        String metricName = metricInfo.getName();
+        DataParser parser = getParser(metricInfo);
+        logger.debug("Using parser: {}", parser.getClass().getSimpleName());
+
+        UnifiedDataTable result;
+        Compression compression = Compression.forName(metricInfo.getSourceOption(Compression.OPTION, null));
+        Optional<Path> localFile = dataFetcherService.resolveLocalPath(metricInfo.getSourceUrl())
+                .filter(path -> (compression != null ? compression : Compression.fromFileName(path.toString())) == Compression.NONE);
+        localFile.ifPresent(path -> localSourceMonitor.watch(path, metricName));
 
-                // Get the appropriate parser
-                DataParser parser = getParser(metricInfo.getDataSourceType());
-                logger.debug("Using parser: {}", parser.getClass().getSimpleName());
-                
-                // Parse the data with column aliases and any applicable pushdown predicates
-                UnifiedDataTable result = parser.parse(
-                    dataStream, 
-                    metricInfo.getFieldMappings(), 
+        // Line-oriented files that only grew since they were last parsed are parsed from where they were left
+        boolean appendable = localFile.isPresent() && isAppendable(metricInfo.getDataSourceType()) && isMappable(localFile.get());
+        String sourceKey = sourceKey(metricInfo, predicatesToPush, requiredColumns);
+        LocalFileCache.FileState fileState = null;
+        if (appendable) {
+            Optional<UnifiedDataTable> refreshed = localFileCache.refresh(sourceKey, localFile.get(), lines -> parser.parseBytes(
+                lines,
+                metricInfo.getFieldMappings(),
+                metricInfo.getDataPath(),
+                metricInfo.getColumnAlias(),
+                predicatesToPush,
+                requiredColumns
+            ));
+            if (refreshed.isPresent()) {
+                return refreshed.get();
+            }
+            try {
+                fileState = LocalFileCache.FileState.of(localFile.get());
+            } catch (IOException e) {
+                logger.debug("Cannot read the state of local file {}", localFile.get(), e);
+            }
+        }
+
+        if (localFile.isPresent() && parser == csvDataParser) {
+            logger.info("Parsing local file: {} with pushdown predicates: {}", localFile.get(), predicatesToPush);
+            result = csvDataParser.parseFile(
+                localFile.get(),
+                metricInfo.getFieldMappings(),
+                metricInfo.getDataPath(),
+                metricInfo.getColumnAlias(),
+                predicatesToPush,
+                requiredColumns
+            );
+        } else if (localFile.isPresent() && isMappable(localFile.get())) {
+            logger.info("Parsing memory-mapped file: {} with pushdown predicates: {}", localFile.get(), predicatesToPush);
+            try {
+                result = parser.parseBytes(
+                    dataFetcherService.mapLocalFile(localFile.get()),
+                    metricInfo.getFieldMappings(),
                     metricInfo.getDataPath(),
                     metricInfo.getColumnAlias(),
-                    predicatesToPush
+                    predicatesToPush,
+                    requiredColumns
                 );
-                
-                logger.debug("Parsed data with {} rows and column aliases: {}", 
-                    result.getRowCount(), metricInfo.getColumnAlias());
-                
-                if (result == null) {
-                    String errorMsg = String.format("Parser returned null for metric: %s", metricName);
-                    logger.error(errorMsg);
-                    throw new IllegalStateException(errorMsg);
-                }
-
-                // Apply fallback predicates if any
-                if (!predicatesForFallback.isEmpty()) {
-                    logger.info("Applying {} fallback predicates in memory", predicatesForFallback.size());
-                    result = dataFilteringService.applyPredicates(result, predicatesForFallback);
-                }
-                
-                logger.info("Successfully processed data. Final rows: {}", result.getRowCount());
-                return result;
             } catch (IOException e) {
-                String errorMsg = String.format("Error processing data stream for metric: %s", metricName);
+                String errorMsg = String.format("Failed to map local file for metric: %s", metricName);
                 logger.error(errorMsg, e);
                 throw new IllegalStateException(errorMsg, e);
             }
-            
-        } catch (Exception e) {
-            logger.error("Error in loadMetricData for metric: " + metricName, e);
-            throw e;
+        } else {
+            result = fetchRemote(metricInfo, parser, compression, predicatesToPush, requiredColumns);
+        }
+
+        if (result == null) {
+            String errorMsg = String.format("Parser returned null for metric: %s", metricName);
+            logger.error(errorMsg);
+            throw new IllegalStateException(errorMsg);
+        }
+        if (fileState != null) {
+            localFileCache.put(sourceKey, localFile.get(), fileState,
+                    metricInfo.getDataSourceType() == DataSourceType.FILE_CSV, result.share());
+        }
+        return result;
+    }
+
+    private static boolean isAppendable(DataSourceType type) {
+        return type == DataSourceType.FILE_CSV || type == DataSourceType.FILE_NDJSON;
+    }
+
+    /**
+     * Fetches and parses a streamed source. HTTP sources that were fetched before are revalidated with the
+     * validators of the last response; if the server answers 304 Not Modified, the table parsed from that
+     * response is shared instead of downloading and parsing the source again.
+     * Sources with the {@code hedge.percentile} option get a second request when the first is slow.
+     * Sources with the {@code incremental.column} option are fetched in full once; after that only the rows
+     * after the largest timestamp held are fetched and appended. The timestamp column is always loaded for them.
+     */
+    private UnifiedDataTable fetchRemote(MetricInfo metricInfo, DataParser parser, Compression compression,
+                                         List<Predicate> predicatesToPush, Set<String> requiredColumns) {
+        IncrementalRefresh incremental = IncrementalRefresh.fromOptions(
+                metricInfo.getSourceOption(IncrementalRefresh.COLUMN_OPTION, null),
+                metricInfo.getSourceOption(IncrementalRefresh.RETENTION_OPTION, null));
+        if (incremental != null && requiredColumns != null && !requiredColumns.isEmpty()
+                && !requiredColumns.contains(incremental.column())) {
+            requiredColumns = new HashSet<>(requiredColumns);
+            requiredColumns.add(incremental.column());
+        }
+        String sourceKey = sourceKey(metricInfo, predicatesToPush, requiredColumns);
+        PushdownCapabilities capabilities = predicatePushdownService.capabilitiesOf(metricInfo);
+        HedgePolicy hedge = HedgePolicy.fromOptions(metricInfo.getSourceOption(HedgePolicy.PERCENTILE_OPTION, null),
+                metricInfo.getSourceOption(HedgePolicy.MIRRORS_OPTION, null));
+        if (incremental != null) {
+            Optional<UnifiedDataTable> refreshed = fetchAfterWatermark(metricInfo, parser, compression, predicatesToPush,
+                    requiredColumns, incremental, sourceKey, capabilities, hedge);
+            if (refreshed.isPresent()) {
+                return refreshed.get();
+            }
+        }
+
+        SourceVersion known = incremental == null ? revalidationCache.getVersion(sourceKey).orElse(null) : null;
+        logger.info("Fetching data from: {} with pushdown predicates: {}", metricInfo.getSourceUrl(), predicatesToPush);
+        Optional<DataFetcherService.FetchedData> fetched = dataFetcherService.fetchIfModified(
+                metricInfo.getSourceUrl(), predicatesToPush, capabilities, compression, known, hedge);
+        if (fetched.isEmpty()) {
+            Optional<UnifiedDataTable> reused = revalidationCache.share(sourceKey);
+            if (reused.isPresent()) {
+                logger.info("Source of metric {} is unchanged; reusing the parsed table", metricInfo.getName());
+                return reused.get();
+            }
+            // The kept table was dropped between the request and now
+            fetched = dataFetcherService.fetchIfModified(metricInfo.getSourceUrl(), predicatesToPush, capabilities, compression, null, hedge);
+        }
+
+        UnifiedDataTable result = parseStream(metricInfo, parser, fetched.get(), predicatesToPush, requiredColumns);
+        SourceVersion version = fetched.get().version();
+        if (result != null && incremental != null) {
+            timeSeriesCache.put(sourceKey, incremental, result.share());
+        } else if (result != null && version != null && !version.isEmpty()) {
+            revalidationCache.put(sourceKey, version, result.share());
+        }
+        return result;
+    }
+
+    /**
+     * Fetches the rows after the watermark of the rows held for the source, sending {@code column > watermark},
+     * merged with any lower bound the query has on the column, to it along with the other predicates it filters,
+     * and appends them to the held rows.
+     *
+     * @return the updated rows, or empty if the source has to be fetched in full
+     */
+    private Optional<UnifiedDataTable> fetchAfterWatermark(MetricInfo metricInfo, DataParser parser, Compression compression,
+                                                           List<Predicate> predicatesToPush, Set<String> requiredColumns,
+                                                           IncrementalRefresh incremental, String sourceKey,
+                                                           PushdownCapabilities capabilities, HedgePolicy hedge) {
+        OptionalLong watermark = timeSeriesCache.getWatermark(sourceKey);
+        if (watermark.isEmpty()) {
+            return Optional.empty();
+        }
+        List<Predicate> deltaPredicates = incremental.after(watermark.getAsLong(), predicatesToPush);
+        List<Predicate> pushed = capabilities.split(deltaPredicates).pushedDown();
+        if (!deltaPredicates.stream().filter(incremental::isLowerBound).allMatch(pushed::contains)) {
+            logger.warn("Source of metric {} cannot filter {} > watermark; fetching it in full", metricInfo.getName(), incremental.column());
+            return Optional.empty();
+        }
+        logger.info("Fetching rows of metric {} after watermark {}={}", metricInfo.getName(), incremental.column(), watermark.getAsLong());
+        Optional<DataFetcherService.FetchedData> fetched = dataFetcherService.fetchIfModified(
+                metricInfo.getSourceUrl(), deltaPredicates, capabilities, compression, null, hedge);
+        // The source may treat the watermark as inclusive, so the parser filters the rows again
+        UnifiedDataTable rows = parseStream(metricInfo, parser, fetched.get(), deltaPredicates, requiredColumns);
+        if (rows == null) {
+            return Optional.empty();
+        }
+        return timeSeriesCache.append(sourceKey, incremental, rows);
+    }
+
+    private UnifiedDataTable parseStream(MetricInfo metricInfo, DataParser parser, DataFetcherService.FetchedData fetched,
+                                         List<Predicate> predicates, Set<String> requiredColumns) {
+        try (InputStream dataStream = fetched.body()) {
+            // Parse the data with column aliases and any applicable pushdown predicates
+            return parser.parse(
+                dataStream,
+                metricInfo.getFieldMappings(),
+                metricInfo.getDataPath(),
+                metricInfo.getColumnAlias(),
+                predicates,
+                requiredColumns
+            );
+        } catch (IOException e) {
+            String errorMsg = String.format("Error processing data stream for metric: %s", metricInfo.getName());
+            logger.error(errorMsg, e);
+            throw new IllegalStateException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Identifies what a fetch of the metric's source produces: the source, the pushed predicates and the
+     * projected columns.
+     */
+    private static String sourceKey(MetricInfo metricInfo, List<Predicate> predicatesToPush, Set<String> requiredColumns) {
+        return metricInfo.getName() + '|' + metricInfo.getSourceUrl() + '|' + predicatesToPush
+                + '|' + (requiredColumns == null ? "all" : new TreeSet<>(requiredColumns));
+    }
+
+    private boolean isMappable(Path file) {
+        try {
+            return Files.isRegularFile(file) && Files.size(file) <= Integer.MAX_VALUE;
+        } catch (IOException e) {
+            return false;
         }
     }
 
-    @CacheEvict(value = "metrics", key = "#metricName")
+    @Caching(evict = {@CacheEvict(value = "metrics", key = "#metricName"), @CacheEvict(value = "queryResults", allEntries = true)})
     public void evictMetricData(String metricName) {
         logger.info("Evicting metric data from cache: {}", metricName);
         // The actual eviction is handled by the @CacheEvict annotation
@@ -212,7 +488,8 @@ public class MetricService {
     }
     
 
-    private DataParser getParser(DataSourceType type) {
+    private DataParser getParser(MetricInfo metricInfo) {
+        DataSourceType type = metricInfo.getDataSourceType();
         logger.debug("Getting parser for data source type: {}", type);
         
         if (type == null) {
@@ -225,9 +502,19 @@ public class MetricService {
             case HTTP_JSON:
             case FILE_JSON:
                 return jsonDataParser;
+            case HTTP_NDJSON:
+            case FILE_NDJSON:
+                return ndjsonDataParser;
             case HTTP_CSV:
             case FILE_CSV:
-                return csvDataParser;
+                // Metrics opt into the byte-level tokenizer with the csv.reader=bytes source option
+                return ByteCsvDataParser.READER_NAME.equals(metricInfo.getSourceOption(ByteCsvDataParser.READER_OPTION, null))
+                        ? byteCsvDataParser : csvDataParser;
+            case HTTP_ARROW:
+            case FILE_ARROW:
+                return arrowIpcDataParser;
+            case FILE_PARQUET:
+                return parquetDataParser;
             default:
                 String errorMsg = "Unsupported data source type: " + type;
                 logger.error(errorMsg);
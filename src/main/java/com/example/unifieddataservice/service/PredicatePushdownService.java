@@ -2,6 +2,7 @@ package com.example.unifieddataservice.service;
 
 import com.example.unifieddataservice.model.MetricInfo;
 import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.PushdownCapabilities;
 import com.example.unifieddataservice.model.PushdownResult;
 import org.springframework.stereotype.Service;
 
@@ -18,8 +19,11 @@ public class PredicatePushdownService {
      * Analyzes a list of predicates against a given metric to determine
      * which can be pushed down to the data source.
      *
-     * <p><b>Current Logic (Simple):</b> Assumes all predicates can be pushed down.
-     * This can be extended to check data source capabilities, column existence, etc.</p>
+     * <p>Every predicate is pushed down to the parser, which applies it while reading rows, so rows that do not
+     * match are never materialized. HTTP sources are in addition sent the predicates their
+     * {@link PushdownCapabilities}, declared with the {@code pushdown.*} source options, say they can filter; the
+     * fetcher picks those with {@link PushdownCapabilities#split}. A source without declared capabilities is
+     * fetched in full and filtered by the parser.</p>
      *
      * @param predicates The list of predicates from the query.
      * @param metricInfo The metric being queried.
@@ -29,9 +33,14 @@ public class PredicatePushdownService {
         if (predicates == null || predicates.isEmpty()) {
             return new PushdownResult(Collections.emptyList(), Collections.emptyList());
         }
-
-        // For now, assume all predicates can be pushed down.
-        // Future logic could inspect metricInfo.getDataSourceType() or other metadata.
         return new PushdownResult(predicates, Collections.emptyList());
     }
+
+    /**
+     * @return the predicates the HTTP source of the metric can filter
+     * @throws IllegalArgumentException if the {@code pushdown.*} source options are malformed
+     */
+    public PushdownCapabilities capabilitiesOf(MetricInfo metricInfo) {
+        return PushdownCapabilities.fromOptions(metricInfo.getSourceOptions());
+    }
 }
@@ -0,0 +1,94 @@
+package com.example.unifieddataservice.service;
+
+import com.example.unifieddataservice.model.SourceVersion;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Keeps the last parsed table of each HTTP metric source together with the validators it was fetched with,
+ * so that an expired metric cache entry can be revalidated with a conditional request instead of a full
+ * download. The tables here share their buffers with the tables handed out to the metric cache, so keeping
+ * them costs no extra memory while the metric cache entry is alive.
+ *
+ * <p>Entries outlive the metric cache entries they back. An entry that has not been revalidated
+ * for the retention period is dropped and its table released.</p>
+ */
+@Component
+public class RevalidationCache {
+    private static final Logger logger = LoggerFactory.getLogger(RevalidationCache.class);
+
+    private final Cache<String, Entry> entries;
+
+    public RevalidationCache(@Value("${metrics.revalidation.retention:PT24H}") Duration retention,
+                             @Value("${metrics.revalidation.max-entries:100}") long maxEntries) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(retention)
+                // Release tables on the calling thread rather than in the background
+                .executor(Runnable::run)
+                .removalListener((RemovalListener<String, Entry>) (key, entry, cause) -> {
+                    if (entry != null) {
+                        logger.debug("Releasing revalidation entry for {} ({})", key, cause);
+                        entry.table().close();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * A parsed source table and the validators of the response it was parsed from.
+     */
+    record Entry(SourceVersion version, UnifiedDataTable table) {}
+
+    /**
+     * @return the validators of the table kept for the key, if any
+     */
+    public Optional<SourceVersion> getVersion(String key) {
+        Entry entry = entries.getIfPresent(key);
+        return entry == null ? Optional.empty() : Optional.of(entry.version());
+    }
+
+    /**
+     * Returns a new table sharing the buffers of the table kept for the key, after the source was
+     * confirmed unchanged. Reading the entry restarts its retention period.
+     *
+     * @return the shared table, or empty if the entry has been dropped in the meantime
+     */
+    public Optional<UnifiedDataTable> share(String key) {
+        UnifiedDataTable[] shared = new UnifiedDataTable[1];
+        // Sharing inside compute keeps the entry from being removed, and its table released, halfway through
+        entries.asMap().computeIfPresent(key, (k, entry) -> {
+            shared[0] = entry.table().share();
+            return entry;
+        });
+        return Optional.ofNullable(shared[0]);
+    }
+
+    /**
+     * Keeps a table for revalidation, replacing and releasing any earlier table of the key.
+     * The cache takes ownership of the table.
+     */
+    public void put(String key, SourceVersion version, UnifiedDataTable table) {
+        entries.put(key, new Entry(version, table));
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        entries.invalidateAll();
+        entries.cleanUp();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.unifieddataservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A response body that is read from the network once and replayed to every reader opened on it.
+ * Bytes are read in chunks by whichever reader first needs them; the other readers block only if they have
+ * caught up with the download.
+ *
+ * <p>New readers can join only while every byte read so far is still buffered, i.e. until the download
+ * ends, fails, all readers are closed or the replay limit is exceeded. From then on chunks that every open
+ * reader has passed are released, so a body read by a single reader never holds more than the replay limit.</p>
+ */
+final class SharedBody {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final long replayLimit;
+    private final Runnable onClosedToReaders;
+    private final ReentrantLock fillLock = new ReentrantLock();
+
+    // Guarded by this
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long firstChunk;
+    private long chunkCount;
+    private long length;
+    private boolean eof;
+    private IOException failure;
+    private boolean joinable = true;
+    private final List<Reader> readers = new ArrayList<>();
+
+    /**
+     * @param source            the body to share; null for an empty body
+     * @param replayLimit       the number of bytes after which no more readers can join
+     * @param onClosedToReaders called once when new readers can no longer join
+     */
+    SharedBody(InputStream source, long replayLimit, Runnable onClosedToReaders) {
+        this.source = source != null ? source : InputStream.nullInputStream();
+        this.replayLimit = replayLimit;
+        this.onClosedToReaders = onClosedToReaders;
+    }
+
+    /**
+     * Opens a reader from the first byte of the body.
+     *
+     * @return the reader, or null if the body can no longer be joined
+     */
+    synchronized InputStream open() {
+        if (!joinable) {
+            return null;
+        }
+        Reader reader = new Reader();
+        readers.add(reader);
+        return reader;
+    }
+
+    private void closeToReaders() {
+        if (joinable) {
+            joinable = false;
+            onClosedToReaders.run();
+        }
+        releaseConsumedChunks();
+    }
+
+    private void releaseConsumedChunks() {
+        long keepFrom = firstChunk + chunks.size();
+        for (Reader reader : readers) {
+            keepFrom = Math.min(keepFrom, reader.chunk);
+        }
+        while (firstChunk < keepFrom) {
+            chunks.remove(0);
+            firstChunk++;
+        }
+    }
+
+    /**
+     * Reads the next chunk from the source, unless another reader did so since {@code seenChunks} was observed.
+     */
+    private void fill(long seenChunks) throws IOException {
+        fillLock.lock();
+        try {
+            synchronized (this) {
+                if (chunkCount != seenChunks || eof || failure != null) {
+                    return;
+                }
+            }
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            try {
+                read = source.read(buffer, 0, buffer.length);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    closeToReaders();
+                }
+                throw e;
+            }
+            synchronized (this) {
+                if (read < 0) {
+                    eof = true;
+                    closeToReaders();
+                    source.close();
+                    return;
+                }
+                chunks.add(read == buffer.length ? buffer : java.util.Arrays.copyOf(buffer, read));
+                chunkCount++;
+                length += read;
+                if (length > replayLimit) {
+                    closeToReaders();
+                }
+            }
+        } finally {
+            fillLock.unlock();
+        }
+    }
+
+    private final class Reader extends InputStream {
+        private long chunk;
+        private int offset;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                long seenChunks;
+                synchronized (SharedBody.this) {
+                    if (closed) {
+                        throw new IOException("Stream closed");
+                    }
+                    if (chunk < firstChunk + chunks.size()) {
+                        byte[] data = chunks.get((int) (chunk - firstChunk));
+                        int n = Math.min(len, data.length - offset);
+                        System.arraycopy(data, offset, b, off, n);
+                        offset += n;
+                        if (offset == data.length) {
+                            chunk++;
+                            offset = 0;
+                            if (!joinable) {
+                                releaseConsumedChunks();
+                            }
+                        }
+                        return n;
+                    }
+                    if (failure != null) {
+                        throw new IOException("Shared download failed: " + failure.getMessage(), failure);
+                    }
+                    if (eof) {
+                        return -1;
+                    }
+                    seenChunks = chunkCount;
+                }
+                fill(seenChunks);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (SharedBody.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                readers.remove(this);
+                if (readers.isEmpty()) {
+                    // Nobody is left to read the rest, so the download is abandoned
+                    closeToReaders();
+                    chunks.clear();
+                    if (!eof) {
+                        source.close();
+                    }
+                } else if (!joinable) {
+                    releaseConsumedChunks();
+                }
+            }
+        }
+    }
+}
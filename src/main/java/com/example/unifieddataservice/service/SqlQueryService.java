@@ -1,19 +1,22 @@
 package com.example.unifieddataservice.service;
 
 import com.example.unifieddataservice.model.MetricQueryPlan;
-import com.example.unifieddataservice.model.Operator;
 import com.example.unifieddataservice.model.Predicate;
 import com.example.unifieddataservice.model.TableDefinition;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
 
 import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.ColumnarGather;
+import com.example.unifieddataservice.service.filter.Condition;
+import com.example.unifieddataservice.service.filter.ExpressionCompiler;
+import com.example.unifieddataservice.service.filter.NumericExpression;
+import com.example.unifieddataservice.service.filter.PredicateExtractor;
+import com.example.unifieddataservice.service.filter.Selection;
+import com.example.unifieddataservice.util.ArrowDictionaries;
 import com.example.unifieddataservice.util.ArrowJoinUtil;
 import net.sf.jsqlparser.expression.Expression;
-import net.sf.jsqlparser.expression.LongValue;
-import net.sf.jsqlparser.expression.StringValue;
-import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
-import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
@@ -24,9 +27,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.apache.arrow.memory.RootAllocator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import jakarta.annotation.PreDestroy;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
@@ -35,6 +44,9 @@ import java.util.HexFormat;
 /**
  * Parses simple SELECT statements and orchestrates metric fetch & join.
  * Supports: SELECT field1, field2 FROM table WHERE pk1 = 'x' AND pk2 = 20250101
+ * Conditions beyond column/literal comparisons (OR, NOT, BETWEEN, LIKE, IS NULL, arithmetic) and computed
+ * columns such as {@code close * volume AS turnover} are compiled with {@link ExpressionCompiler} and
+ * evaluated on the joined table.
  */
 @Service
 public class SqlQueryService {
@@ -52,14 +64,28 @@ public class SqlQueryService {
     private final TableRegistry tableRegistry;
     private final MetricService metricService;
     private final ArrowJoinUtil arrowJoinUtil;
+    // Metric loads wait on the network, so they run here rather than on the common ForkJoinPool
+    private final ExecutorService metricLoadExecutor;
 
     @Autowired
     private RootAllocator allocator;
 
-    public SqlQueryService(TableRegistry tableRegistry, MetricService metricService, ArrowJoinUtil arrowJoinUtil) {
+    public SqlQueryService(TableRegistry tableRegistry, MetricService metricService, ArrowJoinUtil arrowJoinUtil,
+                           @Value("${query.metric-load.threads:32}") int metricLoadThreads) {
         this.tableRegistry = tableRegistry;
         this.metricService = metricService;
         this.arrowJoinUtil = arrowJoinUtil;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.metricLoadExecutor = Executors.newFixedThreadPool(metricLoadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "metric-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        metricLoadExecutor.shutdownNow();
     }
 
     @org.springframework.cache.annotation.Cacheable(value = "queryResults", key = "#sql", sync = true)
@@ -69,26 +95,150 @@ public class SqlQueryService {
         // Fetch metrics in parallel
         Set<String> uniqueMetricNames = new HashSet<>(plan.getFieldMetricMapping().values());
         Map<String, CompletableFuture<UnifiedDataTable>> futureMap = new LinkedHashMap<>();
+        Set<String> keyColumns = keyColumns(plan.getTableDefinition());
         for (String metricName : uniqueMetricNames) {
-            futureMap.put(metricName, CompletableFuture.supplyAsync(() -> metricService.getMetricData(metricName, plan.getPredicates())));
+            Set<String> requiredColumns = plan.getMetricColumns() != null ? plan.getMetricColumns().get(metricName) : null;
+            futureMap.put(metricName, CompletableFuture.supplyAsync(
+                    () -> metricService.getMetricData(metricName, plan.getPredicates(), requiredColumns, keyColumns), metricLoadExecutor));
         }
 
-        Map<String, UnifiedDataTable> metricDataMap = new LinkedHashMap<>();
-        for (Map.Entry<String, CompletableFuture<UnifiedDataTable>> e : futureMap.entrySet()) {
-            metricDataMap.put(e.getKey(), e.getValue().join());
+        // Each table is a share of the cached one that belongs to this query
+        List<UnifiedDataTable> tables = new ArrayList<>();
+        try {
+            for (CompletableFuture<UnifiedDataTable> future : futureMap.values()) {
+                tables.add(future.join());
+            }
+        } catch (RuntimeException e) {
+            // Release the tables of the metrics that did load, once they have
+            futureMap.values().forEach(future -> future.thenAccept(UnifiedDataTable::close));
+            throw e;
         }
 
-        if (metricDataMap.isEmpty()) {
+        if (tables.isEmpty()) {
             throw new IllegalStateException("No data fetched for query");
         }
 
         // Join tables
-        List<UnifiedDataTable> tables = new ArrayList<>(metricDataMap.values());
-        UnifiedDataTable joined = arrowJoinUtil.joinOnKeys(tables, plan.getTableDefinition().getPrimaryKeys(), plan.getTableDefinition().getFieldMapping());
+        UnifiedDataTable joined = null;
+        UnifiedDataTable result = null;
+        try {
+            joined = arrowJoinUtil.joinOnKeys(tables, plan.getTableDefinition().getPrimaryKeys(), plan.getTableDefinition().getFieldMapping());
+            // Predicates are pushed down; what remains of the WHERE clause and the computed columns are evaluated here
+            result = hasExpressions(plan) ? evaluateExpressions(joined, plan) : joined;
+            return result;
+        } finally {
+            // A single metric is returned as the join result itself
+            for (UnifiedDataTable table : tables) {
+                if (table != result) {
+                    table.close();
+                }
+            }
+            if (joined != null && joined != result && !tables.contains(joined)) {
+                joined.close();
+            }
+        }
+    }
+
+    private static boolean hasExpressions(MetricQueryPlan plan) {
+        return (plan.getResidualConditions() != null && !plan.getResidualConditions().isEmpty())
+                || (plan.getComputedFields() != null && !plan.getComputedFields().isEmpty());
+    }
+
+    /**
+     * Evaluates the WHERE conditions that were not pushed down and the computed SELECT columns over the joined
+     * table, a record batch at a time. The conditions select the rows first, so only the rows that pass are
+     * gathered and computed. Fields loaded only for the expressions are left out of the result.
+     */
+    private UnifiedDataTable evaluateExpressions(UnifiedDataTable joined, MetricQueryPlan plan) {
+        Map<String, String> fieldMapping = plan.getTableDefinition().getFieldMapping();
+        ExpressionCompiler compiler = ExpressionCompiler.forTable(joined, fieldMapping);
+        List<Condition> conditions = new ArrayList<>();
+        if (plan.getResidualConditions() != null) {
+            plan.getResidualConditions().forEach(condition -> conditions.add(compiler.compileCondition(condition)));
+        }
+        Map<String, NumericExpression> computed = new LinkedHashMap<>();
+        if (plan.getComputedFields() != null) {
+            plan.getComputedFields().forEach((name, expression) -> computed.put(name, compiler.compileNumeric(expression)));
+        }
+        logger.debug("Evaluating conditions {} and computed columns {}", conditions, computed);
+
+        Schema schema = joined.getSchema();
+        Map<String, String> mapping = fieldMapping != null ? fieldMapping : Collections.emptyMap();
+        Set<String> dropped = new HashSet<>();
+        if (plan.getExpressionOnlyFields() != null) {
+            for (String field : plan.getExpressionOnlyFields()) {
+                dropped.add(field);
+                dropped.add(mapping.getOrDefault(field, field));
+            }
+            // A column is kept if a selected field, a key or a predicate reads it too
+            List<String> keptNames = new ArrayList<>(plan.getSelectFields());
+            keptNames.addAll(plan.getTableDefinition().getPrimaryKeys());
+            plan.getPredicates().forEach(predicate -> keptNames.add(predicate.columnName()));
+            for (String field : keptNames) {
+                dropped.remove(field);
+                dropped.remove(mapping.getOrDefault(field, field));
+            }
+        }
+        List<Field> keptFields = schema.getFields().stream().filter(f -> !dropped.contains(f.getName())).collect(Collectors.toList());
+        for (String name : computed.keySet()) {
+            if (keptFields.stream().anyMatch(f -> f.getName().equals(name))) {
+                throw new IllegalArgumentException("Computed column '" + name + "' clashes with a column of the result");
+            }
+        }
+
+        List<VectorSchemaRoot> batches = new ArrayList<>();
+        try {
+            for (VectorSchemaRoot batch : joined.getBatches()) {
+                Selection selection = Selection.all(batch.getRowCount());
+                for (Condition condition : conditions) {
+                    if (selection.isEmpty()) {
+                        break;
+                    }
+                    condition.filter(batch, selection);
+                }
+                if (!selection.isEmpty()) {
+                    batches.add(project(ColumnarGather.gather(batch, selection, allocator), dropped, computed));
+                }
+            }
+            if (batches.isEmpty()) {
+                // An empty result still needs one batch to carry its schema
+                VectorSchemaRoot first = joined.getBatches().get(0);
+                batches.add(project(ColumnarGather.gather(first, Selection.none(first.getRowCount()), allocator), dropped, computed));
+            }
+        } catch (RuntimeException e) {
+            batches.forEach(VectorSchemaRoot::close);
+            throw e;
+        }
+        DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        ArrowDictionaries.copyInto(joined.getDictionaries(), keptFields, dictionaries, allocator);
+        return new UnifiedDataTable(joined.getTableName(), batches, dictionaries);
+    }
 
-        // The WHERE clause is now pushed down, so no need to apply it here.
-        // The applyWhereClauseFilter method will be removed.
-        return joined;
+    /**
+     * Replaces the dropped columns of a gathered batch with the computed ones.
+     */
+    private VectorSchemaRoot project(VectorSchemaRoot gathered, Set<String> dropped, Map<String, NumericExpression> computed) {
+        List<FieldVector> vectors = new ArrayList<>();
+        List<FieldVector> computedVectors = new ArrayList<>();
+        try {
+            for (Map.Entry<String, NumericExpression> e : computed.entrySet()) {
+                computedVectors.add(e.getValue().evaluate(gathered, e.getKey(), allocator));
+            }
+        } catch (RuntimeException e) {
+            computedVectors.forEach(FieldVector::close);
+            gathered.close();
+            throw e;
+        }
+        for (FieldVector vector : gathered.getFieldVectors()) {
+            if (dropped.contains(vector.getField().getName())) {
+                vector.close();
+            } else {
+                vectors.add(vector);
+            }
+        }
+        vectors.addAll(computedVectors);
+        List<Field> fields = vectors.stream().map(FieldVector::getField).collect(Collectors.toList());
+        return new VectorSchemaRoot(fields, vectors, gathered.getRowCount());
     }
 
     /**
@@ -101,7 +251,7 @@ public class SqlQueryService {
                 throw new IllegalArgumentException("Only SELECT is supported");
             }
 
-            PlainSelect ps = (PlainSelect) ((Select) stmt).getSelectBody();
+            PlainSelect ps = ((Select) stmt).getPlainSelect();
             String tableName = ((Table) ps.getFromItem()).getName().replaceAll("^[\"`]|[\"`]$", "");
 
             if (tableName.isEmpty()) {
@@ -115,13 +265,21 @@ public class SqlQueryService {
             TableDefinition td = tableRegistry.getByName(tableName)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown table: " + tableName));
 
-            List<String> selectFields;
+            List<String> selectFields = new ArrayList<>();
+            Map<String, Expression> computedFields = new LinkedHashMap<>();
             if (((SelectItem) ps.getSelectItems().get(0)).getExpression() instanceof AllColumns) {
-                selectFields = new ArrayList<>(td.getFieldMapping().keySet());
+                selectFields.addAll(td.getFieldMapping().keySet());
             } else {
-                selectFields = ps.getSelectItems().stream()
-                    .map(item -> ((Column) item.getExpression()).getColumnName())
-                    .collect(Collectors.toList());
+                for (SelectItem<?> item : ps.getSelectItems()) {
+                    if (item.getExpression() instanceof Column column) {
+                        selectFields.add(column.getColumnName());
+                    } else {
+                        String name = item.getAlias() != null ? item.getAlias().getName() : item.getExpression().toString();
+                        if (selectFields.contains(name) || computedFields.put(name, item.getExpression()) != null) {
+                            throw new IllegalArgumentException("Duplicate output column '" + name + "'");
+                        }
+                    }
+                }
             }
 
             Map<String, String> fieldMetricMap = new LinkedHashMap<>();
@@ -135,8 +293,9 @@ public class SqlQueryService {
 
             Map<String, Object> pkValues = new HashMap<>();
             List<Predicate> predicates = new ArrayList<>();
+            List<Expression> residualConditions = new ArrayList<>();
             if (ps.getWhere() != null) {
-                extractPredicates(ps.getWhere(), predicates);
+                PredicateExtractor.extract(ps.getWhere(), predicates, residualConditions);
             }
 
             // This primary key check might need to be re-evaluated or moved,
@@ -152,12 +311,31 @@ public class SqlQueryService {
                 }
             }
 
+            // Metric fields the expressions read are loaded along with the selected ones and dropped after evaluation
+            Set<String> expressionColumns = new LinkedHashSet<>();
+            computedFields.values().forEach(e -> expressionColumns.addAll(ExpressionCompiler.columnsOf(e)));
+            residualConditions.forEach(e -> expressionColumns.addAll(ExpressionCompiler.columnsOf(e)));
+            Set<String> expressionOnlyFields = new LinkedHashSet<>();
+            for (String column : expressionColumns) {
+                String metricName = td.getMetricFields().get(column);
+                if (metricName != null && !fieldMetricMap.containsKey(column)) {
+                    fieldMetricMap.put(column, metricName);
+                    if (!predicateColumns.contains(column) && !td.getPrimaryKeys().contains(column)) {
+                        expressionOnlyFields.add(column);
+                    }
+                }
+            }
+
             return MetricQueryPlan.builder()
                 .tableName(tableName)
                 .tableDefinition(td)
                 .selectFields(selectFields)
                 .fieldMetricMapping(fieldMetricMap)
+                .metricColumns(requiredColumnsByMetric(td, fieldMetricMap, predicates, expressionColumns))
                 .predicates(predicates) // Use the new predicates list
+                .residualConditions(residualConditions)
+                .computedFields(computedFields)
+                .expressionOnlyFields(expressionOnlyFields)
                 .build();
         } catch (Exception e) {
             logger.error("Failed to parse SQL: {}", sql, e);
@@ -166,33 +344,52 @@ public class SqlQueryService {
     }
 
 
-    private void extractPredicates(Expression expression, List<Predicate> predicates) {
-        if (expression instanceof AndExpression) {
-            AndExpression and = (AndExpression) expression;
-            extractPredicates(and.getLeftExpression(), predicates);
-            extractPredicates(and.getRightExpression(), predicates);
-        } else if (expression instanceof EqualsTo) {
-            addPredicate((EqualsTo) expression, Operator.EQUALS, predicates);
-        } // Add other operators like >, <, etc. here as needed
+    /**
+     * @return the logical and physical names of the primary keys of the table
+     */
+    private Set<String> keyColumns(TableDefinition td) {
+        Set<String> keyColumns = new LinkedHashSet<>();
+        if (td.getPrimaryKeys() != null) {
+            Map<String, String> fieldMapping = td.getFieldMapping() != null ? td.getFieldMapping() : Collections.emptyMap();
+            for (String pk : td.getPrimaryKeys()) {
+                keyColumns.add(pk);
+                keyColumns.add(fieldMapping.getOrDefault(pk, pk));
+            }
+        }
+        return keyColumns;
     }
 
-    private void addPredicate(net.sf.jsqlparser.expression.operators.relational.EqualsTo expression, Operator op, List<Predicate> predicates) {
-        if (!(expression.getLeftExpression() instanceof Column)) {
-            throw new IllegalArgumentException("Unsupported WHERE clause structure: " + expression);
-        }
-        String columnName = ((Column) expression.getLeftExpression()).getColumnName();
-        Expression rightExpr = expression.getRightExpression();
-        Object value;
+    /**
+     * Works out which columns each metric must materialize: its selected fields plus the join keys,
+     * predicate columns and columns read by expressions, which are always kept. Both logical and physical
+     * names are included because metrics map fields under either.
+     */
+    private Map<String, Set<String>> requiredColumnsByMetric(TableDefinition td, Map<String, String> fieldMetricMap, List<Predicate> predicates,
+                                                             Set<String> expressionColumns) {
+        Map<String, String> fieldMapping = td.getFieldMapping() != null ? td.getFieldMapping() : Collections.emptyMap();
 
-        if (rightExpr instanceof StringValue) {
-            value = ((StringValue) rightExpr).getValue();
-        } else if (rightExpr instanceof LongValue) {
-            value = ((LongValue) rightExpr).getValue();
-        } else {
-            throw new IllegalArgumentException("Unsupported value type for column " + columnName + ": " + rightExpr.getClass().getSimpleName());
+        Set<String> sharedColumns = new LinkedHashSet<>();
+        if (td.getPrimaryKeys() != null) {
+            for (String pk : td.getPrimaryKeys()) {
+                sharedColumns.add(pk);
+                sharedColumns.add(fieldMapping.getOrDefault(pk, pk));
+            }
+        }
+        for (Predicate predicate : predicates) {
+            sharedColumns.add(predicate.columnName());
+            sharedColumns.add(fieldMapping.getOrDefault(predicate.columnName(), predicate.columnName()));
+        }
+        for (String column : expressionColumns) {
+            sharedColumns.add(column);
+            sharedColumns.add(fieldMapping.getOrDefault(column, column));
         }
-        predicates.add(new Predicate(columnName, op, value));
-    }
-
 
+        Map<String, Set<String>> metricColumns = new LinkedHashMap<>();
+        fieldMetricMap.forEach((field, metricName) -> {
+            Set<String> columns = metricColumns.computeIfAbsent(metricName, k -> new LinkedHashSet<>(sharedColumns));
+            columns.add(field);
+            columns.add(fieldMapping.getOrDefault(field, field));
+        });
+        return metricColumns;
+    }
 }
@@ -0,0 +1,191 @@
+package com.example.unifieddataservice.service;
+
+import com.example.unifieddataservice.model.IncrementalRefresh;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Keeps the rows fetched so far from each HTTP time series refreshed incrementally, together with their
+ * watermark, the largest timestamp among them. Rows fetched after the watermark are appended to the kept table,
+ * merged into its last batch while that stays small. With a retention window, batches whose rows all lie further
+ * behind the watermark than the window are dropped as a whole, so a few rows older than the window may be kept
+ * until the rest of their batch expires too. New rows are not merged into a batch already holding expired rows.
+ */
+@Component
+public class TimeSeriesCache {
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesCache.class);
+
+    private final Cache<String, Entry> entries;
+
+    public TimeSeriesCache(@Value("${metrics.incremental.idle-timeout:PT24H}") Duration retention,
+                           @Value("${metrics.incremental.max-entries:100}") long maxEntries) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(retention)
+                // Release tables on the calling thread rather than in the background
+                .executor(Runnable::run)
+                .removalListener((RemovalListener<String, Entry>) (key, entry, cause) -> {
+                    if (entry != null) {
+                        logger.debug("Releasing time series entry for {} ({})", key, cause);
+                        entry.table().close();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * The rows fetched so far and the largest timestamp among them.
+     */
+    record Entry(long watermark, UnifiedDataTable table) {}
+
+    /**
+     * @return the watermark of the rows kept for the key, if any
+     */
+    public OptionalLong getWatermark(String key) {
+        Entry entry = entries.getIfPresent(key);
+        return entry == null ? OptionalLong.empty() : OptionalLong.of(entry.watermark());
+    }
+
+    /**
+     * Appends rows fetched after the watermark to the rows kept for the key, moves the watermark up to the
+     * largest new timestamp and drops the batches that fell out of the retention window. The cache takes
+     * ownership of the new rows.
+     *
+     * @return a new table sharing the buffers of the updated rows, or empty if the entry has been dropped in the
+     * meantime and the source has to be fetched in full
+     */
+    public Optional<UnifiedDataTable> append(String key, IncrementalRefresh refresh, UnifiedDataTable rows) {
+        UnifiedDataTable[] shared = new UnifiedDataTable[1];
+        // Appending inside compute keeps the entry from being removed, and its table released, halfway through
+        entries.asMap().computeIfPresent(key, (k, entry) -> {
+            if (rows.getRowCount() == 0) {
+                rows.close();
+                shared[0] = entry.table().share();
+                return entry;
+            }
+            try {
+                long watermark = Math.max(entry.watermark(), maxTimestamp(rows, refresh.column()).orElse(entry.watermark()));
+                int appendedRows = rows.getRowCount();
+                UnifiedDataTable appended = entry.table().append(rows, maxTailRows(entry.table(), refresh, watermark));
+                UnifiedDataTable retained = appended;
+                if (refresh.retention() > 0) {
+                    long cutoff = watermark - refresh.retention();
+                    try (UnifiedDataTable all = appended) {
+                        retained = all.retainBatches(batch -> maxTimestamp(batch, refresh.column()).orElse(Long.MAX_VALUE) >= cutoff);
+                    }
+                }
+                logger.info("Appended {} rows after watermark {} to {}; keeping {} rows", appendedRows, entry.watermark(), k, retained.getRowCount());
+                shared[0] = retained.share();
+                return new Entry(watermark, retained);
+            } catch (RuntimeException e) {
+                logger.warn("Could not append rows to {}; fetching it in full", k, e);
+                return null;
+            }
+        });
+        if (shared[0] == null) {
+            rows.close();
+        }
+        return Optional.ofNullable(shared[0]);
+    }
+
+    /**
+     * Keeps a table fetched in full, with the largest timestamp of the column as its watermark. The cache takes
+     * ownership of the table, and releases it if the column holds no timestamps.
+     */
+    public void put(String key, IncrementalRefresh refresh, UnifiedDataTable table) {
+        OptionalLong watermark;
+        try {
+            watermark = maxTimestamp(table, refresh.column());
+        } catch (RuntimeException e) {
+            logger.warn("Cannot refresh {} incrementally", key, e);
+            watermark = OptionalLong.empty();
+        }
+        if (watermark.isEmpty()) {
+            logger.debug("Not keeping {}: column {} holds no timestamps", key, refresh.column());
+            table.close();
+            return;
+        }
+        entries.put(key, new Entry(watermark.getAsLong(), table));
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        entries.invalidateAll();
+        entries.cleanUp();
+    }
+
+    /**
+     * New rows are merged into the last batch only while all of its rows are inside the retention window,
+     * so that merging never keeps expired rows alive.
+     */
+    private static int maxTailRows(UnifiedDataTable table, IncrementalRefresh refresh, long watermark) {
+        if (refresh.retention() <= 0) {
+            return UnifiedDataTable.TAIL_BATCH_ROWS;
+        }
+        List<VectorSchemaRoot> batches = table.getBatches();
+        VectorSchemaRoot tail = batches.get(batches.size() - 1);
+        OptionalLong oldest = minTimestamp(tail, refresh.column());
+        return oldest.isEmpty() || oldest.getAsLong() >= watermark - refresh.retention() ? UnifiedDataTable.TAIL_BATCH_ROWS : 0;
+    }
+
+    private static OptionalLong maxTimestamp(UnifiedDataTable table, String column) {
+        OptionalLong max = OptionalLong.empty();
+        for (VectorSchemaRoot batch : table.getBatches()) {
+            OptionalLong batchMax = maxTimestamp(batch, column);
+            if (batchMax.isPresent() && (max.isEmpty() || batchMax.getAsLong() > max.getAsLong())) {
+                max = batchMax;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the largest value of a LONG or TIMESTAMP column in the batch, or empty if it has none
+     * @throws IllegalArgumentException if the batch has no such column
+     */
+    static OptionalLong maxTimestamp(VectorSchemaRoot batch, String column) {
+        return timestamps(batch, column).max();
+    }
+
+    /**
+     * @return the smallest value of a LONG or TIMESTAMP column in the batch, or empty if it has none
+     * @throws IllegalArgumentException if the batch has no such column
+     */
+    static OptionalLong minTimestamp(VectorSchemaRoot batch, String column) {
+        return timestamps(batch, column).min();
+    }
+
+    private static LongStream timestamps(VectorSchemaRoot batch, String column) {
+        FieldVector vector = batch.getVector(column);
+        if (!(vector instanceof BigIntVector) && !(vector instanceof TimeStampVector)) {
+            throw new IllegalArgumentException("Incremental refresh column " + column + " is not a LONG or TIMESTAMP column");
+        }
+        BaseFixedWidthVector values = (BaseFixedWidthVector) vector;
+        return IntStream.range(0, batch.getRowCount())
+                .filter(row -> !values.isNull(row))
+                .mapToLong(row -> values.getDataBuffer().getLong((long) row * Long.BYTES));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.parser.DataTypeMapper;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bitmap index of one column of a table: for each distinct value, a {@link RoaringBitmap} of the rows holding
+ * it in each batch. Equality and IN predicates are answered by OR-ing the bitmaps of their literals into a
+ * {@link Selection} per batch, without reading the column.
+ *
+ * <p>The index is built lazily and only pays off on tables that are filtered again and again, such as the
+ * cached tables of metric sources: the first lookup on a column only counts, and the index is built on the
+ * second. Columns of more distinct values than the configured limit are not indexed. Strings, dictionary-encoded
+ * strings, integers, timestamps and booleans can be indexed.</p>
+ */
+public final class BitmapIndex {
+    private static final Logger logger = LoggerFactory.getLogger(BitmapIndex.class);
+    private static final RoaringBitmap[] ABSENT = new RoaringBitmap[0];
+
+    private int lookups;
+    private boolean unindexable;
+    private DataType dataType;
+    // Values as String, Long or Boolean -> the rows holding them in each batch, null where a batch has none
+    private Map<Object, RoaringBitmap[]> postings;
+
+    /**
+     * Selects the rows of each batch of the table that match an equality or IN predicate on the column.
+     *
+     * @param column         the field the predicate was resolved to
+     * @param maxCardinality the most distinct values the column may have to be indexed
+     * @return a selection for each batch of the table, or null if the predicate is of another kind, the column
+     *         is not indexed (yet) or a literal does not fit its type
+     */
+    public synchronized Selection[] lookup(UnifiedDataTable table, String column, Predicate predicate, int maxCardinality) {
+        if (unindexable || (predicate.operator() != Operator.EQUALS && predicate.operator() != Operator.IN)) {
+            return null;
+        }
+        if (postings == null) {
+            if (++lookups < 2) {
+                return null;
+            }
+            build(table, column, maxCardinality);
+            if (unindexable) {
+                return null;
+            }
+        }
+        Collection<?> literals = PredicateCompiler.inValues(predicate.value());
+        List<RoaringBitmap[]> matches = new ArrayList<>(literals.size());
+        for (Object literal : literals) {
+            if (literal == null) {
+                // Null literals never match
+                continue;
+            }
+            Object key = keyOf(literal);
+            if (key == null) {
+                return null;
+            }
+            matches.add(postings.getOrDefault(key, ABSENT));
+        }
+        List<VectorSchemaRoot> batches = table.getBatches();
+        Selection[] selections = new Selection[batches.size()];
+        for (int batch = 0; batch < selections.length; batch++) {
+            selections[batch] = Selection.none(batches.get(batch).getRowCount());
+            for (RoaringBitmap[] rows : matches) {
+                if (batch < rows.length && rows[batch] != null) {
+                    rows[batch].orInto(selections[batch].words());
+                }
+            }
+        }
+        return selections;
+    }
+
+    private void build(UnifiedDataTable table, String column, int maxCardinality) {
+        Field field = table.getSchema().getFields().stream().filter(f -> f.getName().equals(column)).findFirst().orElse(null);
+        dataType = field != null ? DataTypeMapper.fromField(field, table.getDictionaries()) : null;
+        if (dataType == null || dataType == DataType.DOUBLE
+                || (dataType == DataType.DICTIONARY_STRING && field.getDictionary().getIndexType().getBitWidth() != 32)) {
+            unindexable = true;
+            return;
+        }
+        String[] dictionaryValues = null;
+        if (dataType == DataType.DICTIONARY_STRING) {
+            FieldVector dictionary = table.getDictionaries().lookup(field.getDictionary().getId()).getVector();
+            dictionaryValues = new String[dictionary.getValueCount()];
+            for (int code = 0; code < dictionaryValues.length; code++) {
+                dictionaryValues[code] = dictionary.isNull(code) ? null : dictionary.getObject(code).toString();
+            }
+        }
+        List<VectorSchemaRoot> batches = table.getBatches();
+        Map<Object, RoaringBitmap[]> built = new HashMap<>();
+        for (int batch = 0; batch < batches.size(); batch++) {
+            FieldVector vector = batches.get(batch).getVector(column);
+            for (int row = 0; row < vector.getValueCount(); row++) {
+                if (vector.isNull(row)) {
+                    continue;
+                }
+                Object key = dictionaryValues != null ? dictionaryValues[vector.getDataBuffer().getInt((long) row * 4)] : valueAt(vector, row);
+                RoaringBitmap[] rows = built.get(key);
+                if (rows == null) {
+                    if (built.size() == maxCardinality) {
+                        logger.debug("Column {} of {} has more than {} distinct values and is not indexed", column, table.getTableName(), maxCardinality);
+                        unindexable = true;
+                        return;
+                    }
+                    rows = new RoaringBitmap[batches.size()];
+                    built.put(key, rows);
+                }
+                if (rows[batch] == null) {
+                    rows[batch] = new RoaringBitmap();
+                }
+                rows[batch].add(row);
+            }
+        }
+        long bytes = 0;
+        for (RoaringBitmap[] rows : built.values()) {
+            for (RoaringBitmap bitmap : rows) {
+                if (bitmap != null) {
+                    bitmap.trim();
+                    bytes += bitmap.sizeInBytes();
+                }
+            }
+        }
+        logger.debug("Indexed column {} of {}: {} distinct values in {} bytes", column, table.getTableName(), built.size(), bytes);
+        postings = built;
+    }
+
+    private Object valueAt(FieldVector vector, int row) {
+        switch (dataType) {
+            case LONG:
+            case TIMESTAMP:
+                return vector.getDataBuffer().getLong((long) row * 8);
+            case BOOLEAN:
+                return (vector.getDataBuffer().getByte(row >>> 3) & (1 << (row & 7))) != 0;
+            default:
+                ArrowBuf offsets = vector.getOffsetBuffer();
+                int start = offsets.getInt((long) row * 4);
+                byte[] bytes = new byte[offsets.getInt((long) (row + 1) * 4) - start];
+                vector.getDataBuffer().getBytes(start, bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the literal as a key of the postings, or null if it does not fit the column's type
+     */
+    private Object keyOf(Object literal) {
+        switch (dataType) {
+            case LONG:
+            case TIMESTAMP:
+                if (literal instanceof Long || literal instanceof Integer || literal instanceof Short || literal instanceof Byte) {
+                    return ((Number) literal).longValue();
+                }
+                try {
+                    return Long.parseLong(literal.toString().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            case BOOLEAN:
+                if (literal instanceof Boolean) {
+                    return literal;
+                }
+                String text = literal.toString().trim();
+                if ("true".equalsIgnoreCase(text) || "1".equals(text)) {
+                    return Boolean.TRUE;
+                }
+                return "false".equalsIgnoreCase(text) || "0".equals(text) ? Boolean.FALSE : null;
+            default:
+                return literal.toString();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.unifieddataservice.service.filter;
+
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * A single predicate compiled against one column type.
+ * The literal is parsed once at compile time; evaluation reads the vector's buffers directly.
+ * Null cells never match.
+ */
+@FunctionalInterface
+public interface ColumnPredicate {
+
+    boolean test(FieldVector vector, int row);
+
+    /**
+     * Deselects the selected rows of a batch that do not match. Typed predicates override this with a kernel
+     * that evaluates 64 rows at a time over the vector's buffers; the default tests the selected rows one by one.
+     *
+     * @param vector    the column of the batch
+     * @param selection the selected rows of the batch, updated in place
+     */
+    default void filter(FieldVector vector, Selection selection) {
+        long[] words = selection.words();
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            long keep = bits;
+            while (bits != 0) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                if (!test(vector, (word << 6) + bit)) {
+                    keep &= ~(1L << bit);
+                }
+                bits &= bits - 1;
+            }
+            words[word] = keep;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.unifieddataservice.service.filter;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.BitVectorHelper;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the selected rows of a record batch into a new batch, one column at a time. Runs of consecutive
+ * selected rows are copied with one buffer copy each, so a selective filter costs little more than the rows
+ * it keeps and a filter keeping most rows copies whole stretches of memory. Vectors without nulls get their
+ * validity set in bulk.
+ */
+public final class ColumnarGather {
+
+    private ColumnarGather() {
+    }
+
+    /**
+     * @return a new batch with the same schema holding the selected rows, allocated from {@code allocator}
+     */
+    public static VectorSchemaRoot gather(VectorSchemaRoot source, Selection selection, BufferAllocator allocator) {
+        int count = selection.count();
+        List<FieldVector> vectors = new ArrayList<>(source.getFieldVectors().size());
+        try {
+            for (FieldVector vector : source.getFieldVectors()) {
+                Field field = vector.getField();
+                FieldVector target = field.createVector(allocator);
+                vectors.add(target);
+                if (vector instanceof BaseFixedWidthVector fixed && !(vector instanceof BitVector)) {
+                    gatherFixedWidth(fixed, (BaseFixedWidthVector) target, selection, count);
+                } else if (vector instanceof BaseVariableWidthVector variable) {
+                    gatherVariableWidth(variable, (BaseVariableWidthVector) target, selection, count);
+                } else {
+                    gatherRows(vector, target, selection);
+                }
+                target.setValueCount(count);
+            }
+        } catch (RuntimeException e) {
+            vectors.forEach(FieldVector::close);
+            throw e;
+        }
+        return new VectorSchemaRoot(source.getSchema().getFields(), vectors, count);
+    }
+
+    private static void gatherFixedWidth(BaseFixedWidthVector source, BaseFixedWidthVector target, Selection selection, int count) {
+        target.allocateNew(count);
+        long width = source.getTypeWidth();
+        ArrowBuf from = source.getDataBuffer();
+        ArrowBuf to = target.getDataBuffer();
+        int out = 0;
+        for (int start = selection.nextSelected(0); start >= 0; ) {
+            int end = selection.nextUnselected(start);
+            to.setBytes(out * width, from, start * width, (end - start) * width);
+            out += end - start;
+            start = selection.nextSelected(end);
+        }
+        gatherValidity(source, target, selection, count);
+    }
+
+    private static void gatherVariableWidth(BaseVariableWidthVector source, BaseVariableWidthVector target, Selection selection, int count) {
+        ArrowBuf fromOffsets = source.getOffsetBuffer();
+        long bytes = 0;
+        for (int start = selection.nextSelected(0); start >= 0; ) {
+            int end = selection.nextUnselected(start);
+            bytes += fromOffsets.getInt((long) end * 4) - fromOffsets.getInt((long) start * 4);
+            start = selection.nextSelected(end);
+        }
+        target.allocateNew(Math.max(bytes, 1), count);
+        ArrowBuf from = source.getDataBuffer();
+        ArrowBuf to = target.getDataBuffer();
+        ArrowBuf toOffsets = target.getOffsetBuffer();
+        int out = 0;
+        int written = 0;
+        toOffsets.setInt(0, 0);
+        for (int start = selection.nextSelected(0); start >= 0; ) {
+            int end = selection.nextUnselected(start);
+            int first = fromOffsets.getInt((long) start * 4);
+            to.setBytes(written, from, first, fromOffsets.getInt((long) end * 4) - first);
+            for (int row = start; row < end; row++) {
+                toOffsets.setInt((long) ++out * 4, written + fromOffsets.getInt((long) (row + 1) * 4) - first);
+            }
+            written = toOffsets.getInt((long) out * 4);
+            start = selection.nextSelected(end);
+        }
+        gatherValidity(source, target, selection, count);
+        // Keep setValueCount from treating the gathered rows as unset
+        target.setLastSet(count - 1);
+    }
+
+    private static void gatherValidity(FieldVector source, FieldVector target, Selection selection, int count) {
+        ArrowBuf validity = target.getValidityBuffer();
+        if (source.getNullCount() == 0) {
+            validity.setOne(0L, (count + 7) / 8L);
+            return;
+        }
+        int out = 0;
+        for (int row = selection.nextSelected(0); row >= 0; row = selection.nextSelected(row + 1)) {
+            BitVectorHelper.setValidityBit(validity, out++, source.isNull(row) ? 0 : 1);
+        }
+    }
+
+    private static void gatherRows(FieldVector source, FieldVector target, Selection selection) {
+        target.allocateNew();
+        int out = 0;
+        for (int row = selection.nextSelected(0); row >= 0; row = selection.nextSelected(row + 1)) {
+            target.copyFromSafe(row, out++, source);
+        }
+    }
+}
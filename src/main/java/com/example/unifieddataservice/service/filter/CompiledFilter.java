@@ -0,0 +1,150 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A conjunction of compiled predicates, built once per query by {@link PredicateCompiler}
+ * and shared by the parsers and the in-memory filter.
+ * Predicates on dictionary-encoded columns must be bound to the dictionaries with
+ * {@link #withDictionaries(Function)} before rows are tested.
+ */
+public final class CompiledFilter {
+    public static final CompiledFilter ACCEPT_ALL = new CompiledFilter(Collections.emptyList(), new ColumnPredicate[0], new DataType[0], false);
+
+    private final List<String> columns;
+    private final ColumnPredicate[] predicates;
+    private final DataType[] types;
+    private final boolean rejectsAll;
+
+    CompiledFilter(List<String> columns, ColumnPredicate[] predicates, DataType[] types, boolean rejectsAll) {
+        this.columns = List.copyOf(columns);
+        this.predicates = predicates;
+        this.types = types;
+        this.rejectsAll = rejectsAll;
+    }
+
+    /**
+     * @return the resolved field each predicate reads, in evaluation order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public boolean isEmpty() {
+        return predicates.length == 0 && !rejectsAll;
+    }
+
+    /**
+     * @return true if some predicate refers to a column the source does not have, so no row can match
+     */
+    public boolean rejectsAll() {
+        return rejectsAll;
+    }
+
+    /**
+     * Binds the predicates on dictionary-encoded columns to their dictionaries. Each bound predicate
+     * evaluates a dictionary value once and then answers from the row's integer code.
+     * The returned filter caches per-code results and must not be shared between threads.
+     *
+     * @param dictionaryOf returns the dictionary values of a column, which may still be growing
+     */
+    public CompiledFilter withDictionaries(Function<String, FieldVector> dictionaryOf) {
+        ColumnPredicate[] bound = predicates.clone();
+        for (int i = 0; i < bound.length; i++) {
+            if (types[i] == DataType.DICTIONARY_STRING) {
+                FieldVector dictionary = dictionaryOf.apply(columns.get(i));
+                if (dictionary == null) {
+                    throw new IllegalStateException("No dictionary for column '" + columns.get(i) + "'");
+                }
+                bound[i] = new DictionaryPredicate(predicates[i], dictionary);
+            }
+        }
+        return new CompiledFilter(columns, bound, types, rejectsAll);
+    }
+
+    /**
+     * Tests one row.
+     *
+     * @param vectors the vectors holding the row
+     * @param columnIndexes for each entry of {@link #getColumns()}, the position of its vector in {@code vectors}
+     */
+    public boolean test(FieldVector[] vectors, int[] columnIndexes, int row) {
+        if (rejectsAll) {
+            return false;
+        }
+        for (int i = 0; i < predicates.length; i++) {
+            if (!predicates[i].test(vectors[columnIndexes[i]], row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects the rows of a batch that pass every predicate. Each predicate runs as a kernel over its whole column,
+     * and only on the words of rows the earlier predicates left selected.
+     *
+     * @param vectors the vectors of the batch, as returned by {@link #bind(VectorSchemaRoot)}
+     */
+    public Selection select(FieldVector[] vectors, int rowCount) {
+        if (rejectsAll) {
+            return Selection.none(rowCount);
+        }
+        Selection selection = Selection.all(rowCount);
+        filter(vectors, selection);
+        return selection;
+    }
+
+    /**
+     * Deselects the selected rows of a batch that fail a predicate, such as the rows left by an index lookup.
+     *
+     * @param vectors the vectors of the batch, as returned by {@link #bind(VectorSchemaRoot)}
+     */
+    public void filter(FieldVector[] vectors, Selection selection) {
+        if (rejectsAll) {
+            selection.and(Selection.none(selection.rowCount()));
+            return;
+        }
+        for (int i = 0; i < predicates.length && !selection.isEmpty(); i++) {
+            predicates[i].filter(vectors[i], selection);
+        }
+    }
+
+    /**
+     * Resolves the vector of every predicate column in a root, for use with {@link #test(FieldVector[], int[], int)}.
+     *
+     * @return the vectors, or null if a column is missing from the root
+     */
+    public FieldVector[] bind(VectorSchemaRoot root) {
+        FieldVector[] vectors = new FieldVector[columns.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = root.getVector(columns.get(i));
+            if (vectors[i] == null) {
+                return null;
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * @return the identity index mapping for vectors returned by {@link #bind(VectorSchemaRoot)}
+     */
+    public int[] boundIndexes() {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFilter{columns=" + columns + ", rejectsAll=" + rejectsAll + '}';
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * A boolean condition of a WHERE clause, compiled by {@link ExpressionCompiler} into a tree of typed nodes.
+ * Negations are pushed down to the leaves while compiling, so every node only has to find the rows for which
+ * it is true: a null operand makes a comparison neither true nor false, and such rows are never selected.
+ *
+ * <p>Conditions run over a whole record batch at a time. Each node narrows a {@link Selection} of the batch,
+ * and only looks at the rows the nodes before it left selected. Conditions may hold per-batch state and must
+ * not be shared between threads.</p>
+ */
+public abstract class Condition {
+
+    Condition() {
+    }
+
+    /**
+     * Deselects the selected rows of the batch for which the condition is not true.
+     */
+    public abstract void filter(VectorSchemaRoot batch, Selection selection);
+
+    /**
+     * @return the rows of the batch for which the condition is true
+     */
+    public Selection select(VectorSchemaRoot batch) {
+        Selection selection = Selection.all(batch.getRowCount());
+        filter(batch, selection);
+        return selection;
+    }
+
+    /**
+     * A condition known to be true or false whatever the row, such as a comparison with NULL.
+     */
+    static final class Constant extends Condition {
+        static final Constant TRUE = new Constant(true);
+        static final Constant FALSE = new Constant(false);
+
+        private final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public void filter(VectorSchemaRoot batch, Selection selection) {
+            if (!value) {
+                selection.and(Selection.none(selection.rowCount()));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Boolean.toString(value);
+        }
+    }
+
+    static final class And extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public void filter(VectorSchemaRoot batch, Selection selection) {
+            left.filter(batch, selection);
+            if (!selection.isEmpty()) {
+                right.filter(batch, selection);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " AND " + right + ')';
+        }
+    }
+
+    /**
+     * Evaluates the right side only on the rows the left side rejected.
+     */
+    static final class Or extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        Or(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public void filter(VectorSchemaRoot batch, Selection selection) {
+            Selection accepted = selection.copy();
+            left.filter(batch, accepted);
+            selection.andNot(accepted);
+            if (!selection.isEmpty()) {
+                right.filter(batch, selection);
+            }
+            selection.or(accepted);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " OR " + right + ')';
+        }
+    }
+
+    /**
+     * A predicate on one column, running the column's typed kernel.
+     */
+    static final class ColumnCondition extends Condition {
+        private final String column;
+        private final ColumnPredicate predicate;
+        private final String description;
+
+        ColumnCondition(String column, ColumnPredicate predicate, String description) {
+            this.column = column;
+            this.predicate = predicate;
+            this.description = description;
+        }
+
+        @Override
+        public void filter(VectorSchemaRoot batch, Selection selection) {
+            predicate.filter(batch.getVector(column), selection);
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * {@code IS NULL} and {@code IS NOT NULL}, read from the validity buffer of the column.
+     */
+    static final class NullCheck extends Condition {
+        private final String column;
+        private final boolean isNull;
+
+        NullCheck(String column, boolean isNull) {
+            this.column = column;
+            this.isNull = isNull;
+        }
+
+        @Override
+        public void filter(VectorSchemaRoot batch, Selection selection) {
+            FieldVector vector = batch.getVector(column);
+            ArrowBuf validity = Selection.validityOf(vector);
+            if (validity == null) {
+                if (isNull) {
+                    selection.and(Selection.none(selection.rowCount()));
+                }
+                return;
+            }
+            long[] words = selection.words();
+            for (int word = 0; word < words.length; word++) {
+                int base = word << 6;
+                int count = Math.min(64, selection.rowCount() - base);
+                long valid = Selection.validBits(validity, base, count);
+                words[word] &= isNull ? ~valid : valid;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return column + (isNull ? " IS NULL" : " IS NOT NULL");
+        }
+    }
+
+    /**
+     * Compares two arithmetic expressions, as longs if both are LONG and as doubles otherwise. Chunks of rows
+     * none of which is still selected are not evaluated.
+     */
+    static final class Comparison extends Condition {
+        private final NumericExpression left;
+        private final NumericExpression right;
+        // Bit 0, 1, 2 and 3 accept left values less than, equal to, greater than and unordered with the right ones
+        private final int accepted;
+        private final boolean asLongs;
+        private final long[] valid = new long[NumericExpression.CHUNK >>> 6];
+        private long[] leftLongs;
+        private long[] rightLongs;
+        private double[] leftDoubles;
+        private double[] rightDoubles;
+
+        Comparison(int accepted, NumericExpression left, NumericExpression right) {
+            this.left = left;
+            this.right = right;
+            this.accepted = accepted;
+            this.asLongs = left.type() == DataType.LONG && right.type() == DataType.LONG;
+        }
+
+        @Override
+        public void filter(VectorSchemaRoot batch, Selection selection) {
+            long[] words = selection.words();
+            int rowCount = selection.rowCount();
+            for (int offset = 0; offset < rowCount; offset += NumericExpression.CHUNK) {
+                int count = Math.min(NumericExpression.CHUNK, rowCount - offset);
+                int firstWord = offset >>> 6;
+                int wordCount = (count + 63) >>> 6;
+                if (noneSelected(words, firstWord, wordCount)) {
+                    continue;
+                }
+                NumericExpression.allValid(valid, count);
+                if (asLongs) {
+                    compareLongs(batch, offset, count);
+                } else {
+                    compareDoubles(batch, offset, count);
+                }
+                for (int word = 0; word < wordCount; word++) {
+                    words[firstWord + word] &= valid[word];
+                }
+            }
+        }
+
+        /**
+         * Evaluates both sides and leaves the accepted rows set in {@link #valid}.
+         */
+        private void compareLongs(VectorSchemaRoot batch, int offset, int count) {
+            if (leftLongs == null) {
+                leftLongs = new long[NumericExpression.CHUNK];
+                rightLongs = new long[NumericExpression.CHUNK];
+            }
+            left.evaluateLongs(batch, offset, count, leftLongs, valid);
+            right.evaluateLongs(batch, offset, count, rightLongs, valid);
+            for (int base = 0; base < count; base += 64) {
+                int end = Math.min(64, count - base);
+                long keep = 0;
+                for (int i = 0; i < end; i++) {
+                    int sign = Long.compare(leftLongs[base + i], rightLongs[base + i]) + 1;
+                    keep |= (long) ((accepted >>> sign) & 1) << i;
+                }
+                valid[base >>> 6] &= keep;
+            }
+        }
+
+        private void compareDoubles(VectorSchemaRoot batch, int offset, int count) {
+            if (leftDoubles == null) {
+                leftDoubles = new double[NumericExpression.CHUNK];
+                rightDoubles = new double[NumericExpression.CHUNK];
+            }
+            left.evaluateDoubles(batch, offset, count, leftDoubles, valid);
+            right.evaluateDoubles(batch, offset, count, rightDoubles, valid);
+            for (int base = 0; base < count; base += 64) {
+                int end = Math.min(64, count - base);
+                long keep = 0;
+                for (int i = 0; i < end; i++) {
+                    double l = leftDoubles[base + i];
+                    double r = rightDoubles[base + i];
+                    int order = l < r ? 0 : l == r ? 1 : l > r ? 2 : 3;
+                    keep |= (long) ((accepted >>> order) & 1) << i;
+                }
+                valid[base >>> 6] &= keep;
+            }
+        }
+
+        private static boolean noneSelected(long[] words, int from, int count) {
+            for (int word = from; word < from + count; word++) {
+                if (words[word] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " cmp[" + Integer.toBinaryString(accepted) + "] " + right + ')';
+        }
+    }
+}
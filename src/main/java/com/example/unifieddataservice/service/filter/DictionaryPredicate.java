@@ -0,0 +1,79 @@
+package com.example.unifieddataservice.service.filter;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates a string predicate on a dictionary-encoded column. The predicate runs once per distinct
+ * dictionary value; every other row is answered from its 32-bit code.
+ */
+final class DictionaryPredicate implements ColumnPredicate {
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private final ColumnPredicate onValues;
+    private final FieldVector dictionary;
+    private byte[] states = new byte[64];
+
+    DictionaryPredicate(ColumnPredicate onValues, FieldVector dictionary) {
+        this.onValues = onValues;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public boolean test(FieldVector codes, int row) {
+        if (codes.isNull(row)) {
+            return false;
+        }
+        int code = codes.getDataBuffer().getInt((long) row * 4);
+        if (code >= states.length) {
+            // The dictionary may still be growing while a parser filters its rows
+            states = Arrays.copyOf(states, Math.max(code + 1, states.length * 2));
+        }
+        byte state = states[code];
+        if (state == UNKNOWN) {
+            state = onValues.test(dictionary, code) ? MATCH : NO_MATCH;
+            states[code] = state;
+        }
+        return state == MATCH;
+    }
+
+    /**
+     * Evaluates every dictionary value up front, then selects rows by looking up their codes.
+     */
+    @Override
+    public void filter(FieldVector codes, Selection selection) {
+        int size = dictionary.getValueCount();
+        if (size > states.length) {
+            states = Arrays.copyOf(states, size);
+        }
+        for (int code = 0; code < size; code++) {
+            if (states[code] == UNKNOWN) {
+                states[code] = onValues.test(dictionary, code) ? MATCH : NO_MATCH;
+            }
+        }
+        byte[] matches = states;
+        long[] words = selection.words();
+        int rowCount = selection.rowCount();
+        ArrowBuf data = codes.getDataBuffer();
+        ArrowBuf validity = Selection.validityOf(codes);
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            if (bits == 0) {
+                continue;
+            }
+            int base = word << 6;
+            int count = Math.min(64, rowCount - base);
+            long keep = 0;
+            for (int i = 0; i < count; i++) {
+                int code = data.getInt((long) (base + i) << 2);
+                // MATCH is the only state with its low bit set; null rows may hold any code
+                keep |= (code >= 0 && code < size ? matches[code] & 1L : 0L) << i;
+            }
+            words[word] = bits & keep & Selection.validBits(validity, base, count);
+        }
+    }
+}
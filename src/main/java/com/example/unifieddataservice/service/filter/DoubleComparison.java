@@ -0,0 +1,50 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.Operator;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * Compares the values of a FLOAT8 column with a literal with the semantics of Java's primitive comparisons:
+ * NaN is unequal to everything and neither less nor greater, and -0.0 equals 0.0.
+ */
+final class DoubleComparison implements ColumnPredicate {
+    private final double literal;
+    // Bit 0, 1, 2 and 3 accept values less than, equal to, greater than and unordered with the literal
+    private final int accepted;
+
+    DoubleComparison(Operator op, double literal) {
+        this.literal = literal;
+        this.accepted = op == Operator.NOT_EQUALS ? 0b1101 : LongComparison.acceptedSigns(op);
+    }
+
+    @Override
+    public boolean test(FieldVector vector, int row) {
+        return !vector.isNull(row) && ((accepted >>> order(PredicateCompiler.readDouble(vector, row))) & 1) != 0;
+    }
+
+    private int order(double value) {
+        return value < literal ? 0 : value == literal ? 1 : value > literal ? 2 : 3;
+    }
+
+    @Override
+    public void filter(FieldVector vector, Selection selection) {
+        long[] words = selection.words();
+        int rowCount = selection.rowCount();
+        ArrowBuf data = vector.getDataBuffer();
+        ArrowBuf validity = Selection.validityOf(vector);
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            if (bits == 0) {
+                continue;
+            }
+            int base = word << 6;
+            int count = Math.min(64, rowCount - base);
+            long keep = 0;
+            for (int i = 0; i < count; i++) {
+                keep |= (long) ((accepted >>> order(data.getDouble((long) (base + i) << 3))) & 1) << i;
+            }
+            words[word] = bits & keep & Selection.validBits(validity, base, count);
+        }
+    }
+}
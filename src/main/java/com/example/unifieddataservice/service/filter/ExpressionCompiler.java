@@ -0,0 +1,445 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.parser.DataTypeMapper;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.arithmetic.Addition;
+import net.sf.jsqlparser.expression.operators.arithmetic.Division;
+import net.sf.jsqlparser.expression.operators.arithmetic.IntegerDivision;
+import net.sf.jsqlparser.expression.operators.arithmetic.Modulo;
+import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
+import net.sf.jsqlparser.expression.operators.arithmetic.Subtraction;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Compiles the expressions of a SQL statement against the columns of a table, once per query.
+ * WHERE conditions become {@link Condition} trees whose leaves run the typed column kernels of
+ * {@link PredicateCompiler}; arithmetic becomes {@link NumericExpression} trees over LONG and DOUBLE values.
+ * Column types are resolved up front, so evaluation never inspects a type or boxes a value.
+ *
+ * <p>Supported conditions are AND, OR, NOT, the comparison operators, BETWEEN, IN, LIKE and ILIKE, IS NULL and
+ * bare boolean columns. Arithmetic supports {@code + - * / %} and {@code DIV}; {@code /} always divides as
+ * doubles, {@code DIV} truncates integers.</p>
+ */
+public final class ExpressionCompiler {
+    private final Map<String, DataType> columnTypes;
+    private final Function<String, FieldVector> dictionaryOf;
+    private final Map<String, String> columnAlias;
+
+    /**
+     * @param columnTypes  the data type of every available field
+     * @param dictionaryOf returns the dictionary values of a {@link DataType#DICTIONARY_STRING} field
+     * @param columnAlias  field -> physical source column mapping used to resolve column references (may be null)
+     */
+    public ExpressionCompiler(Map<String, DataType> columnTypes, Function<String, FieldVector> dictionaryOf, Map<String, String> columnAlias) {
+        this.columnTypes = columnTypes;
+        this.dictionaryOf = dictionaryOf;
+        this.columnAlias = columnAlias;
+    }
+
+    /**
+     * @return a compiler for expressions over the columns of the table, bound to the table's dictionaries
+     */
+    public static ExpressionCompiler forTable(UnifiedDataTable table, Map<String, String> columnAlias) {
+        Schema schema = table.getSchema();
+        Map<String, DataType> types = new LinkedHashMap<>();
+        for (Field field : schema.getFields()) {
+            DataType type = DataTypeMapper.fromField(field, table.getDictionaries());
+            if (type != null) {
+                types.put(field.getName(), type);
+            }
+        }
+        return new ExpressionCompiler(types, column -> table.getDictionaries()
+                .lookup(schema.findField(column).getDictionary().getId()).getVector(), columnAlias);
+    }
+
+    /**
+     * @return the names of the columns the expression refers to, in order of appearance
+     */
+    public static Set<String> columnsOf(Expression expression) {
+        Set<String> columns = new LinkedHashSet<>();
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                columns.add(column.getColumnName());
+            }
+        });
+        return columns;
+    }
+
+    /**
+     * @return whether the expression is a string, number or NULL literal, possibly signed
+     */
+    public static boolean isLiteral(Expression expression) {
+        if (expression instanceof SignedExpression signed) {
+            return signed.getSign() != '~' && (signed.getExpression() instanceof LongValue || signed.getExpression() instanceof DoubleValue);
+        }
+        return expression instanceof StringValue || expression instanceof LongValue
+                || expression instanceof DoubleValue || expression instanceof NullValue;
+    }
+
+    /**
+     * @return the value of a literal as a String, Long or Double, or null for NULL
+     * @throws IllegalArgumentException if the expression is not a literal
+     */
+    public static Object literalValue(Expression expression) {
+        if (expression instanceof StringValue string) {
+            return string.getValue();
+        } else if (expression instanceof LongValue number) {
+            return number.getValue();
+        } else if (expression instanceof DoubleValue number) {
+            return number.getValue();
+        } else if (expression instanceof NullValue) {
+            return null;
+        } else if (isLiteral(expression)) {
+            SignedExpression signed = (SignedExpression) expression;
+            Object value = literalValue(signed.getExpression());
+            if (signed.getSign() == '+') {
+                return value;
+            }
+            return value instanceof Long ? (Object) (-(Long) value) : (Object) (-(Double) value);
+        }
+        throw new IllegalArgumentException("Not a literal: " + expression);
+    }
+
+    /**
+     * Compiles a WHERE condition.
+     *
+     * @throws IllegalArgumentException if the condition uses an unsupported operator, an unknown column or a
+     * literal that does not fit its column
+     */
+    public Condition compileCondition(Expression expression) {
+        return condition(expression, false);
+    }
+
+    /**
+     * Compiles an arithmetic expression over numeric columns.
+     *
+     * @throws IllegalArgumentException if the expression uses an unsupported operator or a non-numeric column
+     */
+    public NumericExpression compileNumeric(Expression expression) {
+        if (expression instanceof Parenthesis parenthesis) {
+            return compileNumeric(parenthesis.getExpression());
+        }
+        if (expression instanceof Column column) {
+            String field = resolve(column);
+            DataType type = columnTypes.get(field);
+            if (type == DataType.LONG || type == DataType.TIMESTAMP) {
+                return new NumericExpression.LongColumn(field);
+            } else if (type == DataType.DOUBLE) {
+                return new NumericExpression.DoubleColumn(field);
+            }
+            throw new IllegalArgumentException("Column '" + column.getColumnName() + "' is not numeric");
+        }
+        if (isLiteral(expression) && !(expression instanceof StringValue) && !(expression instanceof NullValue)) {
+            Object value = literalValue(expression);
+            return value instanceof Long ? new NumericExpression.LongLiteral((Long) value) : new NumericExpression.DoubleLiteral((Double) value);
+        }
+        if (expression instanceof SignedExpression signed && signed.getSign() != '~') {
+            NumericExpression operand = compileNumeric(signed.getExpression());
+            return signed.getSign() == '+' ? operand : arithmetic(NumericExpression.Arithmetic.SUBTRACT, new NumericExpression.LongLiteral(0), operand);
+        }
+        if (expression instanceof Addition || expression instanceof Subtraction || expression instanceof Multiplication
+                || expression instanceof Modulo) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            NumericExpression.Arithmetic op = expression instanceof Addition ? NumericExpression.Arithmetic.ADD
+                    : expression instanceof Subtraction ? NumericExpression.Arithmetic.SUBTRACT
+                    : expression instanceof Multiplication ? NumericExpression.Arithmetic.MULTIPLY
+                    : NumericExpression.Arithmetic.MODULO;
+            return arithmetic(op, compileNumeric(binary.getLeftExpression()), compileNumeric(binary.getRightExpression()));
+        }
+        if (expression instanceof Division division) {
+            return new NumericExpression.DoubleArithmetic(NumericExpression.Arithmetic.DIVIDE,
+                    compileNumeric(division.getLeftExpression()), compileNumeric(division.getRightExpression()));
+        }
+        if (expression instanceof IntegerDivision division) {
+            NumericExpression left = compileNumeric(division.getLeftExpression());
+            NumericExpression right = compileNumeric(division.getRightExpression());
+            if (left.type() != DataType.LONG || right.type() != DataType.LONG) {
+                throw new IllegalArgumentException("DIV needs integer operands: " + expression);
+            }
+            return new NumericExpression.LongArithmetic(NumericExpression.Arithmetic.DIVIDE, left, right);
+        }
+        throw new IllegalArgumentException("Unsupported expression: " + expression);
+    }
+
+    private static NumericExpression arithmetic(NumericExpression.Arithmetic op, NumericExpression left, NumericExpression right) {
+        if (left.type() == DataType.LONG && right.type() == DataType.LONG) {
+            return new NumericExpression.LongArithmetic(op, left, right);
+        }
+        return new NumericExpression.DoubleArithmetic(op, left, right);
+    }
+
+    /**
+     * @param negated whether the condition is under an odd number of NOTs, which are pushed into it
+     */
+    private Condition condition(Expression expression, boolean negated) {
+        if (expression instanceof Parenthesis parenthesis) {
+            return condition(parenthesis.getExpression(), negated);
+        }
+        if (expression instanceof NotExpression not) {
+            return condition(not.getExpression(), !negated);
+        }
+        if (expression instanceof AndExpression and) {
+            Condition left = condition(and.getLeftExpression(), negated);
+            Condition right = condition(and.getRightExpression(), negated);
+            return negated ? or(left, right) : and(left, right);
+        }
+        if (expression instanceof OrExpression or) {
+            Condition left = condition(or.getLeftExpression(), negated);
+            Condition right = condition(or.getRightExpression(), negated);
+            return negated ? and(left, right) : or(left, right);
+        }
+        Operator op = comparisonOperator(expression);
+        if (op != null) {
+            BinaryExpression comparison = (BinaryExpression) expression;
+            return comparison(comparison.getLeftExpression(), negated ? negate(op) : op, comparison.getRightExpression());
+        }
+        if (expression instanceof Between between) {
+            Expression value = between.getLeftExpression();
+            if (between.isNot() != negated) {
+                return or(comparison(value, Operator.LESS_THAN, between.getBetweenExpressionStart()),
+                        comparison(value, Operator.GREATER_THAN, between.getBetweenExpressionEnd()));
+            }
+            return and(comparison(value, Operator.GREATER_THAN_OR_EQUAL_TO, between.getBetweenExpressionStart()),
+                    comparison(value, Operator.LESS_THAN_OR_EQUAL_TO, between.getBetweenExpressionEnd()));
+        }
+        if (expression instanceof InExpression in) {
+            return in(in, in.isNot() != negated);
+        }
+        if (expression instanceof LikeExpression like) {
+            return like(like, like.isNot() != negated);
+        }
+        if (expression instanceof IsNullExpression isNull && isNull.getLeftExpression() instanceof Column column) {
+            return new Condition.NullCheck(resolve(column), isNull.isNot() == negated);
+        }
+        if (expression instanceof Column column) {
+            if (PredicateCompiler.resolveField(column.getColumnName(), columnTypes, columnAlias) == null
+                    && ("true".equalsIgnoreCase(column.getColumnName()) || "false".equalsIgnoreCase(column.getColumnName()))) {
+                // The parser reads the boolean literals as column names
+                return "true".equalsIgnoreCase(column.getColumnName()) != negated ? Condition.Constant.TRUE : Condition.Constant.FALSE;
+            }
+            String field = resolve(column);
+            if (columnTypes.get(field) != DataType.BOOLEAN) {
+                throw new IllegalArgumentException("Column '" + column.getColumnName() + "' is not a boolean condition");
+            }
+            return columnCondition(field, new Predicate(field, Operator.EQUALS, !negated), expression.toString());
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + expression);
+    }
+
+    private static Operator comparisonOperator(Expression expression) {
+        if (expression instanceof EqualsTo) {
+            return Operator.EQUALS;
+        } else if (expression instanceof NotEqualsTo) {
+            return Operator.NOT_EQUALS;
+        } else if (expression instanceof GreaterThan) {
+            return Operator.GREATER_THAN;
+        } else if (expression instanceof GreaterThanEquals) {
+            return Operator.GREATER_THAN_OR_EQUAL_TO;
+        } else if (expression instanceof MinorThan) {
+            return Operator.LESS_THAN;
+        } else if (expression instanceof MinorThanEquals) {
+            return Operator.LESS_THAN_OR_EQUAL_TO;
+        }
+        return null;
+    }
+
+    private static Operator negate(Operator op) {
+        switch (op) {
+            case EQUALS:
+                return Operator.NOT_EQUALS;
+            case NOT_EQUALS:
+                return Operator.EQUALS;
+            case GREATER_THAN:
+                return Operator.LESS_THAN_OR_EQUAL_TO;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return Operator.LESS_THAN;
+            case LESS_THAN:
+                return Operator.GREATER_THAN_OR_EQUAL_TO;
+            case LESS_THAN_OR_EQUAL_TO:
+                return Operator.GREATER_THAN;
+            default:
+                throw new IllegalArgumentException("Cannot negate operator: " + op);
+        }
+    }
+
+    /**
+     * @return the operator with its operands swapped, so that {@code literal op column} becomes {@code column op' literal}
+     */
+    private static Operator swap(Operator op) {
+        switch (op) {
+            case GREATER_THAN:
+                return Operator.LESS_THAN;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return Operator.LESS_THAN_OR_EQUAL_TO;
+            case LESS_THAN:
+                return Operator.GREATER_THAN;
+            case LESS_THAN_OR_EQUAL_TO:
+                return Operator.GREATER_THAN_OR_EQUAL_TO;
+            default:
+                return op;
+        }
+    }
+
+    /**
+     * Compares a column with a literal through the column's kernel, and anything else as arithmetic.
+     */
+    private Condition comparison(Expression left, Operator op, Expression right) {
+        if (left instanceof NullValue || right instanceof NullValue) {
+            // Comparisons with NULL are never true
+            return Condition.Constant.FALSE;
+        }
+        String description = left + " " + op + " " + right;
+        if (left instanceof Column column && isLiteral(right)) {
+            String field = resolve(column);
+            return columnCondition(field, new Predicate(field, op, literalValue(right)), description);
+        }
+        if (isLiteral(left) && right instanceof Column column) {
+            String field = resolve(column);
+            return columnCondition(field, new Predicate(field, swap(op), literalValue(left)), description);
+        }
+        NumericExpression leftValue = compileNumeric(left);
+        NumericExpression rightValue = compileNumeric(right);
+        int accepted = op == Operator.NOT_EQUALS ? 0b1101 : LongComparison.acceptedSigns(op);
+        return new Condition.Comparison(accepted, leftValue, rightValue);
+    }
+
+    private Condition in(InExpression in, boolean not) {
+        if (!(in.getLeftExpression() instanceof Column column) || !(in.getRightExpression() instanceof ExpressionList<?> list)) {
+            throw new IllegalArgumentException("Unsupported IN condition: " + in);
+        }
+        String field = resolve(column);
+        List<Object> values = new ArrayList<>();
+        boolean hasNull = false;
+        for (Expression item : list) {
+            if (!isLiteral(item)) {
+                throw new IllegalArgumentException("IN lists must hold literals: " + in);
+            }
+            Object value = literalValue(item);
+            if (value == null) {
+                hasNull = true;
+            } else {
+                values.add(value);
+            }
+        }
+        if (not && hasNull) {
+            // x NOT IN (..., NULL) is never true
+            return Condition.Constant.FALSE;
+        }
+        if (values.isEmpty()) {
+            return not ? new Condition.NullCheck(field, false) : Condition.Constant.FALSE;
+        }
+        ColumnPredicate predicate = PredicateCompiler.compile(new Predicate(field, Operator.IN, values), columnTypes.get(field));
+        return columnCondition(field, not ? negate(predicate) : predicate, in.toString());
+    }
+
+    private Condition like(LikeExpression like, boolean not) {
+        if (!(like.getLeftExpression() instanceof Column column) || !(like.getRightExpression() instanceof StringValue pattern)
+                || (like.getLikeKeyWord() != LikeExpression.KeyWord.LIKE && like.getLikeKeyWord() != LikeExpression.KeyWord.ILIKE)) {
+            throw new IllegalArgumentException("Unsupported LIKE condition: " + like);
+        }
+        String field = resolve(column);
+        DataType type = columnTypes.get(field);
+        if (type != DataType.STRING && type != DataType.DICTIONARY_STRING) {
+            throw new IllegalArgumentException("LIKE needs a string column: " + like);
+        }
+        Character escape = null;
+        if (like.getEscape() != null) {
+            String escapeText = like.getEscape() instanceof StringValue value ? value.getValue() : "";
+            if (escapeText.length() != 1) {
+                throw new IllegalArgumentException("LIKE escape must be a single character: " + like);
+            }
+            escape = escapeText.charAt(0);
+        }
+        ColumnPredicate predicate = LikePredicate.compile(pattern.getValue(), escape,
+                like.getLikeKeyWord() == LikeExpression.KeyWord.ILIKE);
+        return columnCondition(field, not ? negate(predicate) : predicate, like.toString());
+    }
+
+    private static ColumnPredicate negate(ColumnPredicate predicate) {
+        return (vector, row) -> !vector.isNull(row) && !predicate.test(vector, row);
+    }
+
+    private Condition columnCondition(String field, Predicate predicate, String description) {
+        return columnCondition(field, PredicateCompiler.compile(predicate, columnTypes.get(field)), description);
+    }
+
+    /**
+     * Predicates on dictionary-encoded columns are bound to the dictionary and answered from the codes.
+     */
+    private Condition columnCondition(String field, ColumnPredicate predicate, String description) {
+        if (columnTypes.get(field) == DataType.DICTIONARY_STRING) {
+            FieldVector dictionary = dictionaryOf.apply(field);
+            if (dictionary == null) {
+                throw new IllegalStateException("No dictionary for column '" + field + "'");
+            }
+            predicate = new DictionaryPredicate(predicate, dictionary);
+        }
+        return new Condition.ColumnCondition(field, predicate, description);
+    }
+
+    private String resolve(Column column) {
+        String field = PredicateCompiler.resolveField(column.getColumnName(), columnTypes, columnAlias);
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown column '" + column.getColumnName() + "'");
+        }
+        return field;
+    }
+
+    private static Condition and(Condition left, Condition right) {
+        if (left == Condition.Constant.FALSE || right == Condition.Constant.TRUE) {
+            return left;
+        }
+        if (right == Condition.Constant.FALSE || left == Condition.Constant.TRUE) {
+            return right;
+        }
+        return new Condition.And(left, right);
+    }
+
+    private static Condition or(Condition left, Condition right) {
+        if (left == Condition.Constant.TRUE || right == Condition.Constant.FALSE) {
+            return left;
+        }
+        if (right == Condition.Constant.TRUE || left == Condition.Constant.FALSE) {
+            return right;
+        }
+        return new Condition.Or(left, right);
+    }
+}
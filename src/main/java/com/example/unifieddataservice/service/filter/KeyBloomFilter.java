@@ -0,0 +1,257 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.parser.DataTypeMapper;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Bloom filter over the values of a key column of a table, such as the tickers of a metric. It answers
+ * "is this value absent from the column?" without false answers and "might it be present?" with about one
+ * percent false positives, in a few bits per distinct value.
+ *
+ * <p>Strings are hashed on their UTF-8 bytes and integers and timestamps on their 64-bit value, so vectors and
+ * predicate literals are tested without decoding cells. Like the string keys of
+ * {@link com.example.unifieddataservice.util.ArrowJoinUtil}, a null string cell counts as the value
+ * {@code "NULL"}.</p>
+ */
+public final class KeyBloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    // The number of probes that minimizes false positives at 10 bits per key
+    private static final int PROBES = 7;
+    private static final byte[] NULL_STRING = "NULL".getBytes(StandardCharsets.UTF_8);
+
+    private final boolean strings;
+    private final long[] bits;
+    private final int mask;
+    private final boolean containsNull;
+
+    private KeyBloomFilter(boolean strings, PredicateCompiler.LongHashSet hashes, boolean containsNull) {
+        this.strings = strings;
+        int wanted = (int) Math.min(1L << 30, Math.max(64L, (long) hashes.size() * BITS_PER_KEY));
+        int bitCount = Integer.highestOneBit(wanted - 1) << 1;
+        this.bits = new long[bitCount >>> 6];
+        this.mask = bitCount - 1;
+        this.containsNull = containsNull;
+        hashes.forEach(this::add);
+    }
+
+    /**
+     * Builds the filter over every batch of the table. The values of a dictionary-encoded column are taken from
+     * its dictionary, which holds each of them once.
+     *
+     * @return the filter, or null if the column is missing or its type is not a string, integer or timestamp
+     */
+    public static KeyBloomFilter build(UnifiedDataTable table, String column) {
+        Field field = table.getSchema().getFields().stream().filter(f -> f.getName().equals(column)).findFirst().orElse(null);
+        Boolean strings = field != null ? holdsStrings(field, table.getDictionaries()) : null;
+        if (strings == null) {
+            return null;
+        }
+        DataType dataType = DataTypeMapper.fromField(field, table.getDictionaries());
+        PredicateCompiler.LongHashSet hashes = new PredicateCompiler.LongHashSet();
+        boolean containsNull = false;
+        if (dataType == DataType.DICTIONARY_STRING) {
+            FieldVector values = table.getDictionaries().lookup(field.getDictionary().getId()).getVector();
+            addAll(values, true, hashes);
+            for (VectorSchemaRoot batch : table.getBatches()) {
+                containsNull |= batch.getVector(column).getNullCount() > 0;
+            }
+            if (containsNull) {
+                hashes.add(hashUtf8(NULL_STRING));
+            }
+        } else {
+            for (VectorSchemaRoot batch : table.getBatches()) {
+                containsNull |= addAll(batch.getVector(column), strings, hashes);
+            }
+        }
+        return new KeyBloomFilter(strings, hashes, containsNull);
+    }
+
+    /**
+     * @return true for string columns, false for integer and timestamp ones and null for the others
+     */
+    private static Boolean holdsStrings(Field field, DictionaryProvider dictionaries) {
+        DataType dataType = DataTypeMapper.fromField(field, dictionaries);
+        if (dataType == null || dataType == DataType.DOUBLE || dataType == DataType.BOOLEAN) {
+            return null;
+        }
+        if (dataType == DataType.DICTIONARY_STRING && field.getDictionary().getIndexType().getBitWidth() != 32) {
+            return null;
+        }
+        return dataType == DataType.STRING || dataType == DataType.DICTIONARY_STRING;
+    }
+
+    /**
+     * @return whether the vector had null cells
+     */
+    private static boolean addAll(FieldVector vector, boolean strings, PredicateCompiler.LongHashSet hashes) {
+        boolean hasNulls = vector.getNullCount() > 0;
+        for (int row = 0; row < vector.getValueCount(); row++) {
+            if (hasNulls && vector.isNull(row)) {
+                if (strings) {
+                    hashes.add(hashUtf8(NULL_STRING));
+                }
+            } else {
+                hashes.add(strings ? hashUtf8(vector, row) : hashLong(vector.getDataBuffer().getLong((long) row * 8)));
+            }
+        }
+        return hasNulls;
+    }
+
+    /**
+     * @return false if the literal is certainly absent from the column; true if it may be present or cannot be
+     *         compared with the column's values
+     */
+    public boolean mightContain(Object literal) {
+        if (literal == null) {
+            return containsNull;
+        }
+        if (strings) {
+            return mightContainHash(hashUtf8(literal.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        if (literal instanceof Long || literal instanceof Integer || literal instanceof Short || literal instanceof Byte) {
+            return mightContainHash(hashLong(((Number) literal).longValue()));
+        }
+        try {
+            return mightContainHash(hashLong(Long.parseLong(literal.toString().trim())));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the predicate is an equality or IN predicate none of whose literals the column might contain
+     */
+    public boolean mightMatch(Predicate predicate) {
+        if (predicate.operator() != Operator.EQUALS && predicate.operator() != Operator.IN) {
+            return true;
+        }
+        for (Object literal : PredicateCompiler.inValues(predicate.value())) {
+            // Null literals never match, whatever the column holds
+            if (literal != null && mightContain(literal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deselects the rows whose value in the vector is certainly absent from the column this filter was built on.
+     * Dictionary-encoded cells are looked up once per code. A vector of another kind of values than the column's
+     * is left alone.
+     */
+    public void filter(FieldVector vector, DictionaryProvider dictionaries, Selection selection) {
+        Boolean vectorStrings = holdsStrings(vector.getField(), dictionaries);
+        if (vectorStrings == null || vectorStrings != strings) {
+            return;
+        }
+        boolean[] mightContainCode = null;
+        if (vector.getField().getDictionary() != null) {
+            FieldVector values = dictionaries.lookup(vector.getField().getDictionary().getId()).getVector();
+            mightContainCode = new boolean[values.getValueCount()];
+            for (int code = 0; code < mightContainCode.length; code++) {
+                mightContainCode[code] = mightContainRow(values, code);
+            }
+        }
+        long[] words = selection.words();
+        for (int word = 0; word < words.length; word++) {
+            long selected = words[word];
+            while (selected != 0) {
+                int row = (word << 6) + Long.numberOfTrailingZeros(selected);
+                selected &= selected - 1;
+                boolean keep;
+                if (mightContainCode == null || vector.isNull(row)) {
+                    keep = mightContainRow(vector, row);
+                } else {
+                    keep = mightContainCode[vector.getDataBuffer().getInt((long) row * 4)];
+                }
+                if (!keep) {
+                    words[word] &= ~(1L << row);
+                }
+            }
+        }
+    }
+
+    private boolean mightContainRow(FieldVector vector, int row) {
+        if (vector.isNull(row)) {
+            return strings ? mightContainHash(hashUtf8(NULL_STRING)) : containsNull;
+        }
+        return mightContainHash(strings ? hashUtf8(vector, row) : hashLong(vector.getDataBuffer().getLong((long) row * 8)));
+    }
+
+    private void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= PROBES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContainHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= PROBES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the size of the filter in bytes
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * 8;
+    }
+
+    static long hashLong(long value) {
+        // The finalizer of MurmurHash3, which spreads every input bit over the whole hash
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static long hashUtf8(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hashLong(h);
+    }
+
+    /**
+     * The same hash as {@link #hashUtf8(byte[])}, read in place from a VARCHAR cell.
+     */
+    private static long hashUtf8(FieldVector vector, int row) {
+        ArrowBuf offsets = vector.getOffsetBuffer();
+        ArrowBuf data = vector.getDataBuffer();
+        int start = offsets.getInt((long) row * 4);
+        int end = offsets.getInt((long) (row + 1) * 4);
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ (data.getByte(i) & 0xff)) * 0x100000001b3L;
+        }
+        return hashLong(h);
+    }
+
+    @Override
+    public String toString() {
+        return "KeyBloomFilter{" + (strings ? "strings" : "integers") + ", bits=" + (mask + 1) + '}';
+    }
+}
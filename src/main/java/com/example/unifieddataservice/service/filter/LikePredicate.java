@@ -0,0 +1,125 @@
+package com.example.unifieddataservice.service.filter;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the values of a VARCHAR column against a SQL {@code LIKE} pattern, where {@code %} stands for any
+ * sequence of characters and {@code _} for exactly one. Case-sensitive patterns made of literal text and
+ * {@code %} only, such as prefixes, suffixes and substrings, are matched on the UTF-8 bytes of the cell without
+ * decoding it; any other pattern is translated to a regular expression over the decoded value.
+ */
+final class LikePredicate implements ColumnPredicate {
+    // The literal runs between the % wildcards; the first must start the value and the last must end it
+    private final byte[][] runs;
+    private final Pattern pattern;
+
+    private LikePredicate(byte[][] runs, Pattern pattern) {
+        this.runs = runs;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param escape the character that makes the next wildcard literal, or null if there is none
+     * @throws IllegalArgumentException if the pattern ends with the escape character
+     */
+    static LikePredicate compile(String like, Character escape, boolean caseInsensitive) {
+        List<String> runs = new ArrayList<>();
+        StringBuilder regex = new StringBuilder();
+        StringBuilder run = new StringBuilder();
+        boolean singleCharacter = false;
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (escape != null && c == escape) {
+                if (++i == like.length()) {
+                    throw new IllegalArgumentException("LIKE pattern ends with the escape character: " + like);
+                }
+                run.append(like.charAt(i));
+                regex.append(Pattern.quote(String.valueOf(like.charAt(i))));
+            } else if (c == '%') {
+                runs.add(run.toString());
+                run.setLength(0);
+                regex.append(".*");
+            } else if (c == '_') {
+                singleCharacter = true;
+                regex.append('.');
+            } else {
+                run.append(c);
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        runs.add(run.toString());
+        if (singleCharacter || caseInsensitive) {
+            int flags = Pattern.DOTALL | (caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            return new LikePredicate(null, Pattern.compile(regex.toString(), flags));
+        }
+        byte[][] bytes = new byte[runs.size()][];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = runs.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return new LikePredicate(bytes, null);
+    }
+
+    @Override
+    public boolean test(FieldVector vector, int row) {
+        if (vector.isNull(row)) {
+            return false;
+        }
+        ArrowBuf offsets = vector.getOffsetBuffer();
+        int start = offsets.getInt((long) row * 4);
+        int end = offsets.getInt((long) (row + 1) * 4);
+        ArrowBuf data = vector.getDataBuffer();
+        if (pattern != null) {
+            byte[] value = new byte[end - start];
+            data.getBytes(start, value);
+            return pattern.matcher(new String(value, StandardCharsets.UTF_8)).matches();
+        }
+        return matchRuns(data, start, end);
+    }
+
+    private boolean matchRuns(ArrowBuf data, int start, int end) {
+        byte[] first = runs[0];
+        if (runs.length == 1) {
+            return end - start == first.length && regionMatches(data, start, first);
+        }
+        byte[] last = runs[runs.length - 1];
+        if (end - start < first.length + last.length
+                || !regionMatches(data, start, first) || !regionMatches(data, end - last.length, last)) {
+            return false;
+        }
+        // Each inner run is taken at its leftmost match, which leaves the most room for the runs after it
+        int from = start + first.length;
+        int to = end - last.length;
+        for (int i = 1; i < runs.length - 1; i++) {
+            int found = indexOf(data, from, to, runs[i]);
+            if (found < 0) {
+                return false;
+            }
+            from = found + runs[i].length;
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(ArrowBuf data, int start, byte[] run) {
+        for (int i = 0; i < run.length; i++) {
+            if (data.getByte(start + i) != run[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ArrowBuf data, int from, int to, byte[] run) {
+        for (int start = from; start + run.length <= to; start++) {
+            if (regionMatches(data, start, run)) {
+                return start;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.Operator;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * Compares the 8-byte values of a BIGINT or TIMESTAMP column with a literal. The operator is reduced to the
+ * set of comparison signs it accepts, so the kernel runs the same branch-free loop for every operator.
+ */
+final class LongComparison implements ColumnPredicate {
+    private final long literal;
+    // Bit 0, 1 and 2 accept values less than, equal to and greater than the literal
+    private final int accepted;
+
+    LongComparison(Operator op, long literal) {
+        this.literal = literal;
+        this.accepted = acceptedSigns(op);
+    }
+
+    static int acceptedSigns(Operator op) {
+        switch (op) {
+            case EQUALS:
+                return 0b010;
+            case NOT_EQUALS:
+                return 0b101;
+            case GREATER_THAN:
+                return 0b100;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return 0b110;
+            case LESS_THAN:
+                return 0b001;
+            case LESS_THAN_OR_EQUAL_TO:
+                return 0b011;
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + op);
+        }
+    }
+
+    @Override
+    public boolean test(FieldVector vector, int row) {
+        return !vector.isNull(row) && ((accepted >>> (Long.compare(PredicateCompiler.readLong(vector, row), literal) + 1)) & 1) != 0;
+    }
+
+    @Override
+    public void filter(FieldVector vector, Selection selection) {
+        long[] words = selection.words();
+        int rowCount = selection.rowCount();
+        ArrowBuf data = vector.getDataBuffer();
+        ArrowBuf validity = Selection.validityOf(vector);
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            if (bits == 0) {
+                continue;
+            }
+            int base = word << 6;
+            int count = Math.min(64, rowCount - base);
+            long keep = 0;
+            for (int i = 0; i < count; i++) {
+                int sign = Long.compare(data.getLong((long) (base + i) << 3), literal) + 1;
+                keep |= (long) ((accepted >>> sign) & 1) << i;
+            }
+            words[word] = bits & keep & Selection.validBits(validity, base, count);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * An arithmetic expression over the numeric columns of a record batch, compiled by {@link ExpressionCompiler}
+ * into a tree of nodes that each handle a single operator on a single type, LONG or DOUBLE. Every node evaluates
+ * {@link #CHUNK} rows per call into primitive arrays, so each operator is one tight loop over arrays that stay in
+ * cache from one node of the tree to the next. A null operand or a division by zero makes the result null.
+ *
+ * <p>Nodes reuse their arrays between calls, so a compiled expression must not be shared between threads.</p>
+ */
+public abstract class NumericExpression {
+    /** Rows evaluated per call; a multiple of 64, so the validity words of a chunk are words of the batch. */
+    static final int CHUNK = 1024;
+
+    enum Arithmetic { ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO }
+
+    NumericExpression() {
+    }
+
+    /**
+     * @return {@link DataType#LONG} or {@link DataType#DOUBLE}
+     */
+    public abstract DataType type();
+
+    /**
+     * Evaluates rows {@code offset} to {@code offset + count} of a LONG expression.
+     *
+     * @param valid the validity of the rows, one bit per row from {@code offset}; bits of null results are cleared
+     */
+    abstract void evaluateLongs(VectorSchemaRoot batch, int offset, int count, long[] values, long[] valid);
+
+    /**
+     * Evaluates rows {@code offset} to {@code offset + count}, converting LONG results to doubles.
+     *
+     * @param valid the validity of the rows, one bit per row from {@code offset}; bits of null results are cleared
+     */
+    abstract void evaluateDoubles(VectorSchemaRoot batch, int offset, int count, double[] values, long[] valid);
+
+    /**
+     * Evaluates every row of the batch into a new BIGINT or FLOAT8 vector, allocated from {@code allocator}.
+     */
+    public FieldVector evaluate(VectorSchemaRoot batch, String name, BufferAllocator allocator) {
+        int rowCount = batch.getRowCount();
+        boolean isLong = type() == DataType.LONG;
+        BaseFixedWidthVector vector = isLong ? new BigIntVector(name, allocator) : new Float8Vector(name, allocator);
+        try {
+            vector.allocateNew(rowCount);
+            ArrowBuf data = vector.getDataBuffer();
+            ArrowBuf validity = vector.getValidityBuffer();
+            long[] longs = isLong ? new long[CHUNK] : null;
+            double[] doubles = isLong ? null : new double[CHUNK];
+            long[] valid = new long[CHUNK >>> 6];
+            for (int offset = 0; offset < rowCount; offset += CHUNK) {
+                int count = Math.min(CHUNK, rowCount - offset);
+                allValid(valid, count);
+                if (isLong) {
+                    evaluateLongs(batch, offset, count, longs, valid);
+                    for (int i = 0; i < count; i++) {
+                        data.setLong((long) (offset + i) << 3, longs[i]);
+                    }
+                } else {
+                    evaluateDoubles(batch, offset, count, doubles, valid);
+                    for (int i = 0; i < count; i++) {
+                        data.setDouble((long) (offset + i) << 3, doubles[i]);
+                    }
+                }
+                for (int b = 0; b < (count + 7) >>> 3; b++) {
+                    validity.setByte((offset >>> 3) + b, (byte) (valid[b >>> 3] >>> ((b & 7) << 3)));
+                }
+            }
+            vector.setValueCount(rowCount);
+            return vector;
+        } catch (RuntimeException e) {
+            vector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Marks the first {@code count} rows of a chunk valid and clears the remaining bits.
+     */
+    static void allValid(long[] valid, int count) {
+        for (int word = 0; word < valid.length; word++) {
+            int bits = count - (word << 6);
+            valid[word] = bits >= 64 ? -1L : bits <= 0 ? 0L : (1L << bits) - 1;
+        }
+    }
+
+    private static void clearValid(long[] valid, int row) {
+        valid[row >>> 6] &= ~(1L << row);
+    }
+
+    /**
+     * Base of the nodes producing LONG values; they are converted to doubles where a DOUBLE operand is combined
+     * with them.
+     */
+    abstract static class LongExpression extends NumericExpression {
+        private long[] converted;
+
+        @Override
+        public DataType type() {
+            return DataType.LONG;
+        }
+
+        @Override
+        final void evaluateDoubles(VectorSchemaRoot batch, int offset, int count, double[] values, long[] valid) {
+            if (converted == null) {
+                converted = new long[CHUNK];
+            }
+            evaluateLongs(batch, offset, count, converted, valid);
+            for (int i = 0; i < count; i++) {
+                values[i] = converted[i];
+            }
+        }
+    }
+
+    abstract static class DoubleExpression extends NumericExpression {
+
+        @Override
+        public DataType type() {
+            return DataType.DOUBLE;
+        }
+
+        @Override
+        final void evaluateLongs(VectorSchemaRoot batch, int offset, int count, long[] values, long[] valid) {
+            throw new UnsupportedOperationException("A DOUBLE expression has no LONG values");
+        }
+    }
+
+    /**
+     * Reads a BIGINT or TIMESTAMP column.
+     */
+    static final class LongColumn extends LongExpression {
+        private final String column;
+
+        LongColumn(String column) {
+            this.column = column;
+        }
+
+        @Override
+        void evaluateLongs(VectorSchemaRoot batch, int offset, int count, long[] values, long[] valid) {
+            FieldVector vector = batch.getVector(column);
+            ArrowBuf data = vector.getDataBuffer();
+            for (int i = 0; i < count; i++) {
+                values[i] = data.getLong((long) (offset + i) << 3);
+            }
+            andValidity(vector, offset, count, valid);
+        }
+
+        @Override
+        public String toString() {
+            return column;
+        }
+    }
+
+    static final class DoubleColumn extends DoubleExpression {
+        private final String column;
+
+        DoubleColumn(String column) {
+            this.column = column;
+        }
+
+        @Override
+        void evaluateDoubles(VectorSchemaRoot batch, int offset, int count, double[] values, long[] valid) {
+            FieldVector vector = batch.getVector(column);
+            ArrowBuf data = vector.getDataBuffer();
+            for (int i = 0; i < count; i++) {
+                values[i] = data.getDouble((long) (offset + i) << 3);
+            }
+            andValidity(vector, offset, count, valid);
+        }
+
+        @Override
+        public String toString() {
+            return column;
+        }
+    }
+
+    private static void andValidity(FieldVector vector, int offset, int count, long[] valid) {
+        ArrowBuf validity = Selection.validityOf(vector);
+        if (validity == null) {
+            return;
+        }
+        for (int word = 0; word << 6 < count; word++) {
+            valid[word] &= Selection.validBits(validity, offset + (word << 6), Math.min(64, count - (word << 6)));
+        }
+    }
+
+    static final class LongLiteral extends LongExpression {
+        private final long value;
+
+        LongLiteral(long value) {
+            this.value = value;
+        }
+
+        @Override
+        void evaluateLongs(VectorSchemaRoot batch, int offset, int count, long[] values, long[] valid) {
+            for (int i = 0; i < count; i++) {
+                values[i] = value;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(value);
+        }
+    }
+
+    static final class DoubleLiteral extends DoubleExpression {
+        private final double value;
+
+        DoubleLiteral(double value) {
+            this.value = value;
+        }
+
+        @Override
+        void evaluateDoubles(VectorSchemaRoot batch, int offset, int count, double[] values, long[] valid) {
+            for (int i = 0; i < count; i++) {
+                values[i] = value;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * Integer arithmetic; overflow wraps around as in Java. Division truncates towards zero.
+     */
+    static final class LongArithmetic extends LongExpression {
+        private final Arithmetic op;
+        private final NumericExpression left;
+        private final NumericExpression right;
+        private final long[] rightValues = new long[CHUNK];
+
+        LongArithmetic(Arithmetic op, NumericExpression left, NumericExpression right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void evaluateLongs(VectorSchemaRoot batch, int offset, int count, long[] values, long[] valid) {
+            left.evaluateLongs(batch, offset, count, values, valid);
+            long[] operand = rightValues;
+            right.evaluateLongs(batch, offset, count, operand, valid);
+            switch (op) {
+                case ADD:
+                    for (int i = 0; i < count; i++) {
+                        values[i] += operand[i];
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < count; i++) {
+                        values[i] -= operand[i];
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < count; i++) {
+                        values[i] *= operand[i];
+                    }
+                    break;
+                case DIVIDE:
+                case MODULO:
+                    boolean divide = op == Arithmetic.DIVIDE;
+                    for (int i = 0; i < count; i++) {
+                        long divisor = operand[i];
+                        if (divisor == 0) {
+                            clearValid(valid, i);
+                            values[i] = 0;
+                        } else {
+                            values[i] = divide ? values[i] / divisor : values[i] % divisor;
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operator: " + op);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + ' ' + op + ' ' + right + ')';
+        }
+    }
+
+    static final class DoubleArithmetic extends DoubleExpression {
+        private final Arithmetic op;
+        private final NumericExpression left;
+        private final NumericExpression right;
+        private final double[] rightValues = new double[CHUNK];
+
+        DoubleArithmetic(Arithmetic op, NumericExpression left, NumericExpression right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void evaluateDoubles(VectorSchemaRoot batch, int offset, int count, double[] values, long[] valid) {
+            left.evaluateDoubles(batch, offset, count, values, valid);
+            double[] operand = rightValues;
+            right.evaluateDoubles(batch, offset, count, operand, valid);
+            switch (op) {
+                case ADD:
+                    for (int i = 0; i < count; i++) {
+                        values[i] += operand[i];
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < count; i++) {
+                        values[i] -= operand[i];
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < count; i++) {
+                        values[i] *= operand[i];
+                    }
+                    break;
+                case DIVIDE:
+                case MODULO:
+                    boolean divide = op == Arithmetic.DIVIDE;
+                    for (int i = 0; i < count; i++) {
+                        double divisor = operand[i];
+                        if (divisor == 0) {
+                            clearValid(valid, i);
+                            values[i] = 0;
+                        } else {
+                            values[i] = divide ? values[i] / divisor : values[i] % divisor;
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operator: " + op);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + ' ' + op + ' ' + right + ')';
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles query predicates into typed evaluators once per query.
+ * Literals are converted to the column's {@link DataType} up front, numbers are compared numerically,
+ * strings byte-wise on their UTF-8 encoding and IN lists are probed through hash sets.
+ */
+public final class PredicateCompiler {
+
+    private PredicateCompiler() {
+    }
+
+    /**
+     * Compiles a conjunction of predicates.
+     *
+     * @param predicates the predicates to compile; null or empty yields {@link CompiledFilter#ACCEPT_ALL}
+     * @param columnTypes the data type of every available field
+     * @param columnAlias field -> physical source column mapping used to resolve predicate columns (may be null)
+     * @throws IllegalArgumentException if a literal cannot be converted to its column's type
+     */
+    public static CompiledFilter compile(List<Predicate> predicates, Map<String, DataType> columnTypes, Map<String, String> columnAlias) {
+        if (predicates == null || predicates.isEmpty()) {
+            return CompiledFilter.ACCEPT_ALL;
+        }
+        List<String> columns = new ArrayList<>(predicates.size());
+        ColumnPredicate[] compiled = new ColumnPredicate[predicates.size()];
+        DataType[] types = new DataType[predicates.size()];
+        for (int i = 0; i < predicates.size(); i++) {
+            Predicate predicate = predicates.get(i);
+            String field = resolveField(predicate.columnName(), columnTypes, columnAlias);
+            if (field == null) {
+                // Column for predicate not found in the source, nothing can match
+                return new CompiledFilter(Collections.emptyList(), new ColumnPredicate[0], new DataType[0], true);
+            }
+            columns.add(field);
+            types[i] = columnTypes.get(field);
+            compiled[i] = compile(predicate, types[i]);
+        }
+        return new CompiledFilter(columns, compiled, types, false);
+    }
+
+    /**
+     * Resolves a predicate column to a field: either the field itself, or the field that reads the
+     * physical column the predicate column is aliased to.
+     *
+     * @return the field name, or null if the column is not available
+     */
+    public static String resolveField(String column, Map<String, DataType> columnTypes, Map<String, String> columnAlias) {
+        if (columnTypes.containsKey(column)) {
+            return column;
+        }
+        if (columnAlias == null || !columnAlias.containsKey(column)) {
+            return null;
+        }
+        String physicalColumn = columnAlias.get(column);
+        for (String field : columnTypes.keySet()) {
+            if (columnAlias.getOrDefault(field, field).equals(physicalColumn)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a single predicate for a column of the given type.
+     * Predicates on {@link DataType#DICTIONARY_STRING} columns are compiled against the dictionary values.
+     */
+    public static ColumnPredicate compile(Predicate predicate, DataType dataType) {
+        Operator op = predicate.operator();
+        Object value = predicate.value();
+        if (value == null) {
+            return (vector, row) -> false;
+        }
+        switch (dataType) {
+            case LONG:
+            case TIMESTAMP:
+                return compileLong(predicate, op, value);
+            case DOUBLE:
+                return compileDouble(predicate, op, value);
+            case STRING:
+            case DICTIONARY_STRING:
+                return compileString(op, value);
+            case BOOLEAN:
+                return compileBoolean(predicate, op, value);
+            default:
+                throw new IllegalArgumentException("Unsupported data type for predicate on '" + predicate.columnName() + "': " + dataType);
+        }
+    }
+
+    /**
+     * Decides from the value range of a block of rows whether any of them can satisfy a predicate, so blocks
+     * that cannot are skipped without being read. Answers true whenever the range does not settle it.
+     *
+     * @param dataType the data type the column is read as
+     */
+    public static boolean mightMatch(Predicate predicate, DataType dataType, ValueRange range) {
+        if (predicate.value() == null || !range.hasValues()) {
+            // Null literals and null cells never match
+            return false;
+        }
+        Operator op = predicate.operator();
+        Collection<?> literals = op == Operator.IN ? inValues(predicate.value()) : List.of(predicate.value());
+        try {
+            for (Object literal : literals) {
+                if (literal != null && mightMatch(predicate, op == Operator.IN ? Operator.EQUALS : op, literal, dataType, range)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IllegalArgumentException e) {
+            // The literal does not fit the column; compiling the predicate reports it
+            return true;
+        }
+    }
+
+    private static boolean mightMatch(Predicate predicate, Operator op, Object literal, DataType dataType, ValueRange range) {
+        switch (range.getKind()) {
+            case LONG:
+                if (dataType != DataType.LONG && dataType != DataType.TIMESTAMP) {
+                    return true;
+                }
+                Long exact = toExactLong(literal);
+                if (exact == null) {
+                    double value = toDouble(predicate, literal);
+                    return rangeMatches(op, Double.compare(range.getMinLong(), value), Double.compare(range.getMaxLong(), value));
+                }
+                return rangeMatches(op, Long.compare(range.getMinLong(), exact), Long.compare(range.getMaxLong(), exact));
+            case DOUBLE:
+                if (dataType != DataType.DOUBLE || op == Operator.NOT_EQUALS
+                        || Double.isNaN(range.getMinDouble()) || Double.isNaN(range.getMaxDouble())) {
+                    // NaN cells are outside any range yet unequal to every literal
+                    return true;
+                }
+                double value = toDouble(predicate, literal) + 0.0;
+                return rangeMatches(op, Double.compare(range.getMinDouble() + 0.0, value), Double.compare(range.getMaxDouble() + 0.0, value));
+            case UTF8:
+                if (dataType != DataType.STRING && dataType != DataType.DICTIONARY_STRING) {
+                    return true;
+                }
+                byte[] bytes = literal.toString().getBytes(StandardCharsets.UTF_8);
+                return rangeMatches(op, Arrays.compareUnsigned(range.getMinUtf8(), bytes), Arrays.compareUnsigned(range.getMaxUtf8(), bytes));
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @param minComparison the sign of comparing the range's minimum with the literal
+     * @param maxComparison the sign of comparing the range's maximum with the literal
+     */
+    private static boolean rangeMatches(Operator op, int minComparison, int maxComparison) {
+        switch (op) {
+            case EQUALS:
+                return minComparison <= 0 && maxComparison >= 0;
+            case NOT_EQUALS:
+                return minComparison != 0 || maxComparison != 0;
+            case GREATER_THAN:
+                return maxComparison > 0;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return maxComparison >= 0;
+            case LESS_THAN:
+                return minComparison < 0;
+            case LESS_THAN_OR_EQUAL_TO:
+                return minComparison <= 0;
+            default:
+                return true;
+        }
+    }
+
+    private static ColumnPredicate compileLong(Predicate predicate, Operator op, Object value) {
+        if (op == Operator.IN) {
+            LongHashSet set = new LongHashSet();
+            for (Object item : inValues(value)) {
+                Long literal = toExactLong(item);
+                if (literal != null) {
+                    set.add(literal);
+                }
+            }
+            return (vector, row) -> !vector.isNull(row) && set.contains(readLong(vector, row));
+        }
+        Long exact = toExactLong(value);
+        if (exact == null) {
+            // A fractional literal against an integer column is compared in the double domain
+            double literal = toDouble(predicate, value);
+            return compareDouble(op, literal, (vector, row) -> (double) readLong(vector, row));
+        }
+        return new LongComparison(op, exact);
+    }
+
+    private static ColumnPredicate compileDouble(Predicate predicate, Operator op, Object value) {
+        if (op == Operator.IN) {
+            LongHashSet set = new LongHashSet();
+            for (Object item : inValues(value)) {
+                set.add(Double.doubleToLongBits(toDouble(predicate, item) + 0.0));
+            }
+            return (vector, row) -> !vector.isNull(row)
+                    && set.contains(Double.doubleToLongBits(readDouble(vector, row) + 0.0));
+        }
+        return new DoubleComparison(op, toDouble(predicate, value));
+    }
+
+    @FunctionalInterface
+    private interface DoubleReader {
+        double read(FieldVector vector, int row);
+    }
+
+    private static ColumnPredicate compareDouble(Operator op, double literal, DoubleReader reader) {
+        switch (op) {
+            case EQUALS:
+                return (vector, row) -> !vector.isNull(row) && reader.read(vector, row) == literal;
+            case NOT_EQUALS:
+                return (vector, row) -> !vector.isNull(row) && reader.read(vector, row) != literal;
+            case GREATER_THAN:
+                return (vector, row) -> !vector.isNull(row) && reader.read(vector, row) > literal;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return (vector, row) -> !vector.isNull(row) && reader.read(vector, row) >= literal;
+            case LESS_THAN:
+                return (vector, row) -> !vector.isNull(row) && reader.read(vector, row) < literal;
+            case LESS_THAN_OR_EQUAL_TO:
+                return (vector, row) -> !vector.isNull(row) && reader.read(vector, row) <= literal;
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + op);
+        }
+    }
+
+    private static ColumnPredicate compileString(Operator op, Object value) {
+        if (op == Operator.IN) {
+            BytesHashSet set = new BytesHashSet();
+            for (Object item : inValues(value)) {
+                if (item != null) {
+                    set.add(item.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return (vector, row) -> {
+                if (vector.isNull(row)) {
+                    return false;
+                }
+                int start = vector.getOffsetBuffer().getInt((long) row * 4);
+                int end = vector.getOffsetBuffer().getInt((long) (row + 1) * 4);
+                return set.contains(vector.getDataBuffer(), start, end - start);
+            };
+        }
+        byte[] literal = value.toString().getBytes(StandardCharsets.UTF_8);
+        switch (op) {
+            case EQUALS:
+                return (vector, row) -> !vector.isNull(row) && compareUtf8(vector, row, literal) == 0;
+            case NOT_EQUALS:
+                return (vector, row) -> !vector.isNull(row) && compareUtf8(vector, row, literal) != 0;
+            case GREATER_THAN:
+                return (vector, row) -> !vector.isNull(row) && compareUtf8(vector, row, literal) > 0;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return (vector, row) -> !vector.isNull(row) && compareUtf8(vector, row, literal) >= 0;
+            case LESS_THAN:
+                return (vector, row) -> !vector.isNull(row) && compareUtf8(vector, row, literal) < 0;
+            case LESS_THAN_OR_EQUAL_TO:
+                return (vector, row) -> !vector.isNull(row) && compareUtf8(vector, row, literal) <= 0;
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + op);
+        }
+    }
+
+    private static ColumnPredicate compileBoolean(Predicate predicate, Operator op, Object value) {
+        if (op == Operator.IN) {
+            boolean[] accepted = new boolean[2];
+            for (Object item : inValues(value)) {
+                accepted[toBoolean(predicate, item) ? 1 : 0] = true;
+            }
+            return (vector, row) -> !vector.isNull(row) && accepted[((BitVector) vector).get(row)];
+        }
+        int literal = toBoolean(predicate, value) ? 1 : 0;
+        switch (op) {
+            case EQUALS:
+                return (vector, row) -> !vector.isNull(row) && ((BitVector) vector).get(row) == literal;
+            case NOT_EQUALS:
+                return (vector, row) -> !vector.isNull(row) && ((BitVector) vector).get(row) != literal;
+            default:
+                throw new IllegalArgumentException("Operator " + op + " is not supported on boolean column '" + predicate.columnName() + "'");
+        }
+    }
+
+    static long readLong(FieldVector vector, int row) {
+        // BIGINT and TIMESTAMP vectors both store 8-byte little-endian values
+        return vector.getDataBuffer().getLong((long) row * 8);
+    }
+
+    static double readDouble(FieldVector vector, int row) {
+        return vector.getDataBuffer().getDouble((long) row * 8);
+    }
+
+    /**
+     * Compares a VARCHAR cell with a UTF-8 literal using unsigned byte order, which matches code point order.
+     */
+    static int compareUtf8(FieldVector vector, int row, byte[] literal) {
+        ArrowBuf offsets = vector.getOffsetBuffer();
+        int start = offsets.getInt((long) row * 4);
+        int length = offsets.getInt((long) (row + 1) * 4) - start;
+        ArrowBuf data = vector.getDataBuffer();
+        int common = Math.min(length, literal.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (data.getByte(start + i) & 0xFF) - (literal[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - literal.length;
+    }
+
+    static Collection<?> inValues(Object value) {
+        if (value instanceof Collection) {
+            return (Collection<?>) value;
+        }
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        return Collections.singletonList(value);
+    }
+
+    private static Long toExactLong(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            return d == Math.rint(d) && !Double.isInfinite(d) ? (long) d : null;
+        }
+        String text = value.toString().trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                double d = Double.parseDouble(text);
+                return d == Math.rint(d) && !Double.isInfinite(d) ? (long) d : null;
+            } catch (NumberFormatException notNumeric) {
+                throw new IllegalArgumentException("Cannot compare numeric column with '" + value + "'");
+            }
+        }
+    }
+
+    private static double toDouble(Predicate predicate, Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot compare column '" + predicate.columnName() + "' with '" + value + "'");
+        }
+    }
+
+    private static boolean toBoolean(Predicate predicate, Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue() != 0;
+        }
+        String text = value.toString().trim();
+        if ("true".equalsIgnoreCase(text) || "1".equals(text)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(text) || "0".equals(text)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Cannot compare boolean column '" + predicate.columnName() + "' with '" + value + "'");
+    }
+
+    /**
+     * Open-addressing set of primitive longs, so IN probes never box.
+     */
+    static final class LongHashSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private long[] slots = new long[16];
+        private boolean containsEmpty;
+        private int size;
+
+        LongHashSet() {
+            Arrays.fill(slots, EMPTY);
+        }
+
+        void add(long value) {
+            if (value == EMPTY) {
+                containsEmpty = true;
+                return;
+            }
+            if ((size + 1) * 2 > slots.length) {
+                rehash();
+            }
+            if (insert(slots, value)) {
+                size++;
+            }
+        }
+
+        boolean contains(long value) {
+            if (value == EMPTY) {
+                return containsEmpty;
+            }
+            int mask = slots.length - 1;
+            int i = mix(value) & mask;
+            while (slots[i] != EMPTY) {
+                if (slots[i] == value) {
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+            return false;
+        }
+
+        int size() {
+            return containsEmpty ? size + 1 : size;
+        }
+
+        void forEach(java.util.function.LongConsumer action) {
+            if (containsEmpty) {
+                action.accept(EMPTY);
+            }
+            for (long slot : slots) {
+                if (slot != EMPTY) {
+                    action.accept(slot);
+                }
+            }
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            int i = mix(value) & mask;
+            while (table[i] != EMPTY) {
+                if (table[i] == value) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = value;
+            return true;
+        }
+
+        private void rehash() {
+            long[] grown = new long[slots.length * 2];
+            Arrays.fill(grown, EMPTY);
+            for (long slot : slots) {
+                if (slot != EMPTY) {
+                    insert(grown, slot);
+                }
+            }
+            slots = grown;
+        }
+
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Set of UTF-8 byte strings that can be probed with a slice of an Arrow buffer without allocating.
+     */
+    static final class BytesHashSet {
+        private byte[][][] buckets = new byte[16][][];
+        private int size;
+
+        void add(byte[] value) {
+            if (contains(value)) {
+                return;
+            }
+            if (size + 1 > buckets.length) {
+                rehash();
+            }
+            append(buckets, value);
+            size++;
+        }
+
+        boolean contains(byte[] value) {
+            byte[][] bucket = buckets[hash(value) & (buckets.length - 1)];
+            if (bucket != null) {
+                for (byte[] candidate : bucket) {
+                    if (Arrays.equals(candidate, value)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        boolean contains(ArrowBuf data, int start, int length) {
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + data.getByte(start + i);
+            }
+            byte[][] bucket = buckets[h & (buckets.length - 1)];
+            if (bucket == null) {
+                return false;
+            }
+            outer:
+            for (byte[] candidate : bucket) {
+                if (candidate.length != length) {
+                    continue;
+                }
+                for (int i = 0; i < length; i++) {
+                    if (candidate[i] != data.getByte(start + i)) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private static int hash(byte[] value) {
+            // Same as the ArrowBuf probe above
+            return Arrays.hashCode(value);
+        }
+
+        private static void append(byte[][][] table, byte[] value) {
+            int index = hash(value) & (table.length - 1);
+            byte[][] bucket = table[index];
+            if (bucket == null) {
+                table[index] = new byte[][]{value};
+            } else {
+                byte[][] grown = Arrays.copyOf(bucket, bucket.length + 1);
+                grown[bucket.length] = value;
+                table[index] = grown;
+            }
+        }
+
+        private void rehash() {
+            byte[][][] grown = new byte[buckets.length * 2][][];
+            for (byte[][] bucket : buckets) {
+                if (bucket != null) {
+                    for (byte[] value : bucket) {
+                        append(grown, value);
+                    }
+                }
+            }
+            buckets = grown;
+        }
+    }
+}
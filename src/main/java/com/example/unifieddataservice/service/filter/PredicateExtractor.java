@@ -0,0 +1,133 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns SQL conditions into {@link Predicate}s that metric sources can be filtered by.
+ * Comparisons and IN lists of a column with literals, AND-ed together, become predicates; any other condition
+ * is left to the caller as an expression.
+ */
+public final class PredicateExtractor {
+
+    private PredicateExtractor() {
+    }
+
+    /**
+     * Parses a filter such as {@code ticker = 'AAPL' AND close > 100} into predicates.
+     *
+     * @param filter the condition to parse; null or blank means no filter
+     * @return the AND-ed predicates of the filter, empty if there is none
+     * @throws IllegalArgumentException if the filter does not parse or holds a condition a predicate cannot express
+     */
+    public static List<Predicate> parse(String filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter == null || filter.isBlank()) {
+            return predicates;
+        }
+        Expression expression;
+        try {
+            expression = CCJSqlParserUtil.parseCondExpression(filter);
+        } catch (JSQLParserException e) {
+            throw new IllegalArgumentException("Invalid filter: " + filter, e);
+        }
+        List<Expression> unsupported = new ArrayList<>();
+        extract(expression, predicates, unsupported);
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("Unsupported filter condition: " + unsupported.get(0)
+                    + "; only AND-ed comparisons and IN lists of a column with literals are supported");
+        }
+        return predicates;
+    }
+
+    /**
+     * Splits a condition into its AND-ed parts. Parts that are comparisons or IN lists of a column with literals
+     * are added to {@code predicates}, all others to {@code residualConditions}.
+     */
+    public static void extract(Expression expression, List<Predicate> predicates, List<Expression> residualConditions) {
+        if (expression instanceof AndExpression) {
+            AndExpression and = (AndExpression) expression;
+            extract(and.getLeftExpression(), predicates, residualConditions);
+            extract(and.getRightExpression(), predicates, residualConditions);
+        } else if (expression instanceof Parenthesis) {
+            extract(((Parenthesis) expression).getExpression(), predicates, residualConditions);
+        } else if (!addPredicate(expression, predicates)) {
+            residualConditions.add(expression);
+        }
+    }
+
+    /**
+     * @return whether the condition was added as a predicate
+     */
+    private static boolean addPredicate(Expression expression, List<Predicate> predicates) {
+        if (expression instanceof EqualsTo) {
+            return addPredicate((EqualsTo) expression, Operator.EQUALS, predicates);
+        } else if (expression instanceof NotEqualsTo) {
+            return addPredicate((NotEqualsTo) expression, Operator.NOT_EQUALS, predicates);
+        } else if (expression instanceof GreaterThan) {
+            return addPredicate((GreaterThan) expression, Operator.GREATER_THAN, predicates);
+        } else if (expression instanceof GreaterThanEquals) {
+            return addPredicate((GreaterThanEquals) expression, Operator.GREATER_THAN_OR_EQUAL_TO, predicates);
+        } else if (expression instanceof MinorThan) {
+            return addPredicate((MinorThan) expression, Operator.LESS_THAN, predicates);
+        } else if (expression instanceof MinorThanEquals) {
+            return addPredicate((MinorThanEquals) expression, Operator.LESS_THAN_OR_EQUAL_TO, predicates);
+        } else if (expression instanceof InExpression) {
+            return addInPredicate((InExpression) expression, predicates);
+        }
+        return false;
+    }
+
+    private static boolean addPredicate(ComparisonOperator expression, Operator op, List<Predicate> predicates) {
+        if (!(expression.getLeftExpression() instanceof Column) || !isValue(expression.getRightExpression())) {
+            return false;
+        }
+        String columnName = ((Column) expression.getLeftExpression()).getColumnName();
+        predicates.add(new Predicate(columnName, op, ExpressionCompiler.literalValue(expression.getRightExpression())));
+        return true;
+    }
+
+    private static boolean addInPredicate(InExpression expression, List<Predicate> predicates) {
+        if (expression.isNot() || !(expression.getLeftExpression() instanceof Column)
+                || !(expression.getRightExpression() instanceof ExpressionList)) {
+            return false;
+        }
+        ExpressionList<?> items = (ExpressionList<?>) expression.getRightExpression();
+        if (!items.stream().allMatch(PredicateExtractor::isValue)) {
+            return false;
+        }
+        String columnName = ((Column) expression.getLeftExpression()).getColumnName();
+        List<Object> values = new ArrayList<>();
+        for (Expression item : items) {
+            values.add(ExpressionCompiler.literalValue(item));
+        }
+        predicates.add(new Predicate(columnName, Operator.IN, values));
+        return true;
+    }
+
+    /**
+     * @return whether the expression is a non-NULL literal that a predicate can carry
+     */
+    private static boolean isValue(Expression expression) {
+        return ExpressionCompiler.isLiteral(expression) && !(expression instanceof NullValue);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.unifieddataservice.service.filter;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of row numbers in the layout of Roaring bitmaps: rows are split by their upper 16 bits into
+ * chunks of 65536, and each chunk is held as a sorted array of its lower 16 bits while it has at most 4096 rows,
+ * or as a 65536-bit bitmap once it has more. Sparse values cost two bytes a row and dense ones one bit.
+ *
+ * <p>Rows are added in increasing order while an index is built; the bitmap is read-only afterwards.</p>
+ */
+final class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys = new char[1];
+    // A char[] array chunk or a long[] bitmap chunk for each key
+    private Object[] chunks = new Object[1];
+    private int[] cardinalities = new int[1];
+    private int size;
+
+    /**
+     * Adds a row greater than every row added before.
+     */
+    void add(int row) {
+        char key = (char) (row >>> 16);
+        char low = (char) row;
+        if (size == 0 || keys[size - 1] != key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                chunks = Arrays.copyOf(chunks, size * 2);
+                cardinalities = Arrays.copyOf(cardinalities, size * 2);
+            }
+            keys[size] = key;
+            chunks[size] = new char[4];
+            size++;
+        }
+        int chunk = size - 1;
+        int cardinality = cardinalities[chunk];
+        if (chunks[chunk] instanceof char[]) {
+            char[] values = (char[]) chunks[chunk];
+            if (cardinality == ARRAY_MAX) {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (char value : values) {
+                    bitmap[value >>> 6] |= 1L << value;
+                }
+                bitmap[low >>> 6] |= 1L << low;
+                chunks[chunk] = bitmap;
+            } else {
+                if (cardinality == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+                    chunks[chunk] = values;
+                }
+                values[cardinality] = low;
+            }
+        } else {
+            long[] bitmap = (long[]) chunks[chunk];
+            bitmap[low >>> 6] |= 1L << low;
+        }
+        cardinalities[chunk] = cardinality + 1;
+    }
+
+    /**
+     * Sets the bits of the rows of this bitmap in a selection's words, which must cover every row.
+     */
+    void orInto(long[] words) {
+        for (int chunk = 0; chunk < size; chunk++) {
+            int base = keys[chunk] << 10;
+            if (chunks[chunk] instanceof char[]) {
+                char[] values = (char[]) chunks[chunk];
+                for (int i = 0; i < cardinalities[chunk]; i++) {
+                    words[base + (values[i] >>> 6)] |= 1L << values[i];
+                }
+            } else {
+                long[] bitmap = (long[]) chunks[chunk];
+                int count = Math.min(BITMAP_WORDS, words.length - base);
+                for (int word = 0; word < count; word++) {
+                    words[base + word] |= bitmap[word];
+                }
+            }
+        }
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (int chunk = 0; chunk < size; chunk++) {
+            cardinality += cardinalities[chunk];
+        }
+        return cardinality;
+    }
+
+    /**
+     * Trims the array chunks to their cardinality once the bitmap is complete.
+     */
+    void trim() {
+        for (int chunk = 0; chunk < size; chunk++) {
+            if (chunks[chunk] instanceof char[]) {
+                chunks[chunk] = Arrays.copyOf((char[]) chunks[chunk], cardinalities[chunk]);
+            }
+        }
+        keys = Arrays.copyOf(keys, size);
+        chunks = Arrays.copyOf(chunks, size);
+        cardinalities = Arrays.copyOf(cardinalities, size);
+    }
+
+    long sizeInBytes() {
+        long bytes = 0;
+        for (int chunk = 0; chunk < size; chunk++) {
+            bytes += chunks[chunk] instanceof char[] ? cardinalities[chunk] * 2L : BITMAP_WORDS * 8L;
+        }
+        return bytes + size * 8L;
+    }
+}
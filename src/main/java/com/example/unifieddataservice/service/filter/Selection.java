@@ -0,0 +1,190 @@
+package com.example.unifieddataservice.service.filter;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * The rows of a record batch that are still selected while a filter runs, one bit per row in 64-bit words.
+ * Filter kernels clear the bits of the rows they reject a word at a time, and the selected rows are then gathered
+ * into the output column by column.
+ */
+public final class Selection {
+    private final long[] words;
+    private final int rowCount;
+
+    private Selection(long[] words, int rowCount) {
+        this.words = words;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return a selection of every row of a batch with {@code rowCount} rows
+     */
+    public static Selection all(int rowCount) {
+        long[] words = new long[(rowCount + 63) >>> 6];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = -1L;
+        }
+        if ((rowCount & 63) != 0) {
+            words[words.length - 1] = (1L << (rowCount & 63)) - 1;
+        }
+        return new Selection(words, rowCount);
+    }
+
+    /**
+     * @return a selection of no row of a batch with {@code rowCount} rows
+     */
+    public static Selection none(int rowCount) {
+        return new Selection(new long[(rowCount + 63) >>> 6], rowCount);
+    }
+
+    /**
+     * @return a new selection of the same rows, which can be narrowed without affecting this one
+     */
+    public Selection copy() {
+        return new Selection(words.clone(), rowCount);
+    }
+
+    /**
+     * Keeps only the rows that are also selected in {@code other}.
+     */
+    public void and(Selection other) {
+        checkSameBatch(other);
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Adds the rows selected in {@code other}.
+     */
+    public void or(Selection other) {
+        checkSameBatch(other);
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Drops the rows selected in {@code other}.
+     */
+    public void andNot(Selection other) {
+        checkSameBatch(other);
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    private void checkSameBatch(Selection other) {
+        if (other.rowCount != rowCount) {
+            throw new IllegalArgumentException("Cannot combine selections of " + rowCount + " and " + other.rowCount + " rows");
+        }
+    }
+
+    /**
+     * @return the words of the bitmap; bit {@code i % 64} of word {@code i / 64} is set if row {@code i} is selected
+     */
+    long[] words() {
+        return words;
+    }
+
+    /**
+     * @return the number of rows of the batch, selected or not
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of selected rows
+     */
+    public int count() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isAll() {
+        return count() == rowCount;
+    }
+
+    public boolean isSelected(int row) {
+        return (words[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return the first selected row at or after {@code from}, or -1 if there is none
+     */
+    public int nextSelected(int from) {
+        int word = from >>> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * @return the first unselected row at or after {@code from}, or the row count if there is none
+     */
+    public int nextUnselected(int from) {
+        int word = from >>> 6;
+        if (word >= words.length) {
+            return rowCount;
+        }
+        long bits = ~words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == words.length) {
+                return rowCount;
+            }
+            bits = ~words[word];
+        }
+        return Math.min(rowCount, (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    /**
+     * Reads the validity bits of {@code count} rows from {@code base}, a multiple of 64, as one word.
+     *
+     * @param validity the validity buffer, or null if the vector has no nulls
+     */
+    static long validBits(ArrowBuf validity, int base, int count) {
+        long mask = count == 64 ? -1L : (1L << count) - 1;
+        if (validity == null) {
+            return mask;
+        }
+        long offset = base >>> 3;
+        if (offset + 8 <= validity.capacity()) {
+            return validity.getLong(offset) & mask;
+        }
+        long bits = 0;
+        for (int i = 0; i < (count + 7) >>> 3; i++) {
+            bits |= (validity.getByte(offset + i) & 0xFFL) << (i << 3);
+        }
+        return bits & mask;
+    }
+
+    /**
+     * @return the validity buffer of the vector for {@link #validBits}, or null if it has no nulls
+     */
+    static ArrowBuf validityOf(FieldVector vector) {
+        // Counting nulls reads the validity buffer once, so it is done once per batch rather than per word
+        return vector.getNullCount() == 0 ? null : vector.getValidityBuffer();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The minimum, maximum and null count of a column over a block of rows, such as a Parquet row group.
+ * Bounds are held in the comparison domain of the column's {@link DataType}: longs for LONG and TIMESTAMP,
+ * doubles for DOUBLE and UTF-8 bytes for strings. A range without bounds only tells whether the block has values.
+ *
+ * @see PredicateCompiler#mightMatch(com.example.unifieddataservice.model.Predicate, DataType, ValueRange)
+ */
+public final class ValueRange {
+    /**
+     * The domain the bounds are held in.
+     */
+    public enum Kind {
+        NONE,
+        LONG,
+        DOUBLE,
+        UTF8
+    }
+
+    private static final ValueRange UNKNOWN = new ValueRange(Kind.NONE, 0, 0, 0, 0, null, null, 0, true);
+
+    private final Kind kind;
+    private final long minLong;
+    private final long maxLong;
+    private final double minDouble;
+    private final double maxDouble;
+    private final byte[] minUtf8;
+    private final byte[] maxUtf8;
+    private final long nullCount;
+    private final boolean hasValues;
+
+    private ValueRange(Kind kind, long minLong, long maxLong, double minDouble, double maxDouble,
+                       byte[] minUtf8, byte[] maxUtf8, long nullCount, boolean hasValues) {
+        this.kind = kind;
+        this.minLong = minLong;
+        this.maxLong = maxLong;
+        this.minDouble = minDouble;
+        this.maxDouble = maxDouble;
+        this.minUtf8 = minUtf8;
+        this.maxUtf8 = maxUtf8;
+        this.nullCount = nullCount;
+        this.hasValues = hasValues;
+    }
+
+    /**
+     * @return a range that rules nothing out
+     */
+    public static ValueRange unknown() {
+        return UNKNOWN;
+    }
+
+    /**
+     * @return the range of a block holding nothing but nulls
+     */
+    public static ValueRange onlyNulls(long nullCount) {
+        return new ValueRange(Kind.NONE, 0, 0, 0, 0, null, null, nullCount, false);
+    }
+
+    public static ValueRange ofLongs(long min, long max, long nullCount) {
+        return new ValueRange(Kind.LONG, min, max, 0, 0, null, null, nullCount, true);
+    }
+
+    public static ValueRange ofDoubles(double min, double max, long nullCount) {
+        return new ValueRange(Kind.DOUBLE, 0, 0, min, max, null, null, nullCount, true);
+    }
+
+    /**
+     * @param min the smallest value's UTF-8 bytes, or a lower bound of it in unsigned byte order
+     * @param max the largest value's UTF-8 bytes, or an upper bound of it in unsigned byte order
+     */
+    public static ValueRange ofUtf8(byte[] min, byte[] max, long nullCount) {
+        return new ValueRange(Kind.UTF8, 0, 0, 0, 0, min, max, nullCount, true);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getMinLong() {
+        return minLong;
+    }
+
+    public long getMaxLong() {
+        return maxLong;
+    }
+
+    public double getMinDouble() {
+        return minDouble;
+    }
+
+    public double getMaxDouble() {
+        return maxDouble;
+    }
+
+    public byte[] getMinUtf8() {
+        return minUtf8;
+    }
+
+    public byte[] getMaxUtf8() {
+        return maxUtf8;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * @return false if every row of the block is null
+     */
+    public boolean hasValues() {
+        return hasValues;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case LONG:
+                return "ValueRange[" + minLong + ", " + maxLong + ", nulls=" + nullCount + "]";
+            case DOUBLE:
+                return "ValueRange[" + minDouble + ", " + maxDouble + ", nulls=" + nullCount + "]";
+            case UTF8:
+                return "ValueRange[" + new String(minUtf8, StandardCharsets.UTF_8) + ", "
+                        + new String(maxUtf8, StandardCharsets.UTF_8) + ", nulls=" + nullCount + "]";
+            default:
+                return hasValues ? "ValueRange[unknown]" : "ValueRange[only nulls: " + nullCount + "]";
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Predicate;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link ValueRange} of each column of one record batch. A range is computed from the batch the first time
+ * a filter asks for it and kept for as long as the batch lives, so repeated filters on a cached table can skip
+ * the batches whose ranges rule their predicates out without reading them again. On sorted histories this turns
+ * a time-window query into a scan of the few batches that overlap the window.
+ *
+ * <p>A zone map holds no reference to the batch: tables sharing the buffers of a batch share its zone map.</p>
+ *
+ * <p>Zone maps only serve the in-memory filter of tables that are already loaded. A load with a combination
+ * of pushed predicates that is not cached yet fetches and parses the source again; the zone maps of tables
+ * loaded with other predicates are not consulted for it.</p>
+ */
+public final class ZoneMap {
+    private final Map<String, ValueRange> ranges = new ConcurrentHashMap<>();
+
+    /**
+     * @return the range of the column over the batch, computed on first use
+     */
+    public ValueRange range(VectorSchemaRoot batch, String column, DataType dataType, DictionaryProvider dictionaries) {
+        return ranges.computeIfAbsent(column, name -> rangeOf(batch.getVector(name), dataType, dictionaries));
+    }
+
+    /**
+     * @param columns for each predicate, the field it was resolved to, as in {@link CompiledFilter#getColumns()}
+     * @return false if the ranges of the batch rule out every row for one of the predicates
+     */
+    public boolean mightMatch(VectorSchemaRoot batch, DictionaryProvider dictionaries, List<Predicate> predicates,
+                              List<String> columns, Map<String, DataType> columnTypes) {
+        for (int i = 0; i < predicates.size(); i++) {
+            DataType dataType = columnTypes.get(columns.get(i));
+            ValueRange range = range(batch, columns.get(i), dataType, dictionaries);
+            if (!PredicateCompiler.mightMatch(predicates.get(i), dataType, range)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static ValueRange rangeOf(FieldVector vector, DataType dataType, DictionaryProvider dictionaries) {
+        int rowCount = vector.getValueCount();
+        int nullCount = vector.getNullCount();
+        if (nullCount == rowCount) {
+            return ValueRange.onlyNulls(nullCount);
+        }
+        switch (dataType) {
+            case LONG:
+            case TIMESTAMP:
+                return longRange(vector, nullCount);
+            case DOUBLE:
+                return doubleRange(vector, nullCount);
+            case STRING:
+                return utf8Range(vector, nullCount);
+            case DICTIONARY_STRING:
+                return dictionaryRange(vector, nullCount, dictionaries);
+            default:
+                return ValueRange.unknown();
+        }
+    }
+
+    private static ValueRange longRange(FieldVector vector, int nullCount) {
+        // BIGINT and TIMESTAMP vectors both store 8-byte little-endian values
+        ArrowBuf data = vector.getDataBuffer();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < vector.getValueCount(); row++) {
+            if (nullCount == 0 || !vector.isNull(row)) {
+                long value = data.getLong((long) row * 8);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return ValueRange.ofLongs(min, max, nullCount);
+    }
+
+    /**
+     * A NaN cell makes both bounds NaN, which {@link PredicateCompiler#mightMatch} never prunes on.
+     */
+    private static ValueRange doubleRange(FieldVector vector, int nullCount) {
+        ArrowBuf data = vector.getDataBuffer();
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int row = 0; row < vector.getValueCount(); row++) {
+            if (nullCount == 0 || !vector.isNull(row)) {
+                double value = data.getDouble((long) row * 8);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return ValueRange.ofDoubles(min, max, nullCount);
+    }
+
+    private static ValueRange utf8Range(FieldVector vector, int nullCount) {
+        ArrowBuf offsets = vector.getOffsetBuffer();
+        ArrowBuf data = vector.getDataBuffer();
+        int minRow = -1;
+        int maxRow = -1;
+        for (int row = 0; row < vector.getValueCount(); row++) {
+            if (nullCount > 0 && vector.isNull(row)) {
+                continue;
+            }
+            if (minRow < 0) {
+                minRow = row;
+                maxRow = row;
+            } else if (compareUtf8(offsets, data, row, minRow) < 0) {
+                minRow = row;
+            } else if (compareUtf8(offsets, data, row, maxRow) > 0) {
+                maxRow = row;
+            }
+        }
+        return ValueRange.ofUtf8(bytesAt(offsets, data, minRow), bytesAt(offsets, data, maxRow), nullCount);
+    }
+
+    /**
+     * The range of a dictionary-encoded column covers the values its codes refer to in this batch,
+     * not the whole dictionary, which grows with every batch appended to the table.
+     */
+    private static ValueRange dictionaryRange(FieldVector codes, int nullCount, DictionaryProvider dictionaries) {
+        Dictionary dictionary = dictionaries.lookup(codes.getField().getDictionary().getId());
+        if (dictionary == null || codes.getField().getDictionary().getIndexType().getBitWidth() != 32) {
+            return ValueRange.unknown();
+        }
+        FieldVector values = dictionary.getVector();
+        boolean[] used = new boolean[values.getValueCount()];
+        ArrowBuf data = codes.getDataBuffer();
+        for (int row = 0; row < codes.getValueCount(); row++) {
+            if (nullCount == 0 || !codes.isNull(row)) {
+                used[data.getInt((long) row * 4)] = true;
+            }
+        }
+        ArrowBuf offsets = values.getOffsetBuffer();
+        ArrowBuf valueData = values.getDataBuffer();
+        int minCode = -1;
+        int maxCode = -1;
+        for (int code = 0; code < used.length; code++) {
+            if (!used[code] || values.isNull(code)) {
+                continue;
+            }
+            if (minCode < 0) {
+                minCode = code;
+                maxCode = code;
+            } else if (compareUtf8(offsets, valueData, code, minCode) < 0) {
+                minCode = code;
+            } else if (compareUtf8(offsets, valueData, code, maxCode) > 0) {
+                maxCode = code;
+            }
+        }
+        if (minCode < 0) {
+            return ValueRange.onlyNulls(nullCount);
+        }
+        return ValueRange.ofUtf8(bytesAt(offsets, valueData, minCode), bytesAt(offsets, valueData, maxCode), nullCount);
+    }
+
+    /**
+     * Compares two cells of a VARCHAR vector in unsigned byte order, which is code point order for UTF-8.
+     */
+    private static int compareUtf8(ArrowBuf offsets, ArrowBuf data, int row, int other) {
+        int start = offsets.getInt((long) row * 4);
+        int length = offsets.getInt((long) (row + 1) * 4) - start;
+        int otherStart = offsets.getInt((long) other * 4);
+        int otherLength = offsets.getInt((long) (other + 1) * 4) - otherStart;
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int difference = Byte.toUnsignedInt(data.getByte(start + i)) - Byte.toUnsignedInt(data.getByte(otherStart + i));
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - otherLength;
+    }
+
+    private static byte[] bytesAt(ArrowBuf offsets, ArrowBuf data, int row) {
+        int start = offsets.getInt((long) row * 4);
+        byte[] bytes = new byte[offsets.getInt((long) (row + 1) * 4) - start];
+        data.getBytes(start, bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ZoneMap" + ranges;
+    }
+}
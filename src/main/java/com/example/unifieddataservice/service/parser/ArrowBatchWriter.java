@@ -0,0 +1,440 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Writes parsed rows straight into fixed-size Arrow record batches.
+ * Once the current batch holds {@code batchSize} rows it is sealed and a new one is started,
+ * so parsers never have to buffer source records before converting them. The vectors of a batch
+ * grow with the rows written to it, so a batch holding a few rows takes little memory.
+ *
+ * <p>A row is written cell by cell and then either committed with {@link #endRow()} or dropped
+ * with {@link #discardRow()}; a discarded row is simply overwritten by the next one.
+ * Cells that were not written before {@link #endRow()} are stored as null.</p>
+ *
+ * <p>{@link DataType#DICTIONARY_STRING} columns are written as 32-bit codes into a dictionary that
+ * is built alongside the batches and handed over with them by {@link #finish()}.</p>
+ */
+class ArrowBatchWriter implements AutoCloseable {
+    /** Rows allocated when a batch is started; vectors grow from there up to the batch size. */
+    static final int INITIAL_CAPACITY = 256;
+
+    private final BufferAllocator allocator;
+    private final Schema schema;
+    private final DataType[] types;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final StringDictionary[] dictionaries;
+    private final int batchSize;
+    private final List<VectorSchemaRoot> batches = new ArrayList<>();
+
+    private VectorSchemaRoot current;
+    private FieldVector[] vectors;
+    private final boolean[] written;
+    private int row;
+
+    ArrowBatchWriter(BufferAllocator allocator, Map<String, DataType> fieldMappings, int batchSize) {
+        this(allocator, fieldMappings, batchSize, dictionaryIds(fieldMappings));
+    }
+
+    /**
+     * @param dictionaryIds the dictionary id of every dictionary-encoded field; writers whose batches are
+     *                      later combined with {@link Output#append(Output)} must share the same ids
+     */
+    ArrowBatchWriter(BufferAllocator allocator, Map<String, DataType> fieldMappings, int batchSize, Map<String, Long> dictionaryIds) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.allocator = allocator;
+        this.batchSize = batchSize;
+
+        Map<String, Field> arrowFields = DataTypeMapper.toArrowFields(fieldMappings);
+        List<Field> fields = new ArrayList<>(fieldMappings.size());
+        this.types = new DataType[fieldMappings.size()];
+        this.dictionaries = new StringDictionary[fieldMappings.size()];
+        int i = 0;
+        for (Map.Entry<String, DataType> entry : fieldMappings.entrySet()) {
+            if (entry.getValue() == DataType.DICTIONARY_STRING) {
+                dictionaries[i] = new StringDictionary(entry.getKey(), allocator, dictionaryIds.get(entry.getKey()));
+                fields.add(new Field(entry.getKey(),
+                        new FieldType(true, StringDictionary.INDEX_TYPE, dictionaries[i].getEncoding()), null));
+            } else {
+                fields.add(arrowFields.get(entry.getKey()));
+            }
+            types[i] = entry.getValue();
+            columnIndexes.put(entry.getKey(), i);
+            i++;
+        }
+        this.schema = new Schema(fields, null);
+        this.written = new boolean[fields.size()];
+    }
+
+    /**
+     * Allocates a new dictionary id for every dictionary-encoded field.
+     */
+    static Map<String, Long> dictionaryIds(Map<String, DataType> fieldMappings) {
+        Map<String, Long> ids = new HashMap<>();
+        fieldMappings.forEach((field, type) -> {
+            if (type == DataType.DICTIONARY_STRING) {
+                ids.put(field, StringDictionary.nextId());
+            }
+        });
+        return ids;
+    }
+
+    Schema getSchema() {
+        return schema;
+    }
+
+    int columnCount() {
+        return types.length;
+    }
+
+    /**
+     * @return the column position of the given field, or -1 if the field is not written by this writer
+     */
+    int columnIndex(String fieldName) {
+        Integer index = columnIndexes.get(fieldName);
+        return index != null ? index : -1;
+    }
+
+    DataType typeOf(int column) {
+        return types[column];
+    }
+
+    /**
+     * @return the writer column of each of the filter's columns
+     */
+    int[] columnIndexes(CompiledFilter filter) {
+        return filter.getColumns().stream().mapToInt(this::columnIndex).toArray();
+    }
+
+    /**
+     * @return the vector receiving the current row for the given column
+     */
+    FieldVector vector(int column) {
+        ensureBatch();
+        return vectors[column];
+    }
+
+    /**
+     * @return the position of the row currently being written inside its batch
+     */
+    int rowIndex() {
+        return row;
+    }
+
+    /**
+     * Converts a textual cell according to the column's data type.
+     * Blank or unparseable values are stored as null.
+     */
+    void setString(int column, String value) {
+        if (value == null) {
+            setNull(column);
+            return;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            setNull(column);
+            return;
+        }
+        try {
+            switch (types[column]) {
+                case STRING:
+                case DICTIONARY_STRING:
+                    setBytes(column, value.getBytes(StandardCharsets.UTF_8));
+                    break;
+                case LONG:
+                case TIMESTAMP:
+                    setLong(column, Long.parseLong(trimmed));
+                    break;
+                case DOUBLE:
+                    setDouble(column, Double.parseDouble(trimmed));
+                    break;
+                case BOOLEAN:
+                    setBoolean(column, Boolean.parseBoolean(trimmed));
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported data type: " + types[column]);
+            }
+        } catch (NumberFormatException e) {
+            setNull(column);
+        }
+    }
+
+    void setBytes(int column, byte[] value) {
+        if (dictionaries[column] != null) {
+            ((IntVector) vector(column)).setSafe(row, dictionaries[column].encode(value));
+        } else {
+            ((VarCharVector) vector(column)).setSafe(row, value);
+        }
+        written[column] = true;
+    }
+
+    /**
+     * Writes the UTF-8 bytes {@code source[offset, offset + length)} into a string column without copying them first.
+     */
+    void setBytes(int column, byte[] source, int offset, int length) {
+        if (dictionaries[column] != null) {
+            ((IntVector) vector(column)).setSafe(row, dictionaries[column].encode(source, offset, length));
+        } else {
+            ((VarCharVector) vector(column)).setSafe(row, source, offset, length);
+        }
+        written[column] = true;
+    }
+
+    void setLong(int column, long value) {
+        FieldVector vector = vector(column);
+        if (vector instanceof TimeStampMilliTZVector) {
+            ((TimeStampMilliTZVector) vector).setSafe(row, value);
+        } else {
+            ((BigIntVector) vector).setSafe(row, value);
+        }
+        written[column] = true;
+    }
+
+    void setDouble(int column, double value) {
+        ((Float8Vector) vector(column)).setSafe(row, value);
+        written[column] = true;
+    }
+
+    void setBoolean(int column, boolean value) {
+        ((BitVector) vector(column)).setSafe(row, value ? 1 : 0);
+        written[column] = true;
+    }
+
+    void setNull(int column) {
+        vector(column).setNull(row);
+        written[column] = true;
+    }
+
+    /**
+     * Binds the dictionary-encoded columns of a filter to this writer's dictionaries.
+     * The returned filter is only valid for this writer.
+     */
+    CompiledFilter bindDictionaries(CompiledFilter filter) {
+        return filter.withDictionaries(field -> {
+            int column = columnIndex(field);
+            return column >= 0 && dictionaries[column] != null ? dictionaries[column].getValues() : null;
+        });
+    }
+
+    /**
+     * Evaluates a compiled filter against the current row. Filter columns that were not written
+     * yet are set to null first, so values left over from a discarded row are never seen.
+     *
+     * @param filterColumns the writer column of each of the filter's columns
+     */
+    boolean matches(CompiledFilter filter, int[] filterColumns) {
+        ensureBatch();
+        for (int column : filterColumns) {
+            if (!written[column]) {
+                setNull(column);
+            }
+        }
+        return filter.test(vectors, filterColumns, row);
+    }
+
+    /**
+     * Commits the current row, nulling any cell that was not written, and seals the batch when it is full.
+     */
+    void endRow() {
+        ensureBatch();
+        for (int i = 0; i < written.length; i++) {
+            if (!written[i]) {
+                vectors[i].setNull(row);
+            }
+        }
+        Arrays.fill(written, false);
+        row++;
+        if (row == batchSize) {
+            sealBatch();
+        }
+    }
+
+    /**
+     * Drops the current row; its slot is reused by the next row.
+     */
+    void discardRow() {
+        Arrays.fill(written, false);
+    }
+
+    /**
+     * Seals the last batch and hands all batches and dictionaries over to the caller.
+     * At least one (possibly empty) batch is always returned so the schema is preserved.
+     */
+    Output finish() {
+        if (current != null || batches.isEmpty()) {
+            ensureBatch();
+            sealBatch();
+        }
+        Map<String, StringDictionary> fieldDictionaries = new LinkedHashMap<>();
+        columnIndexes.forEach((field, column) -> {
+            if (dictionaries[column] != null) {
+                fieldDictionaries.put(field, dictionaries[column]);
+                dictionaries[column] = null;
+            }
+        });
+        Output output = new Output(new ArrayList<>(batches), fieldDictionaries);
+        batches.clear();
+        return output;
+    }
+
+    private void ensureBatch() {
+        if (current != null) {
+            return;
+        }
+        current = VectorSchemaRoot.create(schema, allocator);
+        // Vectors start small and double as rows are written, so short sources and tail batches stay small
+        for (FieldVector vector : current.getFieldVectors()) {
+            vector.setInitialCapacity(Math.min(batchSize, INITIAL_CAPACITY));
+        }
+        current.allocateNew();
+        vectors = current.getFieldVectors().toArray(new FieldVector[0]);
+        row = 0;
+    }
+
+    private void sealBatch() {
+        current.setRowCount(row);
+        batches.add(current);
+        current = null;
+        vectors = null;
+        row = 0;
+    }
+
+    /**
+     * Releases any batch that was not handed over through {@link #finish()}.
+     */
+    @Override
+    public void close() {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        batches.forEach(VectorSchemaRoot::close);
+        batches.clear();
+        for (int i = 0; i < dictionaries.length; i++) {
+            if (dictionaries[i] != null) {
+                dictionaries[i].close();
+                dictionaries[i] = null;
+            }
+        }
+    }
+
+    /**
+     * The batches and dictionaries produced by a writer.
+     */
+    static final class Output implements AutoCloseable {
+        private final List<VectorSchemaRoot> batches;
+        private final Map<String, StringDictionary> dictionaries;
+
+        private Output(List<VectorSchemaRoot> batches, Map<String, StringDictionary> dictionaries) {
+            this.batches = batches;
+            this.dictionaries = dictionaries;
+        }
+
+        List<VectorSchemaRoot> getBatches() {
+            return batches;
+        }
+
+        /**
+         * Appends the batches of another writer over the same fields and dictionary ids, re-encoding their
+         * dictionary codes against this output's dictionaries. Empty batches of {@code other} are dropped,
+         * as is a leading empty batch of this output once real rows follow it.
+         * Ownership of everything in {@code other} passes to this output.
+         */
+        void append(Output other) {
+            for (Map.Entry<String, StringDictionary> entry : other.dictionaries.entrySet()) {
+                int[] remap = dictionaries.get(entry.getKey()).mergeFrom(entry.getValue());
+                for (VectorSchemaRoot batch : other.batches) {
+                    IntVector codes = (IntVector) batch.getVector(entry.getKey());
+                    for (int i = 0; i < batch.getRowCount(); i++) {
+                        if (!codes.isNull(i)) {
+                            codes.set(i, remap[codes.get(i)]);
+                        }
+                    }
+                }
+                entry.getValue().close();
+            }
+            other.dictionaries.clear();
+            for (VectorSchemaRoot batch : other.batches) {
+                if (batch.getRowCount() > 0) {
+                    batches.add(batch);
+                } else {
+                    batch.close();
+                }
+            }
+            other.batches.clear();
+            if (batches.size() > 1 && batches.get(0).getRowCount() == 0) {
+                batches.remove(0).close();
+            }
+        }
+
+        /**
+         * Waits for the outputs of parallel writers and appends them in submission order.
+         * If any writer failed, every output is released and the first failure is rethrown.
+         */
+        static Output collectInOrder(List<Future<Output>> futures) throws InterruptedException {
+            List<Output> outputs = new ArrayList<>();
+            Exception failure = null;
+            for (Future<Output> future : futures) {
+                try {
+                    outputs.add(future.get());
+                } catch (ExecutionException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                outputs.forEach(Output::close);
+                Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause.getMessage(), cause);
+            }
+            // Later outputs are re-encoded against the dictionaries of the first one
+            Output merged = outputs.get(0);
+            for (int i = 1; i < outputs.size(); i++) {
+                merged.append(outputs.get(i));
+            }
+            return merged;
+        }
+
+        /**
+         * Hands the batches and sealed dictionaries over to a new table.
+         */
+        UnifiedDataTable toTable(String tableName) {
+            DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+            dictionaries.values().forEach(dictionary -> provider.put(dictionary.toDictionary()));
+            dictionaries.clear();
+            UnifiedDataTable table = new UnifiedDataTable(tableName, new ArrayList<>(batches), provider);
+            batches.clear();
+            return table;
+        }
+
+        @Override
+        public void close() {
+            batches.forEach(VectorSchemaRoot::close);
+            batches.clear();
+            dictionaries.values().forEach(StringDictionary::close);
+            dictionaries.clear();
+        }
+    }
+}
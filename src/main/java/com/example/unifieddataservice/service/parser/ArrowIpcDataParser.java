@@ -0,0 +1,512 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.util.ByteBufferChannel;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.ForeignAllocation;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.memory.util.MemoryUtil;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ReadChannel;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageMetadataResult;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.TransferPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads Arrow IPC data in the stream or file format (the latter is also Feather v2) without decoding any text.
+ *
+ * <p>Columns whose Arrow type already matches their mapped data type are transferred into the table as they are;
+ * other columns are converted value by value, e.g. 32-bit integers to {@link DataType#LONG} or microsecond
+ * timestamps to {@link DataType#TIMESTAMP}. Dictionary-encoded string columns with 32-bit indexes keep their
+ * codes when mapped to {@link DataType#DICTIONARY_STRING}.</p>
+ *
+ * <p>A memory-mapped file in the file format is read in place: record batch buffers are slices of the mapping,
+ * so loading it copies nothing but the dictionaries. The mapping stays referenced by the table's vectors, so such
+ * files should be replaced by renaming a new file over them rather than rewritten in place.</p>
+ */
+@Component
+public class ArrowIpcDataParser implements DataParser {
+    private static final Logger logger = LoggerFactory.getLogger(ArrowIpcDataParser.class);
+
+    private static final byte[] FILE_MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    /** The file format starts with the magic padded to 8 bytes, followed by the stream format. */
+    private static final int FILE_HEADER_LENGTH = 8;
+
+    private final RootAllocator rootAllocator;
+
+    @Autowired
+    public ArrowIpcDataParser(RootAllocator rootAllocator) {
+        this.rootAllocator = rootAllocator;
+    }
+
+    /**
+     * Reads the stream format, or the file format sequentially: writers end the file's stream body with an
+     * end-of-stream marker before the footer, so the footer is never needed.
+     */
+    @Override
+    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input stream cannot be null");
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        try {
+            InputStream in = new BufferedInputStream(data);
+            in.mark(FILE_HEADER_LENGTH);
+            if (!startsWithMagic(in.readNBytes(FILE_HEADER_LENGTH))) {
+                in.reset();
+            }
+            try (ArrowStreamReader reader = new ArrowStreamReader(in, rootAllocator)) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                try (Conversion conversion = new Conversion(root.getSchema(), reader, fieldMappings, columnAlias, predicates, requiredColumns)) {
+                    while (reader.loadNextBatch()) {
+                        conversion.add(root);
+                    }
+                    return conversion.finish();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read Arrow IPC data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Direct (e.g. memory-mapped) buffers holding the file format are read in place; anything else is
+     * read as a stream.
+     */
+    @Override
+    public UnifiedDataTable parseBytes(ByteBuffer data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input buffer cannot be null");
+        if (!data.isDirect() || !isFileFormat(data)) {
+            return parse(new ByteBufferInputStream(data), fieldMappings, dataPath, columnAlias, predicates, requiredColumns);
+        }
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        ByteBuffer file = data.slice();
+        // The file reader only supplies the schema, the dictionaries and the record batch locations
+        try (ArrowFileReader reader = new ArrowFileReader(new ByteBufferChannel(file), rootAllocator);
+             ArrowBuf mapped = rootAllocator.wrapForeignAllocation(new MappedRegion(file))) {
+            Schema schema = reader.getVectorSchemaRoot().getSchema();
+            List<ArrowBlock> blocks = reader.getRecordBlocks();
+            logger.debug("Reading {} record batches in place from a {} byte Arrow file", blocks.size(), file.capacity());
+            ByteBufferChannel channel = new ByteBufferChannel(file);
+            try (Conversion conversion = new Conversion(schema, reader, fieldMappings, columnAlias, predicates, requiredColumns)) {
+                for (ArrowBlock block : blocks) {
+                    channel.position(block.getOffset());
+                    MessageMetadataResult metadata = MessageSerializer.readMessage(new ReadChannel(channel));
+                    if (metadata == null) {
+                        throw new IOException("Unexpected end of Arrow file at offset " + block.getOffset());
+                    }
+                    ArrowBuf body = mapped.slice(block.getOffset() + block.getMetadataLength(), block.getBodyLength());
+                    // Deserializing consumes one reference to the body; the batch's own buffers hold theirs
+                    body.getReferenceManager().retain();
+                    try (ArrowRecordBatch batch = MessageSerializer.deserializeRecordBatch(metadata, body);
+                         VectorSchemaRoot root = VectorSchemaRoot.create(schema, rootAllocator)) {
+                        new VectorLoader(root).load(batch);
+                        conversion.add(root);
+                    }
+                }
+                return conversion.finish();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read Arrow IPC file: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean startsWithMagic(byte[] header) {
+        return header.length == FILE_HEADER_LENGTH && Arrays.equals(header, 0, FILE_MAGIC.length, FILE_MAGIC, 0, FILE_MAGIC.length);
+    }
+
+    private static boolean isFileFormat(ByteBuffer data) {
+        int start = data.position();
+        int end = data.limit();
+        if (end - start < FILE_HEADER_LENGTH + FILE_MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < FILE_MAGIC.length; i++) {
+            if (data.get(start + i) != FILE_MAGIC[i] || data.get(end - FILE_MAGIC.length + i) != FILE_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Exposes a direct buffer to the allocator without copying it. The buffer is kept reachable,
+     * and thus mapped, until every vector slicing it has been released.
+     */
+    private static final class MappedRegion extends ForeignAllocation {
+        private ByteBuffer buffer;
+
+        MappedRegion(ByteBuffer buffer) {
+            super(buffer.capacity(), MemoryUtil.getByteBufferAddress(buffer));
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected void release0() {
+            buffer = null;
+        }
+    }
+
+    /**
+     * How one mapped field is read from the source schema.
+     */
+    private static final class Column {
+        final String field;
+        final DataType type;
+        final int source;
+        final Field sourceField;
+        final Dictionary sourceDictionary;
+        Field target;
+        boolean transfer;
+        StringDictionary dictionary;
+
+        Column(String field, DataType type, int source, Field sourceField, Dictionary sourceDictionary) {
+            this.field = field;
+            this.type = type;
+            this.source = source;
+            this.sourceField = sourceField;
+            this.sourceDictionary = sourceDictionary;
+        }
+    }
+
+    /**
+     * Turns the record batches of one source into the batches and dictionaries of a table.
+     */
+    private final class Conversion implements AutoCloseable {
+        private final List<Column> columns = new ArrayList<>();
+        private final Map<Long, DictionaryEncoding> transferredDictionaries = new LinkedHashMap<>();
+        private final Schema schema;
+        private final CompiledFilter filter;
+        private final int[] filterColumns;
+        private final List<VectorSchemaRoot> batches = new ArrayList<>();
+
+        Conversion(Schema sourceSchema, ArrowReader reader, Map<String, DataType> fieldMappings, Map<String, String> columnAlias,
+                   List<Predicate> predicates, Set<String> requiredColumns) {
+            Map<String, DataType> projectedFields = DataParser.project(fieldMappings, requiredColumns, predicates, columnAlias);
+            Map<String, String> fieldToColumnMap = CsvDataParser.resolveColumns(projectedFields, columnAlias);
+            Map<String, Field> arrowFields = DataTypeMapper.toArrowFields(projectedFields);
+            Set<Integer> transferredColumns = new HashSet<>();
+            List<Field> fields = new ArrayList<>(projectedFields.size());
+            try {
+                projectedFields.forEach((field, type) -> {
+                    Column column = plan(sourceSchema, reader, field, type, fieldToColumnMap.get(field), arrowFields.get(field));
+                    // A source column mapped to several fields is transferred once and copied for the others
+                    if (column.transfer && !transferredColumns.add(column.source)) {
+                        column.transfer = false;
+                        if (column.sourceDictionary != null) {
+                            column.dictionary = new StringDictionary(field, rootAllocator, StringDictionary.nextId());
+                            column.target = new Field(field, new FieldType(true, StringDictionary.INDEX_TYPE, column.dictionary.getEncoding()), null);
+                        }
+                    }
+                    columns.add(column);
+                    fields.add(column.target);
+                });
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            this.schema = new Schema(fields, null);
+
+            CompiledFilter compiled = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
+            this.filter = compiled.withDictionaries(field -> {
+                Column column = columns.get(indexOf(field));
+                return column.dictionary != null ? column.dictionary.getValues() : column.sourceDictionary.getVector();
+            });
+            this.filterColumns = filter.getColumns().stream().mapToInt(this::indexOf).toArray();
+        }
+
+        private Column plan(Schema sourceSchema, DictionaryProvider sourceDictionaries, String field, DataType type, String columnName, Field expected) {
+            List<Field> sourceFields = sourceSchema.getFields();
+            int source = -1;
+            for (int i = 0; i < sourceFields.size(); i++) {
+                if (sourceFields.get(i).getName().equals(columnName)) {
+                    source = i;
+                    break;
+                }
+            }
+            if (source < 0) {
+                throw new IllegalArgumentException(String.format("Column '%s' for field '%s' not found in Arrow schema", columnName, field));
+            }
+            Field sourceField = sourceFields.get(source);
+            DictionaryEncoding encoding = sourceField.getDictionary();
+            Dictionary sourceDictionary = encoding != null ? sourceDictionaries.lookup(encoding.getId()) : null;
+            if (encoding != null && sourceDictionary == null) {
+                throw new IllegalArgumentException(String.format("Dictionary %d of column '%s' is missing", encoding.getId(), columnName));
+            }
+            Column column = new Column(field, type, source, sourceField, sourceDictionary);
+
+            if (type == DataType.DICTIONARY_STRING) {
+                if (sourceDictionary != null && StringDictionary.INDEX_TYPE.equals(encoding.getIndexType())
+                        && sourceDictionary.getVector() instanceof VarCharVector) {
+                    // Codes are kept; the dictionary gets a process-wide id so tables can be combined
+                    DictionaryEncoding target = transferredDictionaries.computeIfAbsent(encoding.getId(),
+                            id -> new DictionaryEncoding(StringDictionary.nextId(), encoding.isOrdered(), StringDictionary.INDEX_TYPE));
+                    column.target = new Field(field, new FieldType(true, StringDictionary.INDEX_TYPE, target), null);
+                    column.transfer = true;
+                } else {
+                    column.dictionary = new StringDictionary(field, rootAllocator, StringDictionary.nextId());
+                    column.target = new Field(field, new FieldType(true, StringDictionary.INDEX_TYPE, column.dictionary.getEncoding()), null);
+                }
+                return column;
+            }
+            column.target = expected;
+            column.transfer = encoding == null && sourceField.getType().equals(expected.getType());
+            if (!column.transfer && !convertible(sourceField, type)) {
+                throw new IllegalArgumentException(String.format("Cannot map Arrow column '%s' of type %s to %s",
+                        columnName, encoding != null ? "dictionary<" + sourceDictionary.getVectorType() + ">" : sourceField.getType(), type));
+            }
+            return column;
+        }
+
+        private int indexOf(String field) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).field.equals(field)) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Field '" + field + "' is not read");
+        }
+
+        /**
+         * Converts one source batch. Transferred columns take over the source vectors' buffers, so the source
+         * batch must not be read afterwards.
+         */
+        void add(VectorSchemaRoot source) {
+            int rows = source.getRowCount();
+            FieldVector[] vectors = new FieldVector[columns.size()];
+            try {
+                // Conversions read the source before transfers empty it
+                for (int i = 0; i < vectors.length; i++) {
+                    Column column = columns.get(i);
+                    if (!column.transfer) {
+                        vectors[i] = convert(column, source.getVector(column.source), rows);
+                    }
+                }
+                for (int i = 0; i < vectors.length; i++) {
+                    Column column = columns.get(i);
+                    if (column.transfer) {
+                        TransferPair pair = source.getVector(column.source).getTransferPair(column.target, rootAllocator);
+                        pair.transfer();
+                        vectors[i] = (FieldVector) pair.getTo();
+                    }
+                }
+            } catch (RuntimeException e) {
+                for (FieldVector vector : vectors) {
+                    if (vector != null) {
+                        vector.close();
+                    }
+                }
+                throw e;
+            }
+            VectorSchemaRoot batch = new VectorSchemaRoot(schema.getFields(), Arrays.asList(vectors), rows);
+            if (!filter.isEmpty()) {
+                batch = select(batch, vectors);
+            }
+            if (batch != null) {
+                batches.add(batch);
+            }
+        }
+
+        /**
+         * @return the batch itself if every row matches the filter, a compacted copy if some do, or null if none do
+         */
+        private VectorSchemaRoot select(VectorSchemaRoot batch, FieldVector[] vectors) {
+            int rows = batch.getRowCount();
+            int[] matching = new int[rows];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                if (filter.test(vectors, filterColumns, row)) {
+                    matching[count++] = row;
+                }
+            }
+            if (count == rows) {
+                return batch;
+            }
+            if (count == 0) {
+                batch.close();
+                return null;
+            }
+            VectorSchemaRoot selected = VectorSchemaRoot.create(schema, rootAllocator);
+            selected.allocateNew();
+            for (int i = 0; i < vectors.length; i++) {
+                FieldVector target = selected.getVector(i);
+                for (int row = 0; row < count; row++) {
+                    target.copyFromSafe(matching[row], row, vectors[i]);
+                }
+            }
+            selected.setRowCount(count);
+            batch.close();
+            return selected;
+        }
+
+        /**
+         * Hands the batches and dictionaries over to a new table.
+         */
+        UnifiedDataTable finish() {
+            DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+            Set<Long> done = new HashSet<>();
+            for (Column column : columns) {
+                if (column.dictionary != null) {
+                    dictionaries.put(column.dictionary.toDictionary());
+                    column.dictionary = null;
+                } else if (column.transfer && column.sourceDictionary != null && done.add(column.sourceDictionary.getEncoding().getId())) {
+                    // The reader's dictionary values are taken over as they are
+                    TransferPair pair = column.sourceDictionary.getVector().getTransferPair(rootAllocator);
+                    pair.transfer();
+                    dictionaries.put(new Dictionary((FieldVector) pair.getTo(), column.target.getDictionary()));
+                }
+            }
+            if (batches.isEmpty()) {
+                VectorSchemaRoot empty = VectorSchemaRoot.create(schema, rootAllocator);
+                empty.allocateNew();
+                empty.setRowCount(0);
+                batches.add(empty);
+            }
+            UnifiedDataTable table = new UnifiedDataTable("unnamed_table", new ArrayList<>(batches), dictionaries);
+            batches.clear();
+            return table;
+        }
+
+        @Override
+        public void close() {
+            batches.forEach(VectorSchemaRoot::close);
+            batches.clear();
+            for (Column column : columns) {
+                if (column.dictionary != null) {
+                    column.dictionary.close();
+                    column.dictionary = null;
+                }
+            }
+        }
+    }
+
+    private static boolean convertible(Field source, DataType type) {
+        ArrowType.ArrowTypeID id = source.getType().getTypeID();
+        if (source.getDictionary() != null) {
+            return type == DataType.STRING;
+        }
+        switch (type) {
+            case STRING:
+                return true;
+            case LONG:
+                return id == ArrowType.ArrowTypeID.Int;
+            case DOUBLE:
+                return id == ArrowType.ArrowTypeID.Int || id == ArrowType.ArrowTypeID.FloatingPoint;
+            case BOOLEAN:
+                return id == ArrowType.ArrowTypeID.Bool;
+            case TIMESTAMP:
+                return id == ArrowType.ArrowTypeID.Int || id == ArrowType.ArrowTypeID.Timestamp || id == ArrowType.ArrowTypeID.Date;
+            default:
+                return false;
+        }
+    }
+
+    private FieldVector convert(Column column, FieldVector from, int rows) {
+        FieldVector to = column.target.createVector(rootAllocator);
+        try {
+            to.setInitialCapacity(rows);
+            to.allocateNew();
+            for (int row = 0; row < rows; row++) {
+                if (from.isNull(row)) {
+                    continue;
+                }
+                switch (column.type) {
+                    case STRING:
+                        ((VarCharVector) to).setSafe(row, bytesAt(column, from, row));
+                        break;
+                    case DICTIONARY_STRING:
+                        ((IntVector) to).setSafe(row, column.dictionary.encode(bytesAt(column, from, row)));
+                        break;
+                    case LONG:
+                        ((BigIntVector) to).setSafe(row, ((BaseIntVector) from).getValueAsLong(row));
+                        break;
+                    case DOUBLE:
+                        ((Float8Vector) to).setSafe(row, from instanceof FloatingPointVector
+                                ? ((FloatingPointVector) from).getValueAsDouble(row)
+                                : ((BaseIntVector) from).getValueAsLong(row));
+                        break;
+                    case BOOLEAN:
+                        ((BitVector) to).setSafe(row, ((BitVector) from).get(row));
+                        break;
+                    case TIMESTAMP:
+                        ((TimeStampMilliTZVector) to).setSafe(row, epochMillisAt(from, row));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported data type: " + column.type);
+                }
+            }
+            to.setValueCount(rows);
+            return to;
+        } catch (RuntimeException e) {
+            to.close();
+            throw e;
+        }
+    }
+
+    private static byte[] bytesAt(Column column, FieldVector from, int row) {
+        if (column.sourceDictionary != null) {
+            int code = (int) ((BaseIntVector) from).getValueAsLong(row);
+            return bytesAt(column.sourceDictionary.getVector(), code);
+        }
+        return bytesAt(from, row);
+    }
+
+    private static byte[] bytesAt(FieldVector vector, int row) {
+        if (vector instanceof VarCharVector) {
+            return ((VarCharVector) vector).get(row);
+        }
+        if (vector instanceof LargeVarCharVector) {
+            return ((LargeVarCharVector) vector).get(row);
+        }
+        return String.valueOf(vector.getObject(row)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long epochMillisAt(FieldVector from, int row) {
+        if (from instanceof TimeStampVector) {
+            long value = ((TimeStampVector) from).get(row);
+            switch (((ArrowType.Timestamp) from.getField().getType()).getUnit()) {
+                case SECOND:
+                    return value * 1000;
+                case MICROSECOND:
+                    return Math.floorDiv(value, 1000L);
+                case NANOSECOND:
+                    return Math.floorDiv(value, 1_000_000L);
+                default:
+                    return value;
+            }
+        }
+        if (from instanceof DateDayVector) {
+            return ((DateDayVector) from).get(row) * 86_400_000L;
+        }
+        if (from instanceof DateMilliVector) {
+            return ((DateMilliVector) from).get(row);
+        }
+        return ((BaseIntVector) from).getValueAsLong(row);
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
+import org.apache.arrow.memory.RootAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CSV parser that tokenizes the raw UTF-8 bytes instead of decoding every cell into a String.
+ * Longs and doubles are parsed straight from the byte range of their cell and string cells are
+ * copied into the Arrow buffers as-is, so the common path allocates nothing per record.
+ * Selected per metric with the {@code csv.reader=bytes} source option; the output matches {@link CsvDataParser}.
+ *
+ * <p>Follows RFC 4180 like {@code CSVFormat.DEFAULT}: quoted cells may contain separators, line breaks
+ * and doubled quotes, and empty lines are skipped.</p>
+ */
+@Component
+public class ByteCsvDataParser implements DataParser {
+    /** Source option selecting the CSV reader of a metric. */
+    public static final String READER_OPTION = "csv.reader";
+    /** Value of {@link #READER_OPTION} selecting this parser. */
+    public static final String READER_NAME = "bytes";
+
+    private static final Logger logger = LoggerFactory.getLogger(ByteCsvDataParser.class);
+
+    private final RootAllocator rootAllocator;
+
+    @Value("${parser.batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Initial size of the read buffer; it grows if a single record does not fit. */
+    private int bufferSize = 1024 * 1024;
+
+    @Autowired
+    public ByteCsvDataParser(RootAllocator rootAllocator) {
+        this.rootAllocator = rootAllocator;
+    }
+
+    @Override
+    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input stream cannot be null");
+        return parse(new Tokenizer(data, new byte[bufferSize]), fieldMappings, columnAlias, predicates, requiredColumns);
+    }
+
+    /**
+     * Heap buffers are tokenized in place; direct and mapped buffers are read through an InputStream view in bulk.
+     */
+    @Override
+    public UnifiedDataTable parseBytes(ByteBuffer data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input buffer cannot be null");
+        if (data.hasArray()) {
+            int start = data.arrayOffset() + data.position();
+            return parse(new Tokenizer(data.array(), start, start + data.remaining()), fieldMappings, columnAlias, predicates, requiredColumns);
+        }
+        return parse(new ByteBufferInputStream(data), fieldMappings, dataPath, columnAlias, predicates, requiredColumns);
+    }
+
+    private UnifiedDataTable parse(Tokenizer tokenizer, Map<String, DataType> fieldMappings, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        Map<String, DataType> projectedFields = DataParser.project(fieldMappings, requiredColumns, predicates, columnAlias);
+        Map<String, String> fieldToColumnMap = CsvDataParser.resolveColumns(projectedFields, columnAlias);
+        CompiledFilter compiledFilter = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
+
+        try (Tokenizer in = tokenizer;
+             ArrowBatchWriter writer = new ArrowBatchWriter(rootAllocator, projectedFields, batchSize)) {
+
+            if (!in.nextRecord()) {
+                throw new IllegalArgumentException("CSV input is empty or missing headers");
+            }
+            Map<String, Integer> headerMap = new LinkedHashMap<>();
+            for (int i = 0; i < in.fieldCount; i++) {
+                headerMap.putIfAbsent(in.fieldAsString(i), i);
+            }
+
+            // Validate all required fields are present in the CSV
+            for (Map.Entry<String, String> entry : fieldToColumnMap.entrySet()) {
+                if (!headerMap.containsKey(entry.getValue())) {
+                    throw new IllegalArgumentException(String.format(
+                            "Required column '%s' (mapped from field '%s') not found in CSV. Available columns: %s",
+                            entry.getValue(), entry.getKey(), headerMap.keySet()));
+                }
+            }
+
+            int[] headerPositions = new int[writer.columnCount()];
+            for (String fieldName : projectedFields.keySet()) {
+                headerPositions[writer.columnIndex(fieldName)] = headerMap.get(fieldToColumnMap.get(fieldName));
+            }
+            if (compiledFilter.rejectsAll()) {
+                return writer.finish().toTable("unnamed_table");
+            }
+
+            // Predicate columns are converted first so rejected records skip the remaining columns
+            CompiledFilter filter = writer.bindDictionaries(compiledFilter);
+            int[] filterColumns = writer.columnIndexes(filter);
+            boolean[] isFilterColumn = new boolean[headerPositions.length];
+            for (int column : filterColumns) {
+                isFilterColumn[column] = true;
+            }
+
+            CellWriter cells = new CellWriter(writer, in);
+            int rowCount = 0;
+            while (in.nextRecord()) {
+                if (filterColumns.length > 0) {
+                    for (int column : filterColumns) {
+                        cells.write(column, headerPositions[column]);
+                    }
+                    if (!writer.matches(filter, filterColumns)) {
+                        writer.discardRow();
+                        continue;
+                    }
+                }
+                for (int i = 0; i < headerPositions.length; i++) {
+                    if (!isFilterColumn[i]) {
+                        cells.write(i, headerPositions[i]);
+                    }
+                }
+                writer.endRow();
+                rowCount++;
+            }
+            logger.debug("Parsed {} CSV rows from raw bytes", rowCount);
+            return writer.finish().toTable("unnamed_table");
+
+        } catch (IllegalArgumentException e) {
+            // Re-throw validation exceptions directly
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read CSV data: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse CSV data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Splits the input into records and cells. Cells are exposed as byte ranges of the read buffer,
+     * which stay valid until the next call to {@link #nextRecord()}.
+     */
+    static final class Tokenizer implements AutoCloseable {
+        private static final int QUOTED = 1;
+        private static final int ESCAPED = 2;
+
+        private final InputStream in;
+        private byte[] buffer;
+        private int position;
+        private int limit;
+        private boolean eof;
+
+        int fieldCount;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] flags = new int[16];
+
+        Tokenizer(InputStream in, byte[] buffer) {
+            this.in = in;
+            this.buffer = buffer;
+        }
+
+        Tokenizer(byte[] data, int start, int end) {
+            this.in = null;
+            this.buffer = data;
+            this.position = start;
+            this.limit = end;
+            this.eof = true;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        /**
+         * Tokenizes the next non-empty record.
+         *
+         * @return false at the end of the input
+         */
+        boolean nextRecord() throws IOException {
+            while (true) {
+                if (position >= limit && !fill()) {
+                    return false;
+                }
+                byte first = buffer[position];
+                if (first == '\n' || first == '\r') {
+                    position++; // empty line, or the LF of a CRLF split across reads
+                    continue;
+                }
+                int end = tokenize(position);
+                if (end >= 0) {
+                    position = end;
+                    return true;
+                }
+                // The record runs past the buffered bytes
+                if (!fill()) {
+                    throw new IllegalStateException("Unterminated quoted field at end of CSV input");
+                }
+            }
+        }
+
+        /**
+         * @return the offset after the record starting at {@code start}, or -1 if more input is needed
+         */
+        private int tokenize(int start) {
+            fieldCount = 0;
+            int p = start;
+            while (true) {
+                int fieldStart;
+                int fieldEnd;
+                int fieldFlags = 0;
+                if (p < limit && buffer[p] == '"') {
+                    fieldFlags = QUOTED;
+                    fieldStart = ++p;
+                    while (true) {
+                        while (p < limit && buffer[p] != '"') {
+                            p++;
+                        }
+                        // Need the closing quote and, unless at the end of input, the byte after it
+                        if (p >= limit || (p + 1 >= limit && !eof)) {
+                            return -1;
+                        }
+                        if (p + 1 < limit && buffer[p + 1] == '"') {
+                            fieldFlags |= ESCAPED;
+                            p += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    fieldEnd = p++;
+                    // Skip anything between the closing quote and the next delimiter
+                    while (p < limit && buffer[p] != ',' && buffer[p] != '\n' && buffer[p] != '\r') {
+                        p++;
+                    }
+                } else {
+                    fieldStart = p;
+                    while (p < limit && buffer[p] != ',' && buffer[p] != '\n' && buffer[p] != '\r') {
+                        p++;
+                    }
+                    fieldEnd = p;
+                }
+                if (p >= limit && !eof) {
+                    return -1;
+                }
+                addField(fieldStart, fieldEnd, fieldFlags);
+                if (p >= limit) {
+                    return p;
+                }
+                byte delimiter = buffer[p++];
+                if (delimiter != ',') {
+                    if (delimiter == '\r' && p < limit && buffer[p] == '\n') {
+                        p++;
+                    }
+                    return p;
+                }
+            }
+        }
+
+        private void addField(int start, int end, int fieldFlags) {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+                flags = Arrays.copyOf(flags, fieldCount * 2);
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            flags[fieldCount] = fieldFlags;
+            fieldCount++;
+        }
+
+        boolean isEscaped(int field) {
+            return (flags[field] & ESCAPED) != 0;
+        }
+
+        String fieldAsString(int field) {
+            String raw = new String(buffer, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+            return isEscaped(field) ? raw.replace("\"\"", "\"") : raw;
+        }
+
+        /**
+         * Moves the unconsumed bytes to the front of the buffer, growing it if they fill it, and reads more input.
+         *
+         * @return false if no more input is available
+         */
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            int remaining = limit - position;
+            if (remaining == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, remaining);
+            }
+            position = 0;
+            limit = remaining;
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+                return remaining > 0;
+            }
+            limit += read;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Converts cells to their column types straight from the tokenizer's byte ranges.
+     * Blank or unparseable cells are written as null, like {@link ArrowBatchWriter#setString(int, String)}.
+     */
+    static final class CellWriter {
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+        /** Largest mantissa that converts to a double exactly. */
+        private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+        private final ArrowBatchWriter writer;
+        private final Tokenizer tokenizer;
+        private byte[] scratch = new byte[256];
+        private int unescapedLength;
+
+        private long longValue;
+        private double doubleValue;
+
+        CellWriter(ArrowBatchWriter writer, Tokenizer tokenizer) {
+            this.writer = writer;
+            this.tokenizer = tokenizer;
+        }
+
+        void write(int column, int field) {
+            if (field >= tokenizer.fieldCount) {
+                writer.setNull(column);
+                return;
+            }
+            byte[] source = tokenizer.buffer();
+            int start = tokenizer.starts[field];
+            int end = tokenizer.ends[field];
+            if (tokenizer.isEscaped(field)) {
+                source = unescape(source, start, end);
+                start = 0;
+                end = unescapedLength;
+            }
+
+            // Blank cells are null whatever the type
+            int trimmedStart = start;
+            int trimmedEnd = end;
+            while (trimmedStart < trimmedEnd && source[trimmedStart] <= ' ') {
+                trimmedStart++;
+            }
+            while (trimmedEnd > trimmedStart && source[trimmedEnd - 1] <= ' ') {
+                trimmedEnd--;
+            }
+            if (trimmedStart == trimmedEnd) {
+                writer.setNull(column);
+                return;
+            }
+
+            switch (writer.typeOf(column)) {
+                case STRING:
+                case DICTIONARY_STRING:
+                    writer.setBytes(column, source, start, end - start);
+                    break;
+                case LONG:
+                case TIMESTAMP:
+                    if (parseLong(source, trimmedStart, trimmedEnd)) {
+                        writer.setLong(column, longValue);
+                    } else {
+                        writer.setNull(column);
+                    }
+                    break;
+                case DOUBLE:
+                    if (parseDouble(source, trimmedStart, trimmedEnd)) {
+                        writer.setDouble(column, doubleValue);
+                    } else {
+                        writer.setNull(column);
+                    }
+                    break;
+                case BOOLEAN:
+                    writer.setBoolean(column, isTrue(source, trimmedStart, trimmedEnd));
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported data type: " + writer.typeOf(column));
+            }
+        }
+
+        /**
+         * Copies a quoted cell into the scratch buffer, collapsing doubled quotes.
+         */
+        private byte[] unescape(byte[] source, int start, int end) {
+            if (scratch.length < end - start) {
+                scratch = new byte[Math.max(end - start, scratch.length * 2)];
+            }
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                scratch[length++] = source[i];
+                if (source[i] == '"' && i + 1 < end && source[i + 1] == '"') {
+                    i++;
+                }
+            }
+            unescapedLength = length;
+            return scratch;
+        }
+
+        /**
+         * Parses a decimal long like {@link Long#parseLong(String)}.
+         *
+         * @return false if the bytes are not a valid long
+         */
+        boolean parseLong(byte[] source, int start, int end) {
+            int p = start;
+            boolean negative = false;
+            if (source[p] == '-' || source[p] == '+') {
+                negative = source[p] == '-';
+                p++;
+            }
+            if (p == end) {
+                return false;
+            }
+            // Accumulate negatively so Long.MIN_VALUE does not overflow
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long multiplyLimit = limit / 10;
+            long result = 0;
+            for (; p < end; p++) {
+                int digit = source[p] - '0';
+                if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                    return false;
+                }
+                result *= 10;
+                if (result < limit + digit) {
+                    return false;
+                }
+                result -= digit;
+            }
+            longValue = negative ? result : -result;
+            return true;
+        }
+
+        /**
+         * Parses a double. Plain decimals with at most 15 significant digits are converted exactly with a
+         * single division; anything else (exponents, long mantissas, NaN) falls back to {@link Double#parseDouble(String)}.
+         *
+         * @return false if the bytes are not a valid double
+         */
+        boolean parseDouble(byte[] source, int start, int end) {
+            int p = start;
+            boolean negative = false;
+            if (source[p] == '-' || source[p] == '+') {
+                negative = source[p] == '-';
+                p++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean seenPoint = false;
+            boolean fastPath = p < end;
+            for (; p < end && fastPath; p++) {
+                byte b = source[p];
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (seenPoint) {
+                        fractionDigits++;
+                    }
+                    fastPath = digits <= 15;
+                } else if (b == '.' && !seenPoint) {
+                    seenPoint = true;
+                } else {
+                    fastPath = false;
+                }
+            }
+            if (fastPath && digits > 0 && mantissa < MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+                double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                doubleValue = negative ? -value : value;
+                return true;
+            }
+            try {
+                doubleValue = Double.parseDouble(new String(source, start, end - start, StandardCharsets.ISO_8859_1));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static boolean isTrue(byte[] source, int start, int end) {
+            return end - start == 4
+                    && (source[start] | 0x20) == 't'
+                    && (source[start + 1] | 0x20) == 'r'
+                    && (source[start + 2] | 0x20) == 'u'
+                    && (source[start + 3] | 0x20) == 'e';
+        }
+    }
+}
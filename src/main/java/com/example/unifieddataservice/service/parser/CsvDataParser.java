@@ -3,184 +3,350 @@ package com.example.unifieddataservice.service.parser;
 import com.example.unifieddataservice.model.DataType;
 import com.example.unifieddataservice.model.Predicate;
 import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.apache.arrow.memory.RootAllocator;
-import org.apache.arrow.vector.*;
-import org.apache.arrow.vector.types.pojo.Field;
-import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 @Component
 public class CsvDataParser implements DataParser {
+    private static final Logger logger = LoggerFactory.getLogger(CsvDataParser.class);
+
     private final RootAllocator rootAllocator;
 
+    @Value("${parser.batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Local files at least this large are split into record-aligned ranges and parsed in parallel. */
+    @Value("${parser.csv.parallel-threshold-bytes:67108864}")
+    private long parallelThresholdBytes = 64L * 1024 * 1024;
+
+    private final ForkJoinPool parsePool;
 
     @Autowired
     public CsvDataParser(RootAllocator rootAllocator) {
-        this.rootAllocator = rootAllocator;
+        this(rootAllocator, Runtime.getRuntime().availableProcessors());
     }
 
-    @Override
-    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<com.example.unifieddataservice.model.Predicate> predicates) {
-        // Use the columnAlias map if provided, otherwise use an empty map
-        Map<String, String> aliasMap = columnAlias != null ? columnAlias : Collections.emptyMap();
-
-        // Create a mapping from logical field names to physical column names
-        Map<String, String> fieldToColumnMap = new HashMap<>();
+    public CsvDataParser(RootAllocator rootAllocator, int parallelism) {
+        this.rootAllocator = rootAllocator;
+        this.parsePool = new ForkJoinPool(Math.max(1, parallelism));
+    }
 
-        // For each field, determine its physical column name (using alias if available)
-        for (String fieldName : fieldMappings.keySet()) {
-            // If there's an alias for this field, use it; otherwise use the field name as is
-            fieldToColumnMap.put(fieldName, aliasMap.getOrDefault(fieldName, fieldName));
-        }
+    @PreDestroy
+    public void shutdown() {
+        parsePool.shutdown();
+    }
 
+    @Override
+    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
         // Validate input parameters
         Objects.requireNonNull(data, "Input stream cannot be null");
         Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
-
-        if (fieldMappings.isEmpty()) {
-            throw new IllegalArgumentException("Field mappings cannot be empty");
-        }
+        Map<String, DataType> projectedFields = DataParser.project(fieldMappings, requiredColumns, predicates, columnAlias);
+        Map<String, String> fieldToColumnMap = resolveColumns(projectedFields, columnAlias);
+        CompiledFilter filter = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
 
         try (InputStreamReader reader = new InputStreamReader(data, StandardCharsets.UTF_8);
-             CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+             CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build())) {
 
             // Check for empty input (no headers or no data)
             if (csvParser.getHeaderMap().isEmpty()) {
                 throw new IllegalArgumentException("CSV input is empty or missing headers");
             }
 
-            Map<String, Integer> headerMap = csvParser.getHeaderMap();
+            return readRecords(csvParser, projectedFields, fieldToColumnMap, filter,
+                    ArrowBatchWriter.dictionaryIds(projectedFields)).toTable("unnamed_table");
+
+        } catch (IllegalArgumentException e) {
+            // Re-throw validation exceptions directly
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read CSV data: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse CSV data: " + e.getMessage(), e);
+        }
+    }
 
-            // Validate all required fields are present in the CSV
-            for (Map.Entry<String, String> entry : fieldToColumnMap.entrySet()) {
-                String logicalField = entry.getKey();
-                String physicalColumn = entry.getValue();
+    /**
+     * Parses a local CSV file. Files above the parallel threshold are split into byte ranges aligned
+     * to record boundaries; every range is parsed into its own record batches on the parser's fork-join
+     * pool and the batches are assembled in file order.
+     *
+     * <p>Ranges are cut only at newlines outside quoted fields, found by one pass over the file that tracks
+     * the quotes, so quoted fields spanning several lines stay within one range.</p>
+     */
+    public UnifiedDataTable parseFile(Path file, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(file, "File cannot be null");
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        Map<String, DataType> projectedFields = DataParser.project(fieldMappings, requiredColumns, predicates, columnAlias);
+        Map<String, String> fieldToColumnMap = resolveColumns(projectedFields, columnAlias);
+        CompiledFilter filter = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
 
-                if (!headerMap.containsKey(physicalColumn)) {
-                    throw new IllegalArgumentException(String.format(
-                            "Required column '%s' (mapped from field '%s') not found in CSV. Available columns: %s",
-                            physicalColumn, logicalField, headerMap.keySet()));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkCount = parsePool.getParallelism();
+            if (size < parallelThresholdBytes || chunkCount < 2) {
+                try (InputStream in = openRange(channel, 0, size)) {
+                    return parse(in, projectedFields, dataPath, columnAlias, predicates, null);
                 }
             }
 
-            // Create the map of fields once and reuse it
-            Map<String, Field> arrowFields = DataTypeMapper.toArrowFields(fieldMappings);
-            List<Field> fields = fieldMappings.keySet().stream()
-                    .map(arrowFields::get)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            Schema schema = new Schema(fields, null);
-            VectorSchemaRoot vectorSchemaRoot = VectorSchemaRoot.create(schema, rootAllocator);
-            
-            // Filter records before processing
-            List<CSVRecord> filteredRecords = new ArrayList<>();
-            for (CSVRecord record : csvParser) {
-                if (recordMatches(record, predicates, fieldToColumnMap)) {
-                    filteredRecords.add(record);
+            List<Long> cuts = recordStarts(channel, size, chunkCount);
+            long headerEnd = cuts.get(0);
+            String[] header = readHeader(channel, headerEnd);
+            List<long[]> ranges = new ArrayList<>(cuts.size());
+            for (int i = 0; i < cuts.size(); i++) {
+                long rangeEnd = i + 1 < cuts.size() ? cuts.get(i + 1) : size;
+                if (cuts.get(i) < rangeEnd) {
+                    ranges.add(new long[]{cuts.get(i), rangeEnd});
                 }
             }
+            if (ranges.isEmpty()) {
+                try (InputStream in = openRange(channel, 0, size)) {
+                    return parse(in, projectedFields, dataPath, columnAlias, predicates, null);
+                }
+            }
+            logger.info("Parsing {} ({} bytes) in {} parallel ranges", file, size, ranges.size());
 
-            vectorSchemaRoot.allocateNew();
-
-            for (int i = 0; i < filteredRecords.size(); i++) {
-                CSVRecord record = filteredRecords.get(i);
-                final int rowIndex = i;
-
-                fieldMappings.forEach((fieldName, dataType) -> {
-                    try {
-                        FieldVector vector = vectorSchemaRoot.getVector(fieldName);
-                        String physicalColumn = fieldToColumnMap.get(fieldName);
-                        String value = record.isMapped(physicalColumn) ? record.get(physicalColumn) : null;
-
-                        if (value != null && !value.trim().isEmpty()) {
-                            try {
-                                switch (dataType) {
-                                    case STRING:
-                                        ((VarCharVector) vector).setSafe(rowIndex, value.getBytes(StandardCharsets.UTF_8));
-                                        break;
-                                    case LONG:
-                                        try {
-                                            ((BigIntVector) vector).setSafe(rowIndex, Long.parseLong(value.trim()));
-                                        } catch (NumberFormatException e) {
-                                            vector.setNull(rowIndex);
-                                        }
-                                        break;
-                                    case DOUBLE:
-                                        try {
-                                            ((Float8Vector) vector).setSafe(rowIndex, Double.parseDouble(value.trim()));
-                                        } catch (NumberFormatException e) {
-                                            vector.setNull(rowIndex);
-                                        }
-                                        break;
-                                    case BOOLEAN:
-                                        ((BitVector) vector).setSafe(rowIndex, Boolean.parseBoolean(value.trim()) ? 1 : 0);
-                                        break;
-                                    case TIMESTAMP:
-                                        try {
-                                            long timestamp = Long.parseLong(value.trim());
-                                            ((TimeStampMilliTZVector) vector).setSafe(rowIndex, timestamp);
-                                        } catch (NumberFormatException e) {
-                                            vector.setNull(rowIndex);
-                                        }
-                                        break;
-                                    default:
-                                        throw new IllegalStateException("Unsupported data type: " + dataType);
-                                }
-                            } catch (Exception e) {
-                                vector.setNull(rowIndex);
-                            }
-                        } else {
-                            vector.setNull(rowIndex);
-                        }
-                    } catch (Exception e) {
-                        // Skip field on error
+            // All ranges encode against the same dictionary ids so their batches share one schema
+            Map<String, Long> dictionaryIds = ArrowBatchWriter.dictionaryIds(projectedFields);
+            List<Callable<ArrowBatchWriter.Output>> tasks = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                tasks.add(() -> {
+                    try (InputStreamReader reader = new InputStreamReader(
+                                 openRange(channel, range[0], range[1]), StandardCharsets.UTF_8);
+                         CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.builder().setHeader(header).build())) {
+                        return readRecords(csvParser, projectedFields, fieldToColumnMap, filter, dictionaryIds);
                     }
                 });
             }
-
-            vectorSchemaRoot.setRowCount(filteredRecords.size());
-            return new UnifiedDataTable(vectorSchemaRoot);
+            return ArrowBatchWriter.Output.collectInOrder(parsePool.invokeAll(tasks)).toTable("unnamed_table");
 
         } catch (IllegalArgumentException e) {
-            // Re-throw validation exceptions directly
             throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Parsing of CSV file " + file + " was interrupted", e);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to read CSV data: " + e.getMessage(), e);
+            throw new RuntimeException("Failed to read CSV file " + file + ": " + e.getMessage(), e);
         } catch (Exception e) {
-            throw new RuntimeException("Failed to parse CSV data: " + e.getMessage(), e);
+            throw new RuntimeException("Failed to parse CSV file " + file + ": " + e.getMessage(), e);
         }
     }
 
-    private boolean recordMatches(CSVRecord record, List<Predicate> predicates, Map<String, String> fieldToColumnMap) {
-        if (predicates == null || predicates.isEmpty()) {
-            return true;
+    static Map<String, String> resolveColumns(Map<String, DataType> fieldMappings, Map<String, String> columnAlias) {
+        if (fieldMappings.isEmpty()) {
+            throw new IllegalArgumentException("Field mappings cannot be empty");
         }
-        for (Predicate predicate : predicates) {
-            String physicalColumn = fieldToColumnMap.get(predicate.columnName());
-            if (physicalColumn == null || !record.isMapped(physicalColumn)) {
-                return false; // Column for predicate not found in record
+
+        // Use the columnAlias map if provided, otherwise use an empty map
+        Map<String, String> aliasMap = columnAlias != null ? columnAlias : Collections.emptyMap();
+
+        // Create a mapping from logical field names to physical column names
+        Map<String, String> fieldToColumnMap = new HashMap<>();
+
+        // For each field, determine its physical column name (using alias if available)
+        for (String fieldName : fieldMappings.keySet()) {
+            // If there's an alias for this field, use it; otherwise use the field name as is
+            fieldToColumnMap.put(fieldName, aliasMap.getOrDefault(fieldName, fieldName));
+        }
+        return fieldToColumnMap;
+    }
+
+    /**
+     * Streams the records of a parser straight into fixed-size record batches.
+     */
+    private ArrowBatchWriter.Output readRecords(CSVParser csvParser, Map<String, DataType> fieldMappings,
+                                                Map<String, String> fieldToColumnMap, CompiledFilter compiledFilter,
+                                                Map<String, Long> dictionaryIds) {
+        Map<String, Integer> headerMap = csvParser.getHeaderMap();
+
+        // Validate all required fields are present in the CSV
+        for (Map.Entry<String, String> entry : fieldToColumnMap.entrySet()) {
+            String logicalField = entry.getKey();
+            String physicalColumn = entry.getValue();
+
+            if (!headerMap.containsKey(physicalColumn)) {
+                throw new IllegalArgumentException(String.format(
+                        "Required column '%s' (mapped from field '%s') not found in CSV. Available columns: %s",
+                        physicalColumn, logicalField, headerMap.keySet()));
+            }
+        }
+
+        try (ArrowBatchWriter writer = new ArrowBatchWriter(rootAllocator, fieldMappings, batchSize, dictionaryIds)) {
+            // Resolve header positions once so each record is read by index
+            int[] headerPositions = new int[writer.columnCount()];
+            for (String fieldName : fieldMappings.keySet()) {
+                headerPositions[writer.columnIndex(fieldName)] = headerMap.get(fieldToColumnMap.get(fieldName));
+            }
+
+            if (compiledFilter.rejectsAll()) {
+                return writer.finish();
             }
-            String recordValue = record.get(physicalColumn);
-            if (recordValue == null) {
-                return false; // Null values don't match for now
+            CompiledFilter filter = writer.bindDictionaries(compiledFilter);
+
+            // Predicate columns are converted first so rejected records skip the remaining columns
+            int[] filterColumns = writer.columnIndexes(filter);
+            boolean[] isFilterColumn = new boolean[headerPositions.length];
+            for (int column : filterColumns) {
+                isFilterColumn[column] = true;
+            }
+
+            for (CSVRecord record : csvParser) {
+                if (filterColumns.length > 0) {
+                    for (int column : filterColumns) {
+                        writeCell(writer, column, record, headerPositions[column]);
+                    }
+                    if (!writer.matches(filter, filterColumns)) {
+                        writer.discardRow();
+                        continue;
+                    }
+                }
+                for (int i = 0; i < headerPositions.length; i++) {
+                    if (!isFilterColumn[i]) {
+                        writeCell(writer, i, record, headerPositions[i]);
+                    }
+                }
+                writer.endRow();
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Opens a byte range of the file, memory-mapping it when it fits in a single mapping
+     * so the bytes are read straight from the page cache.
+     */
+    private static InputStream openRange(FileChannel channel, long start, long end) throws IOException {
+        if (end - start <= Integer.MAX_VALUE) {
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        }
+        return new RangeInputStream(channel, start, end);
+    }
+
+    private String[] readHeader(FileChannel channel, long headerEnd) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) headerEnd);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // keep reading until the whole header line is in the buffer
+        }
+        String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        try (CSVParser headerParser = CSVFormat.DEFAULT.parse(new StringReader(line))) {
+            Iterator<CSVRecord> records = headerParser.iterator();
+            if (!records.hasNext()) {
+                throw new IllegalArgumentException("CSV input is empty or missing headers");
+            }
+            CSVRecord record = records.next();
+            String[] header = new String[record.size()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = record.get(i);
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Finds where the ranges of a parallel parse start: right after the header record, and then right after the
+     * first record end past each of {@code chunkCount} roughly equal offsets of the rest of the file. A record
+     * ends at a newline outside quotes; doubled quotes inside a quoted field toggle the state twice and so leave
+     * it unchanged.
+     *
+     * @return the start of each range in file order, the first being the end of the header record
+     */
+    private static List<Long> recordStarts(FileChannel channel, long size, int chunkCount) throws IOException {
+        List<Long> starts = new ArrayList<>(chunkCount);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        boolean inQuotes = false;
+        long chunkSize = 0;
+        long target = 0;
+        long offset = 0;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes && offset + i >= target) {
+                    long recordStart = offset + i + 1;
+                    starts.add(recordStart);
+                    if (starts.size() == 1) {
+                        chunkSize = Math.max(1, (size - recordStart + chunkCount - 1) / chunkCount);
+                    }
+                    target = recordStart + chunkSize - 1;
+                }
+            }
+            offset += read;
+        }
+        if (starts.isEmpty()) {
+            // A header record without a newline and no data
+            starts.add(size);
+        }
+        return starts;
+    }
+
+    private static void writeCell(ArrowBatchWriter writer, int column, CSVRecord record, int position) {
+        writer.setString(column, position < record.size() ? record.get(position) : null);
+    }
+
+    /**
+     * Reads a byte range of a file channel with positional reads, so several ranges
+     * of the same channel can be consumed concurrently. Used for ranges too large to map.
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
             }
-            // Simplified comparison, assumes EQUALS and string matching
-            if (!recordValue.equals(predicate.value().toString())) {
-                return false; // Predicate does not match
+            int toRead = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read > 0) {
+                position += read;
             }
+            return read;
         }
-        return true;
     }
 }
@@ -3,20 +3,32 @@ package com.example.unifieddataservice.service.parser;
 import com.example.unifieddataservice.model.DataType;
 import com.example.unifieddataservice.model.Predicate;
 import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface DataParser {
+    /**
+     * Default number of rows written into each Arrow record batch by streaming parsers.
+     */
+    int DEFAULT_BATCH_SIZE = 64 * 1024;
+
     /**
      * Parse the input data stream into a UnifiedDataTable.
-     * 
+     *
      * @param data The input data stream to parse
      * @param fieldMappings Map of field names to their data types
      * @param dataPath Path to the data within the input (for JSON/XML)
      * @param columnAlias Map of source column names to their aliases (can be null or empty)
      * @param predicates A list of predicates to be potentially pushed down into the parser.
+     * @param requiredColumns Fields the caller needs; other mapped fields are neither decoded nor allocated.
+     *                        Null or empty means all fields. Predicate columns are always kept.
      * @return A UnifiedDataTable containing the parsed data
      */
     UnifiedDataTable parse(
@@ -24,9 +36,42 @@ public interface DataParser {
         Map<String, DataType> fieldMappings,
         String dataPath,
         Map<String, String> columnAlias,
-        List<Predicate> predicates
+        List<Predicate> predicates,
+        Set<String> requiredColumns
     );
 
+    /**
+     * Parse the input data stream, materializing every mapped field.
+     */
+    default UnifiedDataTable parse(
+        InputStream data,
+        Map<String, DataType> fieldMappings,
+        String dataPath,
+        Map<String, String> columnAlias,
+        List<Predicate> predicates
+    ) {
+        return parse(data, fieldMappings, dataPath, columnAlias, predicates, null);
+    }
+
+    /**
+     * Parse data that is already addressable as bytes, e.g. a memory-mapped local file.
+     * The default implementation reads the buffer through an InputStream view without copying it to the heap;
+     * parsers that can work on byte ranges directly may override this.
+     *
+     * @param data The bytes to parse, from the buffer's position to its limit
+     * @see #parse(InputStream, Map, String, Map, List, Set)
+     */
+    default UnifiedDataTable parseBytes(
+        ByteBuffer data,
+        Map<String, DataType> fieldMappings,
+        String dataPath,
+        Map<String, String> columnAlias,
+        List<Predicate> predicates,
+        Set<String> requiredColumns
+    ) {
+        return parse(new ByteBufferInputStream(data), fieldMappings, dataPath, columnAlias, predicates, requiredColumns);
+    }
+
     /**
      * Backward-compatible parse method that doesn't include column aliases or predicates.
      * Default implementation throws UnsupportedOperationException.
@@ -34,4 +79,35 @@ public interface DataParser {
     default UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath) {
         return parse(data, fieldMappings, dataPath, null, List.of());
     }
+
+    /**
+     * Restricts the field mappings to the required columns, keeping every field a predicate refers to,
+     * directly or through a column alias. If none of the required columns is mapped by this source, all fields are kept.
+     *
+     * @return the projected field mappings, in their original order
+     */
+    static Map<String, DataType> project(Map<String, DataType> fieldMappings, Set<String> requiredColumns,
+                                         List<Predicate> predicates, Map<String, String> columnAlias) {
+        if (fieldMappings == null || requiredColumns == null || requiredColumns.isEmpty()) {
+            return fieldMappings;
+        }
+        Map<String, DataType> projected = new LinkedHashMap<>();
+        fieldMappings.forEach((field, type) -> {
+            if (requiredColumns.contains(field)) {
+                projected.put(field, type);
+            }
+        });
+        if (projected.isEmpty()) {
+            return fieldMappings;
+        }
+        if (predicates != null) {
+            for (Predicate predicate : predicates) {
+                String field = PredicateCompiler.resolveField(predicate.columnName(), fieldMappings, columnAlias);
+                if (field != null) {
+                    projected.putIfAbsent(field, fieldMappings.get(field));
+                }
+            }
+        }
+        return projected;
+    }
 }
@@ -1,9 +1,12 @@
 package com.example.unifieddataservice.service.parser;
 
 import com.example.unifieddataservice.model.DataType;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
 import org.apache.arrow.vector.types.FloatingPointPrecision;
 import org.apache.arrow.vector.types.TimeUnit;
 import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.FieldType;
 
@@ -23,9 +26,53 @@ public class DataTypeMapper {
             ));
     }
 
+    /**
+     * Maps an Arrow type back to the data type it was created from.
+     *
+     * @return the data type, or null if the Arrow type is not produced by {@link #toArrowFields(Map)}
+     */
+    public static DataType fromArrowType(ArrowType arrowType) {
+        switch (arrowType.getTypeID()) {
+            case Utf8:
+                return DataType.STRING;
+            case Int:
+                return ((ArrowType.Int) arrowType).getBitWidth() == 64 ? DataType.LONG : null;
+            case FloatingPoint:
+                return ((ArrowType.FloatingPoint) arrowType).getPrecision() == FloatingPointPrecision.DOUBLE ? DataType.DOUBLE : null;
+            case Bool:
+                return DataType.BOOLEAN;
+            case Timestamp:
+                return ((ArrowType.Timestamp) arrowType).getUnit() == TimeUnit.MILLISECOND ? DataType.TIMESTAMP : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Maps a schema field to its data type, looking through dictionary encoding to the type of the dictionary values.
+     *
+     * @return the data type, or null if the field's type is not produced by this mapper
+     */
+    public static DataType fromField(Field field, DictionaryProvider dictionaries) {
+        DictionaryEncoding encoding = field.getDictionary();
+        if (encoding == null) {
+            return fromArrowType(field.getType());
+        }
+        Dictionary dictionary = dictionaries != null ? dictionaries.lookup(encoding.getId()) : null;
+        if (dictionary == null || dictionary.getVectorType().getTypeID() != ArrowType.ArrowTypeID.Utf8) {
+            return null;
+        }
+        return DataType.DICTIONARY_STRING;
+    }
+
+    /**
+     * Dictionary-encoded strings map to the type of their values; the encoded field itself is
+     * created by whoever owns the dictionary.
+     */
     private static ArrowType toArrowType(DataType dataType) {
         switch (dataType) {
             case STRING:
+            case DICTIONARY_STRING:
                 return new ArrowType.Utf8();
             case LONG:
                 return new ArrowType.Int(64, true);
@@ -3,250 +3,138 @@ package com.example.unifieddataservice.service.parser;
 import com.example.unifieddataservice.model.DataType;
 import com.example.unifieddataservice.model.Predicate;
 import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonPointer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonToken;
 import org.apache.arrow.memory.RootAllocator;
-import org.apache.arrow.vector.*;
-import org.apache.arrow.vector.types.pojo.Field;
-import org.apache.arrow.vector.types.pojo.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Streaming JSON parser built on Jackson's token API.
+ * It walks to the {@code dataPath} pointer and writes each array element straight into Arrow
+ * record batches, skipping unmapped subtrees, so heap usage does not grow with the payload size.
+ */
 @Component
 public class JsonDataParser implements DataParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private final RootAllocator rootAllocator;
     private static final Logger logger = LoggerFactory.getLogger(JsonDataParser.class);
 
+    @Value("${parser.batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
     @Autowired
     public JsonDataParser(RootAllocator rootAllocator) {
         this.rootAllocator = rootAllocator;
     }
-    
-    private String inputStreamToString(InputStream is) {
+
+    @Override
+    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input stream cannot be null");
         try {
-            ByteArrayOutputStream result = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = is.read(buffer)) != -1) {
-                result.write(buffer, 0, length);
-            }
-            return result.toString(StandardCharsets.UTF_8.name());
+            return parse(JSON_FACTORY.createParser(data), fieldMappings, dataPath, columnAlias, predicates, requiredColumns);
         } catch (IOException e) {
-            logger.error("Failed to read input stream", e);
-            return "[Error reading input stream: " + e.getMessage() + "]";
+            throw new RuntimeException("Failed to parse JSON data: " + e.getMessage(), e);
         }
     }
-    
-    private void setVectorValue(FieldVector vector, DataType dataType, int rowIndex, JsonNode cellNode) {
+
+    /**
+     * Heap buffers are parsed in place by Jackson's byte-array parser; direct and mapped buffers
+     * are read through an InputStream view.
+     */
+    @Override
+    public UnifiedDataTable parseBytes(ByteBuffer data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input buffer cannot be null");
         try {
-            switch (dataType) {
-                case STRING:
-                    String strValue = cellNode.asText();
-                    ((VarCharVector) vector).setSafe(rowIndex, strValue.getBytes(StandardCharsets.UTF_8));
-                    break;
-                case LONG:
-                    long longValue = cellNode.asLong();
-                    ((BigIntVector) vector).setSafe(rowIndex, longValue);
-                    break;
-                case DOUBLE:
-                    double doubleValue = cellNode.asDouble();
-                    ((Float8Vector) vector).setSafe(rowIndex, doubleValue);
-                    break;
-                case BOOLEAN:
-                    boolean boolValue = cellNode.asBoolean();
-                    ((BitVector) vector).setSafe(rowIndex, boolValue ? 1 : 0);
-                    break;
-                case TIMESTAMP:
-                    long timestamp = cellNode.asLong();
-                    ((TimeStampMilliTZVector) vector).setSafe(rowIndex, timestamp);
-                    break;
-                default:
-                    logger.warn("Unhandled data type: {}", dataType);
-            }
-        } catch (Exception e) {
-            logger.error("Error setting {} value at index {}: {}", dataType, rowIndex, e.getMessage(), e);
-            throw e;
+            JsonParser parser = data.hasArray()
+                    ? JSON_FACTORY.createParser(data.array(), data.arrayOffset() + data.position(), data.remaining())
+                    : JSON_FACTORY.createParser(new ByteBufferInputStream(data));
+            return parse(parser, fieldMappings, dataPath, columnAlias, predicates, requiredColumns);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to parse JSON data: " + e.getMessage(), e);
         }
     }
-    
-    private UnifiedDataTable createEmptyTable(Map<String, DataType> fieldMappings) {
-        // Create the schema based on fieldMappings (using logical field names, not physical column names)
-        Map<String, Field> arrowFields = DataTypeMapper.toArrowFields(fieldMappings);
-        List<Field> fields = new ArrayList<>(arrowFields.values());
-        Schema schema = new Schema(fields, null);
-        
-        // Log the schema for debugging
-        logger.debug("Created Arrow schema with fields: {}", 
-            fields.stream().map(Field::getName).collect(Collectors.toList()));
-        VectorSchemaRoot vectorSchemaRoot = VectorSchemaRoot.create(schema, rootAllocator);
-        vectorSchemaRoot.allocateNew();
-        vectorSchemaRoot.setRowCount(0);
-        return new UnifiedDataTable(vectorSchemaRoot);
-    }
 
-    @Override
-    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates) {
-        logger.info("Starting JSON parsing with dataPath: '{}', fieldMappings: {}, columnAlias: {}, predicates: {}", 
-            dataPath, fieldMappings, columnAlias, predicates);
-        
-        Objects.requireNonNull(data, "Input stream cannot be null");
-        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
-        
-        // Use the columnAlias map if provided, otherwise use an empty map
-        Map<String, String> aliasMap = columnAlias != null ? columnAlias : Collections.emptyMap();
-        
-        // Create a mapping from logical field names to physical column names
-        Map<String, String> fieldToColumnMap = new HashMap<>();
-        
-        // For each field, determine its physical column name (using alias if available)
-        for (String fieldName : fieldMappings.keySet()) {
-            // If there's an alias for this field, use it; otherwise use the field name as is
-            fieldToColumnMap.put(fieldName, aliasMap.getOrDefault(fieldName, fieldName));
-        }
-        
+    private UnifiedDataTable parse(JsonParser jsonParser, Map<String, DataType> allFieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        logger.info("Starting JSON parsing with dataPath: '{}', fieldMappings: {}, columnAlias: {}, predicates: {}, requiredColumns: {}",
+            dataPath, allFieldMappings, columnAlias, predicates, requiredColumns);
+
+        Objects.requireNonNull(allFieldMappings, "Field mappings cannot be null");
+        // Unrequired fields are skipped like any other unmapped property
+        Map<String, DataType> fieldMappings = DataParser.project(allFieldMappings, requiredColumns, predicates, columnAlias);
+
         if (fieldMappings.isEmpty()) {
             String errorMsg = "Field mappings cannot be empty";
             logger.error(errorMsg);
             throw new IllegalArgumentException(errorMsg);
         }
-        
-        try {
-            // Log the input data for debugging
-            String inputData = inputStreamToString(data);
-            logger.debug("Raw JSON input data (first 1000 chars): {}", 
-                        inputData.length() > 1000 ? inputData.substring(0, 1000) + "..." : inputData);
-            
-            if (inputData == null || inputData.trim().isEmpty()) {
+
+        // Use the columnAlias map if provided, otherwise use an empty map
+        Map<String, String> aliasMap = columnAlias != null ? columnAlias : Collections.emptyMap();
+        CompiledFilter filter = PredicateCompiler.compile(predicates, fieldMappings, aliasMap);
+
+        try (ArrowBatchWriter writer = new ArrowBatchWriter(rootAllocator, fieldMappings, batchSize);
+             JsonParser parser = jsonParser) {
+
+            Map<String, int[]> propertyColumns = propertyColumns(writer, fieldMappings, aliasMap);
+
+            // Predicates are evaluated on the typed cells once the whole object has been written
+            CompiledFilter boundFilter = writer.bindDictionaries(filter);
+            int[] filterColumns = writer.columnIndexes(boundFilter);
+
+            if (parser.nextToken() == null) {
                 String errorMsg = "Input data is null or empty";
                 logger.error(errorMsg);
                 throw new IllegalArgumentException(errorMsg);
             }
-            
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(inputData);
-            
-            if (rootNode == null) {
-                String errorMsg = "Failed to parse JSON data - root node is null";
-                logger.error(errorMsg);
-                throw new IllegalStateException(errorMsg);
-            }
-            
-            logger.debug("Successfully parsed JSON. Root node type: {}", rootNode.getNodeType());
-            
+
             // If dataPath is provided, use it to navigate to the data array
-            JsonNode dataNode;
-            if (dataPath != null && !dataPath.isEmpty()) {
-                JsonPointer pointer = JsonPointer.compile(dataPath);
-                dataNode = rootNode.at(pointer);
-                logger.debug("Navigated to data path '{}', found node type: {}", dataPath, dataNode.getNodeType());
-            } else {
-                dataNode = rootNode;
-            }
-            
-            if (!dataNode.isArray()) {
-                logger.error("Data at path '{}' is not an array. Node type: {}", dataPath, dataNode.getNodeType());
-                return createEmptyTable(fieldMappings);
-            }
-            
-            // Log the first item's structure for debugging
-            if (dataNode.size() > 0) {
-                logger.debug("First item structure: {}", dataNode.get(0).toPrettyString());
+            JsonPointer pointer = dataPath != null && !dataPath.isEmpty()
+                    ? JsonPointer.compile(dataPath) : JsonPointer.empty();
+            if (!navigateTo(parser, pointer) || parser.currentToken() != JsonToken.START_ARRAY) {
+                logger.error("Data at path '{}' is not an array. Token: {}", dataPath, parser.currentToken());
+                return writer.finish().toTable("unnamed_table");
             }
 
-            // Filter nodes before processing
-            List<JsonNode> filteredNodes = new ArrayList<>();
-            for (JsonNode itemNode : dataNode) {
-                if (nodeMatches(itemNode, predicates, fieldToColumnMap)) {
-                    filteredNodes.add(itemNode);
-                }
-            }
-            
-            int rowCount = filteredNodes.size();
-            logger.debug("Found {} elements after filtering", rowCount);
-            
-            if (rowCount == 0) {
-                logger.warn("Empty array after filtering JSON data");
-                return createEmptyTable(fieldMappings);
-            }
-            
-            // Get the fields from the mapper
-            Map<String, Field> arrowFields = DataTypeMapper.toArrowFields(fieldMappings);
-            logger.debug("Created {} arrow fields", arrowFields.size());
-            
-            // Create schema and vector schema root
-            List<Field> fields = fieldMappings.keySet().stream()
-                .map(arrowFields::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-                
-            if (fields.size() != fieldMappings.size()) {
-                logger.error("Field count mismatch. Expected: {}, Actual: {}", fieldMappings.size(), fields.size());
-                throw new IllegalStateException("Failed to create all required fields");
-            }
-            
-            Schema schema = new Schema(fields, null);
-            VectorSchemaRoot vectorSchemaRoot = VectorSchemaRoot.create(schema, rootAllocator);
-            vectorSchemaRoot.allocateNew();
-            
-            logger.debug("Created VectorSchemaRoot with schema: {}", schema);
-            
-            // Process each row
-            for (int i = 0; i < rowCount; i++) {
-                JsonNode itemNode = filteredNodes.get(i);
-                if (!itemNode.isObject()) {
-                    logger.warn("Skipping non-object row at index {}", i);
+            int rowCount = 0;
+            int itemIndex = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    logger.warn("Skipping non-object row at index {}", itemIndex++);
+                    parser.skipChildren();
                     continue;
                 }
-                
-                // Process each field in the fieldMappings
-                for (Map.Entry<String, DataType> entry : fieldMappings.entrySet()) {
-                    String fieldName = entry.getKey();
-                    DataType dataType = entry.getValue();
-                    
-                    // Get the physical column name (using alias if available)
-                    String physicalColumn = fieldToColumnMap.get(fieldName);
-                    
-                    // Get the field value from the JSON object using the physical column name
-                    JsonNode valueNode = itemNode.path(physicalColumn);
-                    
-                    // Log if the field is missing or null
-                    if (valueNode.isMissingNode() || valueNode.isNull()) {
-                        logger.trace("Field '{}' (mapped from '{}') is missing or null in item {}", 
-                            physicalColumn, fieldName, i);
-                    }
-                    
-                    try {
-                        FieldVector vector = vectorSchemaRoot.getVector(fieldName);
-                        if (vector == null) {
-                            logger.error("No vector found for field: {}", fieldName);
-                            continue;
-                        }
-                        
-                        setVectorValue(vector, dataType, i, valueNode);
-                    } catch (Exception e) {
-                        logger.error("Error processing field '{}' at row {}: {}", fieldName, i, e.getMessage(), e);
-                        if (e instanceof RuntimeException) {
-                            throw (RuntimeException) e;
-                        }
-                        throw new RuntimeException(String.format("Error processing field '%s' at row %d", fieldName, i), e);
-                    }
+                itemIndex++;
+                readObject(parser, writer, propertyColumns);
+
+                if (!filter.rejectsAll() && writer.matches(boundFilter, filterColumns)) {
+                    writer.endRow();
+                    rowCount++;
+                } else {
+                    writer.discardRow();
                 }
             }
-            
-            vectorSchemaRoot.setRowCount(rowCount);
+
             logger.debug("Successfully parsed {} rows", rowCount);
-            
-            return new UnifiedDataTable(vectorSchemaRoot);
+            if (rowCount == 0) {
+                logger.warn("Empty array after filtering JSON data");
+            }
+            return writer.finish().toTable("unnamed_table");
 
         } catch (Exception e) {
             logger.error("Failed to parse JSON data: {}", e.getMessage(), e);
@@ -254,24 +142,131 @@ public class JsonDataParser implements DataParser {
         }
     }
 
-    private boolean nodeMatches(JsonNode node, List<Predicate> predicates, Map<String, String> fieldToColumnMap) {
-        if (predicates == null || predicates.isEmpty()) {
-            return true;
+    /**
+     * Maps each physical JSON property to the writer columns it feeds, resolving field names through the aliases.
+     */
+    static Map<String, int[]> propertyColumns(ArrowBatchWriter writer, Map<String, DataType> fieldMappings, Map<String, String> aliasMap) {
+        Map<String, int[]> propertyColumns = new HashMap<>();
+        for (String fieldName : fieldMappings.keySet()) {
+            String physicalColumn = aliasMap.getOrDefault(fieldName, fieldName);
+            propertyColumns.merge(physicalColumn, new int[]{writer.columnIndex(fieldName)}, JsonDataParser::concat);
         }
-        for (Predicate predicate : predicates) {
-            String physicalColumn = fieldToColumnMap.get(predicate.columnName());
-            if (physicalColumn == null) {
-                return false; // Column for predicate not mapped
+        return propertyColumns;
+    }
+
+    /**
+     * Writes the mapped properties of the object the parser is positioned on into the current row,
+     * leaving the parser on the object's closing token.
+     */
+    static void readObject(JsonParser parser, ArrowBatchWriter writer, Map<String, int[]> propertyColumns) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String property = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            int[] columns = propertyColumns.get(property);
+            if (columns != null) {
+                for (int column : columns) {
+                    writeValue(writer, column, parser, valueToken);
+                }
             }
-            JsonNode valueNode = node.path(physicalColumn);
-            if (valueNode.isMissingNode() || valueNode.isNull()) {
-                return false; // Null values don't match for now
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Advances the parser, which must be positioned on the first token of a value, to the value
+     * addressed by the pointer. Sibling subtrees on the way are skipped without being materialized.
+     *
+     * @return false if the pointer does not resolve against the document
+     */
+    static boolean navigateTo(JsonParser parser, JsonPointer pointer) throws IOException {
+        JsonPointer current = pointer;
+        while (!current.matches()) {
+            JsonToken token = parser.currentToken();
+            boolean found = false;
+            if (token == JsonToken.START_OBJECT) {
+                String property = current.getMatchingProperty();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if (name.equals(property)) {
+                        found = true;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+            } else if (token == JsonToken.START_ARRAY && current.getMatchingIndex() >= 0) {
+                int index = current.getMatchingIndex();
+                int position = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (position++ == index) {
+                        found = true;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
             }
-            // Simplified comparison, assumes EQUALS and string matching
-            if (!valueNode.asText().equals(predicate.value().toString())) {
-                return false; // Predicate does not match
+            if (!found) {
+                return false;
             }
+            current = current.tail();
         }
         return true;
     }
+
+    private static void writeValue(ArrowBatchWriter writer, int column, JsonParser parser, JsonToken token) throws IOException {
+        DataType dataType = writer.typeOf(column);
+        switch (token) {
+            case VALUE_STRING:
+                if (dataType == DataType.STRING || dataType == DataType.DICTIONARY_STRING) {
+                    writer.setBytes(column, parser.getText().getBytes(StandardCharsets.UTF_8));
+                } else {
+                    writer.setString(column, parser.getText());
+                }
+                break;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                switch (dataType) {
+                    case LONG:
+                    case TIMESTAMP:
+                        writer.setLong(column, parser.getValueAsLong());
+                        break;
+                    case DOUBLE:
+                        writer.setDouble(column, parser.getValueAsDouble());
+                        break;
+                    case BOOLEAN:
+                        writer.setBoolean(column, parser.getValueAsLong() != 0);
+                        break;
+                    default:
+                        writer.setBytes(column, parser.getText().getBytes(StandardCharsets.UTF_8));
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                boolean value = token == JsonToken.VALUE_TRUE;
+                switch (dataType) {
+                    case BOOLEAN:
+                        writer.setBoolean(column, value);
+                        break;
+                    case LONG:
+                    case TIMESTAMP:
+                        writer.setLong(column, value ? 1 : 0);
+                        break;
+                    case DOUBLE:
+                        writer.setDouble(column, value ? 1 : 0);
+                        break;
+                    default:
+                        writer.setBytes(column, Boolean.toString(value).getBytes(StandardCharsets.UTF_8));
+                }
+                break;
+            default:
+                // null, nested objects and arrays cannot be mapped to a scalar column
+                writer.setNull(column);
+        }
+    }
+
+    private static int[] concat(int[] left, int[] right) {
+        int[] merged = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, merged, left.length, right.length);
+        return merged;
+    }
 }
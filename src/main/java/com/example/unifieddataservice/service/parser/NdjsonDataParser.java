@@ -0,0 +1,202 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.util.ByteBufferInputStream;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.PreDestroy;
+import org.apache.arrow.memory.RootAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parser for newline-delimited JSON (JSON Lines), where every line holds one record object.
+ * Records are read one at a time from Jackson's token stream and written straight into Arrow record batches.
+ * A non-empty {@code dataPath} is resolved inside each record, for logs that wrap every event in an envelope.
+ *
+ * <p>Buffers above the parallel threshold, such as memory-mapped local files, are split into ranges at
+ * line boundaries; every range is parsed into its own batches on the parser's fork-join pool and the batches
+ * are assembled in file order.</p>
+ */
+@Component
+public class NdjsonDataParser implements DataParser {
+    private static final Logger logger = LoggerFactory.getLogger(NdjsonDataParser.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final RootAllocator rootAllocator;
+
+    @Value("${parser.batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Buffers at least this large are split into line-aligned ranges and parsed in parallel. */
+    @Value("${parser.ndjson.parallel-threshold-bytes:67108864}")
+    private long parallelThresholdBytes = 64L * 1024 * 1024;
+
+    private final ForkJoinPool parsePool;
+
+    @Autowired
+    public NdjsonDataParser(RootAllocator rootAllocator) {
+        this(rootAllocator, Runtime.getRuntime().availableProcessors());
+    }
+
+    public NdjsonDataParser(RootAllocator rootAllocator, int parallelism) {
+        this.rootAllocator = rootAllocator;
+        this.parsePool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsePool.shutdown();
+    }
+
+    @Override
+    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input stream cannot be null");
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        Map<String, DataType> projectedFields = projectFields(fieldMappings, predicates, columnAlias, requiredColumns);
+        CompiledFilter filter = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
+        try {
+            return readLines(JSON_FACTORY.createParser(data), projectedFields, dataPath, columnAlias, filter,
+                    ArrowBatchWriter.dictionaryIds(projectedFields)).toTable("unnamed_table");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to parse NDJSON data: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public UnifiedDataTable parseBytes(ByteBuffer data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input buffer cannot be null");
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        Map<String, DataType> projectedFields = projectFields(fieldMappings, predicates, columnAlias, requiredColumns);
+        CompiledFilter filter = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
+        // All ranges encode against the same dictionary ids so their batches share one schema
+        Map<String, Long> dictionaryIds = ArrowBatchWriter.dictionaryIds(projectedFields);
+
+        try {
+            int chunkCount = parsePool.getParallelism();
+            if (data.remaining() < parallelThresholdBytes || chunkCount < 2) {
+                return readLines(createParser(data), projectedFields, dataPath, columnAlias, filter, dictionaryIds)
+                        .toTable("unnamed_table");
+            }
+
+            List<ByteBuffer> ranges = splitRanges(data, chunkCount);
+            logger.info("Parsing {} bytes of NDJSON in {} parallel ranges", data.remaining(), ranges.size());
+            List<Callable<ArrowBatchWriter.Output>> tasks = new ArrayList<>(ranges.size());
+            for (ByteBuffer range : ranges) {
+                tasks.add(() -> readLines(createParser(range), projectedFields, dataPath, columnAlias, filter, dictionaryIds));
+            }
+            return ArrowBatchWriter.Output.collectInOrder(parsePool.invokeAll(tasks)).toTable("unnamed_table");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Parsing of NDJSON data was interrupted", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to parse NDJSON data: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, DataType> projectFields(Map<String, DataType> fieldMappings, List<Predicate> predicates,
+                                                       Map<String, String> columnAlias, Set<String> requiredColumns) {
+        Map<String, DataType> projectedFields = DataParser.project(fieldMappings, requiredColumns, predicates, columnAlias);
+        if (projectedFields.isEmpty()) {
+            throw new IllegalArgumentException("Field mappings cannot be empty");
+        }
+        return projectedFields;
+    }
+
+    /**
+     * Heap buffers are parsed in place by Jackson's byte-array parser; direct and mapped buffers
+     * are read through an InputStream view.
+     */
+    private static JsonParser createParser(ByteBuffer data) throws IOException {
+        return data.hasArray()
+                ? JSON_FACTORY.createParser(data.array(), data.arrayOffset() + data.position(), data.remaining())
+                : JSON_FACTORY.createParser(new ByteBufferInputStream(data));
+    }
+
+    /**
+     * Reads every record of the stream into a new writer. Values that are not objects, or whose
+     * {@code dataPath} does not resolve to an object, are skipped.
+     */
+    private ArrowBatchWriter.Output readLines(JsonParser jsonParser, Map<String, DataType> fieldMappings, String dataPath,
+                                              Map<String, String> columnAlias, CompiledFilter filter,
+                                              Map<String, Long> dictionaryIds) throws IOException {
+        Map<String, String> aliasMap = columnAlias != null ? columnAlias : Collections.emptyMap();
+        JsonPointer pointer = dataPath != null && !dataPath.isEmpty() ? JsonPointer.compile(dataPath) : JsonPointer.empty();
+
+        try (JsonParser parser = jsonParser;
+             ArrowBatchWriter writer = new ArrowBatchWriter(rootAllocator, fieldMappings, batchSize, dictionaryIds)) {
+            if (filter.rejectsAll()) {
+                return writer.finish();
+            }
+            Map<String, int[]> propertyColumns = JsonDataParser.propertyColumns(writer, fieldMappings, aliasMap);
+            CompiledFilter boundFilter = writer.bindDictionaries(filter);
+            int[] filterColumns = writer.columnIndexes(boundFilter);
+
+            long records = 0;
+            long skipped = 0;
+            while (parser.nextToken() != null) {
+                records++;
+                boolean isRecord = JsonDataParser.navigateTo(parser, pointer) && parser.currentToken() == JsonToken.START_OBJECT;
+                if (isRecord) {
+                    JsonDataParser.readObject(parser, writer, propertyColumns);
+                    if (writer.matches(boundFilter, filterColumns)) {
+                        writer.endRow();
+                    } else {
+                        writer.discardRow();
+                    }
+                } else {
+                    skipped++;
+                }
+                // Skip whatever is left of the line's value, e.g. the envelope around the record
+                while (!parser.getParsingContext().inRoot()) {
+                    JsonToken token = parser.nextToken();
+                    if (token == null) {
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            if (skipped > 0) {
+                logger.warn("Skipped {} of {} NDJSON lines without a record object at '{}'", skipped, records, dataPath);
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Splits the buffer into roughly equal ranges whose boundaries fall right after a newline.
+     */
+    private static List<ByteBuffer> splitRanges(ByteBuffer data, int chunkCount) {
+        ByteBuffer buffer = data.slice();
+        int end = buffer.limit();
+        int chunkSize = (int) (((long) end + chunkCount - 1) / chunkCount);
+        List<ByteBuffer> ranges = new ArrayList<>(chunkCount);
+        int rangeStart = 0;
+        while (rangeStart < end) {
+            int rangeEnd = (int) Math.min(end, (long) rangeStart + chunkSize);
+            while (rangeEnd < end && buffer.get(rangeEnd - 1) != '\n') {
+                rangeEnd++;
+            }
+            ranges.add(buffer.duplicate().position(rangeStart).limit(rangeEnd).slice());
+            rangeStart = rangeEnd;
+        }
+        return ranges;
+    }
+}
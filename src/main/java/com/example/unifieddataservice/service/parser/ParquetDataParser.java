@@ -0,0 +1,475 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.CompiledFilter;
+import com.example.unifieddataservice.service.filter.PredicateCompiler;
+import com.example.unifieddataservice.service.filter.ValueRange;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.FileMetaData;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Reads Parquet files into Arrow record batches.
+ *
+ * <p>Only the column chunks of projected fields are read and decompressed. Before a row group is read, the
+ * min/max statistics of its column chunks are checked against the pushed-down predicates, and row groups that
+ * cannot contain a matching row are skipped entirely. Values are read straight from the column readers into
+ * the batch writer, without assembling records.</p>
+ *
+ * <p>Only flat schemas are supported: every mapped field must name a top-level primitive column.</p>
+ */
+@Component
+public class ParquetDataParser implements DataParser {
+    private static final Logger logger = LoggerFactory.getLogger(ParquetDataParser.class);
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final RootAllocator rootAllocator;
+
+    @Value("${parser.batch-size:" + DEFAULT_BATCH_SIZE + "}")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    @Autowired
+    public ParquetDataParser(RootAllocator rootAllocator) {
+        this.rootAllocator = rootAllocator;
+    }
+
+    /**
+     * Parquet keeps its metadata in a footer, so a streamed source is buffered in memory before it is read.
+     */
+    @Override
+    public UnifiedDataTable parse(InputStream data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input stream cannot be null");
+        try {
+            return parseBytes(ByteBuffer.wrap(data.readAllBytes()), fieldMappings, dataPath, columnAlias, predicates, requiredColumns);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read Parquet data: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public UnifiedDataTable parseBytes(ByteBuffer data, Map<String, DataType> fieldMappings, String dataPath, Map<String, String> columnAlias, List<Predicate> predicates, Set<String> requiredColumns) {
+        Objects.requireNonNull(data, "Input buffer cannot be null");
+        Objects.requireNonNull(fieldMappings, "Field mappings cannot be null");
+        Map<String, DataType> projectedFields = DataParser.project(fieldMappings, requiredColumns, predicates, columnAlias);
+        Map<String, String> fieldToColumnMap = CsvDataParser.resolveColumns(projectedFields, columnAlias);
+        CompiledFilter filter = PredicateCompiler.compile(predicates, projectedFields, columnAlias);
+
+        ParquetReadOptions options = ParquetReadOptions.builder(new PlainParquetConfiguration()).build();
+        try (ParquetFileReader reader = new ParquetFileReader(new BufferInputFile(data), options);
+             ArrowBatchWriter writer = new ArrowBatchWriter(rootAllocator, projectedFields, batchSize)) {
+            FileMetaData metadata = reader.getFileMetaData();
+            List<SourceColumn> columns = plan(metadata.getSchema(), projectedFields, fieldToColumnMap, writer);
+            List<Type> requestedTypes = new ArrayList<>();
+            columns.forEach(column -> requestedTypes.add(column.type));
+            MessageType requested = new MessageType(metadata.getSchema().getName(), requestedTypes);
+            reader.setRequestedSchema(requested);
+            GroupConverter converter = new GroupRecordConverter(requested).getRootConverter();
+
+            CompiledFilter boundFilter = writer.bindDictionaries(filter);
+            int[] filterColumns = writer.columnIndexes(boundFilter);
+            // Columns that feed the filter are read first, so the other columns of a rejected row are skipped
+            columns.sort(Comparator.comparing(column -> !column.feedsFilter(filterColumns)));
+
+            List<BlockMetaData> rowGroups = reader.getRowGroups();
+            int skipped = 0;
+            for (int i = 0; i < rowGroups.size(); i++) {
+                if (filter.rejectsAll() || !mightMatch(rowGroups.get(i), predicates, projectedFields, fieldToColumnMap, columnAlias)) {
+                    skipped++;
+                    continue;
+                }
+                PageReadStore pages = reader.readRowGroup(i);
+                ColumnReadStoreImpl store = new ColumnReadStoreImpl(pages, converter, requested, metadata.getCreatedBy());
+                ColumnReader[] columnReaders = new ColumnReader[columns.size()];
+                for (int c = 0; c < columnReaders.length; c++) {
+                    columnReaders[c] = store.getColumnReader(columns.get(c).descriptor);
+                }
+                readRows(pages.getRowCount(), columns, columnReaders, writer, boundFilter, filterColumns);
+            }
+            logger.debug("Read {} of {} Parquet row groups; {} skipped using column statistics",
+                    rowGroups.size() - skipped, rowGroups.size(), skipped);
+            return writer.finish().toTable("unnamed_table");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read Parquet data: " + e.getMessage(), e);
+        }
+    }
+
+    private void readRows(long rowCount, List<SourceColumn> columns, ColumnReader[] columnReaders,
+                          ArrowBatchWriter writer, CompiledFilter filter, int[] filterColumns) {
+        for (long row = 0; row < rowCount; row++) {
+            int c = 0;
+            for (; c < columnReaders.length && columns.get(c).feedsFilter(filterColumns); c++) {
+                columns.get(c).read(columnReaders[c], writer);
+            }
+            if (!filter.isEmpty() && !writer.matches(filter, filterColumns)) {
+                for (; c < columnReaders.length; c++) {
+                    SourceColumn.skip(columnReaders[c]);
+                }
+                writer.discardRow();
+                continue;
+            }
+            for (; c < columnReaders.length; c++) {
+                columns.get(c).read(columnReaders[c], writer);
+            }
+            writer.endRow();
+        }
+    }
+
+    /**
+     * Resolves every projected field to a top-level primitive column of the file. Fields reading the same
+     * column share one {@link SourceColumn}, since a column chunk can only be read once.
+     */
+    private static List<SourceColumn> plan(MessageType schema, Map<String, DataType> projectedFields,
+                                           Map<String, String> fieldToColumnMap, ArrowBatchWriter writer) {
+        Map<String, SourceColumn> columns = new LinkedHashMap<>();
+        projectedFields.forEach((field, dataType) -> {
+            String columnName = fieldToColumnMap.get(field);
+            if (!schema.containsField(columnName) || !schema.getType(columnName).isPrimitive()) {
+                throw new IllegalArgumentException(String.format("Column '%s' for field '%s' not found in Parquet schema", columnName, field));
+            }
+            PrimitiveType type = schema.getType(columnName).asPrimitiveType();
+            if (!convertible(type, dataType)) {
+                throw new IllegalArgumentException(String.format("Cannot map Parquet column '%s' of type %s to %s", columnName, type, dataType));
+            }
+            columns.computeIfAbsent(columnName, name -> new SourceColumn(type, schema.getColumnDescription(new String[]{name})))
+                    .add(writer.columnIndex(field), dataType);
+        });
+        return new ArrayList<>(columns.values());
+    }
+
+    private static boolean convertible(PrimitiveType type, DataType dataType) {
+        LogicalTypeAnnotation logicalType = type.getLogicalTypeAnnotation();
+        switch (type.getPrimitiveTypeName()) {
+            case INT32:
+            case INT64:
+                return (dataType == DataType.LONG || dataType == DataType.DOUBLE || dataType == DataType.TIMESTAMP)
+                        && (logicalType == null || logicalType instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation
+                        || logicalType instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation
+                        || logicalType instanceof LogicalTypeAnnotation.DateLogicalTypeAnnotation);
+            case FLOAT:
+            case DOUBLE:
+                return dataType == DataType.DOUBLE;
+            case BOOLEAN:
+                return dataType == DataType.BOOLEAN;
+            case BINARY:
+            case FIXED_LEN_BYTE_ARRAY:
+                return dataType == DataType.STRING || dataType == DataType.DICTIONARY_STRING;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return false if the statistics of the row group rule out every row for one of the predicates
+     */
+    private static boolean mightMatch(BlockMetaData rowGroup, List<Predicate> predicates, Map<String, DataType> projectedFields,
+                                      Map<String, String> fieldToColumnMap, Map<String, String> columnAlias) {
+        if (predicates == null) {
+            return true;
+        }
+        for (Predicate predicate : predicates) {
+            String field = PredicateCompiler.resolveField(predicate.columnName(), projectedFields, columnAlias);
+            if (field == null) {
+                continue;
+            }
+            String columnName = fieldToColumnMap.get(field);
+            for (ColumnChunkMetaData chunk : rowGroup.getColumns()) {
+                if (chunk.getPath().size() == 1 && chunk.getPath().toArray()[0].equals(columnName)) {
+                    ValueRange range = rangeOf(chunk, rowGroup.getRowCount(), projectedFields.get(field));
+                    if (!PredicateCompiler.mightMatch(predicate, projectedFields.get(field), range)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts column chunk statistics to the comparison domain of the data type the column is read as.
+     * Conversions are monotonic, so converted bounds still bound the converted values.
+     */
+    private static ValueRange rangeOf(ColumnChunkMetaData chunk, long rowCount, DataType dataType) {
+        Statistics<?> statistics = chunk.getStatistics();
+        if (statistics == null || statistics.isEmpty()) {
+            return ValueRange.unknown();
+        }
+        long nullCount = statistics.isNumNullsSet() ? statistics.getNumNulls() : 0;
+        if (!statistics.hasNonNullValue()) {
+            return statistics.isNumNullsSet() && nullCount == rowCount ? ValueRange.onlyNulls(nullCount) : ValueRange.unknown();
+        }
+        PrimitiveType type = chunk.getPrimitiveType();
+        Object min = statistics.genericGetMin();
+        Object max = statistics.genericGetMax();
+        switch (dataType) {
+            case LONG:
+            case TIMESTAMP:
+                if (min instanceof Integer || min instanceof Long) {
+                    return ValueRange.ofLongs(toLong(type, dataType, (Number) min), toLong(type, dataType, (Number) max), nullCount);
+                }
+                return ValueRange.unknown();
+            case DOUBLE:
+                if (min instanceof Integer || min instanceof Long) {
+                    return ValueRange.ofDoubles(toLong(type, dataType, (Number) min), toLong(type, dataType, (Number) max), nullCount);
+                }
+                return min instanceof Number
+                        ? ValueRange.ofDoubles(((Number) min).doubleValue(), ((Number) max).doubleValue(), nullCount)
+                        : ValueRange.unknown();
+            case STRING:
+            case DICTIONARY_STRING:
+                return min instanceof Binary
+                        ? ValueRange.ofUtf8(((Binary) min).getBytes(), ((Binary) max).getBytes(), nullCount)
+                        : ValueRange.unknown();
+            default:
+                return ValueRange.unknown();
+        }
+    }
+
+    /**
+     * Reads an integer column value as the data type expects it: unsigned 32-bit values are widened without sign,
+     * dates and timestamps become epoch milliseconds.
+     */
+    private static long toLong(PrimitiveType type, DataType dataType, Number value) {
+        LogicalTypeAnnotation logicalType = type.getLogicalTypeAnnotation();
+        if (value instanceof Integer) {
+            if (logicalType instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation
+                    && !((LogicalTypeAnnotation.IntLogicalTypeAnnotation) logicalType).isSigned()) {
+                return Integer.toUnsignedLong(value.intValue());
+            }
+            if (logicalType instanceof LogicalTypeAnnotation.DateLogicalTypeAnnotation && dataType == DataType.TIMESTAMP) {
+                return value.intValue() * MILLIS_PER_DAY;
+            }
+            return value.intValue();
+        }
+        long raw = value.longValue();
+        if (logicalType instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation && dataType == DataType.TIMESTAMP) {
+            switch (((LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) logicalType).getUnit()) {
+                case MICROS:
+                    return Math.floorDiv(raw, 1000L);
+                case NANOS:
+                    return Math.floorDiv(raw, 1_000_000L);
+                default:
+                    return raw;
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * A file column and the writer columns it feeds.
+     */
+    private static final class SourceColumn {
+        final PrimitiveType type;
+        final ColumnDescriptor descriptor;
+        final int maxDefinitionLevel;
+        private int[] targets = new int[0];
+        private DataType[] dataTypes = new DataType[0];
+
+        SourceColumn(PrimitiveType type, ColumnDescriptor descriptor) {
+            this.type = type;
+            this.descriptor = descriptor;
+            this.maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+        }
+
+        void add(int target, DataType dataType) {
+            targets = Arrays.copyOf(targets, targets.length + 1);
+            dataTypes = Arrays.copyOf(dataTypes, dataTypes.length + 1);
+            targets[targets.length - 1] = target;
+            dataTypes[dataTypes.length - 1] = dataType;
+        }
+
+        boolean feedsFilter(int[] filterColumns) {
+            for (int target : targets) {
+                for (int filterColumn : filterColumns) {
+                    if (target == filterColumn) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Writes the current value into every target column and moves the reader to the next row.
+         */
+        void read(ColumnReader reader, ArrowBatchWriter writer) {
+            if (reader.getCurrentDefinitionLevel() < maxDefinitionLevel) {
+                for (int target : targets) {
+                    writer.setNull(target);
+                }
+                reader.consume();
+                return;
+            }
+            switch (type.getPrimitiveTypeName()) {
+                case INT32:
+                    writeLong(writer, reader.getInteger());
+                    break;
+                case INT64:
+                    writeLong(writer, reader.getLong());
+                    break;
+                case FLOAT:
+                    writeDouble(writer, reader.getFloat());
+                    break;
+                case DOUBLE:
+                    writeDouble(writer, reader.getDouble());
+                    break;
+                case BOOLEAN:
+                    boolean value = reader.getBoolean();
+                    for (int target : targets) {
+                        writer.setBoolean(target, value);
+                    }
+                    break;
+                default:
+                    ByteBuffer bytes = reader.getBinary().toByteBuffer();
+                    for (int target : targets) {
+                        if (bytes.hasArray()) {
+                            writer.setBytes(target, bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                        } else {
+                            byte[] copy = new byte[bytes.remaining()];
+                            bytes.duplicate().get(copy);
+                            writer.setBytes(target, copy);
+                        }
+                    }
+                    break;
+            }
+            reader.consume();
+        }
+
+        private void writeLong(ArrowBatchWriter writer, Number value) {
+            for (int i = 0; i < targets.length; i++) {
+                long converted = toLong(type, dataTypes[i], value);
+                if (dataTypes[i] == DataType.DOUBLE) {
+                    writer.setDouble(targets[i], converted);
+                } else {
+                    writer.setLong(targets[i], converted);
+                }
+            }
+        }
+
+        private void writeDouble(ArrowBatchWriter writer, double value) {
+            for (int target : targets) {
+                writer.setDouble(target, value);
+            }
+        }
+
+        static void skip(ColumnReader reader) {
+            reader.skip();
+            reader.consume();
+        }
+    }
+
+    /**
+     * Parquet input over a buffer, typically a memory-mapped file, read without copying it first.
+     */
+    private static final class BufferInputFile implements InputFile {
+        private final ByteBuffer buffer;
+
+        BufferInputFile(ByteBuffer buffer) {
+            this.buffer = buffer.slice();
+        }
+
+        @Override
+        public long getLength() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public SeekableInputStream newStream() {
+            ByteBuffer view = buffer.duplicate();
+            return new SeekableInputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    int toRead = Math.min(len, view.remaining());
+                    view.get(b, off, toRead);
+                    return toRead;
+                }
+
+                @Override
+                public long getPos() {
+                    return view.position();
+                }
+
+                @Override
+                public void seek(long newPos) throws IOException {
+                    if (newPos < 0 || newPos > view.limit()) {
+                        throw new EOFException("Cannot seek to " + newPos + " in " + view.limit() + " bytes");
+                    }
+                    view.position((int) newPos);
+                }
+
+                @Override
+                public void readFully(byte[] bytes) throws IOException {
+                    readFully(bytes, 0, bytes.length);
+                }
+
+                @Override
+                public void readFully(byte[] bytes, int start, int len) throws IOException {
+                    if (view.remaining() < len) {
+                        throw new EOFException("Reached end of data with " + view.remaining() + " of " + len + " bytes left");
+                    }
+                    view.get(bytes, start, len);
+                }
+
+                @Override
+                public int read(ByteBuffer dst) {
+                    if (!view.hasRemaining()) {
+                        return dst.hasRemaining() ? -1 : 0;
+                    }
+                    int toRead = Math.min(dst.remaining(), view.remaining());
+                    dst.put(view.slice().limit(toRead));
+                    view.position(view.position() + toRead);
+                    return toRead;
+                }
+
+                @Override
+                public void readFully(ByteBuffer dst) throws IOException {
+                    if (view.remaining() < dst.remaining()) {
+                        throw new EOFException("Reached end of data with " + view.remaining() + " of " + dst.remaining() + " bytes left");
+                    }
+                    read(dst);
+                }
+            };
+        }
+    }
+}
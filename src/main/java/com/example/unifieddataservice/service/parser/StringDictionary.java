@@ -0,0 +1,145 @@
+package com.example.unifieddataservice.service.parser;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the dictionary of a {@link com.example.unifieddataservice.model.DataType#DICTIONARY_STRING} column
+ * while it is parsed. Distinct values are appended to a VarCharVector and looked up through an
+ * open-addressing table over that vector, so encoding a repeated value allocates nothing.
+ */
+final class StringDictionary implements AutoCloseable {
+    static final ArrowType.Int INDEX_TYPE = new ArrowType.Int(32, true);
+
+    /** Dictionary ids are unique per process, so dictionaries of different tables never clash in one IPC stream. */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final DictionaryEncoding encoding;
+    private final VarCharVector values;
+    private int[] slots = new int[64]; // code + 1, 0 marks an empty slot
+    private int size;
+
+    StringDictionary(String fieldName, BufferAllocator allocator, long id) {
+        this.encoding = new DictionaryEncoding(id, false, INDEX_TYPE);
+        this.values = new VarCharVector(fieldName + "_dictionary", allocator);
+        this.values.allocateNew();
+    }
+
+    static long nextId() {
+        return NEXT_ID.incrementAndGet();
+    }
+
+    DictionaryEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return the values added so far, indexed by code; the value count is only set once the dictionary is sealed
+     */
+    VarCharVector getValues() {
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the code of the value, adding it to the dictionary if it is new
+     */
+    int encode(byte[] value) {
+        return encode(value, 0, value.length);
+    }
+
+    /**
+     * @return the code of the value held in {@code source[offset, offset + length)}, adding it to the dictionary if it is new
+     */
+    int encode(byte[] source, int offset, int length) {
+        int hash = hash(source, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int code = slots[slot] - 1;
+            if (valueEquals(code, source, offset, length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int code = size++;
+        values.setSafe(code, source, offset, length);
+        slots[slot] = code + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Adds the values of another dictionary to this one.
+     *
+     * @return for each code of {@code other}, the code of the same value in this dictionary
+     */
+    int[] mergeFrom(StringDictionary other) {
+        int[] remap = new int[other.size];
+        for (int code = 0; code < other.size; code++) {
+            remap[code] = encode(other.values.get(code));
+        }
+        return remap;
+    }
+
+    /**
+     * Seals the dictionary into an Arrow dictionary. Ownership of the values passes to the caller.
+     */
+    Dictionary toDictionary() {
+        values.setValueCount(size);
+        return new Dictionary(values, encoding);
+    }
+
+    private boolean valueEquals(int code, byte[] source, int offset, int length) {
+        ArrowBuf offsets = values.getOffsetBuffer();
+        int start = offsets.getInt((long) code * 4);
+        if (offsets.getInt((long) (code + 1) * 4) - start != length) {
+            return false;
+        }
+        ArrowBuf data = values.getDataBuffer();
+        for (int i = 0; i < length; i++) {
+            if (data.getByte(start + i) != source[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int code = 0; code < size; code++) {
+            byte[] value = values.get(code);
+            int slot = hash(value, 0, value.length) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = code + 1;
+        }
+        slots = grown;
+    }
+
+    private static int hash(byte[] source, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + source[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public void close() {
+        values.close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.unifieddataservice.util;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+
+/**
+ * Helpers for reading and copying dictionary-encoded columns.
+ */
+public final class ArrowDictionaries {
+
+    private ArrowDictionaries() {
+    }
+
+    /**
+     * Reads a cell, decoding it through its dictionary if the column is dictionary-encoded.
+     */
+    public static Object valueAt(FieldVector vector, int row, DictionaryProvider dictionaries) {
+        DictionaryEncoding encoding = vector.getField().getDictionary();
+        if (encoding == null) {
+            return vector.getObject(row);
+        }
+        if (vector.isNull(row)) {
+            return null;
+        }
+        int code = (int) ((BaseIntVector) vector).getValueAsLong(row);
+        return lookup(dictionaries, encoding).getVector().getObject(code);
+    }
+
+    /**
+     * Copies the dictionaries referenced by the given fields from {@code source} into {@code target},
+     * skipping those already present, so a derived table can own its dictionaries independently of its input.
+     */
+    public static void copyInto(DictionaryProvider source, Iterable<Field> fields,
+                                DictionaryProvider.MapDictionaryProvider target, BufferAllocator allocator) {
+        for (Field field : fields) {
+            DictionaryEncoding encoding = field.getDictionary();
+            if (encoding == null || target.getDictionaryIds().contains(encoding.getId())) {
+                continue;
+            }
+            FieldVector values = lookup(source, encoding).getVector();
+            FieldVector copy = values.getField().createVector(allocator);
+            copy.allocateNew();
+            for (int i = 0; i < values.getValueCount(); i++) {
+                copy.copyFromSafe(i, i, values);
+            }
+            copy.setValueCount(values.getValueCount());
+            target.put(new Dictionary(copy, encoding));
+        }
+    }
+
+    private static Dictionary lookup(DictionaryProvider dictionaries, DictionaryEncoding encoding) {
+        Dictionary dictionary = dictionaries != null ? dictionaries.lookup(encoding.getId()) : null;
+        if (dictionary == null) {
+            throw new IllegalStateException("Dictionary " + encoding.getId() + " is not available");
+        }
+        return dictionary;
+    }
+}
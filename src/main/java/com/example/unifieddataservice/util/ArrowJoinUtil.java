@@ -1,9 +1,12 @@
 package com.example.unifieddataservice.util;
 
 import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.filter.KeyBloomFilter;
+import com.example.unifieddataservice.service.filter.Selection;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.slf4j.Logger;
@@ -67,7 +70,7 @@ public class ArrowJoinUtil {
         for (int i = 1; i < tables.size(); i++) {
             logger.info("Building key index map for table {}", i);
             VectorSchemaRoot currentTable = tables.get(i).getData();
-            Map<String, Integer> keyIndexMap = buildKeyIndexMap(currentTable, keyColumns, fieldMappings);
+            Map<String, Integer> keyIndexMap = buildKeyIndexMap(currentTable, keyColumns, fieldMappings, tables.get(i).getDictionaries());
             logger.info("Built key index map with {} entries for table {}", keyIndexMap.size(), i);
             tableKeyIndexMaps.add(keyIndexMap);
         }
@@ -84,14 +87,24 @@ public class ArrowJoinUtil {
             fieldNameMapping.put(field.getName(), field.getName());
         }
 
+        // Dictionary-encoded columns are copied as codes, so the joined table takes a copy of each contributing dictionary
+        DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        ArrowDictionaries.copyInto(tables.get(0).getDictionaries(), base.getSchema().getFields(), dictionaries, rootAllocator);
+
+        // Each column is filled from the table that contributed it; codes of another table's dictionary must not be mixed in
+        List<Set<String>> contributedFields = new ArrayList<>();
         for (int i = 1; i < tables.size(); i++) {
             VectorSchemaRoot currentTable = tables.get(i).getData();
+            List<Field> addedFields = new ArrayList<>();
             for (Field field : currentTable.getSchema().getFields()) {
                 String originalName = field.getName();
                 if (combinedFields.stream().noneMatch(f -> f.getName().equals(originalName))) {
                     combinedFields.add(field);
+                    addedFields.add(field);
                 }
             }
+            ArrowDictionaries.copyInto(tables.get(i).getDictionaries(), addedFields, dictionaries, rootAllocator);
+            contributedFields.add(addedFields.stream().map(Field::getName).collect(Collectors.toSet()));
         }
 
         Schema finalSchema = new Schema(combinedFields);
@@ -103,8 +116,12 @@ public class ArrowJoinUtil {
             joinedVectors.put(fv.getField().getName(), fv);
         }
 
-        for (int row = 0; row < rowCount; row++) {
-            String key = buildKeyString(base, keyColumns, row, fieldMappings);
+        // Base rows whose keys the Bloom filters of the other tables rule out are skipped before their keys are hashed
+        Selection candidates = probeCandidates(tables, keyColumns, fieldMappings);
+        logger.info("Bloom filters kept {} of {} base rows as join candidates", candidates.count(), rowCount);
+
+        for (int row = candidates.nextSelected(0); row >= 0; row = candidates.nextSelected(row + 1)) {
+            String key = buildKeyString(base, keyColumns, row, fieldMappings, tables.get(0).getDictionaries());
             boolean matchFound = true;
             for (int tIndex = 1; tIndex < tables.size(); tIndex++) {
                 if (!tableKeyIndexMaps.get(tIndex - 1).containsKey(key)) {
@@ -123,7 +140,7 @@ public class ArrowJoinUtil {
                     Integer matchRow = tableKeyIndexMaps.get(tIndex - 1).get(key);
                     VectorSchemaRoot otherRoot = tables.get(tIndex).getData();
                     for (FieldVector otherVec : otherRoot.getFieldVectors()) {
-                        if (joinedVectors.containsKey(otherVec.getField().getName())) {
+                        if (contributedFields.get(tIndex - 1).contains(otherVec.getField().getName())) {
                             joinedVectors.get(otherVec.getField().getName()).copyFromSafe(matchRow, newRowIndex, otherVec);
                         }
                     }
@@ -131,10 +148,33 @@ public class ArrowJoinUtil {
                 joinedRoot.setRowCount(newRowIndex + 1);
             }
         }
-        return new UnifiedDataTable(joinedRoot);
+        return new UnifiedDataTable("unnamed_table", List.of(joinedRoot), dictionaries);
     }
     
-    private String buildKeyString(VectorSchemaRoot root, List<String> keyColumns, int row, Map<String, String> fieldMappings) {
+    /**
+     * @return the rows of the first table whose every key value might be present in each of the other tables
+     */
+    private Selection probeCandidates(List<UnifiedDataTable> tables, List<String> keyColumns, Map<String, String> fieldMappings) {
+        VectorSchemaRoot base = tables.get(0).getData();
+        Selection candidates = Selection.all(base.getRowCount());
+        if (keyColumns == null) {
+            return candidates;
+        }
+        for (String logicalCol : keyColumns) {
+            String physicalCol = fieldMappings.getOrDefault(logicalCol, logicalCol);
+            FieldVector probe = base.getVector(physicalCol);
+            for (int i = 1; probe != null && i < tables.size() && !candidates.isEmpty(); i++) {
+                KeyBloomFilter filter = tables.get(i).getKeyFilter(physicalCol);
+                if (filter != null) {
+                    filter.filter(probe, tables.get(0).getDictionaries(), candidates);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private String buildKeyString(VectorSchemaRoot root, List<String> keyColumns, int row, Map<String, String> fieldMappings,
+                                  DictionaryProvider dictionaries) {
         StringBuilder sb = new StringBuilder();
         for (String logicalCol : keyColumns) {
             String physicalCol = fieldMappings.getOrDefault(logicalCol, logicalCol);
@@ -142,20 +182,22 @@ public class ArrowJoinUtil {
             if (vector == null) {
                 throw new IllegalArgumentException("Key column '" + physicalCol + "' not found in vector schema root");
             }
-            Object value = vector.getObject(row);
+            // Keys are compared by value, since each table has its own dictionary codes
+            Object value = ArrowDictionaries.valueAt(vector, row, dictionaries);
             sb.append(value != null ? value.toString() : "NULL").append('|');
         }
         return sb.toString();
     }
     
-    private Map<String, Integer> buildKeyIndexMap(VectorSchemaRoot table, List<String> keyColumns, Map<String, String> fieldMappings) {
+    private Map<String, Integer> buildKeyIndexMap(VectorSchemaRoot table, List<String> keyColumns, Map<String, String> fieldMappings,
+                                                  DictionaryProvider dictionaries) {
         Map<String, Integer> keyIndexMap = new HashMap<>();
         if (table == null || keyColumns == null || keyColumns.isEmpty()) {
             return keyIndexMap;
         }
 
         for (int i = 0; i < table.getRowCount(); i++) {
-            String key = buildKeyString(table, keyColumns, i, fieldMappings);
+            String key = buildKeyString(table, keyColumns, i, fieldMappings, dictionaries);
             if (!keyIndexMap.containsKey(key)) {
                 keyIndexMap.put(key, i);
             }
@@ -0,0 +1,80 @@
+package com.example.unifieddataservice.util;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only {@link SeekableByteChannel} view over a {@link ByteBuffer}, typically a memory-mapped file region,
+ * for readers that need random access such as Arrow's IPC file reader.
+ * The source buffer's position and limit are never modified.
+ */
+public class ByteBufferChannel implements SeekableByteChannel {
+    private final ByteBuffer buffer;
+    private boolean open = true;
+
+    public ByteBufferChannel(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int toRead = Math.min(dst.remaining(), buffer.remaining());
+        dst.put(buffer.slice().limit(toRead));
+        buffer.position(buffer.position() + toRead);
+        return toRead;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        ensureOpen();
+        return buffer.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws ClosedChannelException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        buffer.position((int) Math.min(newPosition, buffer.limit()));
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        ensureOpen();
+        return buffer.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.unifieddataservice.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream view over a {@link ByteBuffer}, typically a memory-mapped file region.
+ * Reads go straight from the buffer (and thus the page cache) into the caller's array;
+ * the source buffer's position and limit are never modified.
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private int mark;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int toRead = Math.min(len, buffer.remaining());
+        buffer.get(b, off, toRead);
+        return toRead;
+    }
+
+    @Override
+    public long skip(long n) {
+        int toSkip = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + toSkip);
+        return toSkip;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buffer.position(mark);
+    }
+}
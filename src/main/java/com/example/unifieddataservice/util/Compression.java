@@ -0,0 +1,112 @@
+package com.example.unifieddataservice.util;
+
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression formats of source data. Compressed sources are decompressed as a stream while they are parsed,
+ * so neither a temporary file nor a decompressed copy of the whole source is ever held.
+ */
+public enum Compression {
+    NONE,
+    GZIP,
+    ZSTD;
+
+    /** Source option declaring the compression of a metric's data: {@code gzip}, {@code zstd}, {@code none} or {@code auto}. */
+    public static final String OPTION = "compression";
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Parses the value of the {@link #OPTION} source option.
+     *
+     * @return the declared compression, or null if it is unset or {@code auto} and should be detected
+     * @throws IllegalArgumentException for an unknown compression name
+     */
+    public static Compression forName(String name) {
+        if (name == null || name.isBlank() || name.equalsIgnoreCase("auto")) {
+            return null;
+        }
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "none":
+            case "identity":
+                return NONE;
+            case "gzip":
+            case "gz":
+                return GZIP;
+            case "zstd":
+            case "zst":
+                return ZSTD;
+            default:
+                throw new IllegalArgumentException("Unsupported compression: " + name);
+        }
+    }
+
+    /**
+     * Detects the compression from a file name or URL path, e.g. {@code ticks.csv.gz} or {@code ticks.json.zst}.
+     * A query string or fragment after the path is ignored.
+     */
+    public static Compression fromFileName(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        int end = name.length();
+        for (char terminator : new char[]{'?', '#'}) {
+            int index = name.indexOf(terminator);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        String path = name.substring(0, end).toLowerCase(Locale.ROOT);
+        if (path.endsWith(".gz") || path.endsWith(".gzip")) {
+            return GZIP;
+        }
+        if (path.endsWith(".zst") || path.endsWith(".zstd")) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * Maps an HTTP {@code Content-Encoding} header to a compression.
+     *
+     * @return the compression, or null if the header is absent
+     * @throws IllegalArgumentException for an encoding that cannot be decoded, including stacked encodings
+     */
+    public static Compression fromContentEncoding(String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.isBlank()) {
+            return null;
+        }
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "identity":
+                return NONE;
+            case "gzip":
+            case "x-gzip":
+                return GZIP;
+            case "zstd":
+                return ZSTD;
+            default:
+                throw new IllegalArgumentException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * Wraps a stream of compressed bytes in a stream of the decompressed bytes. Closing the returned stream
+     * closes the source.
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                // Reads every member of a concatenated gzip file
+                return new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdInputStreamNoFinalizer(in);
+            default:
+                return in;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.unifieddataservice.service;
+
+import com.example.unifieddataservice.model.HedgePolicy;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.PushdownCapabilities;
+import com.example.unifieddataservice.util.Compression;
+import com.github.luben.zstd.ZstdOutputStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DataFetcherServiceTest {
+
+    private static final String CSV = "stkcode,close\nAAPL,189.5\nMSFT,410.25\n".repeat(100);
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] compress(Compression compression, String text) throws IOException {
+        return compress(compression, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] compress(Compression compression, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compression == Compression.GZIP ? new GZIPOutputStream(bytes) : new ZstdOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static HttpClient respondingWith(byte[] body, Map<String, List<String>> headers) throws Exception {
+        return respondingWith(200, new ByteArrayInputStream(body), headers);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpClient respondingWith(int status, InputStream body, Map<String, List<String>> headers) throws Exception {
+        HttpResponse<InputStream> response = (HttpResponse<InputStream>) mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.body()).thenReturn(body);
+        when(response.headers()).thenReturn(HttpHeaders.of(headers, (name, value) -> true));
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(CompletableFuture.completedFuture(response));
+        return httpClient;
+    }
+
+    @Test
+    void testDecompressesLocalFilesByExtension() throws IOException {
+        DataFetcherService fetcher = new DataFetcherService(mock(HttpClient.class));
+        Path gzip = tempDir.resolve("ticks.csv.gz");
+        Path zstd = tempDir.resolve("ticks.csv.zst");
+        Files.write(gzip, compress(Compression.GZIP, CSV));
+        Files.write(zstd, compress(Compression.ZSTD, CSV));
+
+        assertEquals(CSV, read(fetcher.fetchData(gzip.toString())));
+        assertEquals(CSV, read(fetcher.fetchData("file://" + zstd)));
+    }
+
+    @Test
+    void testMapsEmptyAndUnterminatedLocalFiles() throws IOException {
+        Path empty = Files.createFile(tempDir.resolve("empty.csv"));
+        Path unterminated = Files.writeString(tempDir.resolve("prices.csv"), CSV.substring(0, CSV.length() - 1));
+        DataFetcherService fetcher = new DataFetcherService(mock(HttpClient.class));
+
+        assertEquals(0, fetcher.mapLocalFile(empty).remaining());
+        assertEquals("", read(fetcher.fetchData(empty.toString())));
+        ByteBuffer mapped = fetcher.mapLocalFile(unterminated);
+        assertEquals(CSV.length() - 1, mapped.remaining());
+        assertEquals(CSV.charAt(CSV.length() - 2), (char) mapped.get(mapped.limit() - 1));
+        assertEquals(CSV.substring(0, CSV.length() - 1), read(fetcher.fetchData("file://" + unterminated)));
+    }
+
+    @Test
+    void testDeclaredCompressionOverridesExtension() throws IOException {
+        DataFetcherService fetcher = new DataFetcherService(mock(HttpClient.class));
+        Path file = tempDir.resolve("ticks.dat");
+        Files.write(file, compress(Compression.ZSTD, CSV));
+
+        assertEquals(CSV, read(fetcher.fetchData(file.toString(), List.of(), Compression.ZSTD)));
+        assertEquals(Compression.GZIP, Compression.forName("gzip"));
+        assertNull(Compression.forName("auto"));
+        assertThrows(IllegalArgumentException.class, () -> Compression.forName("brotli"));
+    }
+
+    @Test
+    void testDecompressesHttpResponsesByContentEncoding() throws Exception {
+        HttpClient httpClient = respondingWith(compress(Compression.GZIP, CSV), Map.of("Content-Encoding", List.of("gzip")));
+        DataFetcherService fetcher = new DataFetcherService(httpClient);
+
+        assertEquals(CSV, read(fetcher.fetchData("http://example.com/prices")));
+        verify(httpClient).sendAsync(argThat(request ->
+                request.headers().firstValue("Accept-Encoding").orElse("").contains("zstd")), any());
+    }
+
+    @Test
+    void testDecodesContentEncodingBeforeDeclaredCompression() throws Exception {
+        // A zstd source that a proxy gzips in transit
+        HttpClient httpClient = respondingWith(compress(Compression.GZIP, compress(Compression.ZSTD, CSV)),
+                Map.of("Content-Encoding", List.of("gzip")));
+        DataFetcherService fetcher = new DataFetcherService(httpClient);
+
+        assertEquals(CSV, read(fetcher.fetchData("http://example.com/prices", List.of(), Compression.ZSTD)));
+    }
+
+    @Test
+    void testDecodesContentEncodingOfUncompressedSources() throws Exception {
+        HttpClient httpClient = respondingWith(compress(Compression.GZIP, CSV), Map.of("Content-Encoding", List.of("gzip")));
+        DataFetcherService fetcher = new DataFetcherService(httpClient);
+
+        assertEquals(CSV, read(fetcher.fetchData("http://example.com/prices", List.of(), Compression.NONE)));
+    }
+
+    @Test
+    void testDecompressesHttpResponsesByPathExtension() throws Exception {
+        HttpClient httpClient = respondingWith(compress(Compression.ZSTD, CSV), Map.of());
+        DataFetcherService fetcher = new DataFetcherService(httpClient);
+
+        assertEquals(CSV, read(fetcher.fetchData("http://example.com/prices.csv.zst?date=2024-01-02")));
+    }
+
+    @Test
+    void testStreamsHttpBodiesWithoutBufferingThem() throws Exception {
+        byte[] payload = CSV.repeat(200).getBytes(StandardCharsets.UTF_8);
+        CountingInputStream body = new CountingInputStream(payload);
+        DataFetcherService fetcher = new DataFetcherService(respondingWith(200, body, Map.of()));
+
+        try (InputStream in = fetcher.fetchData("http://example.com/prices")) {
+            assertTrue(body.bytesRead < payload.length / 4, "only the first bytes are read before the parser takes over");
+            assertArrayEquals(payload, in.readAllBytes());
+        }
+        assertTrue(body.closed);
+    }
+
+    @Test
+    void testReportsStartOfErrorBody() throws Exception {
+        CountingInputStream body = new CountingInputStream("{\"error\": \"rate limited\"}".getBytes(StandardCharsets.UTF_8));
+        DataFetcherService fetcher = new DataFetcherService(respondingWith(429, body, Map.of()));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> fetcher.fetchData("http://example.com/prices"));
+        assertTrue(e.getMessage().contains("429") && e.getMessage().contains("rate limited"));
+        assertTrue(body.closed);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSharesInFlightRequestsForTheSameUrl() throws Exception {
+        byte[] payload = CSV.repeat(20).getBytes(StandardCharsets.UTF_8);
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenAnswer(invocation -> {
+            HttpResponse<InputStream> response = (HttpResponse<InputStream>) mock(HttpResponse.class);
+            when(response.statusCode()).thenReturn(200);
+            when(response.body()).thenReturn(new TrickleInputStream(payload, 1000));
+            when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+            return CompletableFuture.completedFuture(response);
+        });
+        DataFetcherService fetcher = new DataFetcherService(httpClient);
+        ReflectionTestUtils.setField(fetcher, "replayBytes", 10_000L);
+
+        InputStream first = fetcher.fetchData("http://example.com/prices");
+        InputStream second = fetcher.fetchData("http://example.com/prices");
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+
+        // Past the replay window a new caller sends its own request
+        assertEquals(20_000, first.readNBytes(20_000).length);
+        InputStream third = fetcher.fetchData("http://example.com/prices");
+        verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+
+        assertArrayEquals(payload, second.readAllBytes());
+        assertArrayEquals(payload, third.readAllBytes());
+        first.close();
+        second.close();
+        third.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConcurrentCallersShareOneDownload() throws Exception {
+        byte[] payload = CSV.repeat(20).getBytes(StandardCharsets.UTF_8);
+        CountDownLatch sending = new CountDownLatch(1);
+        CompletableFuture<HttpResponse<InputStream>> answer = new CompletableFuture<>();
+        HttpResponse<InputStream> response = (HttpResponse<InputStream>) mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.body()).thenReturn(new ByteArrayInputStream(payload));
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenAnswer(invocation -> {
+            sending.countDown();
+            return answer;
+        });
+        DataFetcherService fetcher = new DataFetcherService(httpClient);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> leader = executor.submit(() -> read(fetcher.fetchData("http://example.com/prices")));
+            sending.await();
+            List<Future<String>> joiners = List.of(
+                    executor.submit(() -> read(fetcher.fetchData("http://example.com/prices"))),
+                    executor.submit(() -> read(fetcher.fetchData("http://example.com/prices"))));
+            // Give the joiners time to find the request in flight before it is answered
+            Thread.sleep(200);
+            answer.complete(response);
+
+            assertEquals(CSV.repeat(20), leader.get(10, TimeUnit.SECONDS));
+            for (Future<String> joiner : joiners) {
+                assertEquals(CSV.repeat(20), joiner.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLimitsRequestsPerHost() throws Exception {
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenAnswer(invocation -> {
+            HttpResponse<InputStream> response = (HttpResponse<InputStream>) mock(HttpResponse.class);
+            when(response.statusCode()).thenReturn(200);
+            when(response.body()).thenReturn(new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)));
+            when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+            return CompletableFuture.completedFuture(response);
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DataFetcherService fetcher = new DataFetcherService(httpClient, meterRegistry, 1, 1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InputStream first = fetcher.fetchData("http://example.com/prices?date=1");
+            Future<String> queued = executor.submit(() -> read(fetcher.fetchData("http://example.com/prices?date=2")));
+            while (meterRegistry.get("fetch.host.queued").gauge().value() < 1) {
+                Thread.sleep(10);
+            }
+            assertThrows(RuntimeException.class, () -> fetcher.fetchData("http://example.com/prices?date=3"));
+            assertEquals(1.0, meterRegistry.get("fetch.requests.rejected").counter().count());
+            // Another host is not held up
+            fetcher.fetchData("http://other.example.com/prices").close();
+
+            // The queued request is sent once the first body has been read
+            assertFalse(queued.isDone());
+            assertEquals(CSV, read(first));
+            assertEquals(CSV, queued.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(httpClient, times(3)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        assertEquals(3, meterRegistry.get("fetch.requests").tag("status", "200").timers().stream().mapToLong(t -> t.count()).sum());
+        assertEquals(0.0, meterRegistry.get("fetch.host.active").tag("host", "example.com").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHedgesSlowRequestsToMirror() throws Exception {
+        CompletableFuture<HttpResponse<InputStream>> stuck = new CompletableFuture<>();
+        HttpResponse<InputStream> fromSource = (HttpResponse<InputStream>) mock(HttpResponse.class);
+        when(fromSource.statusCode()).thenReturn(200);
+        when(fromSource.body()).thenReturn(new ByteArrayInputStream("source".getBytes(StandardCharsets.UTF_8)));
+        when(fromSource.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        HttpResponse<InputStream> fromMirror = (HttpResponse<InputStream>) mock(HttpResponse.class);
+        when(fromMirror.statusCode()).thenReturn(200);
+        when(fromMirror.body()).thenReturn(new ByteArrayInputStream("mirror".getBytes(StandardCharsets.UTF_8)));
+        when(fromMirror.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(argThat(request -> request != null && request.uri().getHost().equals("vendor.example.com")), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(fromSource), stuck);
+        when(httpClient.sendAsync(argThat(request -> request != null && request.uri().getHost().equals("mirror.example.com")), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(fromMirror));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DataFetcherService fetcher = new DataFetcherService(httpClient, meterRegistry, 8, 8);
+        ReflectionTestUtils.setField(fetcher, "hedgeMinSamples", 1);
+        HedgePolicy hedge = HedgePolicy.fromOptions("95", "http://mirror.example.com/prices");
+        List<Predicate> predicates = List.of(new Predicate("ticker", Operator.EQUALS, "AAPL"));
+
+        // The first response sets the latency the second request is hedged after
+        assertEquals("source", read(fetcher.fetchIfModified("http://vendor.example.com/prices", predicates, PushdownCapabilities.EQUALITY, null, null, hedge).get().body()));
+        assertEquals("mirror", read(fetcher.fetchIfModified("http://vendor.example.com/prices", predicates, PushdownCapabilities.EQUALITY, null, null, hedge).get().body()));
+
+        assertTrue(stuck.isCancelled(), "the slow request is cancelled");
+        verify(httpClient).sendAsync(argThat(request -> request != null
+                && request.uri().toString().equals("http://mirror.example.com/prices?ticker=AAPL")), any());
+        assertEquals(1.0, meterRegistry.get("fetch.requests.hedged").tag("winner", "hedge").counter().count());
+        assertEquals(0.0, meterRegistry.get("fetch.host.active").tag("host", "vendor.example.com").gauge().value());
+    }
+
+    /**
+     * Returns at most {@code step} bytes per read, like a body arriving over the network.
+     */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+        private final int step;
+
+        TrickleInputStream(byte[] bytes, int step) {
+            super(bytes);
+            this.step = step;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, step));
+        }
+    }
+
+    private static final class CountingInputStream extends ByteArrayInputStream {
+        long bytesRead;
+        boolean closed;
+
+        CountingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int read = super.read(b, off, len);
+            bytesRead += Math.max(read, 0);
+            return read;
+        }
+
+        @Override
+        public synchronized int read() {
+            int read = super.read();
+            bytesRead += read >= 0 ? 1 : 0;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.example.unifieddataservice.service;
+
+import com.example.unifieddataservice.config.CacheConfig;
+import com.example.unifieddataservice.model.DataSourceType;
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.IncrementalRefresh;
+import com.example.unifieddataservice.model.MetricInfo;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.PushdownResult;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.repository.MetricInfoRepository;
+import com.example.unifieddataservice.service.parser.ArrowIpcDataParser;
+import com.example.unifieddataservice.service.parser.ByteCsvDataParser;
+import com.example.unifieddataservice.service.parser.CsvDataParser;
+import com.example.unifieddataservice.service.parser.JsonDataParser;
+import com.example.unifieddataservice.service.parser.NdjsonDataParser;
+import com.example.unifieddataservice.service.parser.ParquetDataParser;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MetricServiceTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 02 Jan 2024 08:00:00 GMT";
+
+    private RootAllocator allocator;
+    private HttpClient httpClient;
+    private RevalidationCache revalidationCache;
+    private LocalFileCache localFileCache;
+    private TimeSeriesCache timeSeriesCache;
+    private MetricInfoRepository repository;
+    private DataFilteringService dataFilteringService;
+    private MetricService metricService;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        httpClient = mock(HttpClient.class);
+        revalidationCache = new RevalidationCache(Duration.ofHours(1), 10);
+        localFileCache = new LocalFileCache(Duration.ofHours(1), 10);
+        timeSeriesCache = new TimeSeriesCache(Duration.ofHours(1), 10);
+
+        MetricInfo metricInfo = new MetricInfo();
+        metricInfo.setName("prices");
+        metricInfo.setDataSourceType(DataSourceType.HTTP_JSON);
+        metricInfo.setSourceUrl("http://example.com/prices");
+        metricInfo.setFieldMappings(Map.of("stkcode", DataType.STRING));
+        repository = mock(MetricInfoRepository.class);
+        when(repository.findByName("prices")).thenReturn(Optional.of(metricInfo));
+        dataFilteringService = new DataFilteringService();
+        ReflectionTestUtils.setField(dataFilteringService, "allocator", allocator);
+
+        metricService = new MetricService(repository, new DataFetcherService(httpClient), dataFilteringService,
+                new PredicatePushdownService(), revalidationCache, localFileCache,
+                new LocalSourceMonitor(new ConcurrentMapCacheManager(), false), timeSeriesCache, new JsonDataParser(allocator), new NdjsonDataParser(allocator, 1),
+                new CsvDataParser(allocator, 1), mock(ByteCsvDataParser.class), mock(ArrowIpcDataParser.class), mock(ParquetDataParser.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        revalidationCache.shutdown();
+        localFileCache.shutdown();
+        timeSeriesCache.shutdown();
+        allocator.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<InputStream> response(int status, String body, Map<String, List<String>> headers) {
+        HttpResponse<InputStream> response = (HttpResponse<InputStream>) mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.body()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        when(response.headers()).thenReturn(HttpHeaders.of(headers, (name, value) -> true));
+        return response;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReusesParsedTableWhenSourceIsNotModified() throws Exception {
+        HttpResponse<InputStream> fresh = response(200, "[{\"stkcode\": \"AAPL\"}, {\"stkcode\": \"MSFT\"}]",
+                Map.of("ETag", List.of(ETAG), "Last-Modified", List.of(LAST_MODIFIED)));
+        HttpResponse<InputStream> notModified = response(304, "", Map.of());
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(CompletableFuture.completedFuture(fresh), CompletableFuture.completedFuture(notModified));
+
+        try (UnifiedDataTable first = metricService.loadMetricData("prices", null, List.of(), null)) {
+            assertEquals(2, first.getRowCount());
+        }
+        // The first table is gone, as after its metric cache entry expired
+        try (UnifiedDataTable second = metricService.loadMetricData("prices", null, List.of(), null)) {
+            assertEquals(2, second.getRowCount());
+            assertEquals("MSFT", ((VarCharVector) second.getData().getVector("stkcode")).getObject(1).toString());
+        }
+
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, times(2)).sendAsync(requests.capture(), any(HttpResponse.BodyHandler.class));
+        assertTrue(requests.getAllValues().get(0).headers().firstValue("If-None-Match").isEmpty());
+        assertEquals(ETAG, requests.getAllValues().get(1).headers().firstValue("If-None-Match").orElse(null));
+        assertEquals(LAST_MODIFIED, requests.getAllValues().get(1).headers().firstValue("If-Modified-Since").orElse(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDoesNotKeepSourcesWithoutValidators() throws Exception {
+        HttpResponse<InputStream> first = response(200, "[{\"stkcode\": \"AAPL\"}]", Map.of());
+        HttpResponse<InputStream> second = response(200, "[{\"stkcode\": \"AAPL\"}]", Map.of());
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(CompletableFuture.completedFuture(first), CompletableFuture.completedFuture(second));
+
+        metricService.loadMetricData("prices", null, List.of(), null).close();
+        metricService.loadMetricData("prices", null, List.of(), null).close();
+
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, times(2)).sendAsync(requests.capture(), any(HttpResponse.BodyHandler.class));
+        assertTrue(requests.getAllValues().get(1).headers().firstValue("If-None-Match").isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPushesOnlyWhatTheSourceCanFilter() throws Exception {
+        MetricInfo bars = new MetricInfo();
+        bars.setName("bars");
+        bars.setDataSourceType(DataSourceType.HTTP_JSON);
+        bars.setSourceUrl("http://example.com/bars?interval=1d");
+        bars.setFieldMappings(Map.of("stkcode", DataType.STRING, "date", DataType.LONG));
+        bars.setSourceOptions(Map.of(
+                "pushdown.date.ge", "from",
+                "pushdown.date.lt", "until={value}T00:00",
+                "pushdown.stkcode.in", "symbols"));
+        when(repository.findByName("bars")).thenReturn(Optional.of(bars));
+        HttpResponse<InputStream> response = response(200,
+                "[{\"stkcode\": \"BRK B\", \"date\": 20240102}, {\"stkcode\": \"AAPL\", \"date\": 20240103}]", Map.of());
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        List<Predicate> predicates = List.of(
+                new Predicate("date", Operator.GREATER_THAN_OR_EQUAL_TO, 20240101L),
+                new Predicate("date", Operator.LESS_THAN, 20240201L),
+                new Predicate("stkcode", Operator.IN, List.of("BRK B", "AAPL")),
+                new Predicate("stkcode", Operator.NOT_EQUALS, "AAPL"));
+        try (UnifiedDataTable table = metricService.loadMetricData("bars", null, predicates, null)) {
+            // The source cannot filter by !=, so only the parser applies that predicate
+            assertEquals(1, table.getRowCount());
+            assertEquals("BRK B", ((VarCharVector) table.getData().getVector("stkcode")).getObject(0).toString());
+        }
+
+        ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).sendAsync(request.capture(), any(HttpResponse.BodyHandler.class));
+        assertEquals("http://example.com/bars?interval=1d&from=20240101&until=20240201T00%3A00&symbols=BRK+B%2CAAPL",
+                request.getValue().uri().toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFiltersWhileParsingSourcesWithoutDeclaredCapabilities() throws Exception {
+        HttpResponse<InputStream> response = response(200, "[{\"stkcode\": \"AAPL\"}, {\"stkcode\": \"MSFT\"}]", Map.of());
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        DataFilteringService filtering = spy(dataFilteringService);
+        ReflectionTestUtils.setField(metricService, "dataFilteringService", filtering);
+
+        try (UnifiedDataTable table = metricService.loadMetricData("prices", null,
+                List.of(new Predicate("stkcode", Operator.EQUALS, "MSFT")), null)) {
+            assertEquals(1, table.getRowCount());
+            assertEquals("MSFT", ((VarCharVector) table.getData().getVector("stkcode")).getObject(0).toString());
+        }
+
+        ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).sendAsync(request.capture(), any(HttpResponse.BodyHandler.class));
+        assertEquals("http://example.com/prices", request.getValue().uri().toString());
+        // The parser dropped the other row; nothing was left to filter after parsing
+        verifyNoInteractions(filtering);
+    }
+
+    @Test
+    void testParserTakesEveryPredicateAndUrlWhatTheSourceFilters() {
+        MetricInfo metricInfo = new MetricInfo();
+        metricInfo.setSourceUrl("https://vendor.example.com/ticks");
+        metricInfo.setSourceOptions(Map.of("pushdown.ts.ge", "from", "pushdown.ts.le", "to"));
+        Predicate from = new Predicate("ts", Operator.GREATER_THAN_OR_EQUAL_TO, 1L);
+        Predicate laterFrom = new Predicate("ts", Operator.GREATER_THAN_OR_EQUAL_TO, 5L);
+        Predicate ticker = new Predicate("ticker", Operator.EQUALS, "AAPL");
+        PredicatePushdownService pushdown = new PredicatePushdownService();
+
+        PushdownResult remote = pushdown.analyze(List.of(from, laterFrom, ticker), metricInfo);
+        assertEquals(List.of(from, laterFrom, ticker), remote.pushedDown());
+        assertTrue(remote.fallback().isEmpty());
+        // A second lower bound would repeat the from parameter, so only the first goes into the URL
+        PushdownResult url = pushdown.capabilitiesOf(metricInfo).split(List.of(from, laterFrom, ticker));
+        assertEquals(List.of(from), url.pushedDown());
+        assertEquals(List.of(laterFrom, ticker), url.fallback());
+
+        metricInfo.setSourceUrl("/data/ticks.csv");
+        assertEquals(List.of(from, laterFrom, ticker), pushdown.analyze(List.of(from, laterFrom, ticker), metricInfo).pushedDown());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFetchesOnlyRowsAfterWatermark() throws Exception {
+        MetricInfo ticks = new MetricInfo();
+        ticks.setName("ticks");
+        ticks.setDataSourceType(DataSourceType.HTTP_JSON);
+        ticks.setSourceUrl("http://example.com/ticks");
+        ticks.setFieldMappings(Map.of("ts", DataType.LONG, "px", DataType.DOUBLE));
+        ticks.setSourceOptions(Map.of("incremental.column", "ts", "incremental.retention", "100", "pushdown.ts.gt", "since"));
+        when(repository.findByName("ticks")).thenReturn(Optional.of(ticks));
+        HttpResponse<InputStream> full = response(200, "[{\"ts\": 1, \"px\": 10.0}, {\"ts\": 2, \"px\": 11.0}]", Map.of());
+        // The source treats the watermark as inclusive
+        HttpResponse<InputStream> delta = response(200, "[{\"ts\": 2, \"px\": 11.0}, {\"ts\": 3, \"px\": 12.0}]", Map.of());
+        HttpResponse<InputStream> later = response(200, "[{\"ts\": 150, \"px\": 13.0}]", Map.of());
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(
+                CompletableFuture.completedFuture(full), CompletableFuture.completedFuture(delta), CompletableFuture.completedFuture(later));
+
+        metricService.loadMetricData("ticks", null, List.of(), Set.of("px")).close();
+        try (UnifiedDataTable table = metricService.loadMetricData("ticks", null, List.of(), Set.of("px"))) {
+            assertEquals(3, table.getRowCount());
+            // The new row is merged into the last batch, all of whose rows are inside the retention window
+            assertEquals(1, table.getBatches().size());
+            assertEquals(3L, ((BigIntVector) table.getBatches().get(0).getVector("ts")).get(2));
+        }
+        // The earlier rows are now more than 100 behind the watermark, so the new row starts a batch of its own
+        try (UnifiedDataTable table = metricService.loadMetricData("ticks", null, List.of(), Set.of("px"))) {
+            assertEquals(1, table.getRowCount());
+            assertEquals(150L, ((BigIntVector) table.getData().getVector("ts")).get(0));
+        }
+
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, times(3)).sendAsync(requests.capture(), any(HttpResponse.BodyHandler.class));
+        assertEquals("http://example.com/ticks", requests.getAllValues().get(0).uri().toString());
+        assertEquals("http://example.com/ticks?since=2", requests.getAllValues().get(1).uri().toString());
+        assertEquals("http://example.com/ticks?since=3", requests.getAllValues().get(2).uri().toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMergesWatermarkWithLowerBoundOfQuery() throws Exception {
+        MetricInfo ticks = new MetricInfo();
+        ticks.setName("ticks");
+        ticks.setDataSourceType(DataSourceType.HTTP_JSON);
+        ticks.setSourceUrl("http://example.com/ticks");
+        ticks.setFieldMappings(Map.of("ts", DataType.LONG, "px", DataType.DOUBLE));
+        ticks.setSourceOptions(Map.of("incremental.column", "ts", "pushdown.ts.gt", "since"));
+        when(repository.findByName("ticks")).thenReturn(Optional.of(ticks));
+        HttpResponse<InputStream> full = response(200, "[{\"ts\": 2, \"px\": 10.0}, {\"ts\": 3, \"px\": 11.0}]", Map.of());
+        HttpResponse<InputStream> delta = response(200, "[{\"ts\": 4, \"px\": 12.0}]", Map.of());
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(
+                CompletableFuture.completedFuture(full), CompletableFuture.completedFuture(delta));
+        List<Predicate> afterOne = List.of(new Predicate("ts", Operator.GREATER_THAN, 1L));
+
+        metricService.loadMetricData("ticks", null, afterOne, Set.of("px")).close();
+        try (UnifiedDataTable table = metricService.loadMetricData("ticks", null, afterOne, Set.of("px"))) {
+            assertEquals(3, table.getRowCount());
+        }
+
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, times(2)).sendAsync(requests.capture(), any(HttpResponse.BodyHandler.class));
+        assertEquals("http://example.com/ticks?since=1", requests.getAllValues().get(0).uri().toString());
+        assertEquals("http://example.com/ticks?since=3", requests.getAllValues().get(1).uri().toString());
+
+        IncrementalRefresh incremental = new IncrementalRefresh("ts", 0);
+        assertEquals(List.of(new Predicate("ts", Operator.GREATER_THAN, 5L)),
+                incremental.after(3, List.of(new Predicate("ts", Operator.GREATER_THAN, 5L))));
+    }
+
+    private MetricInfo localMetric(String name, DataSourceType type, Path file) {
+        MetricInfo metricInfo = new MetricInfo();
+        metricInfo.setName(name);
+        metricInfo.setDataSourceType(type);
+        metricInfo.setSourceUrl("file://" + file);
+        metricInfo.setFieldMappings(Map.of("stkcode", DataType.DICTIONARY_STRING, "close", DataType.LONG));
+        when(repository.findByName(name)).thenReturn(Optional.of(metricInfo));
+        return metricInfo;
+    }
+
+    private static String decode(UnifiedDataTable table, int batch, int row) {
+        IntVector codes = (IntVector) table.getBatches().get(batch).getVector("stkcode");
+        Dictionary dictionary = table.getDictionaries().lookup(codes.getField().getDictionary().getId());
+        return ((VarCharVector) dictionary.getVector()).getObject(codes.get(row)).toString();
+    }
+
+    @Test
+    void testParsesOnlyLinesAppendedToLocalFile(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("bars.ndjson");
+        Files.writeString(file, "{\"stkcode\": \"AAPL\", \"close\": 1}\n{\"stkcode\": \"MSFT\", \"close\": 2}\n");
+        localMetric("bars", DataSourceType.FILE_NDJSON, file);
+        metricService.loadMetricData("bars", null, List.of(), null).close();
+
+        // A complete line with a new ticker and an old one, and a line still being written
+        Files.writeString(file, "{\"stkcode\": \"IBM\", \"close\": 3}\n{\"stkcode\": \"AAPL\", \"close\": 4}\n{\"stkcode\": ",
+                StandardOpenOption.APPEND);
+        try (UnifiedDataTable table = metricService.loadMetricData("bars", null, List.of(), null)) {
+            // Small appends are merged into the last batch
+            assertEquals(1, table.getBatches().size());
+            assertEquals(4, table.getRowCount());
+            assertEquals("IBM", decode(table, 0, 2));
+            assertEquals("AAPL", decode(table, 0, 3));
+            assertEquals(4L, ((BigIntVector) table.getBatches().get(0).getVector("close")).get(3));
+        }
+
+        Files.writeString(file, "\"ORCL\", \"close\": 5}\n", StandardOpenOption.APPEND);
+        try (UnifiedDataTable table = metricService.loadMetricData("bars", null, List.of(), null)) {
+            assertEquals(1, table.getBatches().size());
+            assertEquals(5, table.getRowCount());
+            assertEquals("ORCL", decode(table, 0, 4));
+            assertEquals("MSFT", decode(table, 0, 1));
+        }
+    }
+
+    @Test
+    void testParsesRewrittenLocalFileInFull(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("bars.csv");
+        Files.writeString(file, "stkcode,close\nAAPL,1\nMSFT,2\n");
+        localMetric("bars", DataSourceType.FILE_CSV, file);
+        metricService.loadMetricData("bars", null, List.of(), null).close();
+
+        Files.writeString(file, "IBM,3\n", StandardOpenOption.APPEND);
+        try (UnifiedDataTable table = metricService.loadMetricData("bars", null, List.of(), null)) {
+            assertEquals(3, table.getRowCount());
+            assertEquals("IBM", decode(table, 0, 2));
+        }
+
+        // Longer than before, but not an append
+        Files.writeString(file, "stkcode,close\nORCL,1\nMSFT,2\nIBM,3\nAAPL,4\n");
+        try (UnifiedDataTable table = metricService.loadMetricData("bars", null, List.of(), null)) {
+            assertEquals(1, table.getBatches().size());
+            assertEquals(4, table.getRowCount());
+            assertEquals("ORCL", decode(table, 0, 0));
+        }
+    }
+
+    @Test
+    void testUpdateMetricKeepsNewSourceOptions() {
+        MetricInfo stored = repository.findByName("prices").orElseThrow();
+        when(repository.findById(7L)).thenReturn(Optional.of(stored));
+        when(repository.save(any(MetricInfo.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        MetricInfo details = new MetricInfo();
+        details.setName("prices");
+        details.setDataSourceType(DataSourceType.HTTP_CSV);
+        details.setSourceUrl("http://example.com/prices.csv.zst");
+        details.setFieldMappings(Map.of("stkcode", DataType.STRING));
+        details.setSourceOptions(Map.of("compression", "zstd", "pushdown.stkcode.eq", "code"));
+
+        MetricInfo updated = metricService.updateMetric(7L, details);
+
+        assertEquals(Map.of("compression", "zstd", "pushdown.stkcode.eq", "code"), updated.getSourceOptions());
+    }
+
+    @Test
+    void testEvictsCachedDataOfChangedLocalSource(@TempDir Path dir) {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("metrics", "queryResults");
+        Cache metrics = cacheManager.getCache("metrics");
+        metrics.put("bars", "table");
+        metrics.put("bars:17", "table");
+        metrics.put("bars_predicates:42_columns:all", "table");
+        metrics.put("bars_daily", "table");
+        metrics.put("all", List.of());
+        cacheManager.getCache("queryResults").put("SELECT * FROM bars", "result");
+        LocalSourceMonitor monitor = new LocalSourceMonitor(cacheManager, true);
+        try {
+            Path file = dir.resolve("bars.csv");
+            monitor.watch(file, "bars");
+            monitor.sourceChanged(dir.resolve("other.csv"));
+            assertNotNull(metrics.get("bars"));
+
+            monitor.sourceChanged(file);
+            assertNull(metrics.get("bars"));
+            assertNull(metrics.get("bars:17"));
+            assertNull(metrics.get("bars_predicates:42_columns:all"));
+            assertNotNull(metrics.get("bars_daily"));
+            assertNotNull(metrics.get("all"));
+            assertNull(cacheManager.getCache("queryResults").get("SELECT * FROM bars"));
+        } finally {
+            monitor.shutdown();
+        }
+    }
+
+    @Test
+    void testReleasesTablesOfChangedLocalSource(@TempDir Path dir) {
+        CacheManager cacheManager = new CacheConfig().cacheManager();
+        cacheManager.getCache("metrics").put("bars", table("bars"));
+        cacheManager.getCache("metrics").put("bars_predicates:42_columns:all", table("bars"));
+        cacheManager.getCache("queryResults").put("SELECT * FROM bars", table("result"));
+        assertTrue(allocator.getAllocatedMemory() > 0);
+        LocalSourceMonitor monitor = new LocalSourceMonitor(cacheManager, true);
+        try {
+            Path file = dir.resolve("bars.csv");
+            monitor.watch(file, "bars");
+            monitor.sourceChanged(file);
+
+            assertNull(cacheManager.getCache("metrics").get("bars"));
+            assertEquals(0, allocator.getAllocatedMemory());
+        } finally {
+            monitor.shutdown();
+        }
+    }
+
+    @Test
+    void testEvictedMetricTableStaysReadableAsQueryResult() throws Exception {
+        CacheManager cacheManager = new CacheConfig().cacheManager();
+        UnifiedDataTable bars = table("bars");
+        // A query over a single metric returns the metric table it was handed, which the query cache then holds
+        UnifiedDataTable read = cacheManager.getCache("metrics").get("bars", () -> bars);
+        UnifiedDataTable result = cacheManager.getCache("queryResults").get("SELECT close FROM bars", () -> read);
+        assertNotSame(bars, read);
+        assertNotSame(read, result);
+
+        cacheManager.getCache("metrics").clear();
+
+        UnifiedDataTable repeated = cacheManager.getCache("queryResults").get("SELECT close FROM bars", () -> {
+            throw new AssertionError("the query result should still be cached");
+        });
+        for (UnifiedDataTable table : List.of(result, repeated)) {
+            assertEquals(2L, ((BigIntVector) table.getData().getVector("close")).get(1));
+            table.close();
+        }
+        assertTrue(allocator.getAllocatedMemory() > 0);
+        cacheManager.getCache("queryResults").clear();
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    private UnifiedDataTable table(String name) {
+        BigIntVector closes = new BigIntVector("close", allocator);
+        closes.allocateNew(2);
+        closes.set(0, 1);
+        closes.set(1, 2);
+        closes.setValueCount(2);
+        return new UnifiedDataTable(name, List.of(new VectorSchemaRoot(List.of(closes))));
+    }
+}
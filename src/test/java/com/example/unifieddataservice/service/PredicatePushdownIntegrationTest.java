@@ -15,7 +15,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -23,6 +26,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -49,12 +54,13 @@ public class PredicatePushdownIntegrationTest {
 
     @BeforeEach
     void setUp() throws Exception {
-        HttpResponse<byte[]> mockHttpResponse = (HttpResponse<byte[]>) mock(HttpResponse.class);
+        HttpResponse<InputStream> mockHttpResponse = (HttpResponse<InputStream>) mock(HttpResponse.class);
         when(mockHttpResponse.statusCode()).thenReturn(200);
-        when(mockHttpResponse.body()).thenReturn("[]".getBytes(StandardCharsets.UTF_8));
-        when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(mockHttpResponse);
+        when(mockHttpResponse.body()).thenReturn(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)));
+        when(mockHttpResponse.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenReturn(CompletableFuture.completedFuture(mockHttpResponse));
 
-        when(metricService.getMetricData(anyString(), any(List.class)))
+        when(metricService.getMetricData(anyString(), any(List.class), any(Set.class), any(Set.class)))
             .thenAnswer(invocation -> {
                 DataFetcherService realDataFetcherService = new DataFetcherService(httpClient);
                 
@@ -91,7 +97,7 @@ public class PredicatePushdownIntegrationTest {
 
         // 3. Verify Predicate Pushdown by capturing the HTTP request
         ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
-        verify(httpClient).send(requestCaptor.capture(), any(HttpResponse.BodyHandler.class));
+        verify(httpClient).sendAsync(requestCaptor.capture(), any(HttpResponse.BodyHandler.class));
 
         HttpRequest sentRequest = requestCaptor.getValue();
         String requestedUri = sentRequest.uri().toString();
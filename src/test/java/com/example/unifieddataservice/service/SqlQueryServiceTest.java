@@ -0,0 +1,113 @@
+package com.example.unifieddataservice.service;
+
+import com.example.unifieddataservice.model.MetricQueryPlan;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.TableDefinition;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.util.ArrowJoinUtil;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SqlQueryServiceTest {
+
+    private RootAllocator allocator;
+    private TableRegistry tableRegistry;
+    private MetricService metricService;
+    private SqlQueryService sqlQueryService;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        tableRegistry = mock(TableRegistry.class);
+        metricService = mock(MetricService.class);
+        sqlQueryService = new SqlQueryService(tableRegistry, metricService, new ArrowJoinUtil(allocator), 2);
+        ReflectionTestUtils.setField(sqlQueryService, "allocator", allocator);
+
+        TableDefinition table = new TableDefinition();
+        table.setTableName("stock");
+        table.setPrimaryKeys(List.of("ticker"));
+        table.setFieldMapping(Map.of("close", "close", "volume", "volume"));
+        table.setMetricFields(Map.of("close", "daily_bar", "volume", "daily_bar"));
+        when(tableRegistry.getByName("stock")).thenReturn(Optional.of(table));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlQueryService.shutdown();
+        allocator.close();
+    }
+
+    private UnifiedDataTable dailyBars() {
+        VarCharVector tickers = new VarCharVector("ticker", allocator);
+        Float8Vector closes = new Float8Vector("close", allocator);
+        BigIntVector volumes = new BigIntVector("volume", allocator);
+        String[] tickerValues = {"AAPL", "MSFT", "GOOG", "AMZN"};
+        double[] closeValues = {190.0, 410.0, 0.5, 180.0};
+        long[] volumeValues = {5, 20, 30, 40};
+        for (int row = 0; row < tickerValues.length; row++) {
+            tickers.setSafe(row, tickerValues[row].getBytes(StandardCharsets.UTF_8));
+            closes.setSafe(row, closeValues[row]);
+            volumes.setSafe(row, volumeValues[row]);
+        }
+        List<FieldVector> vectors = List.of(tickers, closes, volumes);
+        vectors.forEach(vector -> vector.setValueCount(tickerValues.length));
+        return new UnifiedDataTable("daily_bar", new VectorSchemaRoot(vectors));
+    }
+
+    @Test
+    void testPushesDownColumnPredicatesAndKeepsOtherConditions() {
+        MetricQueryPlan plan = sqlQueryService.parseSql(
+                "SELECT close, close * volume AS turnover FROM stock WHERE ticker <> 'AMZN' AND (volume > 10 OR close > 100)");
+
+        assertEquals(List.of(new Predicate("ticker", Operator.NOT_EQUALS, "AMZN")), plan.getPredicates());
+        assertEquals(1, plan.getResidualConditions().size());
+        assertEquals(Set.of("turnover"), plan.getComputedFields().keySet());
+        // volume is only read by the expressions, but has to be loaded for them
+        assertEquals(Set.of("volume"), plan.getExpressionOnlyFields());
+        assertTrue(plan.getMetricColumns().get("daily_bar").contains("volume"));
+    }
+
+    @Test
+    void testEvaluatesConditionsAndComputedColumnsOnTheResult() {
+        UnifiedDataTable bars = dailyBars();
+        when(metricService.getMetricData(eq("daily_bar"), anyList(), anySet(), eq(Set.of("ticker")))).thenReturn(bars);
+
+        try (UnifiedDataTable result = sqlQueryService.query(
+                "SELECT close, close * volume AS turnover FROM stock WHERE (volume > 10 OR close > 100) AND NOT ticker LIKE 'M%'")) {
+            VectorSchemaRoot root = result.getData();
+            assertEquals(List.of("ticker", "close", "turnover"),
+                    root.getSchema().getFields().stream().map(Field::getName).collect(Collectors.toList()));
+            assertEquals(3, root.getRowCount());
+            assertEquals("AAPL", root.getVector("ticker").getObject(0).toString());
+            assertEquals(950.0, ((Float8Vector) root.getVector("turnover")).get(0));
+            assertEquals("GOOG", root.getVector("ticker").getObject(1).toString());
+            assertEquals(15.0, ((Float8Vector) root.getVector("turnover")).get(1));
+            assertEquals("AMZN", root.getVector("ticker").getObject(2).toString());
+            assertEquals(7200.0, ((Float8Vector) root.getVector("turnover")).get(2));
+        }
+        // The metric table belongs to the metric cache and is left open
+        assertEquals(4, bars.getRowCount());
+        bars.close();
+    }
+}
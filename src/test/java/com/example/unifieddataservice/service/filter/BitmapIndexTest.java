@@ -0,0 +1,153 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.DataFilteringService;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitmapIndexTest {
+    // The first batch spans two 65536-row chunks
+    private static final int[] BATCH_ROWS = {70000, 3000};
+    private static final int TICKERS = 100;
+    private static final String[] EXCHANGES = {"NYSE", "NASDAQ", "LSE"};
+
+    private RootAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    private static String ticker(int row) {
+        // Rare tickers land in array chunks and the rest in bitmap chunks
+        return row % 7 == 0 ? null : "T" + (row % 3 == 0 ? row % TICKERS : row % 5);
+    }
+
+    private static String exchange(int row) {
+        return EXCHANGES[row % EXCHANGES.length];
+    }
+
+    private UnifiedDataTable quotes() {
+        VarCharVector values = new VarCharVector("ticker", allocator);
+        for (int code = 0; code < TICKERS; code++) {
+            values.setSafe(code, ("T" + code).getBytes(StandardCharsets.UTF_8));
+        }
+        values.setValueCount(TICKERS);
+        DictionaryEncoding encoding = new DictionaryEncoding(1L, false, new ArrowType.Int(32, true));
+        DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        dictionaries.put(new Dictionary(values, encoding));
+
+        List<VectorSchemaRoot> batches = new ArrayList<>();
+        int first = 0;
+        for (int rowCount : BATCH_ROWS) {
+            IntVector tickers = new IntVector("ticker", new FieldType(true, new ArrowType.Int(32, true), encoding), allocator);
+            VarCharVector exchanges = new VarCharVector("exchange", allocator);
+            BigIntVector volumes = new BigIntVector("volume", allocator);
+            BitVector halted = new BitVector("halted", allocator);
+            for (int i = 0; i < rowCount; i++) {
+                int row = first + i;
+                if (ticker(row) == null) {
+                    tickers.setNull(i);
+                } else {
+                    tickers.setSafe(i, Integer.parseInt(ticker(row).substring(1)));
+                }
+                exchanges.setSafe(i, exchange(row).getBytes(StandardCharsets.UTF_8));
+                volumes.setSafe(i, row % 10);
+                halted.setSafe(i, row % 11 == 0 ? 1 : 0);
+            }
+            List<FieldVector> vectors = List.of(tickers, exchanges, volumes, halted);
+            vectors.forEach(vector -> vector.setValueCount(rowCount));
+            batches.add(new VectorSchemaRoot(vectors));
+            first += rowCount;
+        }
+        return new UnifiedDataTable("quote", batches, dictionaries);
+    }
+
+    private DataFilteringService filteringService(int maxCardinality) {
+        DataFilteringService filteringService = new DataFilteringService();
+        ReflectionTestUtils.setField(filteringService, "allocator", allocator);
+        ReflectionTestUtils.setField(filteringService, "bitmapIndexMaxCardinality", maxCardinality);
+        return filteringService;
+    }
+
+    private static List<String> rows(UnifiedDataTable table) {
+        List<String> rows = new ArrayList<>();
+        VectorSchemaRoot root = table.getData();
+        for (int row = 0; row < root.getRowCount(); row++) {
+            rows.add(root.getVector("exchange").getObject(row) + "/" + root.getVector("volume").getObject(row)
+                    + "/" + root.getVector("halted").getObject(row));
+        }
+        return rows;
+    }
+
+    @Test
+    void testAnswersLookupsFromTheIndexOnceBuilt() {
+        List<Predicate> predicates = List.of(
+                new Predicate("ticker", Operator.IN, List.of("T3", "T51", "T99", "missing")),
+                new Predicate("exchange", Operator.EQUALS, "NYSE"),
+                new Predicate("halted", Operator.EQUALS, false),
+                new Predicate("volume", Operator.GREATER_THAN, 2L));
+        DataFilteringService indexed = filteringService(1000);
+        try (UnifiedDataTable table = quotes();
+             UnifiedDataTable scanned = filteringService(0).applyPredicates(table, predicates);
+             UnifiedDataTable first = indexed.applyPredicates(table, predicates);
+             UnifiedDataTable second = indexed.applyPredicates(table, predicates);
+             UnifiedDataTable shared = table.share();
+             UnifiedDataTable third = indexed.applyPredicates(shared, predicates)) {
+            assertTrue(scanned.getRowCount() > 0);
+            assertEquals(rows(scanned), rows(first));
+            assertEquals(rows(scanned), rows(second));
+            assertEquals(rows(scanned), rows(third));
+            // The index of the ticker column was built by the second lookup and answers the lookups of shares
+            Selection[] tickers = shared.getBitmapIndex("ticker").lookup(shared, "ticker", predicates.get(0), 1000);
+            assertNotNull(tickers);
+            assertEquals(BATCH_ROWS.length, tickers.length);
+            int expected = 0;
+            for (int row = 0; row < BATCH_ROWS[0] + BATCH_ROWS[1]; row++) {
+                String ticker = ticker(row);
+                expected += "T3".equals(ticker) || "T51".equals(ticker) || "T99".equals(ticker) ? 1 : 0;
+            }
+            assertEquals(expected, tickers[0].count() + tickers[1].count());
+        }
+    }
+
+    @Test
+    void testLeavesHighCardinalityColumnsToScans() {
+        List<Predicate> predicates = List.of(new Predicate("volume", Operator.IN, List.of(1L, 2L)));
+        DataFilteringService indexed = filteringService(5);
+        try (UnifiedDataTable table = quotes()) {
+            indexed.applyPredicates(table, predicates).close();
+            try (UnifiedDataTable filtered = indexed.applyPredicates(table, predicates)) {
+                assertEquals((BATCH_ROWS[0] + BATCH_ROWS[1]) / 5, filtered.getRowCount());
+            }
+            assertNull(table.getBitmapIndex("volume").lookup(table, "volume", predicates.get(0), 5));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarGatherTest {
+
+    private RootAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    void testGathersSelectedRowsColumnByColumn() {
+        int rowCount = 200;
+        BigIntVector volumes = new BigIntVector("volume", allocator);
+        VarCharVector tickers = new VarCharVector("ticker", allocator);
+        BitVector halted = new BitVector("halted", allocator);
+        for (int row = 0; row < rowCount; row++) {
+            volumes.setSafe(row, row);
+            if (row % 5 == 0) {
+                tickers.setNull(row);
+            } else {
+                tickers.setSafe(row, ("T" + row).getBytes(StandardCharsets.UTF_8));
+            }
+            halted.setSafe(row, row % 2);
+        }
+        volumes.setValueCount(rowCount);
+        tickers.setValueCount(rowCount);
+        halted.setValueCount(rowCount);
+
+        try (VectorSchemaRoot batch = new VectorSchemaRoot(List.<FieldVector>of(volumes, tickers, halted))) {
+            // Runs of selected rows that cross word boundaries: 60..69 and 120..199
+            CompiledFilter filter = PredicateCompiler.compile(List.of(new Predicate("volume", Operator.IN, List.of(60L, 61L, 62L, 63L, 64L, 65L, 66L, 67L, 68L, 69L))),
+                    Map.of("volume", DataType.LONG), null);
+            Selection selection = filter.select(filter.bind(batch), rowCount);
+            CompiledFilter tail = PredicateCompiler.compile(List.of(new Predicate("volume", Operator.GREATER_THAN_OR_EQUAL_TO, 120L)),
+                    Map.of("volume", DataType.LONG), null);
+            Selection tailSelection = tail.select(tail.bind(batch), rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (tailSelection.isSelected(row)) {
+                    selection.words()[row >>> 6] |= 1L << row;
+                }
+            }
+
+            try (VectorSchemaRoot gathered = ColumnarGather.gather(batch, selection, allocator)) {
+                assertEquals(90, gathered.getRowCount());
+                BigIntVector gatheredVolumes = (BigIntVector) gathered.getVector("volume");
+                VarCharVector gatheredTickers = (VarCharVector) gathered.getVector("ticker");
+                BitVector gatheredHalted = (BitVector) gathered.getVector("halted");
+                for (int out = 0; out < 90; out++) {
+                    int row = out < 10 ? 60 + out : 110 + out;
+                    assertEquals(row, gatheredVolumes.get(out));
+                    assertEquals(row % 5 == 0 ? null : "T" + row,
+                            gatheredTickers.isNull(out) ? null : gatheredTickers.getObject(out).toString());
+                    assertEquals(row % 2, gatheredHalted.get(out));
+                }
+                assertEquals(0, gatheredVolumes.getNullCount());
+                assertEquals(18, gatheredTickers.getNullCount());
+            }
+
+            try (VectorSchemaRoot empty = ColumnarGather.gather(batch, Selection.none(rowCount), allocator)) {
+                assertEquals(0, empty.getRowCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionCompilerTest {
+    // Spans several evaluation chunks and ends in a partial word
+    private static final int ROWS = 2500;
+    private static final String[] TICKERS = {"AAPL", "MSFT", "GOOG", "AMZN", "A_B%"};
+
+    private RootAllocator allocator;
+    private VectorSchemaRoot batch;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        VarCharVector tickers = new VarCharVector("ticker", allocator);
+        BigIntVector volumes = new BigIntVector("volume", allocator);
+        Float8Vector closes = new Float8Vector("close", allocator);
+        BitVector halted = new BitVector("halted", allocator);
+        for (int row = 0; row < ROWS; row++) {
+            if (ticker(row) == null) {
+                tickers.setNull(row);
+            } else {
+                tickers.setSafe(row, ticker(row).getBytes(StandardCharsets.UTF_8));
+            }
+            if (volume(row) == null) {
+                volumes.setNull(row);
+            } else {
+                volumes.setSafe(row, volume(row));
+            }
+            closes.setSafe(row, close(row));
+            halted.setSafe(row, row % 3 == 0 ? 1 : 0);
+        }
+        List<FieldVector> vectors = List.of(tickers, volumes, closes, halted);
+        vectors.forEach(vector -> vector.setValueCount(ROWS));
+        batch = new VectorSchemaRoot(vectors);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batch.close();
+        allocator.close();
+    }
+
+    private static String ticker(int row) {
+        return row % 11 == 0 ? null : TICKERS[row % TICKERS.length];
+    }
+
+    private static Long volume(int row) {
+        return row % 7 == 0 ? null : (long) (row % 100);
+    }
+
+    private static double close(int row) {
+        return row * 0.5;
+    }
+
+    private static Map<String, DataType> types() {
+        Map<String, DataType> types = new LinkedHashMap<>();
+        types.put("ticker", DataType.STRING);
+        types.put("volume", DataType.LONG);
+        types.put("close", DataType.DOUBLE);
+        types.put("halted", DataType.BOOLEAN);
+        return types;
+    }
+
+    private static ExpressionCompiler compiler() {
+        return new ExpressionCompiler(types(), column -> null, Map.of("price", "close"));
+    }
+
+    private static Expression parse(String sql) throws JSQLParserException {
+        return CCJSqlParserUtil.parseCondExpression(sql);
+    }
+
+    private void assertSelects(String condition, IntPredicate expected) throws JSQLParserException {
+        Selection selection = compiler().compileCondition(parse(condition)).select(batch);
+        for (int row = 0; row < ROWS; row++) {
+            assertEquals(expected.test(row), selection.isSelected(row), condition + " at row " + row);
+        }
+    }
+
+    @Test
+    void testEvaluatesConditions() throws JSQLParserException {
+        assertSelects("volume > 50 OR ticker = 'AAPL'",
+                row -> (volume(row) != null && volume(row) > 50) || "AAPL".equals(ticker(row)));
+        assertSelects("NOT (volume > 50 OR ticker = 'AAPL')",
+                row -> volume(row) != null && volume(row) <= 50 && ticker(row) != null && !"AAPL".equals(ticker(row)));
+        assertSelects("volume BETWEEN 10 AND 20", row -> volume(row) != null && volume(row) >= 10 && volume(row) <= 20);
+        assertSelects("volume NOT BETWEEN 10 AND 20", row -> volume(row) != null && (volume(row) < 10 || volume(row) > 20));
+        assertSelects("ticker IN ('MSFT', 'GOOG')", row -> "MSFT".equals(ticker(row)) || "GOOG".equals(ticker(row)));
+        assertSelects("ticker NOT IN ('MSFT', 'GOOG')",
+                row -> ticker(row) != null && !"MSFT".equals(ticker(row)) && !"GOOG".equals(ticker(row)));
+        assertSelects("ticker NOT IN ('MSFT', NULL)", row -> false);
+        assertSelects("volume IS NULL", row -> volume(row) == null);
+        assertSelects("NOT volume IS NULL AND halted", row -> volume(row) != null && row % 3 == 0);
+        assertSelects("NOT halted", row -> row % 3 != 0);
+        assertSelects("volume = NULL", row -> false);
+        assertSelects("50 < volume", row -> volume(row) != null && volume(row) > 50);
+        assertSelects("price >= -1 AND price < 100", row -> close(row) < 100);
+    }
+
+    @Test
+    void testEvaluatesLike() throws JSQLParserException {
+        assertSelects("ticker LIKE 'A%'", row -> ticker(row) != null && ticker(row).startsWith("A"));
+        assertSelects("ticker LIKE '%O%G'", row -> "GOOG".equals(ticker(row)));
+        assertSelects("ticker LIKE '_MZN'", row -> "AMZN".equals(ticker(row)));
+        assertSelects("ticker NOT LIKE '%A%'", row -> ticker(row) != null && !ticker(row).contains("A"));
+        assertSelects("ticker ILIKE 'aapl'", row -> "AAPL".equals(ticker(row)));
+        assertSelects("ticker LIKE 'A!_B!%' ESCAPE '!'", row -> "A_B%".equals(ticker(row)));
+    }
+
+    @Test
+    void testComparesArithmetic() throws JSQLParserException {
+        assertSelects("close * volume > 1000", row -> volume(row) != null && close(row) * volume(row) > 1000);
+        assertSelects("volume % 10 = volume DIV 10", row -> volume(row) != null && volume(row) % 10 == volume(row) / 10);
+        assertSelects("close / (volume - 5) <> 2", row -> volume(row) != null && volume(row) != 5 && close(row) / (volume(row) - 5) != 2);
+    }
+
+    @Test
+    void testComputesColumns() throws JSQLParserException {
+        NumericExpression turnover = compiler().compileNumeric(parse("close * volume"));
+        NumericExpression sum = compiler().compileNumeric(parse("-volume + 1"));
+        NumericExpression ratio = compiler().compileNumeric(parse("close / (volume - 5)"));
+        assertEquals(DataType.DOUBLE, turnover.type());
+        assertEquals(DataType.LONG, sum.type());
+        try (Float8Vector turnovers = (Float8Vector) turnover.evaluate(batch, "turnover", allocator);
+             BigIntVector sums = (BigIntVector) sum.evaluate(batch, "sum", allocator);
+             Float8Vector ratios = (Float8Vector) ratio.evaluate(batch, "ratio", allocator)) {
+            assertEquals(ROWS, turnovers.getValueCount());
+            for (int row = 0; row < ROWS; row++) {
+                Long volume = volume(row);
+                if (volume == null) {
+                    assertTrue(turnovers.isNull(row) && sums.isNull(row) && ratios.isNull(row), "row " + row);
+                    continue;
+                }
+                assertEquals(close(row) * volume, turnovers.get(row), "row " + row);
+                assertEquals(1 - volume, sums.get(row), "row " + row);
+                if (volume == 5) {
+                    // Division by zero yields null
+                    assertTrue(ratios.isNull(row), "row " + row);
+                } else {
+                    assertEquals(close(row) / (volume - 5), ratios.get(row), "row " + row);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEvaluatesDictionaryColumnsOnTheirValues() throws JSQLParserException {
+        try (VarCharVector dictionary = new VarCharVector("ticker", allocator);
+             IntVector codes = new IntVector("ticker", allocator)) {
+            for (int code = 0; code < TICKERS.length; code++) {
+                dictionary.setSafe(code, TICKERS[code].getBytes(StandardCharsets.UTF_8));
+            }
+            dictionary.setValueCount(TICKERS.length);
+            for (int row = 0; row < ROWS; row++) {
+                codes.setSafe(row, row % TICKERS.length);
+            }
+            codes.setValueCount(ROWS);
+            VectorSchemaRoot encoded = new VectorSchemaRoot(List.of(codes));
+            ExpressionCompiler compiler = new ExpressionCompiler(Map.of("ticker", DataType.DICTIONARY_STRING), column -> dictionary, null);
+
+            Selection selection = compiler.compileCondition(parse("ticker LIKE 'A%' AND ticker <> 'AMZN'")).select(encoded);
+            for (int row = 0; row < ROWS; row++) {
+                String ticker = TICKERS[row % TICKERS.length];
+                assertEquals(ticker.startsWith("A") && !ticker.equals("AMZN"), selection.isSelected(row), "row " + row);
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnsupportedExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> compiler().compileCondition(parse("missing = 1")));
+        assertThrows(IllegalArgumentException.class, () -> compiler().compileCondition(parse("ticker + 1 > 2")));
+        assertThrows(IllegalArgumentException.class, () -> compiler().compileCondition(parse("volume LIKE 'A%'")));
+        assertThrows(IllegalArgumentException.class, () -> compiler().compileNumeric(parse("close DIV 2")));
+    }
+
+    @Test
+    void testFindsReferencedColumns() throws JSQLParserException {
+        assertEquals(Set.of("close", "volume", "ticker"),
+                ExpressionCompiler.columnsOf(parse("close * volume > 10 OR ticker IN ('A', 'B')")));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.DataFilteringService;
+import com.example.unifieddataservice.util.ArrowJoinUtil;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyBloomFilterTest {
+    private static final int TICKERS = 2000;
+
+    private RootAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    /**
+     * One bar for each of the tickers T0, T2, T4... and a few null tickers.
+     */
+    private UnifiedDataTable bars() {
+        VarCharVector tickers = new VarCharVector("ticker", allocator);
+        BigIntVector volumes = new BigIntVector("volume", allocator);
+        for (int row = 0; row < TICKERS; row++) {
+            if (row % 500 == 499) {
+                tickers.setNull(row);
+            } else {
+                tickers.setSafe(row, ("T" + row * 2).getBytes(StandardCharsets.UTF_8));
+            }
+            volumes.setSafe(row, row * 2L);
+        }
+        List<FieldVector> vectors = List.of(tickers, volumes);
+        vectors.forEach(vector -> vector.setValueCount(TICKERS));
+        return new UnifiedDataTable("daily_bar", new VectorSchemaRoot(vectors));
+    }
+
+    @Test
+    void testHasNoFalseNegativesAndFewFalsePositives() {
+        try (UnifiedDataTable table = bars()) {
+            KeyBloomFilter tickers = table.getKeyFilter("ticker");
+            KeyBloomFilter volumes = table.getKeyFilter("volume");
+            int falsePositives = 0;
+            for (int i = 0; i < TICKERS; i++) {
+                if (i % 500 != 499) {
+                    assertTrue(tickers.mightContain("T" + i * 2), "T" + i * 2);
+                }
+                assertTrue(volumes.mightContain(i * 2L));
+                assertTrue(volumes.mightContain(String.valueOf(i * 2)));
+                falsePositives += tickers.mightContain("T" + (i * 2 + 1)) ? 1 : 0;
+                falsePositives += volumes.mightContain(i * 2L + 1) ? 1 : 0;
+            }
+            assertTrue(falsePositives < TICKERS * 2 / 20, falsePositives + " false positives");
+            // Null tickers take part in joins as the key "NULL"
+            assertTrue(tickers.mightContain("NULL"));
+
+            assertSame(tickers, table.getKeyFilter("ticker"));
+            assertNull(table.getKeyFilter("missing"));
+            try (UnifiedDataTable shared = table.share()) {
+                assertSame(tickers, shared.getKeyFilter("ticker"));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsLookupsOfMissingKeysWithoutScanning() {
+        DataFilteringService filteringService = new DataFilteringService();
+        ReflectionTestUtils.setField(filteringService, "allocator", allocator);
+        try (UnifiedDataTable table = bars()) {
+            List<Predicate> missing = List.of(new Predicate("ticker", Operator.IN, List.of("T1", "T3")));
+            assertFalse(table.getKeyFilter("ticker").mightMatch(missing.get(0)));
+            try (UnifiedDataTable filtered = filteringService.applyPredicates(table, missing, null, Set.of("ticker"))) {
+                assertEquals(0, filtered.getRowCount());
+            }
+            List<Predicate> present = List.of(new Predicate("ticker", Operator.IN, List.of("T1", "T4")));
+            try (UnifiedDataTable filtered = filteringService.applyPredicates(table, present, null, Set.of("ticker"))) {
+                assertEquals(1, filtered.getRowCount());
+                assertEquals("T4", filtered.getData().getVector("ticker").getObject(0).toString());
+            }
+        }
+    }
+
+    @Test
+    void testJoinSkipsProbeRowsMissingFromTheOtherTable() {
+        // Every ticker T0..T3999 with dictionary-encoded tickers, of which the bars only hold the even ones
+        VarCharVector values = new VarCharVector("ticker", allocator);
+        IntVector codes = new IntVector("ticker", new FieldType(true, new ArrowType.Int(32, true),
+                new DictionaryEncoding(1L, false, new ArrowType.Int(32, true))), allocator);
+        Float8Vector closes = new Float8Vector("close", allocator);
+        for (int row = 0; row < TICKERS * 2; row++) {
+            values.setSafe(row, ("T" + row).getBytes(StandardCharsets.UTF_8));
+            codes.setSafe(row, row);
+            closes.setSafe(row, row * 0.5);
+        }
+        values.setValueCount(TICKERS * 2);
+        codes.setValueCount(TICKERS * 2);
+        closes.setValueCount(TICKERS * 2);
+        DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        dictionaries.put(new Dictionary(values, codes.getField().getDictionary()));
+
+        try (UnifiedDataTable quotes = new UnifiedDataTable("quote", List.of(new VectorSchemaRoot(List.<FieldVector>of(codes, closes))), dictionaries);
+             UnifiedDataTable bars = bars();
+             UnifiedDataTable joined = new ArrowJoinUtil(allocator).joinOnKeys(List.of(quotes, bars), List.of("ticker"), Map.of())) {
+            Selection candidates = Selection.all(TICKERS * 2);
+            bars.getKeyFilter("ticker").filter(codes, quotes.getDictionaries(), candidates);
+            assertTrue(candidates.count() < TICKERS * 11 / 10, candidates.count() + " candidates");
+
+            VectorSchemaRoot root = joined.getData();
+            assertEquals(TICKERS - TICKERS / 500, root.getRowCount());
+            BigIntVector volumes = (BigIntVector) root.getVector("volume");
+            for (int row = 0; row < root.getRowCount(); row++) {
+                int code = ((IntVector) root.getVector("ticker")).get(row);
+                assertEquals(0, code % 2);
+                assertEquals(code, volumes.get(row));
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredicateCompilerTest {
+
+    private RootAllocator allocator;
+    private VarCharVector tickers;
+    private BigIntVector volumes;
+    private Float8Vector closes;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        tickers = new VarCharVector("ticker", allocator);
+        volumes = new BigIntVector("volume", allocator);
+        closes = new Float8Vector("close", allocator);
+        String[] tickerValues = {"AAPL", "MSFT", null, "GOOG"};
+        long[] volumeValues = {9, 10, 100, 1000};
+        double[] closeValues = {189.5, 410.25, 0, 140.0};
+        for (int i = 0; i < tickerValues.length; i++) {
+            if (tickerValues[i] == null) {
+                tickers.setNull(i);
+                closes.setNull(i);
+            } else {
+                tickers.setSafe(i, tickerValues[i].getBytes(StandardCharsets.UTF_8));
+                closes.setSafe(i, closeValues[i]);
+            }
+            volumes.setSafe(i, volumeValues[i]);
+        }
+        tickers.setValueCount(4);
+        volumes.setValueCount(4);
+        closes.setValueCount(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tickers.close();
+        volumes.close();
+        closes.close();
+        allocator.close();
+    }
+
+    private static Map<String, DataType> types() {
+        Map<String, DataType> types = new LinkedHashMap<>();
+        types.put("ticker", DataType.STRING);
+        types.put("volume", DataType.LONG);
+        types.put("close", DataType.DOUBLE);
+        return types;
+    }
+
+    private boolean[] evaluate(Predicate... predicates) {
+        CompiledFilter filter = PredicateCompiler.compile(List.of(predicates), types(), null);
+        Map<String, FieldVector> byName = Map.of("ticker", tickers, "volume", volumes, "close", closes);
+        FieldVector[] vectors = filter.getColumns().stream().map(byName::get).toArray(FieldVector[]::new);
+        boolean[] result = new boolean[4];
+        Selection selection = filter.select(vectors, result.length);
+        for (int row = 0; row < result.length; row++) {
+            result[row] = filter.test(vectors, filter.boundIndexes(), row);
+            // The column kernels agree with testing row by row
+            assertEquals(result[row], selection.isSelected(row), "row " + row);
+        }
+        return result;
+    }
+
+    @Test
+    void testKernelsMatchRowTestsAcrossWords() {
+        try (BigIntVector longs = new BigIntVector("volume", allocator);
+             Float8Vector doubles = new Float8Vector("close", allocator)) {
+            int rowCount = 150;
+            for (int row = 0; row < rowCount; row++) {
+                if (row % 7 == 3) {
+                    longs.setNull(row);
+                    doubles.setNull(row);
+                } else {
+                    longs.setSafe(row, row % 11 - 5);
+                    doubles.setSafe(row, row % 13 == 0 ? Double.NaN : (row % 9) - 4.0);
+                }
+            }
+            longs.setValueCount(rowCount);
+            doubles.setValueCount(rowCount);
+
+            for (Operator op : List.of(Operator.EQUALS, Operator.NOT_EQUALS, Operator.GREATER_THAN,
+                    Operator.GREATER_THAN_OR_EQUAL_TO, Operator.LESS_THAN, Operator.LESS_THAN_OR_EQUAL_TO)) {
+                for (Predicate predicate : List.of(new Predicate("volume", op, 0L), new Predicate("close", op, 0.0))) {
+                    CompiledFilter filter = PredicateCompiler.compile(List.of(predicate), types(), null);
+                    FieldVector[] vectors = {predicate.columnName().equals("volume") ? longs : doubles};
+                    Selection selection = filter.select(vectors, rowCount);
+                    int selected = 0;
+                    for (int row = 0; row < rowCount; row++) {
+                        boolean expected = filter.test(vectors, filter.boundIndexes(), row);
+                        assertEquals(expected, selection.isSelected(row), predicate + " at row " + row);
+                        selected += expected ? 1 : 0;
+                    }
+                    assertEquals(selected, selection.count());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSelectsDictionaryCodes() {
+        try (IntVector codes = new IntVector("ticker", allocator);
+             VarCharVector dictionary = new VarCharVector("ticker_dictionary", allocator)) {
+            String[] tickerValues = {"AAPL", "MSFT", "GOOG"};
+            for (int code = 0; code < tickerValues.length; code++) {
+                dictionary.setSafe(code, tickerValues[code].getBytes(StandardCharsets.UTF_8));
+            }
+            dictionary.setValueCount(tickerValues.length);
+            int[] values = {0, 1, 2, 1, -1, 2, 0};
+            for (int row = 0; row < values.length; row++) {
+                if (values[row] < 0) {
+                    codes.setNull(row);
+                } else {
+                    codes.setSafe(row, values[row]);
+                }
+            }
+            codes.setValueCount(values.length);
+            CompiledFilter filter = PredicateCompiler.compile(List.of(new Predicate("ticker", Operator.IN, List.of("GOOG", "AAPL"))),
+                    Map.of("ticker", DataType.DICTIONARY_STRING), null).withDictionaries(column -> dictionary);
+            Selection selection = filter.select(new FieldVector[]{codes}, values.length);
+            boolean[] selected = new boolean[values.length];
+            for (int row = 0; row < values.length; row++) {
+                selected[row] = selection.isSelected(row);
+            }
+            assertArrayEquals(new boolean[]{true, false, true, false, false, true, true}, selected);
+        }
+    }
+
+    @Test
+    void testNumericComparisonUsesColumnType() {
+        // "9" > "10" as strings, but not as numbers
+        assertArrayEquals(new boolean[]{false, true, true, true},
+                evaluate(new Predicate("volume", Operator.GREATER_THAN_OR_EQUAL_TO, "10")));
+        assertArrayEquals(new boolean[]{true, false, false, true},
+                evaluate(new Predicate("close", Operator.LESS_THAN, 200L)));
+        assertArrayEquals(new boolean[]{true, true, true, false},
+                evaluate(new Predicate("volume", Operator.LESS_THAN, 999.5)));
+    }
+
+    @Test
+    void testInListsAndNulls() {
+        assertArrayEquals(new boolean[]{true, false, false, true},
+                evaluate(new Predicate("ticker", Operator.IN, List.of("GOOG", "AAPL", "NVDA"))));
+        assertArrayEquals(new boolean[]{false, true, false, true},
+                evaluate(new Predicate("volume", Operator.IN, List.of(10L, 1000L))));
+        // Null cells never match, not even NOT_EQUALS
+        assertArrayEquals(new boolean[]{false, true, false, true},
+                evaluate(new Predicate("ticker", Operator.NOT_EQUALS, "AAPL")));
+        assertArrayEquals(new boolean[]{false, true, false, false},
+                evaluate(new Predicate("ticker", Operator.GREATER_THAN, "GOOG"),
+                        new Predicate("volume", Operator.EQUALS, 10L)));
+    }
+
+    @Test
+    void testResolvesColumnsThroughAlias() {
+        Map<String, DataType> fields = Map.of("stkcode", DataType.STRING);
+        Map<String, String> alias = Map.of("ticker", "stkcode");
+        CompiledFilter filter = PredicateCompiler.compile(
+                List.of(new Predicate("ticker", Operator.EQUALS, "AAPL")), fields, alias);
+        assertEquals(List.of("stkcode"), filter.getColumns());
+
+        CompiledFilter missing = PredicateCompiler.compile(
+                List.of(new Predicate("sector", Operator.EQUALS, "tech")), fields, alias);
+        assertTrue(missing.rejectsAll());
+    }
+
+    @Test
+    void testRejectsLiteralOfWrongType() {
+        assertThrows(IllegalArgumentException.class, () -> PredicateCompiler.compile(
+                List.of(new Predicate("volume", Operator.EQUALS, "lots")), types(), null));
+    }
+
+    @Test
+    void testRangesRuleOutBlocks() {
+        ValueRange volumes = ValueRange.ofLongs(10, 20, 0);
+        assertTrue(PredicateCompiler.mightMatch(new Predicate("volume", Operator.GREATER_THAN, 19L), DataType.LONG, volumes));
+        assertFalse(PredicateCompiler.mightMatch(new Predicate("volume", Operator.GREATER_THAN, 20L), DataType.LONG, volumes));
+        assertFalse(PredicateCompiler.mightMatch(new Predicate("volume", Operator.LESS_THAN, 9.5), DataType.LONG, volumes));
+        assertFalse(PredicateCompiler.mightMatch(new Predicate("volume", Operator.IN, List.of(5L, 25L)), DataType.LONG, volumes));
+        assertFalse(PredicateCompiler.mightMatch(new Predicate("volume", Operator.NOT_EQUALS, 10L), DataType.LONG, ValueRange.ofLongs(10, 10, 0)));
+
+        ValueRange tickerRange = ValueRange.ofUtf8("AAPL".getBytes(StandardCharsets.UTF_8), "GOOG".getBytes(StandardCharsets.UTF_8), 0);
+        assertTrue(PredicateCompiler.mightMatch(new Predicate("ticker", Operator.EQUALS, "BABA"), DataType.STRING, tickerRange));
+        assertFalse(PredicateCompiler.mightMatch(new Predicate("ticker", Operator.EQUALS, "MSFT"), DataType.STRING, tickerRange));
+
+        assertFalse(PredicateCompiler.mightMatch(new Predicate("close", Operator.EQUALS, 1.0), DataType.DOUBLE, ValueRange.onlyNulls(4)));
+        assertTrue(PredicateCompiler.mightMatch(new Predicate("close", Operator.EQUALS, 1.0), DataType.DOUBLE, ValueRange.unknown()));
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredicateExtractorTest {
+
+    @Test
+    void parsesAndedComparisonsAndInLists() {
+        List<Predicate> predicates = PredicateExtractor.parse("ticker IN ('AAPL', 'MSFT') AND (close >= 100.5 AND volume != 0)");
+
+        assertEquals(List.of(
+                new Predicate("ticker", Operator.IN, List.of("AAPL", "MSFT")),
+                new Predicate("close", Operator.GREATER_THAN_OR_EQUAL_TO, 100.5),
+                new Predicate("volume", Operator.NOT_EQUALS, 0L)), predicates);
+    }
+
+    @Test
+    void blankFilterHasNoPredicates() {
+        assertTrue(PredicateExtractor.parse(null).isEmpty());
+        assertTrue(PredicateExtractor.parse("  ").isEmpty());
+    }
+
+    @Test
+    void rejectsConditionsPredicatesCannotExpress() {
+        assertThrows(IllegalArgumentException.class, () -> PredicateExtractor.parse("ticker = 'AAPL' OR ticker = 'MSFT'"));
+        assertThrows(IllegalArgumentException.class, () -> PredicateExtractor.parse("close > open"));
+        assertThrows(IllegalArgumentException.class, () -> PredicateExtractor.parse("close >"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.unifieddataservice.service.filter;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.DataFilteringService;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZoneMapTest {
+    private static final int BATCHES = 10;
+    private static final int ROWS_PER_BATCH = 100;
+    private static final String[] TICKERS = {"AAPL", "MSFT", "GOOG"};
+
+    private RootAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    /**
+     * A daily history sorted by date, one batch per {@link #ROWS_PER_BATCH} days.
+     */
+    private UnifiedDataTable history() {
+        List<VectorSchemaRoot> batches = new ArrayList<>();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            BigIntVector dates = new BigIntVector("date", allocator);
+            VarCharVector tickers = new VarCharVector("ticker", allocator);
+            Float8Vector closes = new Float8Vector("close", allocator);
+            for (int row = 0; row < ROWS_PER_BATCH; row++) {
+                int day = batch * ROWS_PER_BATCH + row;
+                dates.setSafe(row, day);
+                tickers.setSafe(row, TICKERS[day % TICKERS.length].getBytes(StandardCharsets.UTF_8));
+                if (row == 0) {
+                    closes.setNull(row);
+                } else {
+                    closes.setSafe(row, batch == 3 && row == 1 ? Double.NaN : day * 0.5);
+                }
+            }
+            List<FieldVector> vectors = List.of(dates, tickers, closes);
+            vectors.forEach(vector -> vector.setValueCount(ROWS_PER_BATCH));
+            batches.add(new VectorSchemaRoot(vectors));
+        }
+        return new UnifiedDataTable("daily_bar", batches);
+    }
+
+    @Test
+    void testComputesColumnRangesOfABatch() {
+        try (UnifiedDataTable table = history()) {
+            VectorSchemaRoot batch = table.getBatches().get(2);
+            ZoneMap zoneMap = table.getZoneMap(2);
+
+            ValueRange dates = zoneMap.range(batch, "date", DataType.LONG, table.getDictionaries());
+            assertEquals(200, dates.getMinLong());
+            assertEquals(299, dates.getMaxLong());
+            ValueRange tickers = zoneMap.range(batch, "ticker", DataType.STRING, table.getDictionaries());
+            assertEquals("AAPL", new String(tickers.getMinUtf8(), StandardCharsets.UTF_8));
+            assertEquals("MSFT", new String(tickers.getMaxUtf8(), StandardCharsets.UTF_8));
+            ValueRange closes = zoneMap.range(batch, "close", DataType.DOUBLE, table.getDictionaries());
+            assertEquals(100.5, closes.getMinDouble());
+            assertEquals(149.5, closes.getMaxDouble());
+            assertEquals(1, closes.getNullCount());
+
+            // Ranges are computed once and follow the batch into shared tables
+            assertSame(dates, zoneMap.range(batch, "date", DataType.LONG, table.getDictionaries()));
+            try (UnifiedDataTable shared = table.share()) {
+                assertSame(zoneMap, shared.getZoneMap(2));
+            }
+        }
+    }
+
+    @Test
+    void testRulesOutBatchesOutsideThePredicates() {
+        try (UnifiedDataTable table = history()) {
+            Map<String, DataType> types = Map.of("date", DataType.LONG, "ticker", DataType.STRING, "close", DataType.DOUBLE);
+            List<Predicate> window = List.of(new Predicate("date", Operator.GREATER_THAN_OR_EQUAL_TO, 250L),
+                    new Predicate("date", Operator.LESS_THAN, 420L));
+            List<Predicate> tickers = List.of(new Predicate("ticker", Operator.IN, List.of("AA", "TSLA")));
+            List<Predicate> closes = List.of(new Predicate("close", Operator.GREATER_THAN, 1000.0));
+            for (int i = 0; i < BATCHES; i++) {
+                VectorSchemaRoot batch = table.getBatches().get(i);
+                ZoneMap zoneMap = table.getZoneMap(i);
+                assertEquals(i >= 2 && i <= 4, zoneMap.mightMatch(batch, table.getDictionaries(), window, List.of("date", "date"), types), "batch " + i);
+                assertFalse(zoneMap.mightMatch(batch, table.getDictionaries(), tickers, List.of("ticker"), types), "batch " + i);
+                // A NaN cell rules nothing out
+                assertEquals(i == 3, zoneMap.mightMatch(batch, table.getDictionaries(), closes, List.of("close"), types), "batch " + i);
+            }
+        }
+    }
+
+    @Test
+    void testFilteringSkipsBatchesButKeepsTheirMatches() {
+        DataFilteringService filteringService = new DataFilteringService();
+        ReflectionTestUtils.setField(filteringService, "allocator", allocator);
+        try (UnifiedDataTable table = history();
+             UnifiedDataTable filtered = filteringService.applyPredicates(table, List.of(
+                     new Predicate("date", Operator.GREATER_THAN_OR_EQUAL_TO, 250L),
+                     new Predicate("date", Operator.LESS_THAN, 420L),
+                     new Predicate("ticker", Operator.EQUALS, "AAPL")))) {
+            assertEquals(3, filtered.getBatches().size());
+            VectorSchemaRoot root = filtered.getData();
+            BigIntVector dates = (BigIntVector) root.getVector("date");
+            List<Long> expected = new ArrayList<>();
+            for (long day = 250; day < 420; day++) {
+                if (day % TICKERS.length == 0) {
+                    expected.add(day);
+                }
+            }
+            assertEquals(expected.size(), root.getRowCount());
+            for (int row = 0; row < root.getRowCount(); row++) {
+                assertEquals(expected.get(row), dates.get(row));
+            }
+        }
+    }
+
+    @Test
+    void testSkippedBatchIsNeitherScannedNorGathered() {
+        DataFilteringService filteringService = new DataFilteringService();
+        ReflectionTestUtils.setField(filteringService, "allocator", allocator);
+        List<Predicate> window = List.of(new Predicate("date", Operator.GREATER_THAN_OR_EQUAL_TO, 250L),
+                new Predicate("date", Operator.LESS_THAN, 420L));
+        try (UnifiedDataTable table = history()) {
+            // The first filter computes the zone maps of the batches
+            filteringService.applyPredicates(table, window).close();
+            // Rows of batch 0 now match, but its kept zone map still rules the window out
+            BigIntVector dates = (BigIntVector) table.getBatches().get(0).getVector("date");
+            for (int row = 0; row < ROWS_PER_BATCH; row++) {
+                dates.set(row, 300);
+            }
+            try (UnifiedDataTable filtered = filteringService.applyPredicates(table, window)) {
+                assertEquals(3, filtered.getBatches().size());
+                assertEquals(420 - 250, filtered.getRowCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.memory.util.MemoryUtil;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.unifieddataservice.service.parser.ColumnarTestData.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrowIpcDataParserTest {
+
+    private static final int ROWS_PER_BATCH = 5;
+    private static final int BATCHES = 3;
+
+    private RootAllocator allocator;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Fails if any buffer, including a slice of a mapped file, is still referenced
+        allocator.close();
+    }
+
+    /**
+     * Writes {@link #BATCHES} batches of a dictionary-encoded ticker, a microsecond timestamp, a double and a 32-bit integer.
+     */
+    private byte[] write(boolean fileFormat) throws IOException {
+        DictionaryEncoding encoding = new DictionaryEncoding(0L, false, new ArrowType.Int(32, true));
+        Schema schema = new Schema(List.of(
+                new Field("stk", new FieldType(true, new ArrowType.Int(32, true), encoding), null),
+                Field.nullable("ts", new ArrowType.Timestamp(TimeUnit.MICROSECOND, null)),
+                Field.nullable("close", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                Field.nullable("qty", new ArrowType.Int(32, true))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VarCharVector values = new VarCharVector("stk_dictionary", allocator);
+             VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            values.allocateNew();
+            for (int i = 0; i < TICKERS.length; i++) {
+                values.setSafe(i, TICKERS[i].getBytes(StandardCharsets.UTF_8));
+            }
+            values.setValueCount(TICKERS.length);
+            DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+            provider.put(new Dictionary(values, encoding));
+
+            try (ArrowWriter writer = fileFormat
+                    ? new ArrowFileWriter(root, provider, Channels.newChannel(out))
+                    : new ArrowStreamWriter(root, provider, out)) {
+                writer.start();
+                for (int batch = 0; batch < BATCHES; batch++) {
+                    root.allocateNew();
+                    for (int i = 0; i < ROWS_PER_BATCH; i++) {
+                        int row = batch * ROWS_PER_BATCH + i;
+                        ((IntVector) root.getVector("stk")).setSafe(i, row % TICKERS.length);
+                        ((TimeStampMicroVector) root.getVector("ts")).setSafe(i, 1_700_000_000_000_000L + row * 1_000_000L);
+                        ((Float8Vector) root.getVector("close")).setSafe(i, 100 + row * 0.5);
+                        if (row % 4 == 3) {
+                            root.getVector("qty").setNull(i);
+                        } else {
+                            ((IntVector) root.getVector("qty")).setSafe(i, row * 10);
+                        }
+                    }
+                    root.setRowCount(ROWS_PER_BATCH);
+                    writer.writeBatch();
+                }
+                writer.end();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testReadsStreamFormatConvertingTypesAndApplyingPredicates() throws IOException {
+        ArrowIpcDataParser parser = new ArrowIpcDataParser(allocator);
+        byte[] stream = write(false);
+
+        try (UnifiedDataTable table = parser.parse(new ByteArrayInputStream(stream), fields(), "", aliases(),
+                List.of(new Predicate("volume", Operator.GREATER_THAN, 40L),
+                        new Predicate("stkcode", Operator.NOT_EQUALS, "GOOG")), null)) {
+            // Rows 5..14 with a volume, minus every GOOG row
+            assertEquals(List.of(6, 9, 10, 12, 13), rowsOf(table));
+            assertEquals("AAPL", valueAt(table, "stkcode", 1).toString());
+            assertEquals("AAPL", valueAt(table, "name", 1).toString());
+            assertEquals(1_700_000_009_000L, ((TimeStampMilliTZVector) table.getData().getVector("timestamp")).get(1));
+            assertEquals(104.5, table.getData().getVector("close").getObject(1));
+            assertInstanceOf(IntVector.class, table.getData().getVector("stkcode"));
+            assertNotNull(table.getData().getVector("stkcode").getField().getDictionary());
+        }
+    }
+
+    @Test
+    void testReadsMappedFileInPlaceWithProjection() throws IOException {
+        ArrowIpcDataParser parser = new ArrowIpcDataParser(allocator);
+        byte[] bytes = write(true);
+        Path file = tempDir.resolve("ticks.arrow");
+        Files.write(file, bytes);
+
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Set<String> required = Set.of("stkcode", "close");
+        try (UnifiedDataTable inPlace = parser.parseBytes(mapped, fields(), "", aliases(), List.of(), required);
+             UnifiedDataTable streamed = parser.parse(new ByteArrayInputStream(bytes), fields(), "", aliases(), List.of(), required)) {
+            assertEquals(BATCHES, inPlace.getBatches().size());
+            long start = MemoryUtil.getByteBufferAddress(mapped);
+            long address = inPlace.getBatches().get(1).getVector("close").getDataBuffer().memoryAddress();
+            assertTrue(address >= start && address < start + bytes.length, "close values are read from the mapping");
+            assertEquals(List.of("stkcode", "close"), inPlace.getSchema().getFields().stream().map(Field::getName).toList());
+            assertEquals(BATCHES * ROWS_PER_BATCH, inPlace.getRowCount());
+            for (int row = 0; row < inPlace.getRowCount(); row++) {
+                assertEquals(TICKERS[row % TICKERS.length], valueAt(inPlace, "stkcode", row).toString());
+                assertEquals(valueAt(streamed, "close", row), valueAt(inPlace, "close", row));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnmappableColumn() throws IOException {
+        ArrowIpcDataParser parser = new ArrowIpcDataParser(allocator);
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("close", DataType.BOOLEAN);
+        byte[] stream = write(false);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new ByteArrayInputStream(stream), fields, ""));
+        assertTrue(e.getMessage().contains("close"));
+    }
+}
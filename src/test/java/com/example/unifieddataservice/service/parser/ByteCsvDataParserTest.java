@@ -0,0 +1,107 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.util.ArrowDictionaries;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteCsvDataParserTest {
+
+    private static final String TRICKY_CSV = "name,qty,price,active,note\r\n"
+            + "AAPL,10,189.25,true,plain\r\n"
+            + "\"MSFT, Inc\",-42,1e3,FALSE,\"said \"\"hi\"\"\"\r\n"
+            + "\r\n"
+            + "GOOG, 7 ,.5,TRUE,\"multi\nline\"\n"
+            + "NVDA,abc,12345678901234567890.5,yes,\n"
+            + "été,9223372036854775807,-0.000001,,  \n"
+            + "TSLA,,NaN,true";
+
+    private RootAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    private static Map<String, DataType> fields() {
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("name", DataType.STRING);
+        fields.put("qty", DataType.LONG);
+        fields.put("price", DataType.DOUBLE);
+        fields.put("active", DataType.BOOLEAN);
+        fields.put("note", DataType.STRING);
+        return fields;
+    }
+
+    private static void assertSameTable(UnifiedDataTable expected, UnifiedDataTable actual) {
+        VectorSchemaRoot expectedData = expected.getData();
+        VectorSchemaRoot actualData = actual.getData();
+        assertEquals(expectedData.getRowCount(), actualData.getRowCount());
+        for (FieldVector expectedVector : expectedData.getFieldVectors()) {
+            FieldVector actualVector = actualData.getVector(expectedVector.getField().getName());
+            for (int i = 0; i < expectedData.getRowCount(); i++) {
+                assertEquals(
+                        String.valueOf(ArrowDictionaries.valueAt(expectedVector, i, expected.getDictionaries())),
+                        String.valueOf(ArrowDictionaries.valueAt(actualVector, i, actual.getDictionaries())),
+                        expectedVector.getField().getName() + " row " + i);
+            }
+        }
+    }
+
+    @Test
+    void testMatchesCommonsCsvParserAcrossBufferRefills() {
+        ByteCsvDataParser parser = new ByteCsvDataParser(allocator);
+        // A tiny buffer forces records to straddle reads and the buffer to grow
+        ReflectionTestUtils.setField(parser, "bufferSize", 8);
+        byte[] bytes = TRICKY_CSV.getBytes(StandardCharsets.UTF_8);
+
+        try (UnifiedDataTable expected = new CsvDataParser(allocator).parse(new ByteArrayInputStream(bytes), fields(), "");
+             UnifiedDataTable streamed = parser.parse(new ByteArrayInputStream(bytes), fields(), "");
+             UnifiedDataTable mapped = parser.parseBytes(ByteBuffer.wrap(bytes), fields(), "", null, List.of(), null)) {
+            assertEquals(6, expected.getRowCount());
+            assertSameTable(expected, streamed);
+            assertSameTable(expected, mapped);
+            assertEquals("said \"hi\"", streamed.getData().getVector("note").getObject(1).toString());
+            assertEquals("multi\nline", streamed.getData().getVector("note").getObject(2).toString());
+        }
+    }
+
+    @Test
+    void testAppliesPredicatesAndDictionaryEncoding() {
+        ByteCsvDataParser parser = new ByteCsvDataParser(allocator);
+        Map<String, DataType> fields = fields();
+        fields.put("name", DataType.DICTIONARY_STRING);
+        byte[] bytes = TRICKY_CSV.getBytes(StandardCharsets.UTF_8);
+
+        try (UnifiedDataTable table = parser.parseBytes(ByteBuffer.wrap(bytes), fields, "", null,
+                List.of(new Predicate("qty", Operator.GREATER_THAN, 0L),
+                        new Predicate("name", Operator.IN, List.of("AAPL", "GOOG", "TSLA"))), null)) {
+            VectorSchemaRoot data = table.getData();
+            assertEquals(2, data.getRowCount());
+            assertEquals("GOOG", ArrowDictionaries.valueAt(data.getVector("name"), 1, table.getDictionaries()).toString());
+            assertEquals(7L, data.getVector("qty").getObject(1));
+        }
+    }
+}
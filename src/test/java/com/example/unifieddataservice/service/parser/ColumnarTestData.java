@@ -0,0 +1,54 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.util.ArrowDictionaries;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mappings and accessors shared by the tests of the columnar parsers, whose sources hold a ticker {@code stk},
+ * a timestamp {@code ts}, a {@code close} price and a quantity {@code qty} of ten times the row number.
+ */
+final class ColumnarTestData {
+
+    static final String[] TICKERS = {"AAPL", "MSFT", "GOOG"};
+
+    private ColumnarTestData() {
+    }
+
+    static Map<String, DataType> fields() {
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("stkcode", DataType.DICTIONARY_STRING);
+        fields.put("timestamp", DataType.TIMESTAMP);
+        fields.put("close", DataType.DOUBLE);
+        fields.put("volume", DataType.LONG);
+        fields.put("name", DataType.STRING);
+        return fields;
+    }
+
+    static Map<String, String> aliases() {
+        return Map.of("stkcode", "stk", "timestamp", "ts", "volume", "qty", "name", "stk");
+    }
+
+    static Object valueAt(UnifiedDataTable table, String field, int row) {
+        return ArrowDictionaries.valueAt(table.getData().getVector(field), row, table.getDictionaries());
+    }
+
+    /**
+     * @return the source row numbers of the table's rows, recovered from their volume
+     */
+    static List<Integer> rowsOf(UnifiedDataTable table) {
+        VectorSchemaRoot data = table.getData();
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < data.getRowCount(); i++) {
+            rows.add((int) ((BigIntVector) data.getVector("volume")).get(i) / 10);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import org.apache.arrow.memory.RootAllocator;
+import com.example.unifieddataservice.util.ArrowDictionaries;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvDataParserTest {
+
+    private RootAllocator allocator;
+    private CsvDataParser parser;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        parser = new CsvDataParser(allocator);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    private static String csv(int rows) {
+        StringBuilder sb = new StringBuilder("stkcode,timestamp,close\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i % 2 == 0 ? "AAPL" : "MSFT").append(',').append(1000L + i).append(',').append(i * 0.5).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, DataType> fields() {
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("stkcode", DataType.STRING);
+        fields.put("timestamp", DataType.LONG);
+        fields.put("close", DataType.DOUBLE);
+        return fields;
+    }
+
+    @Test
+    void testSmallSourceDoesNotAllocateFullBatch() {
+        try (UnifiedDataTable table = parser.parse(
+                new ByteArrayInputStream(csv(1).getBytes(StandardCharsets.UTF_8)), fields(), "")) {
+            assertEquals(1, table.getRowCount());
+            // A batch sized for the default 65,536 rows would take megabytes
+            assertTrue(allocator.getAllocatedMemory() < 64 * 1024, "allocated " + allocator.getAllocatedMemory());
+        }
+    }
+
+    @Test
+    void testStreamsRecordsIntoFixedSizeBatches() {
+        ReflectionTestUtils.setField(parser, "batchSize", 4);
+
+        try (UnifiedDataTable table = parser.parse(
+                new ByteArrayInputStream(csv(10).getBytes(StandardCharsets.UTF_8)), fields(), "")) {
+            List<VectorSchemaRoot> batches = table.getBatches();
+            assertEquals(3, batches.size());
+            assertEquals(4, batches.get(0).getRowCount());
+            assertEquals(2, batches.get(2).getRowCount());
+            assertEquals(10, table.getRowCount());
+
+            // Compacting keeps the row order of the batches
+            VectorSchemaRoot data = table.getData();
+            assertEquals(10, data.getRowCount());
+            BigIntVector timestamps = (BigIntVector) data.getVector("timestamp");
+            for (int i = 0; i < 10; i++) {
+                assertEquals(1000L + i, timestamps.get(i));
+            }
+            assertEquals(1, table.getBatches().size());
+        }
+    }
+
+    @Test
+    void testParsesLargeFileInParallelRangesInOrder(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("ticks.csv");
+        Files.writeString(file, csv(1000));
+        CsvDataParser parallelParser = new CsvDataParser(allocator, 4);
+        ReflectionTestUtils.setField(parallelParser, "parallelThresholdBytes", 0L);
+        ReflectionTestUtils.setField(parallelParser, "batchSize", 100);
+
+        try (UnifiedDataTable table = parallelParser.parseFile(file, fields(), "", null, List.of(), null)) {
+            assertTrue(table.getBatches().size() >= 4);
+            VectorSchemaRoot data = table.getData();
+            assertEquals(1000, data.getRowCount());
+            BigIntVector timestamps = (BigIntVector) data.getVector("timestamp");
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(1000L + i, timestamps.get(i));
+            }
+        } finally {
+            parallelParser.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelRangesKeepQuotedLineBreaksInOneRecord(@TempDir Path dir) throws Exception {
+        // Quoted cells spanning many lines, with doubled quotes, so range boundaries fall inside them
+        StringBuilder sb = new StringBuilder("stkcode,timestamp,close\n");
+        for (int i = 0; i < 200; i++) {
+            sb.append("\"line ").append(i).append("\n\"\"quoted\"\",\n\n".repeat(i % 7)).append("end\",").append(1000L + i).append(',').append(i).append('\n');
+        }
+        Path file = dir.resolve("notes.csv");
+        Files.writeString(file, sb.toString());
+        CsvDataParser parallelParser = new CsvDataParser(allocator, 8);
+        ReflectionTestUtils.setField(parallelParser, "parallelThresholdBytes", 0L);
+
+        try (UnifiedDataTable parallel = parallelParser.parseFile(file, fields(), "", null, List.of(), null);
+             UnifiedDataTable serial = parser.parseFile(file, fields(), "", null, List.of(), null)) {
+            assertTrue(parallel.getBatches().size() > 1);
+            VectorSchemaRoot expected = serial.getData();
+            VectorSchemaRoot actual = parallel.getData();
+            assertEquals(200, expected.getRowCount());
+            assertEquals(200, actual.getRowCount());
+            for (int i = 0; i < 200; i++) {
+                assertEquals(1000L + i, ((BigIntVector) actual.getVector("timestamp")).get(i));
+                assertEquals(expected.getVector("stkcode").getObject(i), actual.getVector("stkcode").getObject(i));
+            }
+        } finally {
+            parallelParser.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelRangesOfMappedFileWithoutTrailingNewline(@TempDir Path dir) throws Exception {
+        // The last range ends inside the last record, and a header-only file has no range after the header
+        String payload = csv(500);
+        Path unterminated = Files.writeString(dir.resolve("ticks.csv"), payload.substring(0, payload.length() - 1));
+        Path headerOnly = Files.writeString(dir.resolve("empty.csv"), "stkcode,timestamp,close");
+        CsvDataParser parallelParser = new CsvDataParser(allocator, 4);
+        ReflectionTestUtils.setField(parallelParser, "parallelThresholdBytes", 0L);
+
+        try (UnifiedDataTable table = parallelParser.parseFile(unterminated, fields(), "", null, List.of(), null);
+             UnifiedDataTable empty = parallelParser.parseFile(headerOnly, fields(), "", null, List.of(), null)) {
+            assertTrue(table.getBatches().size() > 1);
+            VectorSchemaRoot data = table.getData();
+            assertEquals(500, data.getRowCount());
+            assertEquals(1499L, ((BigIntVector) data.getVector("timestamp")).get(499));
+            assertEquals("MSFT", data.getVector("stkcode").getObject(499).toString());
+            assertEquals(249.5, data.getVector("close").getObject(499));
+            assertEquals(0, empty.getRowCount());
+            assertEquals(3, empty.getSchema().getFields().size());
+        } finally {
+            parallelParser.shutdown();
+        }
+    }
+
+    @Test
+    void testDictionaryEncodesStringColumnAcrossParallelRanges(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("ticks.csv");
+        Files.writeString(file, csv(1000));
+        CsvDataParser parallelParser = new CsvDataParser(allocator, 4);
+        ReflectionTestUtils.setField(parallelParser, "parallelThresholdBytes", 0L);
+        Map<String, DataType> fields = fields();
+        fields.put("stkcode", DataType.DICTIONARY_STRING);
+        List<Predicate> predicates = List.of(
+                new Predicate("stkcode", Operator.EQUALS, "MSFT"),
+                new Predicate("close", Operator.GREATER_THAN_OR_EQUAL_TO, 100L));
+
+        try (UnifiedDataTable table = parallelParser.parseFile(file, fields, "", null, predicates, null)) {
+            VectorSchemaRoot data = table.getData();
+            assertEquals(400, data.getRowCount());
+            IntVector codes = (IntVector) data.getVector("stkcode");
+            DictionaryEncoding encoding = codes.getField().getDictionary();
+            assertNotNull(encoding);
+            // Every range was re-encoded against one dictionary holding each distinct code once
+            assertEquals(2, table.getDictionaries().lookup(encoding.getId()).getVector().getValueCount());
+            for (int i = 0; i < data.getRowCount(); i++) {
+                assertEquals("MSFT", ArrowDictionaries.valueAt(codes, i, table.getDictionaries()).toString());
+            }
+
+            // Dictionaries travel with the batches through Arrow IPC
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ArrowStreamWriter writer = new ArrowStreamWriter(data, table.getDictionaries(), out)) {
+                writer.start();
+                writer.writeBatch();
+                writer.end();
+            }
+            try (ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)) {
+                assertTrue(reader.loadNextBatch());
+                FieldVector readCodes = reader.getVectorSchemaRoot().getVector("stkcode");
+                assertEquals("MSFT", ArrowDictionaries.valueAt(readCodes, 0, reader).toString());
+            }
+        } finally {
+            parallelParser.shutdown();
+        }
+    }
+
+    @Test
+    void testMaterializesOnlyRequiredAndPredicateColumns() {
+        try (UnifiedDataTable table = parser.parse(
+                new ByteArrayInputStream(csv(10).getBytes(StandardCharsets.UTF_8)), fields(), "", null,
+                List.of(new Predicate("stkcode", Operator.EQUALS, "AAPL")), Set.of("close"))) {
+            VectorSchemaRoot data = table.getData();
+            assertEquals(5, data.getRowCount());
+            assertNotNull(data.getVector("close"));
+            assertNotNull(data.getVector("stkcode"));
+            assertNull(data.getVector("timestamp"));
+        }
+    }
+
+    @Test
+    void testEmptyInputKeepsSchema() {
+        try (UnifiedDataTable table = parser.parse(
+                new ByteArrayInputStream(csv(0).getBytes(StandardCharsets.UTF_8)), fields(), "")) {
+            assertEquals(0, table.getRowCount());
+            assertEquals(3, table.getSchema().getFields().size());
+        }
+    }
+}
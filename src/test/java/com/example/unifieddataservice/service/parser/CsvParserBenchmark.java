@@ -0,0 +1,83 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import org.apache.arrow.memory.RootAllocator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares {@link CsvDataParser} with {@link ByteCsvDataParser} on a synthetic tick file.
+ * Not a unit test; run it manually with the test classpath, optionally passing the row count:
+ * <pre>java --add-opens=java.base/java.nio=ALL-UNNAMED -cp target/test-classes:target/classes:&lt;dependencies&gt; \
+ *     com.example.unifieddataservice.service.parser.CsvParserBenchmark 2000000</pre>
+ */
+public class CsvParserBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        byte[] csv = generate(rows);
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("stkcode", DataType.STRING);
+        fields.put("timestamp", DataType.TIMESTAMP);
+        fields.put("open", DataType.DOUBLE);
+        fields.put("close", DataType.DOUBLE);
+        fields.put("volume", DataType.LONG);
+
+        try (RootAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
+            CsvDataParser commons = new CsvDataParser(allocator, 1);
+            ByteCsvDataParser bytes = new ByteCsvDataParser(allocator);
+            System.out.printf("%d rows, %.1f MiB%n", rows, csv.length / (1024.0 * 1024.0));
+            run("commons-csv", commons, csv, fields);
+            run("byte tokenizer", bytes, csv, fields);
+            commons.shutdown();
+        }
+    }
+
+    private static void run(String name, DataParser parser, byte[] csv, Map<String, DataType> fields) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parseOnce(parser, csv, fields);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long elapsed = parseOnce(parser, csv, fields);
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        System.out.printf("%-15s best %6.1f ms, mean %6.1f ms, %6.1f MiB/s%n", name,
+                best / 1e6, total / 1e6 / MEASURED_ROUNDS, csv.length / (1024.0 * 1024.0) / (best / 1e9));
+    }
+
+    private static long parseOnce(DataParser parser, byte[] csv, Map<String, DataType> fields) {
+        long start = System.nanoTime();
+        try (UnifiedDataTable table = parser.parseBytes(ByteBuffer.wrap(csv), fields, "", null, List.of(), null)) {
+            long elapsed = System.nanoTime() - start;
+            if (table.getRowCount() == 0) {
+                throw new IllegalStateException("No rows parsed");
+            }
+            return elapsed;
+        }
+    }
+
+    private static byte[] generate(int rows) {
+        String[] tickers = {"AAPL", "MSFT", "GOOG", "AMZN", "NVDA", "META", "TSLA", "BRK.B"};
+        StringBuilder sb = new StringBuilder("stkcode,timestamp,open,close,volume\n");
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < rows; i++) {
+            double open = 100 + (i % 997) * 0.25;
+            sb.append(tickers[i % tickers.length]).append(',')
+                    .append(timestamp + i * 1000L).append(',')
+                    .append(open).append(',')
+                    .append(open + (i % 13) * 0.01).append(',')
+                    .append(1000 + (i * 7919L) % 100_000).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
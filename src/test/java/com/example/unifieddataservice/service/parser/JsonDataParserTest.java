@@ -0,0 +1,76 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonDataParserTest {
+
+    private static final String PAYLOAD = "{\"meta\": {\"source\": \"vendor\", \"tags\": [1, 2]},"
+            + " \"result\": {\"items\": ["
+            + "{\"code\": \"AAPL\", \"ts\": 1000, \"price\": 189.5, \"extra\": {\"nested\": [1, 2, 3]}},"
+            + "{\"code\": \"MSFT\", \"ts\": 1001, \"price\": null},"
+            + "{\"ts\": 1002, \"code\": \"AAPL\", \"price\": \"190.25\"}"
+            + "]}}";
+
+    private RootAllocator allocator;
+    private JsonDataParser parser;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        parser = new JsonDataParser(allocator);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    private UnifiedDataTable parse(List<Predicate> predicates) {
+        return parser.parse(
+                new ByteArrayInputStream(PAYLOAD.getBytes(StandardCharsets.UTF_8)),
+                Map.of("stkcode", DataType.STRING, "ts", DataType.LONG, "price", DataType.DOUBLE),
+                "/result/items",
+                Map.of("stkcode", "code"),
+                predicates);
+    }
+
+    @Test
+    void testStreamsArrayAtDataPath() {
+        try (UnifiedDataTable table = parse(List.of())) {
+            VectorSchemaRoot root = table.getData();
+            assertEquals(3, root.getRowCount());
+            assertEquals("AAPL", ((VarCharVector) root.getVector("stkcode")).getObject(0).toString());
+            assertEquals(1002L, ((BigIntVector) root.getVector("ts")).get(2));
+            assertTrue(root.getVector("price").isNull(1));
+            assertEquals(190.25, ((Float8Vector) root.getVector("price")).get(2));
+        }
+    }
+
+    @Test
+    void testAppliesPredicatesWhileStreaming() {
+        try (UnifiedDataTable table = parse(List.of(new Predicate("stkcode", Operator.EQUALS, "AAPL")))) {
+            VectorSchemaRoot root = table.getData();
+            assertEquals(2, root.getRowCount());
+            assertEquals(1000L, ((BigIntVector) root.getVector("ts")).get(0));
+            assertEquals(1002L, ((BigIntVector) root.getVector("ts")).get(1));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import com.example.unifieddataservice.service.DataFetcherService;
+import com.example.unifieddataservice.util.ArrowDictionaries;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class NdjsonDataParserTest {
+
+    private static final String[] TICKERS = {"AAPL", "MSFT", "GOOG"};
+
+    private RootAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    private static Map<String, DataType> fields() {
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("stkcode", DataType.DICTIONARY_STRING);
+        fields.put("ts", DataType.LONG);
+        fields.put("price", DataType.DOUBLE);
+        return fields;
+    }
+
+    private static String lines(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("{\"code\": \"").append(TICKERS[i % TICKERS.length]).append("\", \"ts\": ").append(i)
+                    .append(", \"price\": ").append(100 + i * 0.5).append(", \"extra\": {\"tags\": [1, 2]}}\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testParsesLinesWithDataPathAndPredicates() {
+        NdjsonDataParser parser = new NdjsonDataParser(allocator, 1);
+        String payload = "{\"event\": {\"code\": \"AAPL\", \"ts\": 1, \"price\": 189.5}, \"seq\": 1}\n"
+                + "\n"
+                + "{\"seq\": 2, \"event\": {\"code\": \"MSFT\", \"ts\": 2, \"price\": null}}\n"
+                + "[\"not\", \"a\", \"record\"]\n"
+                + "{\"event\": {\"ts\": 3, \"code\": \"AAPL\", \"price\": 190.25}}";
+
+        try (UnifiedDataTable table = parser.parse(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)),
+                fields(), "/event", Map.of("stkcode", "code"), List.of(new Predicate("stkcode", Operator.EQUALS, "AAPL")), null)) {
+            VectorSchemaRoot root = table.getData();
+            assertEquals(2, root.getRowCount());
+            assertEquals(List.of(1L, 3L), List.of(((BigIntVector) root.getVector("ts")).get(0), ((BigIntVector) root.getVector("ts")).get(1)));
+            assertEquals(190.25, root.getVector("price").getObject(1));
+        }
+    }
+
+    @Test
+    void testSplitsLargeBuffersAtLineBoundaries() {
+        NdjsonDataParser sequential = new NdjsonDataParser(allocator, 1);
+        NdjsonDataParser parallel = new NdjsonDataParser(allocator, 4);
+        ReflectionTestUtils.setField(parallel, "parallelThresholdBytes", 0L);
+        ReflectionTestUtils.setField(parallel, "batchSize", 100);
+        byte[] payload = lines(1000).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(payload.length).put(payload).flip();
+
+        try (UnifiedDataTable split = parallel.parseBytes(direct, fields(), "", Map.of("stkcode", "code"),
+                     List.of(new Predicate("ts", Operator.GREATER_THAN_OR_EQUAL_TO, 10L)), null);
+             UnifiedDataTable whole = sequential.parseBytes(ByteBuffer.wrap(payload), fields(), "", Map.of("stkcode", "code"),
+                     List.of(new Predicate("ts", Operator.GREATER_THAN_OR_EQUAL_TO, 10L)), null)) {
+            assertTrue(split.getBatches().size() > 4, "every range writes its own batches");
+            assertEquals(990, split.getRowCount());
+            assertEquals(990, whole.getRowCount());
+            for (int row = 0; row < split.getRowCount(); row++) {
+                int line = row + 10;
+                assertEquals(TICKERS[line % TICKERS.length], valueAt(split, "stkcode", row).toString());
+                assertEquals(valueAt(whole, "stkcode", row).toString(), valueAt(split, "stkcode", row).toString());
+                assertEquals((long) line, valueAt(split, "ts", row));
+                assertEquals(100 + line * 0.5, valueAt(split, "price", row));
+            }
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void testParsesMemoryMappedFiles(@TempDir Path dir) throws Exception {
+        DataFetcherService fetcher = new DataFetcherService(mock(HttpClient.class));
+        NdjsonDataParser sequential = new NdjsonDataParser(allocator, 1);
+        NdjsonDataParser parallel = new NdjsonDataParser(allocator, 4);
+        ReflectionTestUtils.setField(parallel, "parallelThresholdBytes", 0L);
+        Path empty = Files.createFile(dir.resolve("empty.ndjson"));
+        // The last record has no newline after it, so the mapping ends inside that record
+        String payload = lines(100);
+        Path unterminated = Files.writeString(dir.resolve("ticks.ndjson"), payload.substring(0, payload.length() - 1));
+
+        try (UnifiedDataTable none = sequential.parseBytes(fetcher.mapLocalFile(empty), fields(), "", Map.of("stkcode", "code"), List.of(), null);
+             UnifiedDataTable whole = sequential.parseBytes(fetcher.mapLocalFile(unterminated), fields(), "", Map.of("stkcode", "code"), List.of(), null);
+             UnifiedDataTable split = parallel.parseBytes(fetcher.mapLocalFile(unterminated), fields(), "", Map.of("stkcode", "code"), List.of(), null)) {
+            assertEquals(0, none.getRowCount());
+            assertEquals(3, none.getSchema().getFields().size());
+            for (UnifiedDataTable table : List.of(whole, split)) {
+                assertEquals(100, table.getRowCount());
+                assertEquals(99L, valueAt(table, "ts", 99));
+                assertEquals(TICKERS[99 % TICKERS.length], valueAt(table, "stkcode", 99).toString());
+                assertEquals(100 + 99 * 0.5, valueAt(table, "price", 99));
+            }
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    private static Object valueAt(UnifiedDataTable table, String field, int row) {
+        return ArrowDictionaries.valueAt(table.getData().getVector(field), row, table.getDictionaries());
+    }
+}
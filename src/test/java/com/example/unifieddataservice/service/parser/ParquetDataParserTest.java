@@ -0,0 +1,177 @@
+package com.example.unifieddataservice.service.parser;
+
+import com.example.unifieddataservice.model.DataType;
+import com.example.unifieddataservice.model.Operator;
+import com.example.unifieddataservice.model.Predicate;
+import com.example.unifieddataservice.model.UnifiedDataTable;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.unifieddataservice.service.parser.ColumnarTestData.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParquetDataParserTest {
+
+    private static final int ROWS = 1000;
+    private static final long START_MICROS = 1_700_000_000_000_000L;
+
+    private RootAllocator allocator;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocator.close();
+    }
+
+    /**
+     * Writes {@link #ROWS} rows in time order, in row groups small enough to hold about a hundred rows each.
+     */
+    private Path write() throws IOException {
+        MessageType schema = MessageTypeParser.parseMessageType("message ticks {"
+                + " required binary stk (STRING);"
+                + " required int64 ts (TIMESTAMP(MICROS,true));"
+                + " required double close;"
+                + " optional int32 qty; }");
+        Path file = tempDir.resolve("ticks.parquet");
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new LocalOutputFile(file))
+                .withType(schema)
+                .withConf(new PlainParquetConfiguration())
+                .withCompressionCodec(CompressionCodecName.SNAPPY)
+                .withRowGroupSize(1024L)
+                .build()) {
+            SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+            for (int row = 0; row < ROWS; row++) {
+                Group group = factory.newGroup()
+                        .append("stk", TICKERS[row % TICKERS.length])
+                        .append("ts", START_MICROS + row * 1_000_000L)
+                        .append("close", 100 + row * 0.5);
+                if (row % 4 != 3) {
+                    group.append("qty", row * 10);
+                }
+                writer.write(group);
+            }
+        }
+        return file;
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Zeroes the column chunks of every row group ending before the given row, so reading any of them fails
+     * while the footer statistics stay intact.
+     */
+    private static void corruptRowGroupsBefore(Path file, long row) throws IOException {
+        List<BlockMetaData> rowGroups;
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file),
+                ParquetReadOptions.builder(new PlainParquetConfiguration()).build())) {
+            rowGroups = reader.getRowGroups();
+        }
+        assertTrue(rowGroups.size() > 2, "the file has several row groups");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (BlockMetaData rowGroup : rowGroups) {
+                if (rowGroup.getRowIndexOffset() + rowGroup.getRowCount() <= row) {
+                    for (ColumnChunkMetaData chunk : rowGroup.getColumns()) {
+                        channel.write(ByteBuffer.allocate((int) chunk.getTotalSize()), chunk.getStartingPos());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testConvertsTypesAndAppliesPredicates() throws IOException {
+        ParquetDataParser parser = new ParquetDataParser(allocator);
+        Path file = write();
+
+        try (UnifiedDataTable table = parser.parseBytes(map(file), fields(), "", aliases(),
+                List.of(new Predicate("volume", Operator.LESS_THAN, 140L),
+                        new Predicate("stkcode", Operator.NOT_EQUALS, "GOOG")), null)) {
+            // Rows below 14 with a volume, minus every GOOG row
+            assertEquals(List.of(0, 1, 4, 6, 9, 10, 12, 13), rowsOf(table));
+            assertEquals("MSFT", valueAt(table, "stkcode", 1).toString());
+            assertEquals("MSFT", valueAt(table, "name", 1).toString());
+            assertEquals(1_700_000_001_000L, ((TimeStampMilliTZVector) table.getData().getVector("timestamp")).get(1));
+            assertEquals(100.5, table.getData().getVector("close").getObject(1));
+            assertInstanceOf(IntVector.class, table.getData().getVector("stkcode"));
+            assertNotNull(table.getData().getVector("stkcode").getField().getDictionary());
+        }
+    }
+
+    @Test
+    void testSkipsRowGroupsOutsidePredicateRange() throws IOException {
+        ParquetDataParser parser = new ParquetDataParser(allocator);
+        Path file = write();
+        corruptRowGroupsBefore(file, 850);
+        // 1_700_000_900_000 ms is row 900, so only the last row groups can match
+        List<Predicate> predicates = List.of(new Predicate("timestamp", Operator.GREATER_THAN_OR_EQUAL_TO, 1_700_000_900_000L));
+
+        try (UnifiedDataTable table = parser.parseBytes(map(file), fields(), "", aliases(), predicates, Set.of("stkcode", "close"));
+             UnifiedDataTable streamed = parser.parse(new ByteArrayInputStream(Files.readAllBytes(file)), fields(), "", aliases(),
+                     predicates, Set.of("stkcode", "close"))) {
+            assertEquals(List.of("stkcode", "close", "timestamp"),
+                    table.getSchema().getFields().stream().map(Field::getName).toList());
+            assertEquals(100, table.getRowCount());
+            assertEquals(100, streamed.getRowCount());
+            for (int row = 0; row < table.getRowCount(); row++) {
+                assertEquals(TICKERS[(900 + row) % TICKERS.length], valueAt(table, "stkcode", row).toString());
+                assertEquals(100 + (900 + row) * 0.5, valueAt(table, "close", row));
+                assertEquals(valueAt(streamed, "close", row), valueAt(table, "close", row));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnmappableColumn() throws IOException {
+        ParquetDataParser parser = new ParquetDataParser(allocator);
+        Map<String, DataType> fields = new LinkedHashMap<>();
+        fields.put("close", DataType.BOOLEAN);
+        ByteBuffer data = map(write());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> parser.parseBytes(data, fields, "", null, List.of(), null));
+        assertTrue(e.getMessage().contains("close"));
+    }
+}